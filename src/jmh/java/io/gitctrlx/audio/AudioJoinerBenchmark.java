@@ -0,0 +1,103 @@
+package io.gitctrlx.audio;
+
+import io.gitctrlx.constant.OutputFormat;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.WritableByteChannel;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures joining {@code parts} clips of about ten seconds each into a channel that discards the result, the
+ * work that replaces running an external muxer over the parts of a long text.
+ * <p>
+ * The clips are synthetic but well-formed: 24 kHz 48 kbit/s MP3 frames, or Ogg pages of three 20 ms Opus packets
+ * behind the two header pages.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = {"-Xms1g", "-Xmx1g"})
+public class AudioJoinerBenchmark {
+
+    @Param({"audio_24khz_48kbitrate_mono_mp3", "ogg_24khz_16bit_mono_opus"})
+    public OutputFormat format;
+
+    @Param({"8"})
+    public int parts;
+
+    private ByteBuffer clip;
+    private final WritableByteChannel discard = new WritableByteChannel() {
+        @Override
+        public int write(ByteBuffer src) {
+            int remaining = src.remaining();
+            src.position(src.limit());
+            return remaining;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+        }
+    };
+
+    @Setup
+    public void setUp() {
+        clip = format == OutputFormat.ogg_24khz_16bit_mono_opus ? oggClip(170) : mp3Clip(417);
+    }
+
+    @Benchmark
+    public long join() throws IOException {
+        AudioJoiner joiner = AudioJoiner.of(format, discard);
+        for (int i = 0; i < parts; i++) {
+            joiner.append(clip.duplicate());
+        }
+        return joiner.finish();
+    }
+
+    private static ByteBuffer mp3Clip(int frames) {
+        ByteBuffer clip = ByteBuffer.allocate(frames * 144);
+        for (int i = 0; i < frames; i++) {
+            clip.put((byte) 0xFF).put((byte) 0xF3).put((byte) 0x64).put((byte) 0xC4);
+            for (int j = 4; j < 144; j++) {
+                clip.put((byte) (i * 7 + j));
+            }
+        }
+        clip.flip();
+        return clip;
+    }
+
+    private static ByteBuffer oggClip(int pages) {
+        ByteBuffer clip = ByteBuffer.allocate((pages + 2) * 256).order(ByteOrder.LITTLE_ENDIAN);
+        page(clip, 0x02, 0, 0, "OpusHead".getBytes(), 19);
+        page(clip, 0, 0, 1, "OpusTags".getBytes(), 16);
+        for (int i = 0; i < pages; i++) {
+            page(clip, 0, (i + 1) * 2880L, i + 2, new byte[]{(byte) 0xF8}, 60, 60, 60);
+        }
+        clip.flip();
+        return clip;
+    }
+
+    private static void page(ByteBuffer clip, int flags, long granule, int sequence, byte[] prefix, int... packets) {
+        clip.put("OggS".getBytes()).put((byte) 0).put((byte) flags).putLong(granule).putInt(1).putInt(sequence)
+                .putInt(0).put((byte) packets.length);
+        for (int packet : packets) {
+            clip.put((byte) packet);
+        }
+        for (int packet : packets) {
+            clip.put(prefix);
+            for (int j = prefix.length; j < packet; j++) {
+                clip.put((byte) j);
+            }
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package io.gitctrlx.audio;
+
+import io.gitctrlx.constant.OutputFormat;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures writing one synthesised clip to each kind of sink, the path every binary audio frame takes once it is
+ * parsed: {@code begin}, one {@code write} per frame, then {@code close}.
+ * <p>
+ * A clip is {@code frames} frames of {@code payloadSize} bytes, about the size of a sentence in the default MP3
+ * format. The frames are read-only views of one buffer, as the payloads of the received frames are.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = {"-Xms1g", "-Xmx1g"})
+public class AudioSinkBenchmark {
+
+    @Param({"memory", "channel", "file"})
+    public String sink;
+
+    @Param({"4096"})
+    public int payloadSize;
+
+    @Param({"32"})
+    public int frames;
+
+    private ByteBuffer frame;
+    private File directory;
+
+    @Setup
+    public void setUp() throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(payloadSize);
+        for (int i = 0; i < payloadSize; i++) {
+            buffer.put((byte) (i * 31));
+        }
+        buffer.flip();
+        frame = buffer.asReadOnlyBuffer();
+        directory = Files.createTempDirectory("tts4j-sink-bench").toFile();
+    }
+
+    @TearDown
+    public void tearDown() {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+
+    @Benchmark
+    public AudioSink writeClip() throws IOException {
+        AudioSink target = newSink();
+        target.begin(OutputFormat.audio_24khz_48kbitrate_mono_mp3);
+        for (int i = 0; i < frames; i++) {
+            target.write(frame.duplicate());
+        }
+        target.close();
+        return target;
+    }
+
+    private AudioSink newSink() {
+        switch (sink) {
+            case "memory":
+                return AudioSink.memory();
+            case "channel":
+                return AudioSink.toChannel(new DiscardingChannel());
+            case "file":
+                return AudioSink.toFile(new File(directory, "clip").getPath());
+            default:
+                throw new IllegalArgumentException("Unknown sink: " + sink);
+        }
+    }
+
+    /**
+     * A channel that accepts and drops everything, so that only the sink's own cost is measured.
+     */
+    private static final class DiscardingChannel implements WritableByteChannel {
+        private boolean open = true;
+
+        @Override
+        public int write(ByteBuffer src) {
+            int remaining = src.remaining();
+            src.position(src.limit());
+            return remaining;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return open;
+        }
+
+        @Override
+        public void close() {
+            open = false;
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package io.gitctrlx.audio.pcm;
+
+import io.gitctrlx.audio.AudioSink;
+import io.gitctrlx.constant.OutputFormat;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures running one second of raw audio through a {@link PcmAudioSink} into memory, frame by frame.
+ * <p>
+ * The input is a tone with silence around it, as 16 kHz 16-bit PCM or 8 kHz mu-law. {@code passthrough} has no
+ * stages, {@code gain} decodes, scales and re-encodes every sample, and {@code full} trims, upsamples to 24 kHz
+ * and normalises. Run with {@code -prof gc} to see the allocation per clip.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = {"-Xms1g", "-Xmx1g"})
+public class PcmPipelineBenchmark {
+
+    @Param({"raw_16khz_16bit_mono_pcm", "raw_8khz_8bit_mono_mulaw"})
+    public OutputFormat format;
+
+    @Param({"passthrough", "gain", "full"})
+    public String stages;
+
+    @Param({"3200"})
+    public int payloadSize;
+
+    private ByteBuffer clip;
+    private PcmAudioSink sink;
+
+    @Setup
+    public void setUp() {
+        PcmFormat pcm = PcmFormat.of(format);
+        int samples = pcm.getSampleRate();
+        clip = ByteBuffer.allocate(samples * pcm.getBytesPerSample());
+        for (int i = 0; i < samples; i++) {
+            short value = i < samples / 5 || i > samples * 4 / 5 ? 0 : (short) (6000 * Math.sin(i * 0.3));
+            if (pcm.getEncoding() == PcmFormat.Encoding.PCM_16BIT) {
+                clip.put((byte) value).put((byte) (value >> 8));
+            } else {
+                clip.put((byte) (value == 0 ? 0xFF : i)); // Any code decodes to some sample
+            }
+        }
+        clip.flip();
+        PcmAudioSink.PcmAudioSinkBuilder builder = PcmAudioSink.builder(AudioSink.memory());
+        if ("gain".equals(stages)) {
+            builder.stage(PcmStage.gain(-3));
+        } else if ("full".equals(stages)) {
+            builder.stage(PcmStage.trimSilence(-50, Duration.ofMillis(100)))
+                    .stage(PcmStage.resample(24000))
+                    .stage(PcmStage.normalize(-1));
+        }
+        sink = builder.build();
+    }
+
+    @Benchmark
+    public AudioSink processClip() throws IOException {
+        sink.begin(format);
+        for (int offset = 0; offset < clip.limit(); offset += payloadSize) {
+            ByteBuffer frame = clip.duplicate();
+            frame.position(offset).limit(Math.min(offset + payloadSize, clip.limit()));
+            sink.write(frame);
+        }
+        sink.close();
+        return sink;
+    }
+}
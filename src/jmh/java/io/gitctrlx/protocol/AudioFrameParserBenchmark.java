@@ -0,0 +1,80 @@
+package io.gitctrlx.protocol;
+
+import io.gitctrlx.constant.TtsConstants;
+
+import okio.ByteString;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares {@link AudioFrameParser} with the previous binary frame handling, which searched the whole frame with
+ * {@code lastIndexOf} and decoded the header block into a String on every frame.
+ * <p>
+ * Run with {@code gradle jmh -Pjmh.includes=AudioFrameParserBenchmark} and add {@code -prof gc} to the JMH
+ * arguments to compare allocation rates.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AudioFrameParserBenchmark {
+
+    private static final ByteString AUDIO_START = ByteString.encodeUtf8(TtsConstants.AUDIO_START);
+    private static final ByteString AUDIO_CONTENT_TYPE = ByteString.encodeUtf8(TtsConstants.AUDIO_CONTENT_TYPE);
+
+    /**
+     * Audio payload size; frames from the service are a few kilobytes.
+     */
+    @Param({"512", "4096", "16384"})
+    public int payloadSize;
+
+    private ByteString frame;
+    private AudioFrameParser parser;
+
+    @Setup
+    public void setUp() {
+        String headers = TtsConstants.REQUEST_ID_HEADER + "0f3c2a9b8d7e4c6a91b2d3e4f5a6b7c8\r\n"
+                + "Content-Type:audio/mpeg\r\n"
+                + "X-StreamId:5C1D4AB1F2E34F0C9E1A2B3C4D5E6F70\r\n"
+                + TtsConstants.AUDIO_START;
+        byte[] headerBytes = headers.getBytes(StandardCharsets.US_ASCII);
+        ByteBuffer buffer = ByteBuffer.allocate(2 + headerBytes.length + payloadSize);
+        buffer.putShort((short) headerBytes.length).put(headerBytes);
+        for (int i = 0; i < payloadSize; i++) {
+            buffer.put((byte) (i * 31));
+        }
+        frame = ByteString.of(buffer.array());
+        parser = new AudioFrameParser();
+    }
+
+    @Benchmark
+    public void legacy(Blackhole bh) {
+        int audioStart = frame.lastIndexOf(AUDIO_START);
+        if (audioStart < 0 || frame.lastIndexOf(AUDIO_CONTENT_TYPE) < 0) {
+            return;
+        }
+        int audioIndex = audioStart + AUDIO_START.size();
+        String headers = frame.substring(0, audioStart).utf8();
+        int start = headers.indexOf(TtsConstants.REQUEST_ID_HEADER) + TtsConstants.REQUEST_ID_HEADER.length();
+        int end = headers.indexOf("\r\n", start);
+        bh.consume(headers.substring(start, end).trim());
+        ByteBuffer chunk = frame.asByteBuffer();
+        chunk.position(audioIndex);
+        bh.consume(chunk);
+    }
+
+    @Benchmark
+    public void parser(Blackhole bh) {
+        if (!parser.parse(frame.asByteBuffer())) {
+            return;
+        }
+        bh.consume(parser.requestId());
+        bh.consume(parser.payload());
+    }
+}
@@ -0,0 +1,46 @@
+package io.gitctrlx.protocol;
+
+import io.gitctrlx.subtitle.WordBoundary;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Measures parsing of one {@code audio.metadata} text frame as the service sends it, one word boundary per frame.
+ * <p>
+ * Run with {@code gradle jmh -Pjmh.includes=MetadataParserBenchmark -Pjmh.args="-prof gc"}; the allocation per
+ * frame should stay at the word string and the boundary.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = {"-Xms1g", "-Xmx1g"})
+public class MetadataParserBenchmark {
+
+    private String frame;
+    private int bodyStart;
+    private MetadataParser parser;
+    private Consumer<WordBoundary> consumer;
+
+    @Setup
+    public void setUp(Blackhole bh) {
+        frame = "X-RequestId:0f3c2a9b8d7e4c6a91b2d3e4f5a6b7c8\r\n"
+                + "Content-Type:application/json; charset=utf-8\r\n"
+                + "Path:audio.metadata\r\n\r\n"
+                + "{\"Metadata\":[{\"Type\":\"WordBoundary\",\"Data\":{\"Offset\":11375000,\"Duration\":3250000,"
+                + "\"text\":{\"Text\":\"synthesis\",\"Length\":9,\"BoxType\":\"Word\"}}}]}";
+        bodyStart = frame.indexOf("\r\n\r\n") + 4;
+        parser = new MetadataParser();
+        consumer = bh::consume;
+    }
+
+    @Benchmark
+    public int parse() {
+        return parser.parse(frame, bodyStart, consumer);
+    }
+}
@@ -0,0 +1,68 @@
+package io.gitctrlx.service;
+
+import io.gitctrlx.mock.MockSpeechServer;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures throughput and latency of whole syntheses through {@link TTSService}, against a
+ * {@link MockSpeechServer} on the loopback interface instead of the public service, so results depend only on
+ * this library and the machine.
+ * <p>
+ * Each of the benchmark threads sends one synthesis at a time, so {@code threads} requests compete for the pool.
+ * The sample-time mode reports latency percentiles; with a server latency of 0 the numbers are the library's own
+ * overhead per request.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = {"-Xms1g", "-Xmx1g", "-Dorg.slf4j.simpleLogger.defaultLogLevel=warn"})
+@Threads(16)
+public class EndToEndBenchmark {
+
+    /**
+     * Time the mock server waits before answering, in milliseconds.
+     */
+    @Param({"0", "20"})
+    public int latencyMillis;
+
+    @Param({"4"})
+    public int poolSize;
+
+    private MockSpeechServer server;
+    private TTSService service;
+    private SSML ssml;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        server = MockSpeechServer.builder()
+                .latency(Duration.ofMillis(latencyMillis))
+                .frameSize(4096)
+                .framesPerTurn(8)
+                .build()
+                .start();
+        service = TTSService.builder()
+                .endpoint(server.endpoint())
+                .poolSize(poolSize)
+                .build();
+        service.warmUp(poolSize).join();
+        ssml = SSML.builder().synthesisText("The quick brown fox jumps over the lazy dog.").build();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        service.close();
+        server.close();
+    }
+
+    @Benchmark
+    public SynthesisResult synthesize() {
+        return service.synthesize(ssml);
+    }
+}
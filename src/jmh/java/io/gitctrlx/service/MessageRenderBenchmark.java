@@ -0,0 +1,78 @@
+package io.gitctrlx.service;
+
+import io.gitctrlx.constant.OutputFormat;
+import io.gitctrlx.constant.VoiceEnum;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures rendering of the text messages sent for every synthesis: the SSML request and the speech.config
+ * message sent when a connection is opened or switches format.
+ * <p>
+ * Run with {@code gradle jmh -Pjmh.includes=MessageRenderBenchmark -Pjmh.args="-prof gc"} to see the allocation
+ * rate per message next to its cost.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = {"-Xms1g", "-Xmx1g"})
+public class MessageRenderBenchmark {
+
+    private static final String REQUEST_ID = "0f3c2a9b8d7e4c6a91b2d3e4f5a6b7c8";
+
+    /**
+     * Length of the text to synthesise, in characters.
+     */
+    @Param({"32", "512"})
+    public int textLength;
+
+    private SSML ssml;
+    private SpeechConfig speechConfig;
+
+    @Setup
+    public void setUp() {
+        StringBuilder text = new StringBuilder(textLength);
+        while (text.length() < textLength) {
+            text.append("The quick brown fox jumps over the lazy dog. ");
+        }
+        text.setLength(textLength);
+        ssml = SSML.builder()
+                .synthesisText(text.toString())
+                .voice(VoiceEnum.en_US_AriaNeural)
+                .rate("+10%")
+                .volume("+0%")
+                .outputFormat(OutputFormat.audio_24khz_48kbitrate_mono_mp3)
+                .build();
+        speechConfig = SpeechConfig.of(OutputFormat.audio_24khz_48kbitrate_mono_mp3);
+    }
+
+    /**
+     * The SSML message as sent by a connection, with the request id already generated.
+     */
+    @Benchmark
+    public String ssmlRender() {
+        return ssml.render(REQUEST_ID);
+    }
+
+    /**
+     * The public {@link SSML#toString()}, which also generates a request id.
+     */
+    @Benchmark
+    public String ssmlToString() {
+        return ssml.toString();
+    }
+
+    @Benchmark
+    public String speechConfigToString() {
+        return speechConfig.toString();
+    }
+
+    @Benchmark
+    public String cacheKey() {
+        return ssml.getCacheKey();
+    }
+}
@@ -0,0 +1,27 @@
+package io.gitctrlx.util;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the helpers called for every message: the X-Timestamp value and the request and connection ids.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = {"-Xms1g", "-Xmx1g"})
+public class ToolsBenchmark {
+
+    @Benchmark
+    public String date() {
+        return Tools.date();
+    }
+
+    @Benchmark
+    public String randomId() {
+        return Tools.getRandomId();
+    }
+}
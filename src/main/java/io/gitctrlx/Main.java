@@ -16,21 +16,20 @@ public class Main {
                 .voice(VoiceEnum.zh_CN_XiaoxiaoNeural)
                 .build();
 
-        new Thread(() -> {
-            ts.sendText(ssml, new TTSService.TTSCallback() {
-                @Override
-                public void onSuccess(String filePath) {
-                    // When the request is successful, do whatever you want to do here
-                    System.out.println(filePath);
-                }
+        // sendText returns immediately; close() waits for the synthesis to finish
+        ts.sendText(ssml, new TTSService.TTSCallback() {
+            @Override
+            public void onSuccess(String filePath) {
+                // When the request is successful, do whatever you want to do here
+                System.out.println(filePath);
+            }
 
-                @Override
-                public void onError(Exception e) {
-                    // When an error occurs, you can handle it here
-                    e.printStackTrace();
-                }
-            });
-        }).start();
+            @Override
+            public void onError(Exception e) {
+                // When an error occurs, you can handle it here
+                e.printStackTrace();
+            }
+        });
 
         ts.close();
     }
@@ -0,0 +1,267 @@
+package io.gitctrlx.audio;
+
+import io.gitctrlx.audio.pcm.PcmFormat;
+import io.gitctrlx.constant.OutputFormat;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Joins several clips of one output format into a single playable stream, without decoding or re-encoding them.
+ * <p>
+ * Every format is joined by its own rules:
+ * <ul>
+ * <li>MP3: the frames are copied; ID3 tags and Xing/Info/VBRI header frames of the parts are dropped.</li>
+ * <li>Ogg Opus: the header pages of the first part are kept and the audio pages of all parts follow, with serial
+ * number, page sequence, granule positions and checksums rewritten into one logical stream.</li>
+ * <li>WebM Opus: the header, segment info and tracks of the first part are kept and the clusters of all parts
+ * follow, with their timecodes shifted to continue where the previous part ended. Seek heads and cues, which
+ * hold byte offsets, are dropped.</li>
+ * <li>AMR-WB: the file header of the later parts is dropped.</li>
+ * <li>Raw audio: the samples are copied. If the first part is a WAV file, so is the result, with the sizes
+ * patched in at the end when the output can seek; the WAV headers of all parts are dropped.</li>
+ * </ul>
+ * The parts are read through a fixed buffer and written through another one, so the memory used does not grow
+ * with their length; WebM holds one cluster at a time, which the format limits to about half a minute of audio.
+ * <p>
+ * Joining drops no samples. Each part still starts with the few milliseconds of priming its encoder added, which
+ * only a decoder could remove.
+ * <pre>{@code
+ * AudioJoiner.concat(OutputFormat.webm_24khz_16bit_mono_opus,
+ *         Arrays.asList(Paths.get("part1.webm"), Paths.get("part2.webm")), Paths.get("all.webm"));
+ * }</pre>
+ * An instance joins into one output and is not thread-safe.
+ */
+public abstract class AudioJoiner {
+
+    private final WritableByteChannel out;
+    private final ByteBuffer pending = ByteBuffer.allocate(ChannelReader.CAPACITY);
+    private final ChannelReader reader = new ChannelReader();
+    private long bytesWritten;
+    private int parts;
+    private boolean finished;
+
+    AudioJoiner(WritableByteChannel out) {
+        this.out = Objects.requireNonNull(out, "out");
+    }
+
+    /**
+     * Creates a joiner for clips of the given format.
+     *
+     * @param format The output format of every part.
+     * @param out    Receives the joined stream. It is not closed at the end.
+     * @return A new AudioJoiner.
+     */
+    public static AudioJoiner of(OutputFormat format, WritableByteChannel out) {
+        String value = format.getValue();
+        if (value.endsWith("-mp3")) {
+            return new Mp3Joiner(out);
+        }
+        if (value.startsWith("ogg-") || value.endsWith("-opus") && value.startsWith("audio-")) {
+            return new OggOpusJoiner(out);
+        }
+        if (value.startsWith("webm-")) {
+            return new WebmJoiner(out);
+        }
+        return new PlainJoiner(out, PcmFormat.of(format), value.startsWith("amr-wb") ? "#!AMR-WB\n" : null);
+    }
+
+    /**
+     * Joins clips from channels.
+     *
+     * @param format The output format of every part.
+     * @param parts  The parts in order. They are read to the end but not closed.
+     * @param out    Receives the joined stream. It is not closed at the end.
+     * @return The number of bytes written.
+     * @throws IOException If a part cannot be read or is malformed, or the output cannot be written.
+     */
+    public static long concat(OutputFormat format, List<? extends ReadableByteChannel> parts, WritableByteChannel out)
+            throws IOException {
+        AudioJoiner joiner = of(format, out);
+        for (ReadableByteChannel part : parts) {
+            joiner.append(part);
+        }
+        return joiner.finish();
+    }
+
+    /**
+     * Joins clips from files into another file, which is overwritten.
+     *
+     * @param format The output format of every part.
+     * @param parts  The files of the parts in order.
+     * @param target The file to write.
+     * @return The number of bytes written.
+     * @throws IOException If a part cannot be read or is malformed, or the target cannot be written.
+     */
+    public static long concat(OutputFormat format, List<Path> parts, Path target) throws IOException {
+        try (FileChannel out = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            AudioJoiner joiner = of(format, out);
+            for (Path part : parts) {
+                try (FileChannel in = FileChannel.open(part, StandardOpenOption.READ)) {
+                    joiner.append(in);
+                }
+            }
+            return joiner.finish();
+        }
+    }
+
+    /**
+     * Appends the next part, reading the channel to its end. The joined audio is written before this returns,
+     * except what the format must hold back for {@link #finish}, e.g. the last Ogg page.
+     *
+     * @param part The part, which is not closed.
+     * @throws IOException If the part cannot be read or is malformed, or the output cannot be written.
+     */
+    public void append(ReadableByteChannel part) throws IOException {
+        if (finished) {
+            throw new IllegalStateException("Joiner is finished");
+        }
+        reader.open(Objects.requireNonNull(part, "part"));
+        appendPart(reader, parts++ == 0);
+        flush();
+    }
+
+    /**
+     * Appends the next part from a buffer, from its position to its limit.
+     *
+     * @param part The part.
+     * @throws IOException If the part is malformed or the output cannot be written.
+     */
+    public void append(ByteBuffer part) throws IOException {
+        ByteBuffer source = part.duplicate();
+        append(new ReadableByteChannel() {
+            @Override
+            public int read(ByteBuffer dst) {
+                if (!source.hasRemaining()) {
+                    return -1;
+                }
+                int n = Math.min(dst.remaining(), source.remaining());
+                ByteBuffer slice = source.duplicate();
+                slice.limit(slice.position() + n);
+                dst.put(slice);
+                source.position(source.position() + n);
+                return n;
+            }
+
+            @Override
+            public boolean isOpen() {
+                return true;
+            }
+
+            @Override
+            public void close() {
+            }
+        });
+        part.position(part.limit());
+    }
+
+    /**
+     * Completes the joined stream after the last part.
+     *
+     * @return The number of bytes written in total.
+     * @throws IOException If the output cannot be written.
+     */
+    public long finish() throws IOException {
+        if (!finished) {
+            finished = true;
+            finishParts(parts);
+            flush();
+        }
+        return bytesWritten;
+    }
+
+    /**
+     * Gets the number of bytes written so far.
+     *
+     * @return The number of bytes.
+     */
+    public long getBytesWritten() {
+        return bytesWritten + pending.position();
+    }
+
+    /**
+     * Gets the playing time of the parts appended so far, as their headers and frames state it, so that timings
+     * within the next part can be shifted to where it starts in the joined stream.
+     *
+     * @return The duration in nanoseconds, or -1 if the format does not tell, as for AMR-WB.
+     */
+    public long getDurationNanos() {
+        return -1;
+    }
+
+    /**
+     * Reads one part and writes its contribution to the joined stream.
+     */
+    abstract void appendPart(ChannelReader in, boolean first) throws IOException;
+
+    /**
+     * Writes whatever the format holds back until the end.
+     */
+    void finishParts(int parts) throws IOException {
+    }
+
+    WritableByteChannel out() {
+        return out;
+    }
+
+    void write(ByteBuffer src) throws IOException {
+        if (src.remaining() <= pending.remaining()) {
+            pending.put(src);
+            return;
+        }
+        while (src.hasRemaining()) {
+            if (!pending.hasRemaining()) {
+                flush();
+            }
+            int n = Math.min(src.remaining(), pending.remaining());
+            ByteBuffer slice = src.duplicate();
+            slice.limit(slice.position() + n);
+            pending.put(slice);
+            src.position(src.position() + n);
+        }
+    }
+
+    void write(byte[] src, int offset, int length) throws IOException {
+        write(ByteBuffer.wrap(src, offset, length));
+    }
+
+    /**
+     * Copies {@code n} bytes of the part to the output.
+     */
+    void copy(ChannelReader in, long n) throws IOException {
+        while (n > 0) {
+            if (!in.request(1)) {
+                throw new EOFException("[ERROR] Audio data ends " + n + " bytes early");
+            }
+            ByteBuffer chunk = in.take((int) Math.min(n, in.buffered()));
+            n -= chunk.remaining();
+            write(chunk);
+        }
+    }
+
+    /**
+     * Copies the rest of the part to the output.
+     */
+    void copyToEnd(ChannelReader in) throws IOException {
+        while (in.request(1)) {
+            write(in.take(in.buffered()));
+        }
+    }
+
+    void flush() throws IOException {
+        pending.flip();
+        while (pending.hasRemaining()) {
+            bytesWritten += out.write(pending);
+        }
+        pending.clear();
+    }
+}
@@ -0,0 +1,116 @@
+package io.gitctrlx.audio;
+
+import io.gitctrlx.constant.OutputFormat;
+import io.gitctrlx.subtitle.WordBoundary;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * The AudioSink interface receives the audio of one synthesis.
+ * <p>
+ * {@link #begin} is called once with the negotiated format before any data, followed by zero or more
+ * {@link #write} calls in stream order and finally either {@link #close} on success or {@link #abort} on failure.
+ * Word boundaries reported by the service are passed to {@link #wordBoundary} between {@link #begin} and
+ * {@link #close}, interleaved with the writes.
+ * When a synthesis is retried after it already delivered audio, {@link #reset} is called and the sequence starts
+ * again with {@link #begin}.
+ * Calls for one synthesis never overlap, but they do not all come from one thread: audio and word boundaries are
+ * delivered on the connection's reader thread, while {@link #abort} and {@link #reset} run on whichever thread
+ * failed or cancelled the synthesis, e.g. a timeout scheduler or the caller. The library serialises the calls under
+ * a lock, which also makes earlier writes visible to later calls, so a sink needs no locking of its own. Nothing
+ * else is called after {@link #abort}. Calls should not block for long, as an abort waits for the call in progress.
+ */
+public interface AudioSink {
+
+    /**
+     * Prepares the sink for audio in the given format.
+     *
+     * @param format The output format of the audio that follows.
+     * @throws IOException If the sink cannot be opened.
+     */
+    void begin(OutputFormat format) throws IOException;
+
+    /**
+     * Consumes an audio chunk, from its position to its limit. The buffer is only valid during the call.
+     *
+     * @param chunk The audio chunk.
+     * @throws IOException If the chunk cannot be written.
+     */
+    void write(ByteBuffer chunk) throws IOException;
+
+    /**
+     * Completes the sink after the last chunk.
+     *
+     * @throws IOException If the sink cannot be completed.
+     */
+    void close() throws IOException;
+
+    /**
+     * Receives a word of the text and its position in the audio. The default implementation does nothing.
+     *
+     * @param boundary The word boundary.
+     * @throws IOException If the boundary cannot be recorded.
+     */
+    default void wordBoundary(WordBoundary boundary) throws IOException {
+    }
+
+    /**
+     * Discards the sink after a failed synthesis. The default implementation does nothing.
+     */
+    default void abort() {
+    }
+
+    /**
+     * Discards the audio written so far so that a failed synthesis can be replayed from the start. If this
+     * returns true, the next call is {@link #begin}. The default implementation returns false, as data written
+     * to a stream or channel cannot be taken back; a synthesis that already delivered audio to such a sink is
+     * not retried.
+     *
+     * @return true if the sink was reset and can receive the audio again
+     */
+    default boolean reset() {
+        return false;
+    }
+
+    /**
+     * Creates a sink that collects the audio in memory.
+     *
+     * @return A new MemoryAudioSink.
+     */
+    static MemoryAudioSink memory() {
+        return new MemoryAudioSink();
+    }
+
+    /**
+     * Creates a sink that writes the audio to a stream. The stream is flushed, not closed, at the end.
+     *
+     * @param outputStream The target stream.
+     * @return A new OutputStreamAudioSink.
+     */
+    static OutputStreamAudioSink toStream(OutputStream outputStream) {
+        return new OutputStreamAudioSink(outputStream);
+    }
+
+    /**
+     * Creates a sink that writes the audio to a channel. The channel is not closed at the end.
+     *
+     * @param channel The target channel.
+     * @return A new ChannelAudioSink.
+     */
+    static ChannelAudioSink toChannel(WritableByteChannel channel) {
+        return new ChannelAudioSink(channel);
+    }
+
+    /**
+     * Creates a sink that writes the audio to a file, named after the given path plus the format's suffix.
+     *
+     * @param fileName The file path without extension, e.g. "C:\\hello_test" for C:\hello_test.mp3.
+     * @return A new FileAudioSink.
+     */
+    static FileAudioSink toFile(String fileName) {
+        return new FileAudioSink(fileName);
+    }
+}
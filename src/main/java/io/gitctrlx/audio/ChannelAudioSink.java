@@ -0,0 +1,41 @@
+package io.gitctrlx.audio;
+
+import io.gitctrlx.constant.OutputFormat;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.Objects;
+
+/**
+ * An {@link AudioSink} that writes the audio to a {@link WritableByteChannel}, such as a socket or file channel.
+ * The channel stays open at the end; it belongs to the caller.
+ */
+public class ChannelAudioSink implements AudioSink {
+
+    private final WritableByteChannel channel;
+
+    /**
+     * Creates a sink writing to the given channel.
+     *
+     * @param channel The target channel, in blocking mode.
+     */
+    public ChannelAudioSink(WritableByteChannel channel) {
+        this.channel = Objects.requireNonNull(channel, "channel");
+    }
+
+    @Override
+    public void begin(OutputFormat format) {
+    }
+
+    @Override
+    public void write(ByteBuffer chunk) throws IOException {
+        while (chunk.hasRemaining()) {
+            channel.write(chunk);
+        }
+    }
+
+    @Override
+    public void close() {
+    }
+}
@@ -0,0 +1,157 @@
+package io.gitctrlx.audio;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * Reads a channel through a fixed buffer, so that a parser can look ahead a bounded number of bytes before it
+ * consumes them. One instance is reused for all parts of a join.
+ */
+final class ChannelReader {
+
+    static final int CAPACITY = 64 * 1024;
+
+    private final ByteBuffer buffer = ByteBuffer.allocate(CAPACITY);
+    private final ByteBuffer view = buffer.duplicate();
+    private ReadableByteChannel channel;
+    private boolean eof;
+    private long position;
+
+    /**
+     * Starts reading another channel, discarding anything left of the previous one.
+     */
+    void open(ReadableByteChannel channel) {
+        this.channel = channel;
+        buffer.clear().flip();
+        eof = false;
+        position = 0;
+    }
+
+    /**
+     * Makes at least {@code n} bytes available to {@link #peek}.
+     *
+     * @return false if the channel ends before
+     */
+    boolean request(int n) throws IOException {
+        if (n > CAPACITY) {
+            throw new IOException("[ERROR] Audio element of " + n + " bytes exceeds the read buffer");
+        }
+        while (buffer.remaining() < n) {
+            if (eof) {
+                return false;
+            }
+            buffer.compact();
+            if (channel.read(buffer) < 0) {
+                eof = true;
+            }
+            buffer.flip();
+        }
+        return true;
+    }
+
+    /**
+     * Whether the channel has no more bytes.
+     */
+    boolean atEnd() throws IOException {
+        return !request(1);
+    }
+
+    /**
+     * Gets the number of bytes available to {@link #peek} without reading the channel.
+     */
+    int buffered() {
+        return buffer.remaining();
+    }
+
+    /**
+     * Gets an unsigned byte ahead of the current position, which must have been {@link #request requested}.
+     */
+    int peek(int offset) {
+        return buffer.get(buffer.position() + offset) & 0xFF;
+    }
+
+    /**
+     * Whether the bytes ahead match the ASCII text. Requests them first.
+     */
+    boolean startsWith(String text) throws IOException {
+        if (!request(text.length())) {
+            return false;
+        }
+        for (int i = 0; i < text.length(); i++) {
+            if (peek(i) != text.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Gets the number of bytes consumed from the current channel.
+     */
+    long position() {
+        return position;
+    }
+
+    /**
+     * Consumes {@code n} bytes, which must have been {@link #request requested}, into the array.
+     */
+    void read(byte[] target, int offset, int n) {
+        buffer.get(target, offset, n);
+        position += n;
+    }
+
+    /**
+     * Consumes up to {@code n} buffered bytes as a view of the buffer, valid until the next call.
+     */
+    ByteBuffer take(int n) {
+        view.limit(buffer.position() + n).position(buffer.position());
+        buffer.position(buffer.position() + n);
+        position += n;
+        return view;
+    }
+
+    /**
+     * Consumes {@code n} bytes, reading more as needed.
+     *
+     * @throws EOFException If the channel ends before
+     */
+    void skip(long n) throws IOException {
+        while (n > 0) {
+            if (!request(1)) {
+                throw new EOFException("[ERROR] Audio data ends " + n + " bytes early");
+            }
+            int k = (int) Math.min(n, buffer.remaining());
+            buffer.position(buffer.position() + k);
+            position += k;
+            n -= k;
+        }
+    }
+
+    /**
+     * Consumes the unsigned little-endian integer of {@code n} bytes, at most 8, which must have been requested.
+     */
+    long readUnsignedLittleEndian(int n) {
+        long value = 0;
+        for (int i = n - 1; i >= 0; i--) {
+            value = value << 8 | peek(i);
+        }
+        buffer.position(buffer.position() + n);
+        position += n;
+        return value;
+    }
+
+    /**
+     * Consumes the unsigned big-endian integer of {@code n} bytes, at most 8, which must have been requested.
+     */
+    long readUnsigned(int n) {
+        long value = 0;
+        for (int i = 0; i < n; i++) {
+            value = value << 8 | peek(i);
+        }
+        buffer.position(buffer.position() + n);
+        position += n;
+        return value;
+    }
+}
@@ -0,0 +1,143 @@
+package io.gitctrlx.audio;
+
+import io.gitctrlx.audio.pcm.PcmFormat;
+import io.gitctrlx.constant.OutputFormat;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Objects;
+
+/**
+ * An {@link AudioSink} that writes the audio to a file. The file is named after the given path plus the suffix
+ * of the output format, e.g. "hello_test" becomes "hello_test.mp3". An existing file is overwritten, and a
+ * partially written file is deleted if the synthesis fails.
+ * <p>
+ * Raw PCM, A-law and mu-law audio is written as a WAV file instead, e.g. "hello_test.wav": a header with
+ * placeholder sizes goes first, and is overwritten with the final sizes when the sink is closed.
+ */
+public class FileAudioSink implements AudioSink {
+
+    private static final Logger log = LoggerFactory.getLogger(FileAudioSink.class);
+
+    private final String fileName;
+    private File file;
+    private FileChannel channel;
+    private PcmFormat wavFormat;
+    private long dataSize;
+
+    /**
+     * Creates a sink for the given file path without extension.
+     *
+     * @param fileName The file path without extension.
+     */
+    public FileAudioSink(String fileName) {
+        this.fileName = Objects.requireNonNull(fileName, "fileName");
+    }
+
+    @Override
+    public void begin(OutputFormat format) throws IOException {
+        file = getAudioFile(format, fileName);
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        wavFormat = PcmFormat.of(format);
+        if (wavFormat != null) {
+            write(WavHeader.of(wavFormat, 0));
+        }
+        dataSize = 0;
+    }
+
+    @Override
+    public void write(ByteBuffer chunk) throws IOException {
+        dataSize += chunk.remaining();
+        while (chunk.hasRemaining()) {
+            channel.write(chunk);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            if (wavFormat != null) {
+                if ((dataSize & 1) != 0) {
+                    channel.write(ByteBuffer.wrap(new byte[1])); // RIFF chunks are padded to an even size
+                }
+                ByteBuffer header = WavHeader.of(wavFormat, dataSize);
+                while (header.hasRemaining()) {
+                    channel.write(header, header.position());
+                }
+            }
+        } finally {
+            channel.close();
+        }
+    }
+
+    @Override
+    public void abort() {
+        if (channel == null) {
+            return;
+        }
+        try {
+            channel.close();
+            Files.deleteIfExists(file.toPath());
+        } catch (IOException e) {
+            log.error("[ERROR] Failed to discard partial audio file " + file + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Closes the partially written file; {@link #begin} truncates it again.
+     */
+    @Override
+    public boolean reset() {
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                log.error("[ERROR] Failed to close partial audio file " + file + ": " + e.getMessage(), e);
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Gets the file being written.
+     *
+     * @return The file, or null before the synthesis started.
+     */
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Gets the absolute path of the file being written.
+     *
+     * @return The absolute path, or null before the synthesis started.
+     */
+    public String getAbsolutePath() {
+        return file == null ? null : file.getAbsolutePath();
+    }
+
+    /**
+     * Resolves the audio file for a base name, using "wav" as the suffix of raw PCM, A-law and mu-law audio and
+     * the last dash-separated token of the format otherwise.
+     *
+     * @param format   The audio format
+     * @param fileName The file name without extension
+     * @return The audio file
+     */
+    static File getAudioFile(OutputFormat format, String fileName) {
+        String[] split = format.getValue().split("-");
+        String suffix = PcmFormat.of(format) != null ? "wav" : split[split.length - 1];
+
+        // Generate full output file name
+        return new File(fileName + "." + suffix);
+    }
+}
@@ -0,0 +1,100 @@
+package io.gitctrlx.audio;
+
+import io.gitctrlx.constant.OutputFormat;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * An {@link AudioSink} that collects the audio in a growable byte array.
+ */
+public class MemoryAudioSink implements AudioSink {
+
+    private static final int DEFAULT_CAPACITY = 16 * 1024;
+
+    private byte[] data;
+    private int size;
+    private OutputFormat format;
+
+    /**
+     * Creates a sink with the default initial capacity.
+     */
+    public MemoryAudioSink() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates a sink with the given initial capacity, which avoids regrowth when the audio size can be estimated.
+     *
+     * @param initialCapacity The initial capacity in bytes.
+     */
+    public MemoryAudioSink(int initialCapacity) {
+        this.data = new byte[Math.max(initialCapacity, 16)];
+    }
+
+    @Override
+    public void begin(OutputFormat format) {
+        this.format = format;
+        this.size = 0;
+    }
+
+    @Override
+    public void write(ByteBuffer chunk) {
+        int length = chunk.remaining();
+        if (size + length > data.length) {
+            data = Arrays.copyOf(data, Math.max(data.length * 2, size + length));
+        }
+        chunk.get(data, size, length);
+        size += length;
+    }
+
+    @Override
+    public void close() {
+    }
+
+    @Override
+    public boolean reset() {
+        size = 0;
+        return true;
+    }
+
+    /**
+     * Gets the format the audio was received in.
+     *
+     * @return The output format, or null before the synthesis started.
+     */
+    public OutputFormat getFormat() {
+        return format;
+    }
+
+    /**
+     * Gets the number of bytes collected.
+     *
+     * @return The size in bytes.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Gets a read-only view of the collected audio without copying it.
+     *
+     * @return The audio as a ByteBuffer.
+     */
+    public ByteBuffer asByteBuffer() {
+        return ByteBuffer.wrap(data, 0, size).slice().asReadOnlyBuffer();
+    }
+
+    /**
+     * Gets the collected audio as an array. The internal array is handed out without copying when it is exactly
+     * full; otherwise it is trimmed once and the trimmed array is kept.
+     *
+     * @return The audio data.
+     */
+    public byte[] toByteArray() {
+        if (data.length != size) {
+            data = Arrays.copyOf(data, size);
+        }
+        return data;
+    }
+}
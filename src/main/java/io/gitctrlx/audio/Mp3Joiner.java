@@ -0,0 +1,143 @@
+package io.gitctrlx.audio;
+
+import java.io.IOException;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Joins MP3 clips frame by frame. Tags and the header frame an encoder may put first, which describe a single
+ * file, are dropped; bytes that are not part of a frame are skipped until the next frame header.
+ */
+final class Mp3Joiner extends AudioJoiner {
+
+    // Bitrates in kbit/s by [MPEG-1][layer - 1][index]; MPEG-2 and 2.5 share a table
+    private static final int[][][] BITRATES = {
+            {
+                    {0, 32, 48, 56, 64, 80, 96, 112, 128, 144, 160, 176, 192, 224, 256},
+                    {0, 8, 16, 24, 32, 40, 48, 56, 64, 80, 96, 112, 128, 144, 160},
+                    {0, 8, 16, 24, 32, 40, 48, 56, 64, 80, 96, 112, 128, 144, 160},
+            },
+            {
+                    {0, 32, 64, 96, 128, 160, 192, 224, 256, 288, 320, 352, 384, 416, 448},
+                    {0, 32, 48, 56, 64, 80, 96, 112, 128, 160, 192, 224, 256, 320, 384},
+                    {0, 32, 40, 48, 56, 64, 80, 96, 112, 128, 160, 192, 224, 256, 320},
+            },
+    };
+
+    private static final int[] SAMPLE_RATES = {44100, 48000, 32000};
+
+    private long durationNanos;
+
+    Mp3Joiner(WritableByteChannel out) {
+        super(out);
+    }
+
+    @Override
+    public long getDurationNanos() {
+        return durationNanos;
+    }
+
+    @Override
+    void appendPart(ChannelReader in, boolean first) throws IOException {
+        boolean firstFrame = true;
+        while (in.request(4)) {
+            if (in.startsWith("ID3")) {
+                skipId3v2(in);
+                continue;
+            }
+            if (in.startsWith("TAG") && !in.request(129)) {
+                in.skip(in.buffered()); // ID3v1 tag at the end
+                continue;
+            }
+            int length = frameLength(in);
+            if (length <= 0) {
+                in.skip(1);
+                continue;
+            }
+            if (!in.request(length)) {
+                in.skip(in.buffered()); // Truncated last frame
+                continue;
+            }
+            if (firstFrame && isInfoFrame(in)) {
+                in.skip(length);
+            } else {
+                durationNanos += frameNanos(in);
+                copy(in, length);
+            }
+            firstFrame = false;
+        }
+    }
+
+    private static void skipId3v2(ChannelReader in) throws IOException {
+        if (!in.request(10)) {
+            in.skip(in.buffered());
+            return;
+        }
+        long size = (long) (in.peek(6) & 0x7F) << 21 | (in.peek(7) & 0x7F) << 14 | (in.peek(8) & 0x7F) << 7
+                | in.peek(9) & 0x7F;
+        boolean footer = (in.peek(5) & 0x10) != 0;
+        in.skip(10 + size + (footer ? 10 : 0));
+    }
+
+    /**
+     * Gets the length of the frame whose header is ahead.
+     *
+     * @return The length in bytes, or 0 if no valid header is ahead
+     */
+    private static int frameLength(ChannelReader in) {
+        int b1 = in.peek(1);
+        int b2 = in.peek(2);
+        if (in.peek(0) != 0xFF || (b1 & 0xE0) != 0xE0) {
+            return 0;
+        }
+        int version = b1 >> 3 & 3; // 0: MPEG-2.5, 2: MPEG-2, 3: MPEG-1
+        int layer = 4 - (b1 >> 1 & 3);
+        int bitrateIndex = b2 >> 4;
+        int rateIndex = b2 >> 2 & 3;
+        if (version == 1 || layer == 4 || bitrateIndex == 0 || bitrateIndex == 15 || rateIndex == 3) {
+            return 0;
+        }
+        boolean mpeg1 = version == 3;
+        int bitrate = BITRATES[mpeg1 ? 1 : 0][layer - 1][bitrateIndex] * 1000;
+        int sampleRate = SAMPLE_RATES[rateIndex] >> (mpeg1 ? 0 : version == 2 ? 1 : 2);
+        int padding = b2 >> 1 & 1;
+        if (layer == 1) {
+            return (12 * bitrate / sampleRate + padding) * 4;
+        }
+        return (layer == 3 && !mpeg1 ? 72 : 144) * bitrate / sampleRate + padding;
+    }
+
+    /**
+     * Gets the playing time of the frame whose valid header is ahead.
+     */
+    private static long frameNanos(ChannelReader in) {
+        int b1 = in.peek(1);
+        int version = b1 >> 3 & 3;
+        int layer = 4 - (b1 >> 1 & 3);
+        boolean mpeg1 = version == 3;
+        int sampleRate = SAMPLE_RATES[in.peek(2) >> 2 & 3] >> (mpeg1 ? 0 : version == 2 ? 1 : 2);
+        int samples = layer == 1 ? 384 : layer == 3 && !mpeg1 ? 576 : 1152;
+        return samples * 1_000_000_000L / sampleRate;
+    }
+
+    /**
+     * Whether the frame ahead carries a Xing, Info or VBRI header instead of audio.
+     */
+    private static boolean isInfoFrame(ChannelReader in) throws IOException {
+        boolean mpeg1 = (in.peek(1) >> 3 & 3) == 3;
+        boolean mono = in.peek(3) >> 6 == 3;
+        int xing = 4 + (mpeg1 ? (mono ? 17 : 32) : (mono ? 9 : 17));
+        return matches(in, xing, "Xing") || matches(in, xing, "Info") || matches(in, 36, "VBRI");
+    }
+
+    private static boolean matches(ChannelReader in, int offset, String tag) throws IOException {
+        if (!in.request(offset + tag.length())) {
+            return false;
+        }
+        for (int i = 0; i < tag.length(); i++) {
+            if (in.peek(offset + i) != tag.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,142 @@
+package io.gitctrlx.audio;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Joins Ogg Opus clips page by page into one logical stream.
+ * <p>
+ * The first part contributes its header pages (OpusHead and OpusTags); the later parts only their audio pages.
+ * Every page is given the first part's serial number and the next sequence number, its granule position is
+ * moved past the samples of the earlier parts, and its checksum is recomputed. The last page is held back so that
+ * it can be marked as the end of the stream. Parts that are not Ogg, e.g. a raw Opus format delivered without a
+ * container, are copied as they are.
+ */
+final class OggOpusJoiner extends AudioJoiner {
+
+    private static final int HEADER_SIZE = 27;
+    private static final int FLAG_BOS = 0x02;
+    private static final int FLAG_EOS = 0x04;
+
+    private static final int[] CRC_TABLE = new int[256];
+
+    static {
+        for (int i = 0; i < 256; i++) {
+            int crc = i << 24;
+            for (int bit = 0; bit < 8; bit++) {
+                crc = (crc & 0x80000000) != 0 ? crc << 1 ^ 0x04C11DB7 : crc << 1;
+            }
+            CRC_TABLE[i] = crc;
+        }
+    }
+
+    private final ByteBuffer page = ByteBuffer.allocate(ChannelReader.CAPACITY).order(ByteOrder.LITTLE_ENDIAN);
+    private boolean held;
+    private boolean ogg;
+    private int serial;
+    private int sequence;
+
+    /**
+     * Samples of the earlier parts, at 48 kHz
+     */
+    private long granuleBase;
+
+    OggOpusJoiner(WritableByteChannel out) {
+        super(out);
+    }
+
+    @Override
+    public long getDurationNanos() {
+        return ogg ? granuleBase * 1_000_000_000L / 48_000 : -1;
+    }
+
+    @Override
+    void appendPart(ChannelReader in, boolean first) throws IOException {
+        if (!in.startsWith("OggS")) {
+            if (first || !ogg) {
+                copyToEnd(in);
+                return;
+            }
+            throw new IOException("[ERROR] Part is not an Ogg stream");
+        }
+        ogg = true;
+        int partSerial = 0;
+        int packets = 0;
+        long lastGranule = 0;
+        while (in.request(HEADER_SIZE)) {
+            if (!in.startsWith("OggS") || !in.request(HEADER_SIZE + in.peek(26))) {
+                throw new IOException("[ERROR] Malformed Ogg page at byte " + in.position());
+            }
+            int segments = in.peek(26);
+            int bodySize = 0;
+            int packetsEnded = 0;
+            for (int i = 0; i < segments; i++) {
+                int lacing = in.peek(HEADER_SIZE + i);
+                bodySize += lacing;
+                if (lacing < 255) {
+                    packetsEnded++;
+                }
+            }
+            int pageSize = HEADER_SIZE + segments + bodySize;
+            if (!in.request(pageSize)) {
+                throw new IOException("[ERROR] Truncated Ogg page at byte " + in.position());
+            }
+            int pageSerial = in.peek(14) | in.peek(15) << 8 | in.peek(16) << 16 | in.peek(17) << 24;
+            if (packets == 0 && (in.peek(5) & FLAG_BOS) != 0) {
+                partSerial = pageSerial;
+            } else if (pageSerial != partSerial) {
+                throw new IOException("[ERROR] Multiplexed Ogg streams are not supported");
+            }
+            // Two header packets come first: OpusHead and OpusTags
+            boolean header = packets < 2;
+            packets += packetsEnded;
+            if (header && !first) {
+                in.skip(pageSize);
+                continue;
+            }
+            if (sequence == 0) {
+                serial = pageSerial;
+            }
+            writeHeld(false);
+            page.clear();
+            in.read(page.array(), 0, pageSize);
+            page.limit(pageSize);
+            long granule = page.getLong(6);
+            if (granule != -1 && !header) {
+                lastGranule = granule;
+                page.putLong(6, granuleBase + granule);
+            }
+            page.put(5, (byte) (page.get(5) & ~FLAG_EOS & (sequence > 0 ? ~FLAG_BOS : 0xFF)));
+            page.putInt(14, serial);
+            page.putInt(18, sequence++);
+            held = true;
+        }
+        granuleBase += lastGranule;
+    }
+
+    @Override
+    void finishParts(int parts) throws IOException {
+        writeHeld(true);
+    }
+
+    private void writeHeld(boolean last) throws IOException {
+        if (!held) {
+            return;
+        }
+        if (last) {
+            page.put(5, (byte) (page.get(5) | FLAG_EOS));
+        }
+        page.putInt(22, 0);
+        byte[] bytes = page.array();
+        int crc = 0;
+        for (int i = 0; i < page.limit(); i++) {
+            crc = crc << 8 ^ CRC_TABLE[(crc >>> 24 ^ bytes[i]) & 0xFF];
+        }
+        page.putInt(22, crc);
+        page.position(0);
+        write(page);
+        held = false;
+    }
+}
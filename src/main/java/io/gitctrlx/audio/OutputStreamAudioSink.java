@@ -0,0 +1,54 @@
+package io.gitctrlx.audio;
+
+import io.gitctrlx.constant.OutputFormat;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Objects;
+
+/**
+ * An {@link AudioSink} that writes the audio to an {@link OutputStream}. The stream is flushed at the end but
+ * stays open; it belongs to the caller.
+ */
+public class OutputStreamAudioSink implements AudioSink {
+
+    private final OutputStream outputStream;
+    private byte[] scratch;
+
+    /**
+     * Creates a sink writing to the given stream.
+     *
+     * @param outputStream The target stream.
+     */
+    public OutputStreamAudioSink(OutputStream outputStream) {
+        this.outputStream = Objects.requireNonNull(outputStream, "outputStream");
+    }
+
+    @Override
+    public void begin(OutputFormat format) {
+    }
+
+    @Override
+    public void write(ByteBuffer chunk) throws IOException {
+        if (chunk.hasArray()) {
+            outputStream.write(chunk.array(), chunk.arrayOffset() + chunk.position(), chunk.remaining());
+            chunk.position(chunk.limit());
+            return;
+        }
+        // Read-only and direct buffers do not expose their array; copy through a reused scratch buffer
+        if (scratch == null) {
+            scratch = new byte[8192];
+        }
+        while (chunk.hasRemaining()) {
+            int length = Math.min(chunk.remaining(), scratch.length);
+            chunk.get(scratch, 0, length);
+            outputStream.write(scratch, 0, length);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        outputStream.flush();
+    }
+}
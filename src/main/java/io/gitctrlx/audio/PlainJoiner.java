@@ -0,0 +1,106 @@
+package io.gitctrlx.audio;
+
+import io.gitctrlx.audio.pcm.PcmFormat;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Joins clips that are a plain sequence of samples or frames behind an optional file header: raw audio, which may
+ * be wrapped in WAV, and AMR-WB.
+ */
+final class PlainJoiner extends AudioJoiner {
+
+    private final PcmFormat wavFormat;
+    private final String magic;
+    private boolean wav;
+    private long wavStart;
+    private long dataSize;
+
+    /**
+     * @param wavFormat The sample layout if the parts may be WAV files, otherwise null
+     * @param magic     The file header that only the first part keeps, or null
+     */
+    PlainJoiner(WritableByteChannel out, PcmFormat wavFormat, String magic) {
+        super(out);
+        this.wavFormat = wavFormat;
+        this.magic = magic;
+    }
+
+    @Override
+    public long getDurationNanos() {
+        return wavFormat == null ? -1 : dataSize * 1_000_000_000L / wavFormat.getByteRate();
+    }
+
+    @Override
+    void appendPart(ChannelReader in, boolean first) throws IOException {
+        if (wavFormat != null && in.startsWith("RIFF")) {
+            if (first) {
+                wav = true;
+                flush();
+                wavStart = out() instanceof SeekableByteChannel ? ((SeekableByteChannel) out()).position() : -1;
+                // Unknown sizes at the maximum, as for a stream, unless patched at the end
+                write(WavHeader.of(wavFormat, wavStart < 0 ? Long.MAX_VALUE : 0));
+            }
+            appendWavData(in);
+            return;
+        }
+        if (magic != null && !first && in.startsWith(magic)) {
+            in.skip(magic.length());
+        }
+        long start = getBytesWritten();
+        copyToEnd(in);
+        dataSize += getBytesWritten() - start;
+    }
+
+    /**
+     * Copies the data chunk of a WAV file, skipping the chunks around it.
+     */
+    private void appendWavData(ChannelReader in) throws IOException {
+        in.skip(12);
+        while (in.request(8)) {
+            boolean data = in.startsWith("data");
+            in.skip(4);
+            long size = in.readUnsignedLittleEndian(4);
+            if (data) {
+                if (size == 0 || size == 0xFFFFFFFFL || size > 0xFFFFFFFFL - 64) {
+                    // Sizes of a stream that was never patched
+                    long start = getBytesWritten();
+                    copyToEnd(in);
+                    dataSize += getBytesWritten() - start;
+                    return;
+                }
+                copy(in, size);
+                dataSize += size;
+            } else {
+                in.skip(size);
+            }
+            if ((size & 1) != 0 && in.request(1)) {
+                in.skip(1);
+            }
+        }
+    }
+
+    @Override
+    void finishParts(int parts) throws IOException {
+        if (!wav) {
+            return;
+        }
+        if ((dataSize & 1) != 0) {
+            write(ByteBuffer.wrap(new byte[1]));
+        }
+        if (wavStart >= 0) {
+            flush();
+            SeekableByteChannel channel = (SeekableByteChannel) out();
+            long end = channel.position();
+            channel.position(wavStart);
+            ByteBuffer header = WavHeader.of(wavFormat, dataSize);
+            while (header.hasRemaining()) {
+                channel.write(header);
+            }
+            channel.position(end);
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package io.gitctrlx.audio;
+
+import io.gitctrlx.audio.pcm.PcmFormat;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Builds the RIFF/WAVE header in front of raw audio. Its length only depends on the encoding, so the header
+ * written before the data can be overwritten in place with the final sizes once the data is complete.
+ */
+final class WavHeader {
+
+    private WavHeader() {
+    }
+
+    /**
+     * Creates the header.
+     *
+     * @param format   The layout of the samples
+     * @param dataSize The number of data bytes that follow, without the pad byte of an odd-sized chunk
+     * @return The header, ready to be written
+     */
+    static ByteBuffer of(PcmFormat format, long dataSize) {
+        boolean pcm = format.getEncoding() == PcmFormat.Encoding.PCM_16BIT;
+        // Other encodings have the extension size in fmt and a fact chunk with the sample count
+        int fmtSize = pcm ? 16 : 18;
+        int length = 12 + 8 + fmtSize + (pcm ? 0 : 12) + 8;
+        long data = Math.min(dataSize, 0xFFFFFFFFL - length);
+        ByteBuffer header = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+        header.put(new byte[]{'R', 'I', 'F', 'F'}).putInt((int) (length - 8 + data + (data & 1)))
+                .put(new byte[]{'W', 'A', 'V', 'E'});
+        header.put(new byte[]{'f', 'm', 't', ' '}).putInt(fmtSize)
+                .putShort((short) format.getEncoding().getWavFormatTag())
+                .putShort((short) format.getChannels())
+                .putInt(format.getSampleRate())
+                .putInt(format.getByteRate())
+                .putShort((short) (format.getChannels() * format.getBytesPerSample()))
+                .putShort((short) format.getEncoding().getBitsPerSample());
+        if (!pcm) {
+            header.putShort((short) 0);
+            header.put(new byte[]{'f', 'a', 'c', 't'}).putInt(4).putInt((int) (data / format.getBytesPerSample()));
+        }
+        header.put(new byte[]{'d', 'a', 't', 'a'}).putInt((int) data);
+        header.flip();
+        return header;
+    }
+}
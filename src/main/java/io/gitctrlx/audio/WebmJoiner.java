@@ -0,0 +1,432 @@
+package io.gitctrlx.audio;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Joins WebM clips cluster by cluster into one segment.
+ * <p>
+ * The first part contributes its EBML header, segment info without the duration, and tracks; every part
+ * contributes its clusters. A cluster's timecode is shifted so that each part continues where the previous one
+ * ended, which is where its last block ends: for Opus the block length follows from the packet's TOC byte. The
+ * segment is written with an unknown size, as live streams are, and elements that locate data by byte offset
+ * (seek heads, cues, cluster positions) are dropped, since the offsets no longer hold.
+ * Clusters are streamed through rather than buffered, so memory stays bounded however long they are.
+ */
+final class WebmJoiner extends AudioJoiner {
+
+    private static final int EBML = 0x1A45DFA3;
+    private static final int SEGMENT = 0x18538067;
+    private static final int SEEK_HEAD = 0x114D9B74;
+    private static final int INFO = 0x1549A966;
+    private static final int TRACKS = 0x1654AE6B;
+    private static final int CLUSTER = 0x1F43B675;
+    private static final int CUES = 0x1C53BB6B;
+    private static final int TAGS = 0x1254C367;
+    private static final int CHAPTERS = 0x1043A770;
+    private static final int ATTACHMENTS = 0x1941A469;
+    private static final int TIMECODE_SCALE = 0x2AD7B1;
+    private static final int DURATION = 0x4489;
+    private static final int TIMECODE = 0xE7;
+    private static final int POSITION = 0xA7;
+    private static final int PREV_SIZE = 0xAB;
+    private static final int SIMPLE_BLOCK = 0xA3;
+    private static final int BLOCK_GROUP = 0xA0;
+    private static final int BLOCK = 0xA1;
+    private static final int BLOCK_DURATION = 0x9B;
+    private static final int VOID = 0xEC;
+
+    private static final long UNKNOWN_SIZE = -1;
+    private static final long UNKNOWN_SIZE_VALUE = (1L << 56) - 1;
+    private static final long DEFAULT_TIMECODE_SCALE = 1_000_000;
+    private static final long DEFAULT_FRAME_NANOS = 20_000_000;
+
+    // Opus frame lengths in nanoseconds by TOC configuration
+    private static final long[] OPUS_FRAME_NANOS = new long[32];
+
+    static {
+        long[] silk = {10_000_000, 20_000_000, 40_000_000, 60_000_000};
+        long[] celt = {2_500_000, 5_000_000, 10_000_000, 20_000_000};
+        for (int config = 0; config < 32; config++) {
+            OPUS_FRAME_NANOS[config] = config < 12 ? silk[config % 4]
+                    : config < 16 ? silk[config % 2] : celt[config % 4];
+        }
+    }
+
+    private long timecodeScale = DEFAULT_TIMECODE_SCALE;
+
+    /**
+     * Where the next part starts, in timecode units
+     */
+    private long offset;
+
+    // The element header last peeked
+    private int headerId;
+    private long headerSize;
+    private int headerLength;
+
+    // State of the part being appended
+    private long shift;
+    private boolean shiftKnown;
+    private long clusterTime;
+    private long frameNanos;
+    private long blockTime;
+    private long blockDuration;
+
+    WebmJoiner(WritableByteChannel out) {
+        super(out);
+    }
+
+    @Override
+    public long getDurationNanos() {
+        return offset * timecodeScale;
+    }
+
+    @Override
+    void appendPart(ChannelReader in, boolean first) throws IOException {
+        long partScale = DEFAULT_TIMECODE_SCALE;
+        shiftKnown = false;
+        frameNanos = DEFAULT_FRAME_NANOS;
+        long end = offset;
+        while (!in.atEnd()) {
+            int id = readId(in);
+            long size = readSize(in);
+            if (id == SEGMENT) {
+                // The segment's children are read at this level, up to the end of the part
+                if (first) {
+                    writeId(SEGMENT);
+                    writeSize(UNKNOWN_SIZE_VALUE);
+                }
+            } else if (id == CLUSTER) {
+                end = Math.max(end, appendCluster(in, size, partScale));
+            } else if (size == UNKNOWN_SIZE) {
+                throw new IOException("[ERROR] WebM element " + Integer.toHexString(id) + " has an unknown size");
+            } else if (id == EBML || id == TRACKS) {
+                if (first) {
+                    writeId(id);
+                    writeSize(size);
+                    copy(in, size);
+                } else {
+                    in.skip(size);
+                }
+            } else if (id == INFO) {
+                partScale = appendInfo(in, size, first);
+                if (first) {
+                    timecodeScale = partScale;
+                } else if (partScale != timecodeScale) {
+                    throw new IOException("[ERROR] WebM parts have different timecode scales");
+                }
+            } else {
+                in.skip(size); // Seek head, cues, tags, void and anything else
+            }
+        }
+        offset = end;
+    }
+
+    /**
+     * Reads the segment info, writes it without the duration for the first part, and gets its timecode scale.
+     */
+    private long appendInfo(ChannelReader in, long size, boolean first) throws IOException {
+        byte[] body = readBody(in, size);
+        byte[] kept = new byte[body.length];
+        int keptSize = 0;
+        long scale = DEFAULT_TIMECODE_SCALE;
+        for (int pos = 0; pos < body.length; ) {
+            int start = pos;
+            int idLength = vintLength(body[pos] & 0xFF, 4);
+            int id = (int) readUnsigned(body, pos, idLength);
+            pos += idLength;
+            int sizeLength = vintLength(body[pos] & 0xFF, 8);
+            long childSize = readUnsigned(body, pos, sizeLength) & (1L << 7 * sizeLength) - 1;
+            pos += sizeLength;
+            if (pos + childSize > body.length) {
+                throw new IOException("[ERROR] Malformed WebM segment info");
+            }
+            if (id == TIMECODE_SCALE) {
+                scale = readUnsigned(body, pos, (int) childSize);
+            }
+            pos += (int) childSize;
+            if (id != DURATION) {
+                System.arraycopy(body, start, kept, keptSize, pos - start);
+                keptSize += pos - start;
+            }
+        }
+        if (first) {
+            writeId(INFO);
+            writeSize(keptSize);
+            write(kept, 0, keptSize);
+        }
+        return scale;
+    }
+
+    /**
+     * Streams a cluster to the output with its timecode shifted, and gets where its last block ends.
+     * <p>
+     * The Timecode, Position and PrevSize elements that open a cluster are dropped and a fixed 10-byte Timecode is
+     * written in their place, so the output size of a sized cluster is known before its blocks are copied. A
+     * Position or PrevSize after the first block is overwritten with a Void element of the same length. A cluster
+     * of unknown size, as live muxers write, keeps its unknown size.
+     */
+    private long appendCluster(ChannelReader in, long size, long partScale) throws IOException {
+        long clusterEnd = size == UNKNOWN_SIZE ? -1 : in.position() + size;
+        long dropped = 0;
+        boolean started = false;
+        clusterTime = 0;
+        long end = offset;
+        while (clusterEnd < 0 ? !in.atEnd() && !isTopLevel(peekId(in)) : in.position() < clusterEnd) {
+            peekHeader(in);
+            int id = headerId;
+            long childSize = headerSize;
+            if (childSize == UNKNOWN_SIZE) {
+                throw new IOException("[ERROR] WebM cluster element " + Integer.toHexString(id) + " has an unknown size");
+            }
+            if (id == TIMECODE || id == POSITION || id == PREV_SIZE) {
+                if (childSize > 8) {
+                    throw new IOException("[ERROR] Malformed WebM cluster element " + Integer.toHexString(id));
+                }
+                if (started && clusterEnd >= 0) {
+                    if (id == TIMECODE) {
+                        throw new IOException("[ERROR] WebM cluster timecode follows its blocks");
+                    }
+                    writeVoid(headerLength, childSize);
+                    in.skip(headerLength + childSize);
+                    continue;
+                }
+                in.skip(headerLength);
+                if (id == TIMECODE) {
+                    if (started || !in.request((int) childSize)) {
+                        throw new IOException("[ERROR] Malformed WebM cluster timecode");
+                    }
+                    clusterTime = in.readUnsigned((int) childSize);
+                } else {
+                    in.skip(childSize);
+                }
+                dropped += headerLength + childSize;
+                continue;
+            }
+            if (!started) {
+                startCluster(clusterEnd < 0 ? UNKNOWN_SIZE : size - dropped);
+                started = true;
+            }
+            copy(in, headerLength);
+            if (id == SIMPLE_BLOCK) {
+                inspectBlock(in, childSize, partScale);
+                end = Math.max(end, blockTime + blockDuration + shift);
+                copy(in, childSize);
+            } else if (id == BLOCK_GROUP) {
+                end = Math.max(end, appendGroup(in, childSize, partScale));
+            } else {
+                copy(in, childSize);
+            }
+        }
+        if (!started) {
+            startCluster(clusterEnd < 0 ? UNKNOWN_SIZE : size - dropped);
+        }
+        return end;
+    }
+
+    /**
+     * Writes the cluster header and its shifted timecode.
+     *
+     * @param bodySize The size of the children that follow, or {@link #UNKNOWN_SIZE}
+     */
+    private void startCluster(long bodySize) throws IOException {
+        if (!shiftKnown) {
+            shift = offset - clusterTime;
+            shiftKnown = true;
+        }
+        writeId(CLUSTER);
+        writeSize(bodySize == UNKNOWN_SIZE ? UNKNOWN_SIZE_VALUE : 10 + bodySize);
+        ByteBuffer timecode = ByteBuffer.allocate(10);
+        timecode.put((byte) TIMECODE).put((byte) 0x88).putLong(clusterTime + shift).flip();
+        write(timecode);
+    }
+
+    /**
+     * Copies a block group, whose header has been copied already, and gets where its block ends, using its
+     * BlockDuration if it has one.
+     */
+    private long appendGroup(ChannelReader in, long size, long partScale) throws IOException {
+        long groupEnd = in.position() + size;
+        boolean hasBlock = false;
+        long time = 0;
+        long packetDuration = 0;
+        long duration = -1;
+        while (in.position() < groupEnd) {
+            peekHeader(in);
+            copy(in, headerLength);
+            if (headerId == BLOCK) {
+                inspectBlock(in, headerSize, partScale);
+                hasBlock = true;
+                time = blockTime;
+                packetDuration = blockDuration;
+            } else if (headerId == BLOCK_DURATION) {
+                if (headerSize > 8 || !in.request((int) headerSize)) {
+                    throw new IOException("[ERROR] Malformed WebM block duration");
+                }
+                duration = 0;
+                for (int i = 0; i < headerSize; i++) {
+                    duration = duration << 8 | in.peek(i);
+                }
+            }
+            copy(in, headerSize);
+        }
+        return hasBlock ? time + (duration < 0 ? packetDuration : duration) + shift : offset;
+    }
+
+    /**
+     * Reads the header of the block at the reader's position without consuming it, and sets {@link #blockTime}
+     * and {@link #blockDuration}, the length of its Opus packets.
+     */
+    private void inspectBlock(ChannelReader in, long size, long partScale) throws IOException {
+        if (!in.request(1)) {
+            throw new IOException("[ERROR] Truncated WebM block");
+        }
+        int trackLength = vintLength(in.peek(0), 8);
+        int header = trackLength + 3;
+        if (size < header || !in.request((int) Math.min(size, header + 2))) {
+            throw new IOException("[ERROR] Malformed WebM block");
+        }
+        blockTime = clusterTime + (short) (in.peek(trackLength) << 8 | in.peek(trackLength + 1));
+        int lacing = in.peek(trackLength + 2) >> 1 & 3;
+        int frames = 1;
+        if (lacing != 0) {
+            frames = in.peek(header) + 1; // Frame sizes follow; assume the last packet's frame length
+        } else if (header < size) {
+            int toc = in.peek(header);
+            int count = toc & 3;
+            frameNanos = OPUS_FRAME_NANOS[toc >> 3];
+            frames = count == 0 ? 1 : count < 3 ? 2 : header + 1 < size ? in.peek(header + 1) & 0x3F : 1;
+        }
+        blockDuration = (frames * frameNanos + partScale - 1) / partScale;
+    }
+
+    private static boolean isTopLevel(int id) {
+        return id == CLUSTER || id == CUES || id == TAGS || id == SEEK_HEAD || id == INFO || id == TRACKS
+                || id == CHAPTERS || id == ATTACHMENTS || id == EBML || id == SEGMENT;
+    }
+
+    private static int peekId(ChannelReader in) throws IOException {
+        int length = vintLength(in.peek(0), 4);
+        if (!in.request(length)) {
+            throw new IOException("[ERROR] Truncated WebM element");
+        }
+        int id = 0;
+        for (int i = 0; i < length; i++) {
+            id = id << 8 | in.peek(i);
+        }
+        return id;
+    }
+
+    private static int readId(ChannelReader in) throws IOException {
+        int id = peekId(in);
+        in.skip(vintLength(in.peek(0), 4));
+        return id;
+    }
+
+    /**
+     * Reads an element size.
+     *
+     * @return The size, or {@link #UNKNOWN_SIZE}
+     */
+    private static long readSize(ChannelReader in) throws IOException {
+        if (!in.request(1)) {
+            throw new IOException("[ERROR] Truncated WebM element");
+        }
+        int length = vintLength(in.peek(0), 8);
+        if (!in.request(length)) {
+            throw new IOException("[ERROR] Truncated WebM element");
+        }
+        long mask = (1L << 7 * length) - 1;
+        long size = in.readUnsigned(length) & mask;
+        return size == mask ? UNKNOWN_SIZE : size;
+    }
+
+    /**
+     * Reads an element header without consuming it into {@link #headerId}, {@link #headerSize} (or
+     * {@link #UNKNOWN_SIZE}) and {@link #headerLength}.
+     */
+    private void peekHeader(ChannelReader in) throws IOException {
+        headerId = peekId(in);
+        int idLength = idLength(headerId);
+        if (!in.request(idLength + 1)) {
+            throw new IOException("[ERROR] Truncated WebM element");
+        }
+        int sizeLength = vintLength(in.peek(idLength), 8);
+        headerLength = idLength + sizeLength;
+        if (!in.request(headerLength)) {
+            throw new IOException("[ERROR] Truncated WebM element");
+        }
+        long size = in.peek(idLength) & (0xFF >> sizeLength);
+        for (int i = 1; i < sizeLength; i++) {
+            size = size << 8 | in.peek(idLength + i);
+        }
+        headerSize = size == (1L << 7 * sizeLength) - 1 ? UNKNOWN_SIZE : size;
+    }
+
+    /**
+     * Writes a Void element as long as an element of the given header length and size, which are at most 9 and
+     * 8 bytes.
+     */
+    private void writeVoid(int length, long size) throws IOException {
+        byte[] bytes = new byte[length + (int) size];
+        bytes[0] = (byte) VOID;
+        int sizeLength = length - 1;
+        long marked = size | 1L << 7 * sizeLength;
+        for (int i = 0; i < sizeLength; i++) {
+            bytes[1 + i] = (byte) (marked >>> (sizeLength - 1 - i) * 8);
+        }
+        write(bytes, 0, bytes.length);
+    }
+
+    /**
+     * Gets the length of a variable-length integer from its first byte.
+     */
+    private static int vintLength(int first, int max) throws IOException {
+        int length = Integer.numberOfLeadingZeros(first) - 23;
+        if (first == 0 || length > max) {
+            throw new IOException("[ERROR] Malformed WebM element header");
+        }
+        return length;
+    }
+
+    private static long readUnsigned(byte[] data, int pos, int length) {
+        long value = 0;
+        for (int i = 0; i < length; i++) {
+            value = value << 8 | data[pos + i] & 0xFF;
+        }
+        return value;
+    }
+
+    private static byte[] readBody(ChannelReader in, long size) throws IOException {
+        if (size > ChannelReader.CAPACITY || !in.request((int) size)) {
+            throw new IOException("[ERROR] Malformed WebM element of " + size + " bytes");
+        }
+        byte[] body = new byte[(int) size];
+        in.read(body, 0, body.length);
+        return body;
+    }
+
+    private static int idLength(int id) {
+        return id >>> 24 != 0 ? 4 : id >>> 16 != 0 ? 3 : id >>> 8 != 0 ? 2 : 1;
+    }
+
+    private void writeId(int id) throws IOException {
+        byte[] bytes = new byte[4];
+        int length = idLength(id);
+        for (int i = 0; i < length; i++) {
+            bytes[i] = (byte) (id >>> (length - 1 - i) * 8);
+        }
+        write(bytes, 0, length);
+    }
+
+    /**
+     * Writes an element size as an 8-byte variable-length integer, which holds any size.
+     */
+    private void writeSize(long size) throws IOException {
+        ByteBuffer bytes = ByteBuffer.allocate(8);
+        bytes.putLong(size | 0x01L << 56).flip();
+        write(bytes);
+    }
+}
@@ -0,0 +1,36 @@
+package io.gitctrlx.audio.pcm;
+
+/**
+ * Decoding tables for G.711 A-law and mu-law samples.
+ */
+final class G711 {
+
+    static final short[] ALAW = new short[256];
+    static final short[] MULAW = new short[256];
+
+    static {
+        for (int i = 0; i < 256; i++) {
+            ALAW[i] = alaw(i);
+            MULAW[i] = mulaw(i);
+        }
+    }
+
+    private G711() {
+    }
+
+    private static short alaw(int code) {
+        code ^= 0x55;
+        int exponent = (code & 0x70) >> 4;
+        int value = (code & 0x0F) << 4;
+        value = exponent == 0 ? value + 8 : (value + 0x108) << (exponent - 1);
+        return (short) ((code & 0x80) != 0 ? value : -value);
+    }
+
+    private static short mulaw(int code) {
+        code = ~code & 0xFF;
+        int exponent = (code & 0x70) >> 4;
+        int value = (((code & 0x0F) << 3) + 0x84) << exponent;
+        value -= 0x84;
+        return (short) ((code & 0x80) != 0 ? -value : value);
+    }
+}
@@ -0,0 +1,48 @@
+package io.gitctrlx.audio.pcm;
+
+import java.io.IOException;
+import java.nio.ShortBuffer;
+
+/**
+ * A {@link PcmStage} that multiplies every sample by a fixed factor, clipping at full scale. It works in place
+ * and keeps nothing back, so it adds no latency.
+ */
+public class Gain implements PcmStage {
+
+    private final double factor;
+
+    /**
+     * Creates a stage with the given gain.
+     *
+     * @param decibels The gain in dB, negative to attenuate.
+     */
+    public Gain(double decibels) {
+        if (Double.isNaN(decibels) || Double.isInfinite(decibels)) {
+            throw new IllegalArgumentException("decibels must be finite");
+        }
+        this.factor = Math.pow(10, decibels / 20);
+    }
+
+    @Override
+    public void process(ShortBuffer samples, Output out) throws IOException {
+        scale(samples, factor);
+        out.write(samples);
+    }
+
+    /**
+     * Multiplies the samples from the buffer's position to its limit in place.
+     */
+    static void scale(ShortBuffer samples, double factor) {
+        for (int i = samples.position(); i < samples.limit(); i++) {
+            long value = Math.round(samples.get(i) * factor);
+            samples.put(i, (short) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, value)));
+        }
+    }
+
+    /**
+     * Converts a level in dBFS to a sample amplitude.
+     */
+    static double amplitude(double dbfs) {
+        return Short.MAX_VALUE * Math.pow(10, dbfs / 20);
+    }
+}
@@ -0,0 +1,232 @@
+package io.gitctrlx.audio.pcm;
+
+import io.gitctrlx.audio.AudioSink;
+import io.gitctrlx.constant.OutputFormat;
+import io.gitctrlx.subtitle.WordBoundary;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.ShortBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * An {@link AudioSink} that runs raw audio through a chain of {@link PcmStage stages} before passing it on to
+ * another sink, so that the cheapest format can be requested and shaped locally:
+ * <pre>{@code
+ * AudioSink sink = PcmAudioSink.builder(AudioSink.toFile("hello"))
+ *         .stage(PcmStage.trimSilence(-50, Duration.ofMillis(100)))
+ *         .stage(PcmStage.resample(16000))
+ *         .stage(PcmStage.normalize(-1))
+ *         .build();
+ * tts.synthesize(SSML.builder().synthesisText("Hello").outputFormat(OutputFormat.raw_8khz_8bit_mono_mulaw).build(), sink);
+ * }</pre>
+ * The synthesis must use a raw PCM, A-law or mu-law format. A-law and mu-law samples are decoded to 16-bit
+ * linear samples first, and the next sink is told the raw PCM format of what comes out of the last stage; a file
+ * sink then writes a WAV file. Without stages the audio passes through untouched.
+ * <p>
+ * Bytes are decoded into a reused {@code short} array and encoded into a reused buffer, so a block costs no
+ * allocation beyond what the stages do.
+ */
+public class PcmAudioSink implements AudioSink {
+
+    private final AudioSink downstream;
+    private final List<PcmStage> stages;
+
+    /**
+     * outputs[i] receives what stage i produces
+     */
+    private final PcmStage.Output[] outputs;
+
+    private PcmFormat input;
+    private short[] samples = new short[0];
+    private int carry = -1;
+    private ByteBuffer encoded = ByteBuffer.allocate(0);
+
+    /**
+     * Constructor that initializes the sink from a builder.
+     *
+     * @param builder The builder holding the settings
+     */
+    private PcmAudioSink(PcmAudioSinkBuilder builder) {
+        this.downstream = builder.downstream;
+        this.stages = Collections.unmodifiableList(new ArrayList<>(builder.stages));
+        this.outputs = new PcmStage.Output[stages.size()];
+        for (int i = 0; i < outputs.length; i++) {
+            int next = i + 1;
+            outputs[i] = next == outputs.length ? this::emit : block -> stages.get(next).process(block, outputs[next]);
+        }
+    }
+
+    /**
+     * Static factory method that returns an instance of PcmAudioSinkBuilder.
+     *
+     * @param downstream The sink that receives the processed audio.
+     * @return An instance of PcmAudioSinkBuilder.
+     */
+    public static PcmAudioSinkBuilder builder(AudioSink downstream) {
+        return new PcmAudioSinkBuilder(downstream);
+    }
+
+    @Override
+    public void begin(OutputFormat format) throws IOException {
+        input = PcmFormat.of(format);
+        if (input == null) {
+            throw new IOException("[ERROR] PCM processing needs a raw PCM, A-law or mu-law format, not " + format.getValue());
+        }
+        carry = -1;
+        if (stages.isEmpty()) {
+            downstream.begin(format);
+            return;
+        }
+        PcmFormat processed = PcmFormat.pcm16(input.getSampleRate());
+        for (PcmStage stage : stages) {
+            processed = stage.begin(processed);
+        }
+        OutputFormat output = processed.toOutputFormat();
+        if (output == null) {
+            throw new IOException("[ERROR] No raw output format matches the processed audio, " + processed);
+        }
+        downstream.begin(output);
+    }
+
+    @Override
+    public void write(ByteBuffer chunk) throws IOException {
+        if (stages.isEmpty()) {
+            downstream.write(chunk);
+            return;
+        }
+        int count = decode(chunk);
+        if (count > 0) {
+            stages.get(0).process(ShortBuffer.wrap(samples, 0, count), outputs[0]);
+        }
+    }
+
+    /**
+     * Decodes the chunk into {@link #samples}, keeping the odd byte of a 16-bit sample split across chunks.
+     *
+     * @return The number of samples decoded
+     */
+    private int decode(ByteBuffer chunk) {
+        int length = chunk.remaining();
+        if (samples.length < length) {
+            samples = new short[Math.max(length, samples.length * 2)];
+        }
+        int count = 0;
+        if (input.getEncoding() == PcmFormat.Encoding.PCM_16BIT) {
+            if (carry >= 0 && chunk.hasRemaining()) {
+                samples[count++] = (short) (carry | chunk.get() << 8);
+                carry = -1;
+            }
+            while (chunk.remaining() >= 2) {
+                samples[count++] = (short) (chunk.get() & 0xFF | chunk.get() << 8);
+            }
+            if (chunk.hasRemaining()) {
+                carry = chunk.get() & 0xFF;
+            }
+        } else {
+            short[] table = input.getEncoding() == PcmFormat.Encoding.ALAW ? G711.ALAW : G711.MULAW;
+            while (chunk.hasRemaining()) {
+                samples[count++] = table[chunk.get() & 0xFF];
+            }
+        }
+        return count;
+    }
+
+    private void emit(ShortBuffer block) throws IOException {
+        int length = block.remaining();
+        if (encoded.capacity() < length * 2) {
+            encoded = ByteBuffer.allocate(Math.max(length * 2, encoded.capacity() * 2)).order(ByteOrder.LITTLE_ENDIAN);
+        }
+        encoded.clear();
+        for (int i = block.position(); i < block.limit(); i++) {
+            encoded.putShort(block.get(i));
+        }
+        block.position(block.limit());
+        encoded.flip();
+        downstream.write(encoded);
+    }
+
+    @Override
+    public void close() throws IOException {
+        for (int i = 0; i < stages.size(); i++) {
+            stages.get(i).finish(outputs[i]);
+        }
+        downstream.close();
+    }
+
+    @Override
+    public void wordBoundary(WordBoundary boundary) throws IOException {
+        downstream.wordBoundary(boundary);
+    }
+
+    @Override
+    public void abort() {
+        downstream.abort();
+    }
+
+    /**
+     * Resets the next sink; the stages start over with {@link #begin}.
+     */
+    @Override
+    public boolean reset() {
+        return downstream.reset();
+    }
+
+    /**
+     * Gets the stages in processing order.
+     *
+     * @return The stages.
+     */
+    public List<PcmStage> getStages() {
+        return stages;
+    }
+
+    /**
+     * The PcmAudioSinkBuilder class is used to build PcmAudioSink objects.
+     */
+    public static class PcmAudioSinkBuilder {
+        private final AudioSink downstream;
+        private final List<PcmStage> stages = new ArrayList<>();
+
+        private PcmAudioSinkBuilder(AudioSink downstream) {
+            this.downstream = Objects.requireNonNull(downstream, "downstream");
+        }
+
+        /**
+         * Appends a stage. Stages run in the order they are added.
+         *
+         * @param stage The stage, not shared with another sink.
+         * @return An instance of PcmAudioSinkBuilder.
+         */
+        public PcmAudioSinkBuilder stage(PcmStage stage) {
+            stages.add(Objects.requireNonNull(stage, "stage"));
+            return this;
+        }
+
+        /**
+         * Appends stages. Stages run in the order they are added.
+         *
+         * @param stages The stages, not shared with another sink.
+         * @return An instance of PcmAudioSinkBuilder.
+         */
+        public PcmAudioSinkBuilder stages(PcmStage... stages) {
+            for (PcmStage stage : stages) {
+                stage(stage);
+            }
+            return this;
+        }
+
+        /**
+         * Builds the PcmAudioSink object.
+         *
+         * @return An instance of PcmAudioSink.
+         */
+        public PcmAudioSink build() {
+            return new PcmAudioSink(this);
+        }
+    }
+}
@@ -0,0 +1,210 @@
+package io.gitctrlx.audio.pcm;
+
+import io.gitctrlx.constant.OutputFormat;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * The sample layout of uncompressed mono audio: its sample rate and how each sample is encoded.
+ * <p>
+ * The {@code raw-*} output formats deliver audio in this form, without any container; {@link #of(OutputFormat)}
+ * reads the layout from the format's name.
+ */
+public final class PcmFormat {
+
+    /**
+     * How a sample is stored.
+     */
+    public enum Encoding {
+        /**
+         * Signed 16-bit linear samples, little-endian
+         */
+        PCM_16BIT(16, 1),
+        /**
+         * 8-bit G.711 A-law samples
+         */
+        ALAW(8, 6),
+        /**
+         * 8-bit G.711 mu-law samples
+         */
+        MULAW(8, 7);
+
+        private final int bitsPerSample;
+        private final int wavFormatTag;
+
+        Encoding(int bitsPerSample, int wavFormatTag) {
+            this.bitsPerSample = bitsPerSample;
+            this.wavFormatTag = wavFormatTag;
+        }
+
+        /**
+         * Gets the size of a sample.
+         *
+         * @return The number of bits per sample.
+         */
+        public int getBitsPerSample() {
+            return bitsPerSample;
+        }
+
+        /**
+         * Gets the format tag that identifies the encoding in a WAV header.
+         *
+         * @return The WAVE_FORMAT_* value.
+         */
+        public int getWavFormatTag() {
+            return wavFormatTag;
+        }
+    }
+
+    private static final Map<OutputFormat, PcmFormat> RAW_FORMATS;
+
+    static {
+        Map<OutputFormat, PcmFormat> formats = new EnumMap<>(OutputFormat.class);
+        for (OutputFormat format : OutputFormat.values()) {
+            PcmFormat pcm = parse(format.getValue());
+            if (pcm != null) {
+                formats.put(format, pcm);
+            }
+        }
+        RAW_FORMATS = Collections.unmodifiableMap(formats);
+    }
+
+    private final int sampleRate;
+    private final Encoding encoding;
+
+    private PcmFormat(int sampleRate, Encoding encoding) {
+        this.sampleRate = sampleRate;
+        this.encoding = encoding;
+    }
+
+    /**
+     * Gets the sample layout of an output format.
+     *
+     * @param format The output format.
+     * @return The layout, or null if the format is compressed or in a container, e.g. MP3 or raw SILK.
+     */
+    public static PcmFormat of(OutputFormat format) {
+        return RAW_FORMATS.get(format);
+    }
+
+    /**
+     * Creates a 16-bit linear layout.
+     *
+     * @param sampleRate The sample rate in Hz.
+     * @return The layout.
+     */
+    public static PcmFormat pcm16(int sampleRate) {
+        if (sampleRate <= 0) {
+            throw new IllegalArgumentException("sampleRate must be positive");
+        }
+        return new PcmFormat(sampleRate, Encoding.PCM_16BIT);
+    }
+
+    /**
+     * Parses names like "raw-22050hz-16bit-mono-pcm" or "raw-8khz-8bit-mono-mulaw".
+     */
+    private static PcmFormat parse(String value) {
+        String[] tokens = value.split("-");
+        if (tokens.length != 5 || !"raw".equals(tokens[0]) || !"mono".equals(tokens[3])) {
+            return null;
+        }
+        Encoding encoding;
+        if ("pcm".equals(tokens[4]) && "16bit".equals(tokens[2])) {
+            encoding = Encoding.PCM_16BIT;
+        } else if ("alaw".equals(tokens[4])) {
+            encoding = Encoding.ALAW;
+        } else if ("mulaw".equals(tokens[4])) {
+            encoding = Encoding.MULAW;
+        } else {
+            return null;
+        }
+        String rate = tokens[1];
+        if (rate.endsWith("khz")) {
+            return new PcmFormat(Integer.parseInt(rate.substring(0, rate.length() - 3)) * 1000, encoding);
+        }
+        return new PcmFormat(Integer.parseInt(rate.substring(0, rate.length() - 2)), encoding);
+    }
+
+    /**
+     * Gets the output format that delivers audio in this layout.
+     *
+     * @return The output format, or null if the service offers none, e.g. for an unusual sample rate.
+     */
+    public OutputFormat toOutputFormat() {
+        for (Map.Entry<OutputFormat, PcmFormat> entry : RAW_FORMATS.entrySet()) {
+            if (entry.getValue().equals(this)) {
+                return entry.getKey();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Gets the sample rate.
+     *
+     * @return The number of samples per second.
+     */
+    public int getSampleRate() {
+        return sampleRate;
+    }
+
+    /**
+     * Gets how a sample is stored.
+     *
+     * @return The encoding.
+     */
+    public Encoding getEncoding() {
+        return encoding;
+    }
+
+    /**
+     * Gets the number of channels, which is always 1 for speech.
+     *
+     * @return The number of channels.
+     */
+    public int getChannels() {
+        return 1;
+    }
+
+    /**
+     * Gets the size of one sample.
+     *
+     * @return The number of bytes per sample.
+     */
+    public int getBytesPerSample() {
+        return encoding.getBitsPerSample() / 8;
+    }
+
+    /**
+     * Gets the data rate.
+     *
+     * @return The number of bytes per second.
+     */
+    public int getByteRate() {
+        return sampleRate * getBytesPerSample();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof PcmFormat)) {
+            return false;
+        }
+        PcmFormat that = (PcmFormat) o;
+        return sampleRate == that.sampleRate && encoding == that.encoding;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * sampleRate + encoding.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return "PcmFormat{sampleRate=" + sampleRate + ", encoding=" + encoding + "}";
+    }
+}
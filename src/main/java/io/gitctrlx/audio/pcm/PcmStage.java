@@ -0,0 +1,103 @@
+package io.gitctrlx.audio.pcm;
+
+import java.io.IOException;
+import java.nio.ShortBuffer;
+import java.time.Duration;
+
+/**
+ * A step of a {@link PcmAudioSink} that transforms 16-bit linear samples as they stream through.
+ * <p>
+ * {@link #begin} is called once per synthesis with the layout of the incoming samples, followed by
+ * {@link #process} for every block in stream order and finally {@link #finish}. A stage passes its result on to
+ * the given {@link Output}; it may write fewer or more samples than it received, keep some back for later, or
+ * modify the received buffer in place. Samples are handled as primitive {@code short}s throughout, so a stage
+ * should reuse its own arrays rather than allocate per block.
+ * <p>
+ * A stage keeps state for the synthesis in progress and must not be shared between sinks.
+ */
+public interface PcmStage {
+
+    /**
+     * Receives the samples a stage produces.
+     */
+    @FunctionalInterface
+    interface Output {
+
+        /**
+         * Consumes samples, from the buffer's position to its limit. The buffer is only valid during the call.
+         *
+         * @param samples The samples.
+         * @throws IOException If the samples cannot be written.
+         */
+        void write(ShortBuffer samples) throws IOException;
+    }
+
+    /**
+     * Prepares the stage for a synthesis. The default implementation keeps the layout as it is.
+     *
+     * @param format The layout of the incoming samples, always {@link PcmFormat.Encoding#PCM_16BIT}.
+     * @return The layout of the samples the stage produces.
+     */
+    default PcmFormat begin(PcmFormat format) {
+        return format;
+    }
+
+    /**
+     * Transforms a block of samples.
+     *
+     * @param samples The samples, from the buffer's position to its limit.
+     * @param out     Receives the result.
+     * @throws IOException If the result cannot be written.
+     */
+    void process(ShortBuffer samples, Output out) throws IOException;
+
+    /**
+     * Writes out anything kept back, after the last block. The default implementation does nothing.
+     *
+     * @param out Receives the result.
+     * @throws IOException If the result cannot be written.
+     */
+    default void finish(Output out) throws IOException {
+    }
+
+    /**
+     * Creates a stage that converts the audio to another sample rate.
+     *
+     * @param sampleRate The target sample rate in Hz.
+     * @return A new Resampler.
+     */
+    static Resampler resample(int sampleRate) {
+        return new Resampler(sampleRate);
+    }
+
+    /**
+     * Creates a stage that amplifies or attenuates the audio by a fixed amount.
+     *
+     * @param decibels The gain in dB, negative to attenuate.
+     * @return A new Gain.
+     */
+    static Gain gain(double decibels) {
+        return new Gain(decibels);
+    }
+
+    /**
+     * Creates a stage that scales the audio so that its loudest sample reaches the given level.
+     *
+     * @param peakDbfs The target peak level in dBFS, e.g. -1.
+     * @return A new PeakNormalizer.
+     */
+    static PeakNormalizer normalize(double peakDbfs) {
+        return new PeakNormalizer(peakDbfs);
+    }
+
+    /**
+     * Creates a stage that removes silence from the start and end of the audio.
+     *
+     * @param thresholdDbfs Samples at or below this level count as silence, e.g. -50.
+     * @param padding       How much of the silence to keep at either end.
+     * @return A new SilenceTrimmer.
+     */
+    static SilenceTrimmer trimSilence(double thresholdDbfs, Duration padding) {
+        return new SilenceTrimmer(thresholdDbfs, padding);
+    }
+}
@@ -0,0 +1,62 @@
+package io.gitctrlx.audio.pcm;
+
+import java.io.IOException;
+import java.nio.ShortBuffer;
+import java.util.Arrays;
+
+/**
+ * A {@link PcmStage} that scales the audio so that its loudest sample reaches a target level.
+ * <p>
+ * The peak is only known once all audio has arrived, so this stage holds the samples back until
+ * {@link #finish} and writes them all at once. That is a few megabytes for a minute of speech, but it delays the
+ * first byte to the end of the synthesis; use {@link Gain} where streaming matters. Silence is passed on
+ * unchanged.
+ */
+public class PeakNormalizer implements PcmStage {
+
+    private final double target;
+    private short[] held = new short[16 * 1024];
+    private int size;
+
+    /**
+     * Creates a stage with the given target level.
+     *
+     * @param peakDbfs The target peak level in dBFS, at most 0.
+     */
+    public PeakNormalizer(double peakDbfs) {
+        if (!(peakDbfs <= 0)) {
+            throw new IllegalArgumentException("peakDbfs must not be above 0");
+        }
+        this.target = Gain.amplitude(peakDbfs);
+    }
+
+    @Override
+    public PcmFormat begin(PcmFormat format) {
+        size = 0;
+        return format;
+    }
+
+    @Override
+    public void process(ShortBuffer samples, Output out) {
+        int length = samples.remaining();
+        if (size + length > held.length) {
+            held = Arrays.copyOf(held, Math.max(held.length * 2, size + length));
+        }
+        samples.get(held, size, length);
+        size += length;
+    }
+
+    @Override
+    public void finish(Output out) throws IOException {
+        int peak = 0;
+        for (int i = 0; i < size; i++) {
+            peak = Math.max(peak, Math.abs(held[i]));
+        }
+        ShortBuffer samples = ShortBuffer.wrap(held, 0, size);
+        if (peak > 0) {
+            Gain.scale(samples, target / peak);
+        }
+        out.write(samples);
+        size = 0;
+    }
+}
@@ -0,0 +1,90 @@
+package io.gitctrlx.audio.pcm;
+
+import java.io.IOException;
+import java.nio.ShortBuffer;
+
+/**
+ * A {@link PcmStage} that converts the audio to another sample rate by linear interpolation between neighbouring
+ * samples.
+ * <p>
+ * That is cheap and works well for upsampling, e.g. turning an 8 kHz stream into the 16 kHz a consumer expects.
+ * It does not filter out frequencies above the new limit when downsampling, so for a lower rate prefer requesting
+ * that rate from the service. The target must be a rate with a raw PCM {@link io.gitctrlx.constant.OutputFormat},
+ * so that the converted audio can be described to the next sink.
+ */
+public class Resampler implements PcmStage {
+
+    private final int targetRate;
+
+    /**
+     * Input samples per output sample
+     */
+    private double step;
+
+    /**
+     * Where the next output sample lies, in input samples after {@link #previous}
+     */
+    private double position;
+    private short previous;
+    private boolean started;
+    private short[] converted = new short[0];
+
+    /**
+     * Creates a stage with the given target rate.
+     *
+     * @param targetRate The target sample rate in Hz, e.g. 16000.
+     */
+    public Resampler(int targetRate) {
+        if (PcmFormat.pcm16(targetRate).toOutputFormat() == null) {
+            throw new IllegalArgumentException("No raw PCM output format has a sample rate of " + targetRate + " Hz");
+        }
+        this.targetRate = targetRate;
+    }
+
+    @Override
+    public PcmFormat begin(PcmFormat format) {
+        step = (double) format.getSampleRate() / targetRate;
+        position = 0;
+        started = false;
+        return PcmFormat.pcm16(targetRate);
+    }
+
+    @Override
+    public void process(ShortBuffer samples, Output out) throws IOException {
+        int base = samples.position();
+        int length = samples.remaining();
+        if (!started && length > 0) {
+            previous = samples.get(base++);
+            length--;
+            started = true;
+        }
+        int capacity = (int) ((length - position) / step) + 2;
+        if (converted.length < capacity) {
+            converted = new short[Math.max(capacity, converted.length * 2)];
+        }
+        int count = 0;
+        // Sample i of the block is at virtual index i + 1, with previous at index 0
+        while (position < length) {
+            int index = (int) position;
+            double fraction = position - index;
+            short from = index == 0 ? previous : samples.get(base + index - 1);
+            short to = samples.get(base + index);
+            converted[count++] = (short) Math.round(from + fraction * (to - from));
+            position += step;
+        }
+        if (length > 0) {
+            previous = samples.get(base + length - 1);
+            position -= length;
+        }
+        samples.position(samples.limit());
+        if (count > 0) {
+            out.write(ShortBuffer.wrap(converted, 0, count));
+        }
+    }
+
+    @Override
+    public void finish(Output out) throws IOException {
+        started = false;
+        position = 0;
+    }
+}
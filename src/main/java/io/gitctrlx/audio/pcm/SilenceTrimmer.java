@@ -0,0 +1,103 @@
+package io.gitctrlx.audio.pcm;
+
+import java.io.IOException;
+import java.nio.ShortBuffer;
+import java.time.Duration;
+import java.util.Arrays;
+
+/**
+ * A {@link PcmStage} that removes silence from the start and end of the audio, keeping pauses in between.
+ * <p>
+ * Leading silence is dropped as it arrives, apart from the padding just before the first sound. A quiet stretch
+ * after that is held back until either sound follows, and it turns out to be a pause, or the audio ends, and it is
+ * cut down to the padding. Only the quiet samples are delayed; sound passes through at once.
+ * <p>
+ * Trimming the start moves the audio earlier than the offsets of the word boundaries reported for it.
+ */
+public class SilenceTrimmer implements PcmStage {
+
+    private final double threshold;
+    private final Duration padding;
+    private int paddingSamples;
+    private boolean sounding;
+    private short[] quiet = new short[4096];
+    private int quietSize;
+    private short[] passed = new short[0];
+
+    /**
+     * Creates a stage with the given threshold and padding.
+     *
+     * @param thresholdDbfs Samples at or below this level count as silence, e.g. -50.
+     * @param padding       How much of the silence to keep at either end.
+     */
+    public SilenceTrimmer(double thresholdDbfs, Duration padding) {
+        if (!(thresholdDbfs <= 0)) {
+            throw new IllegalArgumentException("thresholdDbfs must not be above 0");
+        }
+        if (padding.isNegative()) {
+            throw new IllegalArgumentException("padding must not be negative");
+        }
+        this.threshold = Gain.amplitude(thresholdDbfs);
+        this.padding = padding;
+    }
+
+    @Override
+    public PcmFormat begin(PcmFormat format) {
+        paddingSamples = (int) Math.min(Integer.MAX_VALUE / 2, padding.toNanos() * format.getSampleRate() / 1_000_000_000L);
+        sounding = false;
+        quietSize = 0;
+        return format;
+    }
+
+    @Override
+    public void process(ShortBuffer samples, Output out) throws IOException {
+        int length = samples.remaining();
+        if (passed.length < length + quietSize) {
+            passed = new short[Math.max(length + quietSize, passed.length * 2)];
+        }
+        int count = 0;
+        for (int i = samples.position(); i < samples.limit(); i++) {
+            short sample = samples.get(i);
+            if (Math.abs(sample) > threshold) {
+                if (quietSize > 0) {
+                    // Sound after a quiet stretch: at the start, only the padding before it is kept
+                    int from = sounding ? 0 : Math.max(0, quietSize - paddingSamples);
+                    System.arraycopy(quiet, from, passed, count, quietSize - from);
+                    count += quietSize - from;
+                    quietSize = 0;
+                }
+                sounding = true;
+                passed[count++] = sample;
+            } else {
+                hold(sample);
+            }
+        }
+        samples.position(samples.limit());
+        if (count > 0) {
+            out.write(ShortBuffer.wrap(passed, 0, count));
+        }
+    }
+
+    private void hold(short sample) {
+        if (quietSize == quiet.length) {
+            if (!sounding && quietSize > paddingSamples) {
+                // Still at the start: only the last padding can be needed
+                System.arraycopy(quiet, quietSize - paddingSamples, quiet, 0, paddingSamples);
+                quietSize = paddingSamples;
+            }
+            if (quietSize == quiet.length) {
+                quiet = Arrays.copyOf(quiet, quiet.length * 2);
+            }
+        }
+        quiet[quietSize++] = sample;
+    }
+
+    @Override
+    public void finish(Output out) throws IOException {
+        if (sounding && quietSize > 0) {
+            out.write(ShortBuffer.wrap(quiet, 0, Math.min(quietSize, paddingSamples)));
+        }
+        sounding = false;
+        quietSize = 0;
+    }
+}
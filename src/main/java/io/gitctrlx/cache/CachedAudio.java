@@ -0,0 +1,105 @@
+package io.gitctrlx.cache;
+
+import io.gitctrlx.constant.OutputFormat;
+import io.gitctrlx.subtitle.WordBoundary;
+
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * A synthesised clip held by a {@link SynthesisCache}: the audio bytes and the format they are encoded in.
+ * The bytes live either on the heap or, for clips read from a {@link DiskAudioCache}, in a memory-mapped file.
+ * Both tiers keep the word boundaries of the synthesis with the audio.
+ * <p>
+ * Instances are shared between every caller that hits the same cache entry, so the data passed in must not be
+ * modified afterwards.
+ */
+public final class CachedAudio {
+
+    private final OutputFormat format;
+    private final ByteBuffer audio;
+    private final List<WordBoundary> wordBoundaries;
+
+    /**
+     * Creates an entry that takes ownership of the array.
+     *
+     * @param format The output format of the audio
+     * @param audio  The audio data
+     */
+    public CachedAudio(OutputFormat format, byte[] audio) {
+        this(format, ByteBuffer.wrap(audio));
+    }
+
+    /**
+     * Creates an entry that takes ownership of the array and keeps the word boundaries of the clip.
+     *
+     * @param format         The output format of the audio
+     * @param audio          The audio data
+     * @param wordBoundaries The word boundaries, which must not be modified afterwards
+     */
+    public CachedAudio(OutputFormat format, byte[] audio, List<WordBoundary> wordBoundaries) {
+        this(format, ByteBuffer.wrap(audio), wordBoundaries);
+    }
+
+    /**
+     * Creates an entry for the remaining bytes of a buffer, which it takes ownership of.
+     *
+     * @param format The output format of the audio
+     * @param audio  The audio data
+     */
+    public CachedAudio(OutputFormat format, ByteBuffer audio) {
+        this(format, audio, Collections.<WordBoundary>emptyList());
+    }
+
+    /**
+     * Creates an entry for the remaining bytes of a buffer, which it takes ownership of, and keeps the word
+     * boundaries of the clip.
+     *
+     * @param format         The output format of the audio
+     * @param audio          The audio data
+     * @param wordBoundaries The word boundaries, which must not be modified afterwards
+     */
+    public CachedAudio(OutputFormat format, ByteBuffer audio, List<WordBoundary> wordBoundaries) {
+        this.format = format;
+        this.audio = Objects.requireNonNull(audio, "audio").slice().asReadOnlyBuffer();
+        this.wordBoundaries = Objects.requireNonNull(wordBoundaries, "wordBoundaries");
+    }
+
+    /**
+     * Gets the format of the audio data.
+     *
+     * @return The output format
+     */
+    public OutputFormat getFormat() {
+        return format;
+    }
+
+    /**
+     * Gets a read-only view of the audio without copying it.
+     *
+     * @return The audio as a ByteBuffer
+     */
+    public ByteBuffer asByteBuffer() {
+        return audio.duplicate();
+    }
+
+    /**
+     * Gets the word boundaries of the clip.
+     *
+     * @return The word boundaries, empty if they were not kept
+     */
+    public List<WordBoundary> getWordBoundaries() {
+        return wordBoundaries;
+    }
+
+    /**
+     * Gets the number of audio bytes.
+     *
+     * @return The size in bytes
+     */
+    public int size() {
+        return audio.capacity();
+    }
+}
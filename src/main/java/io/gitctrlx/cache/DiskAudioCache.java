@@ -0,0 +1,747 @@
+package io.gitctrlx.cache;
+
+import io.gitctrlx.constant.OutputFormat;
+import io.gitctrlx.subtitle.WordBoundary;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+
+/**
+ * A persistent cache of synthesised audio stored in append-only segment files.
+ * <p>
+ * Every {@link #put} appends a record to the active segment; a segment that reaches the configured size is sealed
+ * and a new one is started. Each record is laid out as
+ * <pre>
+ * magic(4) keyLength(2) formatLength(2) audioLength(4) crc32(4) boundariesLength(4) key format boundaries audio
+ * </pre>
+ * with the CRC covering everything after it. The word boundaries of the clip are stored with it, each as
+ * offsetNanos(8) durationNanos(8) boxTypeLength(4) textLength(4) boxType text, so that a hit can still produce
+ * subtitles. Records written by earlier versions have the magic "TTS1", no boundariesLength field and no
+ * boundaries; they are still read, as clips without boundaries. An in-memory index from key to record location is rebuilt by
+ * scanning the segments on open; a record cut short by a crash is truncated away. Reads from sealed segments map
+ * the segment file into memory once, reads from the growing active segment copy the clip onto the heap, and
+ * {@link #transferTo} hands the audio straight from the file to a channel.
+ * <p>
+ * When the files grow beyond the size bound the oldest segment is dropped. When more than half of the stored bytes
+ * belong to overwritten or removed records, the live records of sealed segments are copied forward and the old
+ * segments are deleted.
+ * <p>
+ * A lock file keeps a second process from opening the same directory. Within the process, state is guarded by a
+ * {@link ReentrantLock}, so file I/O under it does not pin a virtual thread's carrier. Writes are not synced to
+ * disk one by one, so a crash may lose the most recent clips, but never returns a damaged one.
+ */
+public final class DiskAudioCache implements Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(DiskAudioCache.class);
+
+    private static final int MAGIC_AUDIO_ONLY = 0x54545331; // "TTS1"
+    private static final int MAGIC = 0x54545332; // "TTS2"
+    private static final int HEADER_SIZE_AUDIO_ONLY = 16;
+    private static final int HEADER_SIZE = 20;
+    private static final int TOMBSTONE = -1;
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".dat";
+    private static final String LOCK_FILE = "cache.lock";
+
+    private final Path directory;
+    private final long maxBytes;
+    private final long maxSegmentBytes;
+    private final TreeMap<Long, Segment> segments = new TreeMap<>();
+    private final Map<String, Location> index = new HashMap<>();
+    private final FileChannel lockChannel;
+    private final FileLock fileLock;
+    private final ReentrantLock lock = new ReentrantLock();
+    private Segment active;
+    private long fileBytes;
+    private long liveBytes;
+    private boolean closed;
+
+    /**
+     * Constructor that opens the cache directory from a builder and rebuilds the index.
+     *
+     * @param builder The builder holding the directory and bounds
+     * @throws IOException If the directory cannot be opened or is locked by another process
+     */
+    private DiskAudioCache(DiskAudioCacheBuilder builder) throws IOException {
+        this.directory = Objects.requireNonNull(builder.directory, "directory");
+        this.maxBytes = builder.maxBytes;
+        this.maxSegmentBytes = Math.min(builder.maxSegmentBytes, Math.max(builder.maxBytes / 4, 1));
+        Files.createDirectories(directory);
+        this.lockChannel = FileChannel.open(directory.resolve(LOCK_FILE), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        FileLock fileLock;
+        try {
+            fileLock = lockChannel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            fileLock = null; // Already open in this process
+        }
+        this.fileLock = fileLock;
+        if (fileLock == null) {
+            lockChannel.close();
+            throw new IOException("[ERROR] Disk cache directory is already open in another cache or process: " + directory);
+        }
+        try {
+            recover();
+        } catch (IOException | RuntimeException e) {
+            closeQuietly();
+            throw e;
+        }
+    }
+
+    /**
+     * Static factory method that returns an instance of DiskAudioCacheBuilder.
+     *
+     * @param directory The directory holding the segment files
+     * @return An instance of DiskAudioCacheBuilder.
+     */
+    public static DiskAudioCacheBuilder builder(Path directory) {
+        return new DiskAudioCacheBuilder(directory);
+    }
+
+    /**
+     * Gets the audio stored for a key, with its word boundaries. The returned audio is a read-only view of the
+     * memory-mapped segment, or a copy if the clip is in the active segment.
+     *
+     * @param key The cache key
+     * @return The audio, or null if the key is not stored
+     * @throws IOException If the segment cannot be read
+     */
+    public CachedAudio get(String key) throws IOException {
+        lock.lock();
+        try {
+            Location location = index.get(key);
+            if (location == null || closed) {
+                return null;
+            }
+            List<WordBoundary> boundaries = location.boundariesLength == 0 ? Collections.<WordBoundary>emptyList()
+                    : decodeBoundaries(location.segment.read(location.boundariesOffset(), location.boundariesLength));
+            return new CachedAudio(location.format, location.segment.read(location.audioOffset(), location.audioLength), boundaries);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Copies the audio stored for a key to a channel, letting the operating system move the bytes from the file
+     * without passing them through the Java heap.
+     *
+     * @param key    The cache key
+     * @param target The channel to write to
+     * @return The number of bytes written, or -1 if the key is not stored
+     * @throws IOException If reading the segment or writing the channel fails
+     */
+    public long transferTo(String key, WritableByteChannel target) throws IOException {
+        Location location;
+        lock.lock();
+        try {
+            location = index.get(key);
+            if (location == null || closed) {
+                return -1;
+            }
+        } finally {
+            lock.unlock();
+        }
+        try {
+            return location.segment.transferTo(location.audioOffset(), location.audioLength, target);
+        } catch (ClosedChannelException e) {
+            if (!location.segment.channel.isOpen()) {
+                return -1; // Dropped or compacted away while copying
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Whether audio is stored for a key.
+     *
+     * @param key The cache key
+     * @return true if stored
+     */
+    public boolean contains(String key) {
+        lock.lock();
+        try {
+            return index.containsKey(key);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Appends audio for a key, replacing any audio stored for it before. Clips larger than a segment are not stored.
+     *
+     * @param key   The cache key
+     * @param audio The audio
+     * @throws IOException If the record cannot be written
+     */
+    public void put(String key, CachedAudio audio) throws IOException {
+        lock.lock();
+        try {
+            ensureOpen();
+            byte[] format = audio.getFormat() == null ? new byte[0] : audio.getFormat().name().getBytes(StandardCharsets.US_ASCII);
+            append(key, format, encodeBoundaries(audio.getWordBoundaries()), audio.asByteBuffer(), audio.getFormat());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Removes the audio stored for a key. The removal is recorded, so it survives a restart.
+     *
+     * @param key The cache key
+     * @throws IOException If the removal cannot be recorded
+     */
+    public void invalidate(String key) throws IOException {
+        lock.lock();
+        try {
+            ensureOpen();
+            if (index.containsKey(key)) {
+                append(key, new byte[0], new byte[0], null, null);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Copies the live records of all sealed segments into the active segment and deletes the sealed segments,
+     * reclaiming the space of overwritten and removed clips.
+     *
+     * @throws IOException If a segment cannot be copied or deleted
+     */
+    public void compact() throws IOException {
+        lock.lock();
+        try {
+            ensureOpen();
+            List<Segment> sealed = new ArrayList<>(segments.headMap(active.id).values());
+            if (sealed.isEmpty()) {
+                return;
+            }
+            for (Segment segment : sealed) {
+                for (Location location : index.values()) {
+                    if (location.segment != segment) {
+                        continue;
+                    }
+                    if (active.size + location.recordLength > maxSegmentBytes) {
+                        roll();
+                    }
+                    long offset = active.size;
+                    segment.transferTo(location.recordOffset, (int) location.recordLength, active.channel.position(offset));
+                    active.size += location.recordLength;
+                    fileBytes += location.recordLength;
+                    location.segment = active;
+                    location.recordOffset = offset;
+                }
+                drop(segment);
+            }
+            log.debug("Compacted disk cache to {} bytes in {} segments", fileBytes, segments.size());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Gets the number of stored clips.
+     *
+     * @return The entry count
+     */
+    public int size() {
+        lock.lock();
+        try {
+            return index.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Gets the total size of the segment files, including records that have been replaced or removed.
+     *
+     * @return The size in bytes
+     */
+    public long getFileSize() {
+        lock.lock();
+        try {
+            return fileBytes;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Gets the size of the records still referenced by the index.
+     *
+     * @return The size in bytes
+     */
+    public long getLiveSize() {
+        lock.lock();
+        try {
+            return liveBytes;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Closes the segment files and releases the directory lock.
+     *
+     * @throws IOException If a file cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            for (Segment segment : segments.values()) {
+                segment.channel.close();
+            }
+            fileLock.release();
+            lockChannel.close();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Appends a record and updates the index, then evicts or compacts if the bounds require it.
+     *
+     * @param audio The audio, or null to record a removal
+     */
+    private void append(String key, byte[] format, byte[] boundaries, ByteBuffer audio, OutputFormat outputFormat)
+            throws IOException {
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        if (keyBytes.length > 0xFFFF) {
+            throw new IllegalArgumentException("key is longer than 65535 bytes");
+        }
+        int audioLength = audio == null ? 0 : audio.remaining();
+        long recordLength = (long) HEADER_SIZE + keyBytes.length + format.length + boundaries.length + audioLength;
+        if (recordLength > maxSegmentBytes) {
+            return;
+        }
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE + keyBytes.length + format.length + boundaries.length);
+        header.putInt(MAGIC)
+                .putShort((short) keyBytes.length)
+                .putShort((short) format.length)
+                .putInt(audio == null ? TOMBSTONE : audioLength)
+                .putInt(0) // CRC, filled in below
+                .putInt(boundaries.length)
+                .put(keyBytes)
+                .put(format)
+                .put(boundaries)
+                .flip();
+        CRC32 crc = new CRC32();
+        crc.update(header.array(), HEADER_SIZE_AUDIO_ONLY, header.limit() - HEADER_SIZE_AUDIO_ONLY);
+        if (audio != null) {
+            crc.update(audio.duplicate());
+        }
+        header.putInt(12, (int) crc.getValue());
+
+        if (active.size + recordLength > maxSegmentBytes) {
+            roll();
+        }
+        long offset = active.size;
+        FileChannel channel = active.channel.position(offset);
+        ByteBuffer[] buffers = audio == null ? new ByteBuffer[]{header} : new ByteBuffer[]{header, audio.duplicate()};
+        long written = 0;
+        while (written < recordLength) {
+            written += channel.write(buffers);
+        }
+        active.size += recordLength;
+        fileBytes += recordLength;
+
+        Location previous = audio == null
+                ? index.remove(key)
+                : index.put(key, new Location(active, offset, recordLength, HEADER_SIZE + keyBytes.length + format.length,
+                        boundaries.length, audioLength, outputFormat));
+        if (previous != null) {
+            liveBytes -= previous.recordLength;
+        }
+        if (audio != null) {
+            liveBytes += recordLength;
+        }
+        enforceBounds();
+    }
+
+    /**
+     * Drops the oldest segments while the files exceed the size bound, then compacts if most stored bytes are dead.
+     */
+    private void enforceBounds() throws IOException {
+        while (fileBytes > maxBytes && segments.size() > 1) {
+            drop(segments.firstEntry().getValue());
+        }
+        long deadBytes = fileBytes - liveBytes;
+        if (deadBytes > liveBytes && deadBytes > maxSegmentBytes) {
+            compact();
+        }
+    }
+
+    /**
+     * Seals the active segment and starts a new one.
+     */
+    private void roll() throws IOException {
+        active = openSegment(active == null ? 1 : active.id + 1);
+        segments.put(active.id, active);
+    }
+
+    /**
+     * Deletes a segment and forgets every record in it.
+     */
+    private void drop(Segment segment) throws IOException {
+        Iterator<Location> it = index.values().iterator();
+        while (it.hasNext()) {
+            Location location = it.next();
+            if (location.segment == segment) {
+                liveBytes -= location.recordLength;
+                it.remove();
+            }
+        }
+        segments.remove(segment.id);
+        fileBytes -= segment.size;
+        segment.channel.close();
+        Files.deleteIfExists(segment.path);
+    }
+
+    /**
+     * Rebuilds the index from the segment files in order, truncating any segment at its first damaged record.
+     */
+    private void recover() throws IOException {
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for (Path path : stream) {
+                String name = path.getFileName().toString();
+                try {
+                    long id = Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+                    segments.put(id, openSegment(id));
+                } catch (NumberFormatException e) {
+                    log.warn("[WARN] Ignoring unexpected file in disk cache: {}", path);
+                }
+            }
+        }
+        for (Segment segment : segments.values()) {
+            scan(segment);
+            fileBytes += segment.size;
+        }
+        if (segments.isEmpty()) {
+            roll();
+        } else {
+            active = segments.lastEntry().getValue();
+        }
+        log.debug("Opened disk cache with {} clips in {} segments", index.size(), segments.size());
+    }
+
+    /**
+     * Reads every record of a segment into the index.
+     */
+    private void scan(Segment segment) throws IOException {
+        long fileSize = segment.channel.size();
+        long offset = 0;
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        ByteBuffer body = ByteBuffer.allocate(64 * 1024);
+        while (offset < fileSize) {
+            header.clear().limit(HEADER_SIZE_AUDIO_ONLY);
+            if (!readFully(segment.channel, header, offset)) {
+                break;
+            }
+            int magic = header.getInt(0);
+            int headerSize = magic == MAGIC ? HEADER_SIZE : HEADER_SIZE_AUDIO_ONLY;
+            if (magic != MAGIC && magic != MAGIC_AUDIO_ONLY) {
+                break;
+            }
+            header.limit(headerSize);
+            if (!readFully(segment.channel, header, offset)) {
+                break;
+            }
+            int keyLength = header.getShort(4) & 0xFFFF;
+            int formatLength = header.getShort(6) & 0xFFFF;
+            int audioLength = header.getInt(8);
+            int boundariesLength = magic == MAGIC ? header.getInt(16) : 0;
+            // In long: a damaged length must not wrap around and pass the bounds check
+            long bodySize = (long) keyLength + formatLength + boundariesLength + (audioLength == TOMBSTONE ? 0 : audioLength);
+            if (audioLength < TOMBSTONE || boundariesLength < 0 || bodySize > Integer.MAX_VALUE
+                    || offset + headerSize + bodySize > fileSize) {
+                break;
+            }
+            int bodyLength = (int) bodySize;
+            if (body.capacity() < bodyLength) {
+                body = ByteBuffer.allocate(bodyLength);
+            }
+            body.clear().limit(bodyLength);
+            if (!readFully(segment.channel, body, offset + headerSize)) {
+                break;
+            }
+            CRC32 crc = new CRC32();
+            crc.update(header.array(), HEADER_SIZE_AUDIO_ONLY, headerSize - HEADER_SIZE_AUDIO_ONLY);
+            crc.update(body.array(), 0, bodyLength);
+            if ((int) crc.getValue() != header.getInt(12)) {
+                break;
+            }
+            String key = new String(body.array(), 0, keyLength, StandardCharsets.UTF_8);
+            String formatName = new String(body.array(), keyLength, formatLength, StandardCharsets.US_ASCII);
+            long recordLength = (long) headerSize + bodyLength;
+            Location previous;
+            if (audioLength == TOMBSTONE) {
+                previous = index.remove(key);
+            } else {
+                OutputFormat format = parseFormat(formatName);
+                previous = index.put(key, new Location(segment, offset, recordLength, headerSize + keyLength + formatLength,
+                        boundariesLength, audioLength, format));
+                liveBytes += recordLength;
+            }
+            if (previous != null) {
+                liveBytes -= previous.recordLength;
+            }
+            offset += recordLength;
+        }
+        if (offset < fileSize) {
+            log.warn("[WARN] Truncating damaged disk cache segment {} at offset {} of {}", segment.path, offset, fileSize);
+            segment.channel.truncate(offset);
+        }
+        segment.size = offset;
+    }
+
+    private Segment openSegment(long id) throws IOException {
+        Path path = directory.resolve(String.format("%s%016d%s", SEGMENT_PREFIX, id, SEGMENT_SUFFIX));
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        return new Segment(id, path, channel);
+    }
+
+    private void ensureOpen() throws IOException {
+        if (closed) {
+            throw new IOException("[ERROR] Disk cache is closed");
+        }
+    }
+
+    private void closeQuietly() {
+        try {
+            close();
+        } catch (IOException e) {
+            log.warn("[WARN] Failed to close disk cache: {}", e.getMessage());
+        }
+    }
+
+    private static OutputFormat parseFormat(String name) {
+        if (name.isEmpty()) {
+            return null;
+        }
+        try {
+            return OutputFormat.valueOf(name);
+        } catch (IllegalArgumentException e) {
+            return null; // Written by a version with formats this one does not know
+        }
+    }
+
+    private static byte[] encodeBoundaries(List<WordBoundary> boundaries) {
+        if (boundaries.isEmpty()) {
+            return new byte[0];
+        }
+        List<byte[]> strings = new ArrayList<>(boundaries.size() * 2);
+        int length = 0;
+        for (WordBoundary boundary : boundaries) {
+            byte[] boxType = boundary.getBoxType().getBytes(StandardCharsets.UTF_8);
+            byte[] text = boundary.getText().getBytes(StandardCharsets.UTF_8);
+            strings.add(boxType);
+            strings.add(text);
+            length += 24 + boxType.length + text.length;
+        }
+        ByteBuffer encoded = ByteBuffer.allocate(length);
+        Iterator<byte[]> it = strings.iterator();
+        for (WordBoundary boundary : boundaries) {
+            byte[] boxType = it.next();
+            byte[] text = it.next();
+            encoded.putLong(boundary.getOffsetNanos())
+                    .putLong(boundary.getEndNanos() - boundary.getOffsetNanos())
+                    .putInt(boxType.length)
+                    .putInt(text.length)
+                    .put(boxType)
+                    .put(text);
+        }
+        return encoded.array();
+    }
+
+    private static List<WordBoundary> decodeBoundaries(ByteBuffer encoded) throws IOException {
+        List<WordBoundary> boundaries = new ArrayList<>();
+        try {
+            while (encoded.hasRemaining()) {
+                long offsetNanos = encoded.getLong();
+                long durationNanos = encoded.getLong();
+                byte[] boxType = new byte[encoded.getInt()];
+                byte[] text = new byte[encoded.getInt()];
+                encoded.get(boxType).get(text);
+                boundaries.add(new WordBoundary(new String(text, StandardCharsets.UTF_8),
+                        new String(boxType, StandardCharsets.UTF_8), offsetNanos, durationNanos));
+            }
+        } catch (BufferUnderflowException | NegativeArraySizeException e) {
+            throw new IOException("[ERROR] Damaged word boundaries in disk cache", e);
+        }
+        return Collections.unmodifiableList(boundaries);
+    }
+
+    private static boolean readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * One segment file. Sealed segments are mapped once as a whole; the active segment is still growing, so a
+     * clip in it is read into a heap buffer instead.
+     */
+    private final class Segment {
+        private final long id;
+        private final Path path;
+        private final FileChannel channel;
+        private long size;
+        private MappedByteBuffer mapped;
+
+        private Segment(long id, Path path, FileChannel channel) {
+            this.id = id;
+            this.path = path;
+            this.channel = channel;
+        }
+
+        private ByteBuffer read(long offset, int length) throws IOException {
+            if (this == active) {
+                ByteBuffer copy = ByteBuffer.allocate(length);
+                if (!readFully(channel, copy, offset)) {
+                    throw new IOException("[ERROR] Disk cache segment " + path + " ends inside a record");
+                }
+                copy.flip();
+                return copy;
+            }
+            if (mapped == null) {
+                mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            }
+            ByteBuffer view = mapped.duplicate();
+            view.position((int) offset).limit((int) offset + length);
+            return view.slice();
+        }
+
+        private long transferTo(long offset, int length, WritableByteChannel target) throws IOException {
+            long transferred = 0;
+            while (transferred < length) {
+                long n = channel.transferTo(offset + transferred, length - transferred, target);
+                if (n <= 0) {
+                    break;
+                }
+                transferred += n;
+            }
+            return transferred;
+        }
+    }
+
+    /**
+     * Where a key's current record is stored.
+     */
+    private static final class Location {
+        private Segment segment;
+        private long recordOffset;
+        private final long recordLength;
+        private final int prefixLength;
+        private final int boundariesLength;
+        private final int audioLength;
+        private final OutputFormat format;
+
+        /**
+         * @param prefixLength The length of the header, key and format, which precede the boundaries
+         */
+        private Location(Segment segment, long recordOffset, long recordLength, int prefixLength, int boundariesLength,
+                         int audioLength, OutputFormat format) {
+            this.segment = segment;
+            this.recordOffset = recordOffset;
+            this.recordLength = recordLength;
+            this.prefixLength = prefixLength;
+            this.boundariesLength = boundariesLength;
+            this.audioLength = audioLength;
+            this.format = format;
+        }
+
+        private long boundariesOffset() {
+            return recordOffset + prefixLength;
+        }
+
+        private long audioOffset() {
+            return boundariesOffset() + boundariesLength;
+        }
+    }
+
+    /**
+     * The DiskAudioCacheBuilder class is used to open DiskAudioCache objects.
+     */
+    public static class DiskAudioCacheBuilder {
+        private final Path directory;
+        private long maxBytes = 1024L * 1024 * 1024;
+        private long maxSegmentBytes = 64L * 1024 * 1024;
+
+        private DiskAudioCacheBuilder(Path directory) {
+            this.directory = Objects.requireNonNull(directory, "directory");
+        }
+
+        /**
+         * Sets the maximum total size of the segment files. The oldest segment is dropped when it is exceeded.
+         *
+         * @param maxBytes The size bound, at least 1.
+         * @return An instance of DiskAudioCacheBuilder.
+         */
+        public DiskAudioCacheBuilder maxBytes(long maxBytes) {
+            if (maxBytes < 1) {
+                throw new IllegalArgumentException("maxBytes must be at least 1");
+            }
+            this.maxBytes = maxBytes;
+            return this;
+        }
+
+        /**
+         * Sets the size at which a segment is sealed and a new one started. It is capped at a quarter of the total
+         * size bound, so that dropping a segment frees a useful share of space.
+         *
+         * @param maxSegmentBytes The segment size, between 1 and {@link Integer#MAX_VALUE}.
+         * @return An instance of DiskAudioCacheBuilder.
+         */
+        public DiskAudioCacheBuilder maxSegmentBytes(long maxSegmentBytes) {
+            if (maxSegmentBytes < 1 || maxSegmentBytes > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("maxSegmentBytes must be between 1 and " + Integer.MAX_VALUE);
+            }
+            this.maxSegmentBytes = maxSegmentBytes;
+            return this;
+        }
+
+        /**
+         * Opens the cache, creating the directory if needed and rebuilding the index from existing segments.
+         *
+         * @return An instance of DiskAudioCache.
+         * @throws IOException If the directory cannot be opened or is locked by another process
+         */
+        public DiskAudioCache build() throws IOException {
+            return new DiskAudioCache(this);
+        }
+    }
+}
@@ -0,0 +1,393 @@
+package io.gitctrlx.cache;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+/**
+ * An in-memory cache of synthesised audio keyed by {@link io.gitctrlx.service.SSML#getCacheKey()}.
+ * <p>
+ * The cache is bounded both by entry count and by total audio bytes; when either bound is exceeded the least
+ * recently used entries are evicted. {@link #get(String, Function)} also deduplicates loads: while a key is being
+ * synthesised, further requests for it wait for that synthesis instead of starting their own.
+ * <p>
+ * A {@link DiskAudioCache} can be added as a second tier: clips missing from memory are then looked up on disk
+ * before they are synthesised, and every synthesised clip is also written to disk, so a restarted process serves
+ * what it rendered before without contacting the service. A clip found on disk is copied into memory, within the
+ * same bounds, so that further hits on it do not go to disk again.
+ * <p>
+ * Enable it with {@code TTSService.builder().cache(SynthesisCache.builder().maxBytes(...).build())}.
+ */
+public final class SynthesisCache {
+
+    private static final Logger log = LoggerFactory.getLogger(SynthesisCache.class);
+
+    private final int maxEntries;
+    private final long maxBytes;
+    private final LinkedHashMap<String, CachedAudio> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final ReentrantLock lock = new ReentrantLock();
+    private final ConcurrentMap<String, CompletableFuture<CachedAudio>> loading = new ConcurrentHashMap<>();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong diskHits = new AtomicLong();
+    private final DiskAudioCache disk;
+    private long bytes;
+
+    /**
+     * Constructor that initializes the cache from a builder.
+     *
+     * @param builder The builder holding the bounds
+     */
+    private SynthesisCache(SynthesisCacheBuilder builder) {
+        this.maxEntries = builder.maxEntries;
+        this.maxBytes = builder.maxBytes;
+        this.disk = builder.disk;
+    }
+
+    /**
+     * Static factory method that returns an instance of SynthesisCacheBuilder.
+     *
+     * @return An instance of SynthesisCacheBuilder.
+     */
+    public static SynthesisCacheBuilder builder() {
+        return new SynthesisCacheBuilder();
+    }
+
+    /**
+     * Gets the audio for a key, loading it if it is neither cached nor already being loaded. Concurrent calls for
+     * the same key share a single load; a failed load is not cached and the next call retries it.
+     * <p>
+     * Each caller gets its own future, so cancelling one does not affect the others or the load itself.
+     *
+     * @param key    The cache key
+     * @param loader Starts the synthesis for a key that is not cached
+     * @return A future for the audio
+     */
+    public CompletableFuture<CachedAudio> get(String key, Function<String, CompletableFuture<CachedAudio>> loader) {
+        CachedAudio cached = peek(key);
+        if (cached == null) {
+            cached = readDisk(key);
+        }
+        if (cached != null) {
+            hits.incrementAndGet();
+            return CompletableFuture.completedFuture(cached);
+        }
+        CompletableFuture<CachedAudio> load = new CompletableFuture<>();
+        CompletableFuture<CachedAudio> existing = loading.putIfAbsent(key, load);
+        if (existing != null) {
+            hits.incrementAndGet();
+            return existing.thenApply(Function.identity());
+        }
+        // A load may have finished between the lookup and registering ours
+        cached = peek(key);
+        if (cached != null) {
+            loading.remove(key, load);
+            load.complete(cached);
+            hits.incrementAndGet();
+            return CompletableFuture.completedFuture(cached);
+        }
+        misses.incrementAndGet();
+        CompletableFuture<CachedAudio> source;
+        try {
+            source = loader.apply(key);
+        } catch (RuntimeException e) {
+            source = new CompletableFuture<>();
+            source.completeExceptionally(e);
+        }
+        source.whenComplete((audio, e) -> {
+            if (e == null && audio != null) {
+                put(key, audio); // Before leaving the loading map, so no caller can miss both
+                writeDisk(key, audio);
+            }
+            loading.remove(key, load);
+            if (e != null) {
+                load.completeExceptionally(e);
+            } else {
+                load.complete(audio);
+            }
+        });
+        return load.thenApply(Function.identity());
+    }
+
+    /**
+     * Gets the cached audio for a key from memory or disk, counting a hit or a miss.
+     *
+     * @param key The cache key
+     * @return The audio, or null if it is not cached
+     */
+    public CachedAudio get(String key) {
+        CachedAudio cached = peek(key);
+        if (cached == null) {
+            cached = readDisk(key);
+        }
+        (cached == null ? misses : hits).incrementAndGet();
+        return cached;
+    }
+
+    /**
+     * Adds audio to the cache, evicting least recently used entries as needed. Audio larger than the byte bound is
+     * not cached.
+     *
+     * @param key   The cache key
+     * @param audio The audio
+     */
+    public void put(String key, CachedAudio audio) {
+        if (audio.size() > maxBytes) {
+            return;
+        }
+        lock.lock();
+        try {
+            CachedAudio previous = entries.put(key, audio);
+            if (previous != null) {
+                bytes -= previous.size();
+            }
+            bytes += audio.size();
+            Iterator<Map.Entry<String, CachedAudio>> it = entries.entrySet().iterator();
+            while ((entries.size() > maxEntries || bytes > maxBytes) && it.hasNext()) {
+                Map.Entry<String, CachedAudio> eldest = it.next();
+                bytes -= eldest.getValue().size();
+                it.remove();
+                evictions.incrementAndGet();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Removes a key from memory and disk.
+     *
+     * @param key The cache key
+     */
+    public void invalidate(String key) {
+        lock.lock();
+        try {
+            CachedAudio removed = entries.remove(key);
+            if (removed != null) {
+                bytes -= removed.size();
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (disk != null) {
+            try {
+                disk.invalidate(key);
+            } catch (IOException e) {
+                log.warn("[WARN] Failed to remove clip from disk cache: {}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Removes every entry from memory. The disk tier and the counters are kept.
+     */
+    public void clear() {
+        lock.lock();
+        try {
+            entries.clear();
+            bytes = 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Gets the number of requests served from the cache, including those that joined a load already in progress.
+     *
+     * @return The hit count
+     */
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    /**
+     * Gets the number of hits that were served from the disk tier.
+     *
+     * @return The disk hit count
+     */
+    public long getDiskHitCount() {
+        return diskHits.get();
+    }
+
+    /**
+     * Gets the disk tier.
+     *
+     * @return The disk cache, or null if there is none
+     */
+    public DiskAudioCache getDiskCache() {
+        return disk;
+    }
+
+    /**
+     * Gets the number of requests that had to be synthesised.
+     *
+     * @return The miss count
+     */
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    /**
+     * Gets the number of entries evicted to stay within the bounds.
+     *
+     * @return The eviction count
+     */
+    public long getEvictionCount() {
+        return evictions.get();
+    }
+
+    /**
+     * Gets the number of cached entries.
+     *
+     * @return The entry count
+     */
+    public int size() {
+        lock.lock();
+        try {
+            return entries.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Gets the total size of the cached audio.
+     *
+     * @return The size in bytes
+     */
+    public long getByteSize() {
+        lock.lock();
+        try {
+            return bytes;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Looks up a key on disk and promotes a hit into memory. Disk errors are logged and treated as a miss.
+     */
+    private CachedAudio readDisk(String key) {
+        if (disk == null) {
+            return null;
+        }
+        CachedAudio audio;
+        try {
+            audio = disk.get(key);
+        } catch (IOException e) {
+            log.warn("[WARN] Failed to read clip from disk cache: {}", e.getMessage());
+            return null;
+        }
+        if (audio == null) {
+            return null;
+        }
+        diskHits.incrementAndGet();
+        if (audio.size() > maxBytes) {
+            return audio;
+        }
+        ByteBuffer data = audio.asByteBuffer();
+        if (data.isDirect()) {
+            // Copied, as a mapping would pin a segment file that may be dropped or compacted away
+            byte[] copy = new byte[data.remaining()];
+            data.get(copy);
+            audio = new CachedAudio(audio.getFormat(), copy, audio.getWordBoundaries());
+        }
+        put(key, audio);
+        return audio;
+    }
+
+    /**
+     * Writes a synthesised clip through to disk. Disk errors are logged; the clip stays cached in memory.
+     */
+    private void writeDisk(String key, CachedAudio audio) {
+        if (disk == null) {
+            return;
+        }
+        try {
+            disk.put(key, audio);
+        } catch (IOException e) {
+            log.warn("[WARN] Failed to write clip to disk cache: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Looks up a key, marking it as recently used, without counting a hit or miss.
+     */
+    private CachedAudio peek(String key) {
+        lock.lock();
+        try {
+            return entries.get(key);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * The SynthesisCacheBuilder class is used to build SynthesisCache objects.
+     */
+    public static class SynthesisCacheBuilder {
+        private int maxEntries = 1024;
+        private long maxBytes = 64L * 1024 * 1024;
+        private DiskAudioCache disk;
+
+        /**
+         * Sets the maximum number of cached clips.
+         *
+         * @param maxEntries The entry bound, at least 1.
+         * @return An instance of SynthesisCacheBuilder.
+         */
+        public SynthesisCacheBuilder maxEntries(int maxEntries) {
+            if (maxEntries < 1) {
+                throw new IllegalArgumentException("maxEntries must be at least 1");
+            }
+            this.maxEntries = maxEntries;
+            return this;
+        }
+
+        /**
+         * Sets the maximum total size of the cached audio.
+         *
+         * @param maxBytes The byte bound, at least 1.
+         * @return An instance of SynthesisCacheBuilder.
+         */
+        public SynthesisCacheBuilder maxBytes(long maxBytes) {
+            if (maxBytes < 1) {
+                throw new IllegalArgumentException("maxBytes must be at least 1");
+            }
+            this.maxBytes = maxBytes;
+            return this;
+        }
+
+        /**
+         * Adds a persistent tier below the in-memory one. The caller keeps ownership and closes it.
+         *
+         * @param disk The disk cache, or null for memory only.
+         * @return An instance of SynthesisCacheBuilder.
+         */
+        public SynthesisCacheBuilder disk(DiskAudioCache disk) {
+            this.disk = disk;
+            return this;
+        }
+
+        /**
+         * Builds the SynthesisCache object.
+         *
+         * @return An instance of SynthesisCache.
+         */
+        public SynthesisCache build() {
+            return new SynthesisCache(this);
+        }
+    }
+}
@@ -44,6 +44,11 @@ public interface TtsConstants {
      */
     String TURN_END = "turn.end";
 
+    /**
+     * Path of the text frames carrying word boundaries
+     */
+    String AUDIO_METADATA = "audio.metadata";
+
     /**
      * Header for the start of audio data stream
      */
@@ -53,4 +58,14 @@ public interface TtsConstants {
      * MIME type for audio content
      */
     String AUDIO_CONTENT_TYPE = "Content-Type:audio";
+
+    /**
+     * Header carrying the id that correlates a response frame with its SSML request
+     */
+    String REQUEST_ID_HEADER = "X-RequestId:";
+
+    /**
+     * Header naming the kind of message in a frame
+     */
+    String PATH_HEADER = "Path:";
 }
@@ -3,6 +3,8 @@ package io.gitctrlx.constant;
 /**
  * The VoiceEnum enum defines various voice options for text-to-speech conversion.
  * <p>
+ * This is a curated selection; {@link io.gitctrlx.voice.VoiceCatalog} lists every voice of the service.
+ * <p>
  * Reference: <a href="https://speech.platform.bing.com/consumer/speech/synthesize/readaloud/voices/list?trustedclienttoken=6A5AA1D4EAFF4E9FB37E23D68491D6F4">...</a>
  */
 public enum VoiceEnum {
@@ -2,16 +2,21 @@ package io.gitctrlx.exceptions;
 
 /**
  * The TtsException class is used to handle exceptions in text-to-speech conversion.
+ * <p>
+ * An exception is {@link #isRetryable() retryable} when it reports a transient failure, such as a dropped
+ * connection, after which the same request can be sent again.
  */
 public class TtsException extends RuntimeException {
 
+    private final boolean retryable;
+
     /**
      * Initializes a new instance of the TtsException class with the specified error message.
      *
      * @param message The error message.
      */
     public TtsException(String message) {
-        super(message);
+        this(message, null, false);
     }
 
     /**
@@ -21,7 +26,20 @@ public class TtsException extends RuntimeException {
      * @param cause   The cause of this exception.
      */
     public TtsException(String message, Throwable cause) {
+        this(message, cause, false);
+    }
+
+    /**
+     * Initializes a new instance of the TtsException class with the specified error message, cause and retry
+     * classification.
+     *
+     * @param message   The error message.
+     * @param cause     The cause of this exception, may be null.
+     * @param retryable Whether the failed request may be sent again.
+     */
+    public TtsException(String message, Throwable cause, boolean retryable) {
         super(message, cause);
+        this.retryable = retryable;
     }
 
     /**
@@ -44,4 +62,24 @@ public class TtsException extends RuntimeException {
     public static TtsException of(String message, Throwable cause) {
         return new TtsException(message, cause);
     }
+
+    /**
+     * Static factory method that creates and returns a new retryable instance of TtsException.
+     *
+     * @param message The error message.
+     * @param cause   The cause of this exception, may be null.
+     * @return A new instance of TtsException.
+     */
+    public static TtsException retryable(String message, Throwable cause) {
+        return new TtsException(message, cause, true);
+    }
+
+    /**
+     * Whether this exception reports a transient failure after which the request may be sent again.
+     *
+     * @return true if the request may be retried
+     */
+    public boolean isRetryable() {
+        return retryable;
+    }
 }
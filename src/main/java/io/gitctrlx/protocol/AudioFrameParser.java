@@ -0,0 +1,151 @@
+package io.gitctrlx.protocol;
+
+import io.gitctrlx.constant.TtsConstants;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Parses binary WebSocket frames of the speech protocol in place.
+ * <p>
+ * A binary frame starts with a 2-byte big-endian header length, followed by that many bytes of
+ * {@code Name:value\r\n} header lines and then the audio payload:
+ * <pre>
+ * [len hi][len lo]X-RequestId:...\r\nContent-Type:audio/mpeg\r\nX-StreamId:...\r\nPath:audio\r\n[payload]
+ * </pre>
+ * The parser reads the headers directly from the frame buffer and exposes the payload by moving the buffer's
+ * position, so parsing allocates nothing. The request id string is cached and reused while consecutive frames
+ * belong to the same request.
+ * <p>
+ * An instance keeps state between calls and is meant to be owned by a single reader thread.
+ */
+public final class AudioFrameParser {
+
+    private static final byte[] REQUEST_ID = ascii(TtsConstants.REQUEST_ID_HEADER);
+    private static final byte[] PATH = ascii(TtsConstants.PATH_HEADER);
+    private static final byte[] AUDIO = ascii("audio");
+
+    private ByteBuffer frame;
+    private int payloadStart;
+    private int idStart;
+    private int idLength;
+    private boolean audio;
+    private byte[] lastId = new byte[32];
+    private int lastIdLength = -1;
+    private String lastIdString;
+
+    /**
+     * Parses a binary frame. On success the frame's position is left at the start of the audio payload.
+     *
+     * @param frame The frame, from its position to its limit
+     * @return true if the frame is a well-formed {@code Path:audio} frame
+     */
+    public boolean parse(ByteBuffer frame) {
+        this.frame = frame;
+        this.audio = false;
+        this.idLength = -1;
+        int start = frame.position();
+        int limit = frame.limit();
+        if (limit - start < 2) {
+            return false;
+        }
+        int headerLength = ((frame.get(start) & 0xFF) << 8) | (frame.get(start + 1) & 0xFF);
+        int headerStart = start + 2;
+        int headerEnd = headerStart + headerLength;
+        if (headerEnd > limit) {
+            return false;
+        }
+        int line = headerStart;
+        while (line < headerEnd) {
+            int lineEnd = indexOfCrLf(frame, line, headerEnd);
+            if (startsWith(frame, line, lineEnd, REQUEST_ID)) {
+                idStart = line + REQUEST_ID.length;
+                idLength = lineEnd - idStart;
+            } else if (startsWith(frame, line, lineEnd, PATH)) {
+                audio = equals(frame, line + PATH.length, lineEnd, AUDIO);
+            }
+            line = lineEnd + 2;
+        }
+        payloadStart = headerEnd;
+        if (audio) {
+            frame.position(payloadStart);
+        }
+        return audio;
+    }
+
+    /**
+     * Gets the payload of the last parsed frame: the frame buffer itself, positioned at the first audio byte.
+     *
+     * @return The payload
+     */
+    public ByteBuffer payload() {
+        return frame;
+    }
+
+    /**
+     * Gets the number of audio bytes in the last parsed frame.
+     *
+     * @return The payload length
+     */
+    public int payloadLength() {
+        return frame.limit() - payloadStart;
+    }
+
+    /**
+     * Gets the X-RequestId of the last parsed frame. The same String instance is returned for consecutive frames
+     * of one request.
+     *
+     * @return The request id, or null if the frame has none
+     */
+    public String requestId() {
+        if (idLength < 0) {
+            return null;
+        }
+        if (idLength == lastIdLength && equals(frame, idStart, idStart + idLength, lastId, idLength)) {
+            return lastIdString;
+        }
+        if (lastId.length < idLength) {
+            lastId = new byte[idLength];
+        }
+        for (int i = 0; i < idLength; i++) {
+            lastId[i] = frame.get(idStart + i);
+        }
+        lastIdLength = idLength;
+        lastIdString = new String(lastId, 0, idLength, StandardCharsets.US_ASCII);
+        return lastIdString;
+    }
+
+    private static int indexOfCrLf(ByteBuffer frame, int from, int to) {
+        for (int i = from; i < to - 1; i++) {
+            if (frame.get(i) == '\r' && frame.get(i + 1) == '\n') {
+                return i;
+            }
+        }
+        return to;
+    }
+
+    private static boolean startsWith(ByteBuffer frame, int from, int to, byte[] prefix) {
+        return to - from >= prefix.length && regionEquals(frame, from, prefix, prefix.length);
+    }
+
+    private static boolean equals(ByteBuffer frame, int from, int to, byte[] value) {
+        return equals(frame, from, to, value, value.length);
+    }
+
+    private static boolean equals(ByteBuffer frame, int from, int to, byte[] value, int length) {
+        return to - from == length && regionEquals(frame, from, value, length);
+    }
+
+    private static boolean regionEquals(ByteBuffer frame, int from, byte[] value, int length) {
+        for (int i = 0; i < length; i++) {
+            if (frame.get(from + i) != value[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static byte[] ascii(String value) {
+        return value.getBytes(StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,247 @@
+package io.gitctrlx.protocol;
+
+/**
+ * A cursor over a JSON text for the streaming parsers of this package.
+ * <p>
+ * The parsers walk the document themselves, calling {@link #expect} and {@link #consume} for structure and the
+ * read methods for values, and {@link #skipValue} over anything they do not know. Keys are compared in place
+ * with {@link #keyIs}, so no strings are created for them. An instance is reused across documents and is not
+ * thread-safe.
+ */
+final class JsonScanner {
+
+    private final String description;
+    private String json;
+    private int pos;
+    private int keyStart;
+    private int keyEnd;
+
+    /**
+     * @param description What is parsed, for the error messages, e.g. "voice list"
+     */
+    JsonScanner(String description) {
+        this.description = description;
+    }
+
+    /**
+     * Starts scanning a document.
+     *
+     * @param text The text holding the document
+     * @param from The index where the document starts
+     */
+    void reset(String text, int from) {
+        json = text;
+        pos = from;
+    }
+
+    /**
+     * Drops the reference to the current document.
+     */
+    void release() {
+        json = null;
+    }
+
+    /**
+     * Reads an object key and the colon after it, remembering where the key is so it can be compared in place.
+     * Keys of the documents read here contain no escapes, so they are compared as written.
+     */
+    void readKey() {
+        expect('"');
+        keyStart = pos;
+        int end = json.indexOf('"', pos);
+        if (end < 0) {
+            throw malformed();
+        }
+        keyEnd = end;
+        pos = end + 1;
+        expect(':');
+    }
+
+    /**
+     * Whether the key last read by {@link #readKey} is the given one.
+     */
+    boolean keyIs(String key) {
+        return keyEnd - keyStart == key.length() && json.startsWith(key, keyStart);
+    }
+
+    /**
+     * Whether the next value is written exactly as the given JSON literal, e.g. {@code "\"WordBoundary\""}. Nothing
+     * is consumed.
+     */
+    boolean valueIs(String literal) {
+        skipWhitespace();
+        return json.startsWith(literal, pos);
+    }
+
+    long readLong() {
+        skipWhitespace();
+        int start = pos;
+        boolean negative = pos < json.length() && json.charAt(pos) == '-';
+        if (negative) {
+            pos++;
+        }
+        long value = 0;
+        int digits = pos;
+        while (pos < json.length() && json.charAt(pos) >= '0' && json.charAt(pos) <= '9') {
+            value = value * 10 + (json.charAt(pos++) - '0');
+        }
+        if (pos == digits) {
+            throw malformed();
+        }
+        if (pos < json.length() && ".eE".indexOf(json.charAt(pos)) >= 0) {
+            // Not an integer after all; rare enough to go through the library
+            while (pos < json.length() && "+-0123456789.eE".indexOf(json.charAt(pos)) >= 0) {
+                pos++;
+            }
+            try {
+                return (long) Double.parseDouble(json.substring(start, pos));
+            } catch (NumberFormatException e) {
+                throw malformed();
+            }
+        }
+        return negative ? -value : value;
+    }
+
+    /**
+     * Reads a string value. Strings without escapes, i.e. almost all, are cut out of the text in one go.
+     */
+    String readString() {
+        expect('"');
+        int start = pos;
+        StringBuilder decoded = null;
+        while (pos < json.length()) {
+            char c = json.charAt(pos);
+            if (c == '"') {
+                String value = decoded == null ? json.substring(start, pos) : decoded.append(json, start, pos).toString();
+                pos++;
+                return value;
+            }
+            if (c != '\\') {
+                pos++;
+                continue;
+            }
+            if (decoded == null) {
+                decoded = new StringBuilder();
+            }
+            decoded.append(json, start, pos);
+            if (pos + 1 >= json.length()) {
+                break;
+            }
+            char escaped = json.charAt(pos + 1);
+            pos += 2;
+            switch (escaped) {
+                case 'b':
+                    decoded.append('\b');
+                    break;
+                case 'f':
+                    decoded.append('\f');
+                    break;
+                case 'n':
+                    decoded.append('\n');
+                    break;
+                case 'r':
+                    decoded.append('\r');
+                    break;
+                case 't':
+                    decoded.append('\t');
+                    break;
+                case 'u':
+                    if (pos + 4 > json.length()) {
+                        throw malformed();
+                    }
+                    try {
+                        decoded.append((char) Integer.parseInt(json.substring(pos, pos + 4), 16));
+                    } catch (NumberFormatException e) {
+                        throw malformed();
+                    }
+                    pos += 4;
+                    break;
+                default:
+                    decoded.append(escaped); // \" \\ \/
+            }
+            start = pos;
+        }
+        throw malformed();
+    }
+
+    /**
+     * Skips a value of any type, including nested objects and arrays.
+     */
+    void skipValue() {
+        skipWhitespace();
+        if (pos >= json.length()) {
+            throw malformed();
+        }
+        char c = json.charAt(pos);
+        if (c == '"') {
+            readString();
+        } else if (c == '{' || c == '[') {
+            char close = c == '{' ? '}' : ']';
+            pos++;
+            if (consume(close)) {
+                return;
+            }
+            do {
+                if (c == '{') {
+                    readKey();
+                }
+                skipValue();
+            } while (consume(','));
+            expect(close);
+        } else {
+            int start = pos;
+            while (pos < json.length() && ",}] \t\r\n".indexOf(json.charAt(pos)) < 0) {
+                pos++;
+            }
+            if (start == pos) {
+                throw malformed();
+            }
+        }
+    }
+
+    void expect(char c) {
+        if (!consume(c)) {
+            throw malformed();
+        }
+    }
+
+    boolean consume(char c) {
+        if (peek(c)) {
+            pos++;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Whether the next character other than whitespace is the given one. Nothing is consumed.
+     */
+    boolean peek(char c) {
+        skipWhitespace();
+        return pos < json.length() && json.charAt(pos) == c;
+    }
+
+    /**
+     * Checks that nothing but whitespace follows.
+     */
+    void expectEnd() {
+        skipWhitespace();
+        if (pos != json.length()) {
+            throw malformed();
+        }
+    }
+
+    IllegalArgumentException malformed() {
+        return new IllegalArgumentException("Malformed " + description + " at index " + pos);
+    }
+
+    private void skipWhitespace() {
+        while (pos < json.length()) {
+            char c = json.charAt(pos);
+            if (c != ' ' && c != '\t' && c != '\r' && c != '\n') {
+                return;
+            }
+            pos++;
+        }
+    }
+}
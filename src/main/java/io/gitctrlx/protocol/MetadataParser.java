@@ -0,0 +1,144 @@
+package io.gitctrlx.protocol;
+
+import io.gitctrlx.subtitle.WordBoundary;
+
+import java.util.function.Consumer;
+
+/**
+ * Parses the JSON body of {@code audio.metadata} text frames into {@link WordBoundary word boundaries}.
+ * <p>
+ * The body lists boundary events with their audio offsets in ticks of 100 ns:
+ * <pre>
+ * {"Metadata":[{"Type":"WordBoundary","Data":{"Offset":1000000,"Duration":3250000,
+ *     "text":{"Text":"Hello","Length":5,"BoxType":"Word"}}}]}
+ * </pre>
+ * The parser reads the JSON as a stream of tokens straight from the message with a {@link JsonScanner}, matching
+ * keys in place and skipping anything it does not know, so no tree of maps and lists is built; the only allocations
+ * are the word strings and the boundaries themselves. Events other than word and sentence boundaries, e.g. {@code SessionEnd}, are ignored.
+ * <p>
+ * An instance keeps state during a call and is meant to be owned by a single reader thread.
+ */
+public final class MetadataParser {
+
+    private static final long NANOS_PER_TICK = 100;
+
+    private final JsonScanner in = new JsonScanner("audio.metadata body");
+
+    // Fields of the event being read
+    private boolean boundary;
+    private String text;
+    private String boxType;
+    private long offset;
+    private long duration;
+
+    /**
+     * Parses a metadata body and passes every boundary it contains to the consumer, in order.
+     *
+     * @param message  The text frame
+     * @param from     The index in the frame where the JSON body starts
+     * @param consumer Receives the boundaries
+     * @return The number of boundaries found
+     * @throws IllegalArgumentException If the body is not well-formed JSON of the expected shape
+     */
+    public int parse(String message, int from, Consumer<WordBoundary> consumer) {
+        in.reset(message, from);
+        int count = 0;
+        try {
+            in.expect('{');
+            if (!in.consume('}')) {
+                do {
+                    in.readKey();
+                    if (in.keyIs("Metadata")) {
+                        in.expect('[');
+                        if (!in.consume(']')) {
+                            do {
+                                if (readEvent() && text != null) {
+                                    consumer.accept(new WordBoundary(text, boxType, offset * NANOS_PER_TICK,
+                                            duration * NANOS_PER_TICK));
+                                    count++;
+                                }
+                            } while (in.consume(','));
+                            in.expect(']');
+                        }
+                    } else {
+                        in.skipValue();
+                    }
+                } while (in.consume(','));
+                in.expect('}');
+            }
+            return count;
+        } finally {
+            in.release();
+            text = null;
+            boxType = null;
+        }
+    }
+
+    /**
+     * Reads one element of the Metadata array.
+     *
+     * @return true if it is a word or sentence boundary
+     */
+    private boolean readEvent() {
+        boundary = false;
+        text = null;
+        boxType = null;
+        offset = 0;
+        duration = 0;
+        in.expect('{');
+        if (in.consume('}')) {
+            return false;
+        }
+        do {
+            in.readKey();
+            if (in.keyIs("Type")) {
+                boundary = in.valueIs("\"WordBoundary\"") || in.valueIs("\"SentenceBoundary\"");
+                in.skipValue();
+            } else if (in.keyIs("Data")) {
+                readData();
+            } else {
+                in.skipValue();
+            }
+        } while (in.consume(','));
+        in.expect('}');
+        return boundary;
+    }
+
+    private void readData() {
+        in.expect('{');
+        if (in.consume('}')) {
+            return;
+        }
+        do {
+            in.readKey();
+            if (in.keyIs("Offset")) {
+                offset = in.readLong();
+            } else if (in.keyIs("Duration")) {
+                duration = in.readLong();
+            } else if (in.keyIs("text")) {
+                readText();
+            } else {
+                in.skipValue();
+            }
+        } while (in.consume(','));
+        in.expect('}');
+    }
+
+    private void readText() {
+        in.expect('{');
+        if (in.consume('}')) {
+            return;
+        }
+        do {
+            in.readKey();
+            if (in.keyIs("Text")) {
+                text = in.readString();
+            } else if (in.keyIs("BoxType")) {
+                boxType = in.readString();
+            } else {
+                in.skipValue();
+            }
+        } while (in.consume(','));
+        in.expect('}');
+    }
+}
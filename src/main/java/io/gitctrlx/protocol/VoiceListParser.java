@@ -0,0 +1,122 @@
+package io.gitctrlx.protocol;
+
+import io.gitctrlx.voice.Voice;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Parses the JSON voice list of the service into {@link Voice voices}.
+ * <p>
+ * The list is an array of objects like
+ * <pre>
+ * {"Name":"Microsoft Server Speech Text to Speech Voice (en-US, AriaNeural)","ShortName":"en-US-AriaNeural",
+ *  "Gender":"Female","Locale":"en-US","SuggestedCodec":"audio-24khz-48kbitrate-mono-mp3",
+ *  "FriendlyName":"Microsoft Aria Online (Natural) - English (United States)","Status":"GA",
+ *  "VoiceTag":{"ContentCategories":["News","Novel"],"VoicePersonalities":["Positive","Confident"]}}
+ * </pre>
+ * It is read with a {@link JsonScanner} like the metadata frames, and unknown keys are skipped, so fields the
+ * service adds later do no harm. An instance keeps state during a call and is not thread-safe.
+ */
+public final class VoiceListParser {
+
+    private final JsonScanner in = new JsonScanner("voice list");
+
+    /**
+     * Parses a voice list.
+     *
+     * @param text The JSON text, optionally starting with a byte order mark
+     * @return The voices in list order; entries without a short name or locale are left out
+     * @throws IllegalArgumentException If the text is not well-formed JSON of the expected shape
+     */
+    public List<Voice> parse(String text) {
+        in.reset(text, !text.isEmpty() && text.charAt(0) == '\uFEFF' ? 1 : 0);
+        try {
+            List<Voice> voices = new ArrayList<>();
+            in.expect('[');
+            if (!in.consume(']')) {
+                do {
+                    Voice voice = readVoice();
+                    if (voice != null) {
+                        voices.add(voice);
+                    }
+                } while (in.consume(','));
+                in.expect(']');
+            }
+            in.expectEnd();
+            return voices;
+        } finally {
+            in.release();
+        }
+    }
+
+    private Voice readVoice() {
+        String name = null;
+        String shortName = null;
+        String gender = null;
+        String locale = null;
+        String codec = null;
+        String friendlyName = null;
+        String status = null;
+        List<String> categories = Collections.emptyList();
+        List<String> personalities = Collections.emptyList();
+        in.expect('{');
+        if (!in.consume('}')) {
+            do {
+                in.readKey();
+                if (in.keyIs("VoiceTag")) {
+                    in.expect('{');
+                    if (!in.consume('}')) {
+                        do {
+                            in.readKey();
+                            if (in.keyIs("ContentCategories")) {
+                                categories = readStrings();
+                            } else if (in.keyIs("VoicePersonalities")) {
+                                personalities = readStrings();
+                            } else {
+                                in.skipValue();
+                            }
+                        } while (in.consume(','));
+                        in.expect('}');
+                    }
+                } else if (!in.peek('"')) {
+                    in.skipValue();
+                } else if (in.keyIs("Name")) {
+                    name = in.readString();
+                } else if (in.keyIs("ShortName")) {
+                    shortName = in.readString();
+                } else if (in.keyIs("Gender")) {
+                    gender = in.readString();
+                } else if (in.keyIs("Locale")) {
+                    locale = in.readString();
+                } else if (in.keyIs("SuggestedCodec")) {
+                    codec = in.readString();
+                } else if (in.keyIs("FriendlyName")) {
+                    friendlyName = in.readString();
+                } else if (in.keyIs("Status")) {
+                    status = in.readString();
+                } else {
+                    in.skipValue();
+                }
+            } while (in.consume(','));
+            in.expect('}');
+        }
+        if (shortName == null || locale == null) {
+            return null;
+        }
+        return new Voice(shortName, gender, locale, name, friendlyName, codec, status, categories, personalities);
+    }
+
+    private List<String> readStrings() {
+        List<String> values = new ArrayList<>();
+        in.expect('[');
+        if (!in.consume(']')) {
+            do {
+                values.add(in.readString());
+            } while (in.consume(','));
+            in.expect(']');
+        }
+        return values;
+    }
+}
@@ -0,0 +1,31 @@
+package io.gitctrlx.service;
+
+import io.gitctrlx.subtitle.WordBoundary;
+
+import java.nio.ByteBuffer;
+
+/**
+ * The AudioChunkListener interface receives audio as it streams in, one WebSocket frame at a time.
+ * <p>
+ * Chunks are delivered on the connection's reader thread in the order they were received, so implementations
+ * should hand the data off quickly. An exception thrown from {@link #onChunk} fails the synthesis.
+ */
+public interface AudioChunkListener {
+
+    /**
+     * Called for every audio payload as soon as its frame has been decoded.
+     *
+     * @param chunk A read-only view of the payload. It is only valid for the duration of the call;
+     *              copy the bytes out if they are needed later.
+     */
+    void onChunk(ByteBuffer chunk);
+
+    /**
+     * Called for every word boundary, e.g. to highlight the word being spoken. Boundaries arrive interleaved with
+     * the chunks, usually somewhat ahead of the audio they describe. The default implementation does nothing.
+     *
+     * @param boundary The word and its offset in the audio
+     */
+    default void onWordBoundary(WordBoundary boundary) {
+    }
+}
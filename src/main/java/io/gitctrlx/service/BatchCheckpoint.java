@@ -0,0 +1,167 @@
+package io.gitctrlx.service;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The set of completed item indices of a {@link BatchSynthesizer} run, persisted so a crashed run can resume.
+ * <p>
+ * Indices are kept as half-open ranges {@code [start, end)}, so the file stays small while items complete out of
+ * order or fail: one line per range, e.g. {@code 0-1200} followed by {@code 1203-1250}. The file is written to a
+ * temporary file first and moved into place, so a crash while saving leaves the previous checkpoint intact.
+ */
+final class BatchCheckpoint {
+
+    private static final String HEADER = "# tts4j batch checkpoint: completed item ranges [start, end)";
+
+    private final Path file;
+    private final TreeMap<Long, Long> ranges = new TreeMap<>();
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private BatchCheckpoint(Path file) {
+        this.file = file;
+    }
+
+    /**
+     * Loads a checkpoint, or starts an empty one if the file does not exist.
+     *
+     * @param file The checkpoint file, or null to track progress in memory only
+     * @return The checkpoint
+     * @throws IOException If the file cannot be read or is malformed
+     */
+    static BatchCheckpoint load(Path file) throws IOException {
+        BatchCheckpoint checkpoint = new BatchCheckpoint(file);
+        if (file == null || !Files.exists(file)) {
+            return checkpoint;
+        }
+        for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            int dash = line.indexOf('-');
+            try {
+                long start = Long.parseLong(line.substring(0, dash));
+                long end = Long.parseLong(line.substring(dash + 1));
+                if (start < 0 || end < start) {
+                    throw new IllegalArgumentException("bad range");
+                }
+                checkpoint.add(start, end);
+            } catch (RuntimeException e) {
+                throw new IOException("[ERROR] Malformed batch checkpoint line in " + file + ": " + line, e);
+            }
+        }
+        return checkpoint;
+    }
+
+    /**
+     * Whether an item has been completed.
+     *
+     * @param index The item index
+     * @return true if completed
+     */
+    boolean isDone(long index) {
+        lock.lock();
+        try {
+            Map.Entry<Long, Long> range = ranges.floorEntry(index);
+            return range != null && index < range.getValue();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Records an item as completed, merging it with adjacent ranges.
+     *
+     * @param index The item index
+     */
+    void markDone(long index) {
+        lock.lock();
+        try {
+            add(index, index + 1);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Gets the number of leading items that are all complete.
+     *
+     * @return The index of the first item not yet completed
+     */
+    long getWatermark() {
+        lock.lock();
+        try {
+            Map.Entry<Long, Long> first = ranges.firstEntry();
+            return first != null && first.getKey() == 0 ? first.getValue() : 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Adds a range of completed items, merging it with any ranges it overlaps or touches.
+     */
+    private void add(long start, long end) {
+        Map.Entry<Long, Long> before = ranges.floorEntry(start);
+        if (before != null && before.getValue() >= start) {
+            start = before.getKey();
+            end = Math.max(end, before.getValue());
+        }
+        Map.Entry<Long, Long> next;
+        while ((next = ranges.ceilingEntry(start)) != null && next.getKey() <= end) {
+            end = Math.max(end, next.getValue());
+            ranges.remove(next.getKey());
+        }
+        if (start < end) {
+            ranges.put(start, end);
+        }
+    }
+
+    /**
+     * Writes the checkpoint file atomically. Does nothing for an in-memory checkpoint.
+     *
+     * @throws IOException If the file cannot be written
+     */
+    void save() throws IOException {
+        if (file == null) {
+            return;
+        }
+        lock.lock();
+        try {
+            write();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void write() throws IOException {
+        Path parent = file.toAbsolutePath().getParent();
+        Path temp = Files.createTempFile(parent, file.getFileName().toString(), ".tmp");
+        try {
+            try (BufferedWriter writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+                writer.write(HEADER);
+                writer.newLine();
+                for (Map.Entry<Long, Long> range : ranges.entrySet()) {
+                    writer.write(range.getKey() + "-" + range.getValue());
+                    writer.newLine();
+                }
+            }
+            try {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package io.gitctrlx.service;
+
+/**
+ * The BatchListener interface receives the outcome of every item processed by a {@link BatchSynthesizer}.
+ * <p>
+ * Callbacks run on the thread that completed the synthesis, possibly several at once, so implementations must be
+ * thread-safe and should return quickly.
+ */
+public interface BatchListener {
+
+    /**
+     * Called when an item has been synthesised.
+     *
+     * @param index  The position of the item in the input, starting at 0
+     * @param ssml   The item
+     * @param result The synthesis result
+     */
+    default void onSuccess(long index, SSML ssml, SynthesisResult result) {
+    }
+
+    /**
+     * Called when an item failed. Failed items are not recorded in the checkpoint, so a resumed run retries them.
+     *
+     * @param index The position of the item in the input, starting at 0
+     * @param ssml  The item
+     * @param error The failure
+     */
+    default void onFailure(long index, SSML ssml, Throwable error) {
+    }
+}
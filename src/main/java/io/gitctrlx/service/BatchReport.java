@@ -0,0 +1,101 @@
+package io.gitctrlx.service;
+
+import java.time.Duration;
+
+/**
+ * The BatchReport class holds the totals of one {@link BatchSynthesizer} run.
+ */
+public class BatchReport {
+
+    private final long succeeded;
+    private final long failed;
+    private final long skipped;
+    private final long audioBytes;
+    private final long elapsedNanos;
+
+    /**
+     * Constructor that initializes the report with the specified totals.
+     *
+     * @param succeeded    Number of items synthesised
+     * @param failed       Number of items that failed
+     * @param skipped      Number of items skipped because the checkpoint recorded them as done
+     * @param audioBytes   Total audio bytes produced
+     * @param elapsedNanos Wall time of the run, in nanoseconds
+     */
+    BatchReport(long succeeded, long failed, long skipped, long audioBytes, long elapsedNanos) {
+        this.succeeded = succeeded;
+        this.failed = failed;
+        this.skipped = skipped;
+        this.audioBytes = audioBytes;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    /**
+     * Gets the number of items synthesised in this run.
+     *
+     * @return The success count.
+     */
+    public long getSucceeded() {
+        return succeeded;
+    }
+
+    /**
+     * Gets the number of items that failed in this run.
+     *
+     * @return The failure count.
+     */
+    public long getFailed() {
+        return failed;
+    }
+
+    /**
+     * Gets the number of items skipped because an earlier run had completed them.
+     *
+     * @return The skip count.
+     */
+    public long getSkipped() {
+        return skipped;
+    }
+
+    /**
+     * Gets the total audio bytes produced in this run.
+     *
+     * @return The audio size in bytes.
+     */
+    public long getAudioBytes() {
+        return audioBytes;
+    }
+
+    /**
+     * Gets the wall time of the run.
+     *
+     * @return The elapsed time.
+     */
+    public Duration getElapsed() {
+        return Duration.ofNanos(elapsedNanos);
+    }
+
+    /**
+     * Gets the number of items synthesised or failed per second of wall time.
+     *
+     * @return The throughput in items per second.
+     */
+    public double getItemsPerSecond() {
+        return elapsedNanos == 0 ? 0 : (succeeded + failed) * 1e9 / elapsedNanos;
+    }
+
+    /**
+     * Gets the audio bytes produced per second of wall time.
+     *
+     * @return The throughput in bytes per second.
+     */
+    public double getBytesPerSecond() {
+        return elapsedNanos == 0 ? 0 : audioBytes * 1e9 / elapsedNanos;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("BatchReport{succeeded=%d, failed=%d, skipped=%d, audioBytes=%d, elapsed=%s, itemsPerSecond=%.1f}",
+                succeeded, failed, skipped, audioBytes, getElapsed(), getItemsPerSecond());
+    }
+}
@@ -0,0 +1,285 @@
+package io.gitctrlx.service;
+
+import io.gitctrlx.audio.AudioSink;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * Synthesises a large sequence of SSML items with bounded concurrency.
+ * <p>
+ * Items are pulled from the input one at a time, and only when fewer than the configured number are in flight, so
+ * a lazily produced {@link Stream} or {@link Iterator} is never materialised. Each outcome is reported to a
+ * {@link BatchListener}, and {@link #run} returns the totals and throughput.
+ * <p>
+ * With a checkpoint file, the indices of completed items are saved periodically and when the run ends. A later run
+ * over the same input in the same order skips them, so a job that crashed resumes where it left off. Failed items
+ * are not recorded and are retried.
+ */
+public final class BatchSynthesizer {
+
+    private static final Logger log = LoggerFactory.getLogger(BatchSynthesizer.class);
+
+    private final TTSService service;
+    private final int concurrency;
+    private final Path checkpoint;
+    private final int checkpointInterval;
+    private final Function<SSML, AudioSink> sinkFactory;
+    private final BatchListener listener;
+    private final Duration timeout;
+
+    /**
+     * Constructor that initializes the synthesizer from a builder.
+     *
+     * @param builder The builder holding the settings
+     */
+    private BatchSynthesizer(BatchSynthesizerBuilder builder) {
+        this.service = builder.service;
+        this.concurrency = builder.concurrency > 0 ? builder.concurrency : service.getCapacity();
+        this.checkpoint = builder.checkpoint;
+        this.checkpointInterval = builder.checkpointInterval;
+        this.sinkFactory = builder.sinkFactory;
+        this.listener = builder.listener;
+        this.timeout = builder.timeout;
+    }
+
+    /**
+     * Static factory method that returns an instance of BatchSynthesizerBuilder.
+     *
+     * @param service The service to synthesise with
+     * @return An instance of BatchSynthesizerBuilder.
+     */
+    public static BatchSynthesizerBuilder builder(TTSService service) {
+        return new BatchSynthesizerBuilder(Objects.requireNonNull(service, "service"));
+    }
+
+    /**
+     * Synthesises every item of a stream and waits for all of them to finish. The stream is consumed lazily.
+     *
+     * @param items The items
+     * @return The totals of the run
+     * @throws IOException          If the checkpoint cannot be read or written
+     * @throws InterruptedException If the calling thread is interrupted; items already submitted keep running
+     */
+    public BatchReport run(Stream<SSML> items) throws IOException, InterruptedException {
+        return run(items.iterator());
+    }
+
+    /**
+     * Synthesises every item of an iterator and waits for all of them to finish.
+     *
+     * @param items The items
+     * @return The totals of the run
+     * @throws IOException          If the checkpoint cannot be read or written
+     * @throws InterruptedException If the calling thread is interrupted; items already submitted keep running
+     */
+    public BatchReport run(Iterator<SSML> items) throws IOException, InterruptedException {
+        BatchCheckpoint done = BatchCheckpoint.load(checkpoint);
+        if (done.getWatermark() > 0) {
+            log.info("[INFO] Resuming batch: the first {} items are already done", done.getWatermark());
+        }
+        Run run = new Run(done);
+        Semaphore permits = new Semaphore(concurrency);
+        long index = 0;
+        long skipped = 0;
+        try {
+            while (true) {
+                permits.acquire();
+                if (!items.hasNext()) {
+                    permits.release();
+                    break;
+                }
+                SSML ssml = items.next();
+                long current = index++;
+                if (done.isDone(current)) {
+                    skipped++;
+                    permits.release();
+                    continue;
+                }
+                run.submit(current, ssml).whenComplete((result, e) -> {
+                    try {
+                        run.completed(current, ssml, result, e);
+                    } finally {
+                        permits.release();
+                    }
+                });
+            }
+            permits.acquire(concurrency); // Wait for the tail
+            permits.release(concurrency);
+        } finally {
+            done.save();
+        }
+        return new BatchReport(run.succeeded.get(), run.failed.get(), skipped, run.audioBytes.get(),
+                System.nanoTime() - run.startNanos);
+    }
+
+    /**
+     * Counters and checkpoint of one run.
+     */
+    private final class Run {
+        private final BatchCheckpoint done;
+        private final long startNanos = System.nanoTime();
+        private final AtomicLong succeeded = new AtomicLong();
+        private final AtomicLong failed = new AtomicLong();
+        private final AtomicLong audioBytes = new AtomicLong();
+        private final AtomicInteger unsaved = new AtomicInteger();
+
+        private Run(BatchCheckpoint done) {
+            this.done = done;
+        }
+
+        private CompletableFuture<SynthesisResult> submit(long index, SSML ssml) {
+            try {
+                AudioSink sink = sinkFactory.apply(ssml);
+                return timeout == null ? service.synthesizeAsync(ssml, sink) : service.synthesizeAsync(ssml, sink, timeout);
+            } catch (RuntimeException e) {
+                CompletableFuture<SynthesisResult> future = new CompletableFuture<>();
+                future.completeExceptionally(e);
+                return future;
+            }
+        }
+
+        private void completed(long index, SSML ssml, SynthesisResult result, Throwable e) {
+            if (e != null) {
+                failed.incrementAndGet();
+                Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                try {
+                    listener.onFailure(index, ssml, cause);
+                } catch (RuntimeException ex) {
+                    log.warn("[WARN] Batch listener failed for item {}", index, ex);
+                }
+                return;
+            }
+            succeeded.incrementAndGet();
+            audioBytes.addAndGet(result.getAudioLength());
+            done.markDone(index);
+            try {
+                listener.onSuccess(index, ssml, result);
+            } catch (RuntimeException ex) {
+                log.warn("[WARN] Batch listener failed for item {}", index, ex);
+            }
+            if (unsaved.incrementAndGet() >= checkpointInterval) {
+                unsaved.set(0);
+                try {
+                    done.save();
+                } catch (IOException ex) {
+                    log.warn("[WARN] Failed to save batch checkpoint: {}", ex.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * The BatchSynthesizerBuilder class is used to build BatchSynthesizer objects.
+     */
+    public static class BatchSynthesizerBuilder {
+        private final TTSService service;
+        private int concurrency;
+        private Path checkpoint;
+        private int checkpointInterval = 100;
+        private Function<SSML, AudioSink> sinkFactory = ssml -> AudioSink.toFile(TTSService.outputFileName(ssml));
+        private BatchListener listener = new BatchListener() {
+        };
+        private Duration timeout;
+
+        private BatchSynthesizerBuilder(TTSService service) {
+            this.service = service;
+        }
+
+        /**
+         * Sets how many items may be in flight at once. Defaults to the service's capacity.
+         *
+         * @param concurrency The concurrency limit, at least 1.
+         * @return An instance of BatchSynthesizerBuilder.
+         */
+        public BatchSynthesizerBuilder concurrency(int concurrency) {
+            if (concurrency < 1) {
+                throw new IllegalArgumentException("concurrency must be at least 1");
+            }
+            this.concurrency = concurrency;
+            return this;
+        }
+
+        /**
+         * Sets the checkpoint file used to resume an interrupted run. It is created if it does not exist.
+         *
+         * @param checkpoint The checkpoint file, or null to disable checkpointing.
+         * @return An instance of BatchSynthesizerBuilder.
+         */
+        public BatchSynthesizerBuilder checkpoint(Path checkpoint) {
+            this.checkpoint = checkpoint;
+            return this;
+        }
+
+        /**
+         * Sets after how many completed items the checkpoint is saved.
+         *
+         * @param checkpointInterval The number of items between saves, at least 1.
+         * @return An instance of BatchSynthesizerBuilder.
+         */
+        public BatchSynthesizerBuilder checkpointInterval(int checkpointInterval) {
+            if (checkpointInterval < 1) {
+                throw new IllegalArgumentException("checkpointInterval must be at least 1");
+            }
+            this.checkpointInterval = checkpointInterval;
+            return this;
+        }
+
+        /**
+         * Sets where each item's audio goes. By default it is written to the item's output file, as
+         * {@link TTSService#sendText} does; items without one get a file name of their own. Items given the same
+         * output file overwrite each other.
+         *
+         * @param sinkFactory Creates the sink for an item.
+         * @return An instance of BatchSynthesizerBuilder.
+         */
+        public BatchSynthesizerBuilder sinkFactory(Function<SSML, AudioSink> sinkFactory) {
+            this.sinkFactory = Objects.requireNonNull(sinkFactory, "sinkFactory");
+            return this;
+        }
+
+        /**
+         * Sets the listener notified of each item's outcome.
+         *
+         * @param listener The listener.
+         * @return An instance of BatchSynthesizerBuilder.
+         */
+        public BatchSynthesizerBuilder listener(BatchListener listener) {
+            this.listener = Objects.requireNonNull(listener, "listener");
+            return this;
+        }
+
+        /**
+         * Sets a timeout for each item, including the time it waits for a connection.
+         *
+         * @param timeout The per-item timeout, or null for none.
+         * @return An instance of BatchSynthesizerBuilder.
+         */
+        public BatchSynthesizerBuilder timeout(Duration timeout) {
+            this.timeout = timeout;
+            return this;
+        }
+
+        /**
+         * Builds the BatchSynthesizer object.
+         *
+         * @return An instance of BatchSynthesizer.
+         */
+        public BatchSynthesizer build() {
+            return new BatchSynthesizer(this);
+        }
+    }
+}
@@ -0,0 +1,193 @@
+package io.gitctrlx.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Stops sending requests to a speech service that keeps failing.
+ * <p>
+ * After the configured number of consecutive {@link io.gitctrlx.exceptions.TtsException#isRetryable() transient}
+ * failures or request timeouts the breaker opens, and every request fails at once instead of queueing behind
+ * connections that will not recover. Requests cancelled by the caller are not counted. Once the open duration has passed, a single probe request is let through: if it succeeds the
+ * breaker closes again, if it fails the breaker stays open for another period. Should the probe never report
+ * back, another one is let through after a further open duration.
+ */
+public final class CircuitBreaker {
+
+    private static final Logger log = LoggerFactory.getLogger(CircuitBreaker.class);
+
+    /**
+     * The states of a circuit breaker.
+     */
+    public enum State {
+        /**
+         * Requests pass.
+         */
+        CLOSED,
+        /**
+         * Requests are rejected.
+         */
+        OPEN,
+        /**
+         * A probe request is under way; other requests are rejected until it reports back.
+         */
+        HALF_OPEN
+    }
+
+    private final int failureThreshold;
+    private final long openNanos;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final AtomicLong rejected = new AtomicLong();
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    private long openedNanos;
+
+    /**
+     * Constructor that initializes the breaker from a builder.
+     *
+     * @param builder The builder holding the settings
+     */
+    private CircuitBreaker(CircuitBreakerBuilder builder) {
+        this.failureThreshold = builder.failureThreshold;
+        this.openNanos = builder.openDuration.toNanos();
+    }
+
+    /**
+     * Static factory method that returns an instance of CircuitBreakerBuilder.
+     *
+     * @return An instance of CircuitBreakerBuilder.
+     */
+    public static CircuitBreakerBuilder builder() {
+        return new CircuitBreakerBuilder();
+    }
+
+    /**
+     * Asks whether a request may be sent.
+     *
+     * @return true if the request may go ahead
+     */
+    boolean tryAcquire() {
+        lock.lock();
+        try {
+            if (state == State.CLOSED) {
+                return true;
+            }
+            long now = System.nanoTime();
+            if (now - openedNanos >= openNanos) {
+                state = State.HALF_OPEN;
+                openedNanos = now; // Let the next probe through one period later if this one never reports
+                return true;
+            }
+            rejected.incrementAndGet();
+            return false;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Records a request that reached the service successfully.
+     */
+    void onSuccess() {
+        lock.lock();
+        try {
+            if (state != State.CLOSED) {
+                log.info("[INFO] Circuit breaker closed");
+            }
+            state = State.CLOSED;
+            consecutiveFailures = 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Records a transient failure of the service, or a request it did not complete within the caller's timeout.
+     */
+    void onFailure() {
+        lock.lock();
+        try {
+            consecutiveFailures++;
+            if (state == State.HALF_OPEN || (state == State.CLOSED && consecutiveFailures >= failureThreshold)) {
+                log.warn("[WARN] Circuit breaker opened after {} consecutive failures", consecutiveFailures);
+                state = State.OPEN;
+                openedNanos = System.nanoTime();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Gets the current state.
+     *
+     * @return The state
+     */
+    public State getState() {
+        lock.lock();
+        try {
+            return state;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Gets the number of requests rejected because the breaker was open.
+     *
+     * @return The rejected count
+     */
+    public long getRejectedCount() {
+        return rejected.get();
+    }
+
+    /**
+     * The CircuitBreakerBuilder class is used to build CircuitBreaker objects.
+     */
+    public static class CircuitBreakerBuilder {
+        private int failureThreshold = 5;
+        private Duration openDuration = Duration.ofSeconds(30);
+
+        private CircuitBreakerBuilder() {
+        }
+
+        /**
+         * Sets how many consecutive transient failures open the breaker.
+         *
+         * @param failureThreshold The failure threshold, at least 1.
+         * @return An instance of CircuitBreakerBuilder.
+         */
+        public CircuitBreakerBuilder failureThreshold(int failureThreshold) {
+            if (failureThreshold < 1) {
+                throw new IllegalArgumentException("failureThreshold must be at least 1");
+            }
+            this.failureThreshold = failureThreshold;
+            return this;
+        }
+
+        /**
+         * Sets how long the breaker stays open before it lets a probe request through.
+         *
+         * @param openDuration The open duration.
+         * @return An instance of CircuitBreakerBuilder.
+         */
+        public CircuitBreakerBuilder openDuration(Duration openDuration) {
+            this.openDuration = Objects.requireNonNull(openDuration, "openDuration");
+            return this;
+        }
+
+        /**
+         * Builds the CircuitBreaker object.
+         *
+         * @return An instance of CircuitBreaker.
+         */
+        public CircuitBreaker build() {
+            return new CircuitBreaker(this);
+        }
+    }
+}
@@ -0,0 +1,234 @@
+package io.gitctrlx.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Adapts how many syntheses are in flight at once to what the service sustains (AIMD).
+ * <p>
+ * The limit grows by about one for every limit's worth of healthy completions, and is cut by the backoff ratio
+ * when a synthesis fails transiently or times out, or when the recent average time to first byte exceeds the
+ * latency tolerance times its lowest recent value. Throughput therefore climbs until latency starts to rise,
+ * which happens before the service begins to reject connections, and backs off from there. Requests over the
+ * limit wait in the pool queue; the pool's capacity is the upper bound either way.
+ */
+public final class ConcurrencyLimiter {
+
+    private static final Logger log = LoggerFactory.getLogger(ConcurrencyLimiter.class);
+
+    /**
+     * Weight of a new sample in the recent average time to first byte.
+     */
+    private static final double SMOOTHING = 0.1;
+
+    /**
+     * How quickly the latency baseline follows a higher average, so that it recovers if the service gets slower
+     * for good.
+     */
+    private static final double BASELINE_DRIFT = 0.01;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final double backoffRatio;
+    private final double latencyTolerance;
+    private final ReentrantLock lock = new ReentrantLock();
+    private double limit;
+    private double averageNanos = -1;
+    private double baselineNanos = -1;
+    private long lastDecreaseNanos;
+
+    /**
+     * Constructor that initializes the limiter from a builder.
+     *
+     * @param builder The builder holding the settings
+     */
+    private ConcurrencyLimiter(ConcurrencyLimiterBuilder builder) {
+        this.minLimit = builder.minLimit;
+        this.maxLimit = Math.max(builder.maxLimit, builder.minLimit);
+        this.backoffRatio = builder.backoffRatio;
+        this.latencyTolerance = builder.latencyTolerance;
+        this.limit = Math.min(Math.max(builder.initialLimit, minLimit), maxLimit);
+    }
+
+    /**
+     * Static factory method that returns an instance of ConcurrencyLimiterBuilder.
+     *
+     * @return An instance of ConcurrencyLimiterBuilder.
+     */
+    public static ConcurrencyLimiterBuilder builder() {
+        return new ConcurrencyLimiterBuilder();
+    }
+
+    /**
+     * Gets the current limit.
+     *
+     * @return The number of syntheses that may be in flight at once
+     */
+    public int getLimit() {
+        lock.lock();
+        try {
+            return (int) limit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Records a completed synthesis.
+     *
+     * @param firstByteNanos Its time to first byte in nanoseconds, or -1 if it had no audio
+     * @param inFlight       The number of syntheses in flight when it completed, itself included
+     */
+    void onSuccess(long firstByteNanos, int inFlight) {
+        lock.lock();
+        try {
+            if (firstByteNanos >= 0) {
+                averageNanos = averageNanos < 0 ? firstByteNanos : averageNanos + (firstByteNanos - averageNanos) * SMOOTHING;
+                if (baselineNanos < 0 || averageNanos < baselineNanos) {
+                    baselineNanos = averageNanos;
+                } else {
+                    baselineNanos += (averageNanos - baselineNanos) * BASELINE_DRIFT;
+                }
+                if (averageNanos > baselineNanos * latencyTolerance) {
+                    decrease("latency");
+                    return;
+                }
+            }
+            if (inFlight >= (int) limit) {
+                limit = Math.min(maxLimit, limit + 1 / limit); // Only grow while the limit is actually in use
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Records a synthesis that failed transiently or timed out.
+     */
+    void onDrop() {
+        lock.lock();
+        try {
+            decrease("failure");
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Cuts the limit, at most once per baseline latency so that one burst of slow responses counts once. Must be
+     * called with the lock held.
+     */
+    private void decrease(String reason) {
+        long now = System.nanoTime();
+        if (now - lastDecreaseNanos < Math.max(baselineNanos, 0)) {
+            return;
+        }
+        lastDecreaseNanos = now;
+        double previous = limit;
+        limit = Math.max(minLimit, limit * backoffRatio);
+        if ((int) previous != (int) limit) {
+            log.debug("Concurrency limit {} -> {} ({})", (int) previous, (int) limit, reason);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "ConcurrencyLimiter{limit=" + getLimit() + ", minLimit=" + minLimit + ", maxLimit=" + maxLimit + "}";
+    }
+
+    /**
+     * The ConcurrencyLimiterBuilder class is used to build ConcurrencyLimiter objects.
+     */
+    public static class ConcurrencyLimiterBuilder {
+        private int initialLimit = 4;
+        private int minLimit = 1;
+        private int maxLimit = 256;
+        private double backoffRatio = 0.9;
+        private double latencyTolerance = 2.0;
+
+        private ConcurrencyLimiterBuilder() {
+        }
+
+        /**
+         * Sets the limit to start from.
+         *
+         * @param initialLimit The initial limit, at least 1.
+         * @return An instance of ConcurrencyLimiterBuilder.
+         */
+        public ConcurrencyLimiterBuilder initialLimit(int initialLimit) {
+            if (initialLimit < 1) {
+                throw new IllegalArgumentException("initialLimit must be at least 1");
+            }
+            this.initialLimit = initialLimit;
+            return this;
+        }
+
+        /**
+         * Sets the lowest the limit may fall to.
+         *
+         * @param minLimit The minimum limit, at least 1.
+         * @return An instance of ConcurrencyLimiterBuilder.
+         */
+        public ConcurrencyLimiterBuilder minLimit(int minLimit) {
+            if (minLimit < 1) {
+                throw new IllegalArgumentException("minLimit must be at least 1");
+            }
+            this.minLimit = minLimit;
+            return this;
+        }
+
+        /**
+         * Sets the highest the limit may grow to. The pool's capacity caps it as well.
+         *
+         * @param maxLimit The maximum limit, at least 1.
+         * @return An instance of ConcurrencyLimiterBuilder.
+         */
+        public ConcurrencyLimiterBuilder maxLimit(int maxLimit) {
+            if (maxLimit < 1) {
+                throw new IllegalArgumentException("maxLimit must be at least 1");
+            }
+            this.maxLimit = maxLimit;
+            return this;
+        }
+
+        /**
+         * Sets the factor the limit is multiplied by when the service shows strain.
+         *
+         * @param backoffRatio The backoff ratio, between 0.5 and 1 exclusive.
+         * @return An instance of ConcurrencyLimiterBuilder.
+         */
+        public ConcurrencyLimiterBuilder backoffRatio(double backoffRatio) {
+            if (!(backoffRatio >= 0.5 && backoffRatio < 1)) {
+                throw new IllegalArgumentException("backoffRatio must be at least 0.5 and less than 1");
+            }
+            this.backoffRatio = backoffRatio;
+            return this;
+        }
+
+        /**
+         * Sets how many times its lowest recent value the average time to first byte may reach before it counts
+         * as a sign of overload.
+         *
+         * @param latencyTolerance The tolerance, greater than 1.
+         * @return An instance of ConcurrencyLimiterBuilder.
+         */
+        public ConcurrencyLimiterBuilder latencyTolerance(double latencyTolerance) {
+            if (!(latencyTolerance > 1)) {
+                throw new IllegalArgumentException("latencyTolerance must be greater than 1");
+            }
+            this.latencyTolerance = latencyTolerance;
+            return this;
+        }
+
+        /**
+         * Builds the ConcurrencyLimiter object.
+         *
+         * @return An instance of ConcurrencyLimiter.
+         */
+        public ConcurrencyLimiter build() {
+            return new ConcurrencyLimiter(this);
+        }
+    }
+}
@@ -0,0 +1,214 @@
+package io.gitctrlx.service;
+
+import io.gitctrlx.audio.AudioSink;
+import io.gitctrlx.constant.OutputFormat;
+import io.gitctrlx.subtitle.WordBoundary;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * One synthesis attempt under a {@link HedgingPolicy}: the original request, plus a copy sent if the original has
+ * not started within the hedge delay.
+ * <p>
+ * The copy that delivers audio first wins and is the only one whose audio reaches the sink; the other is
+ * withdrawn at that moment. The attempt fails once every copy sent has failed before either won, or when the
+ * winner fails. The sink is never aborted here; that is left to {@link RetryingSynthesis}.
+ */
+final class HedgedSynthesis {
+
+    private static final Logger log = LoggerFactory.getLogger(HedgedSynthesis.class);
+
+    private final TtsClientPool pool;
+    private final HedgingPolicy policy;
+    private final SSML ssml;
+    private final AudioSink sink;
+    private final CompletableFuture<SynthesisResult> future = new CompletableFuture<>();
+    private final AtomicReference<Leg> winner = new AtomicReference<>();
+    private final ReentrantLock lock = new ReentrantLock();
+    private volatile Leg primary;
+    private volatile Leg hedge;
+    private int failed;
+    private ScheduledFuture<?> timer;
+
+    /**
+     * @param pool   The pool the copies run on
+     * @param policy The hedging policy
+     * @param ssml   The SSML text
+     * @param sink   The sink the winner's audio goes to
+     */
+    HedgedSynthesis(TtsClientPool pool, HedgingPolicy policy, SSML ssml, AudioSink sink) {
+        this.pool = pool;
+        this.policy = policy;
+        this.ssml = ssml;
+        this.sink = sink;
+    }
+
+    /**
+     * Gets the future of the attempt. Completing it withdraws every copy still running.
+     *
+     * @return The future
+     */
+    CompletableFuture<SynthesisResult> future() {
+        return future;
+    }
+
+    /**
+     * Sends the original request and arms the hedge timer.
+     *
+     * @param delayNanos How long to wait before sending the original, e.g. a retry backoff
+     */
+    void start(long delayNanos) {
+        policy.onRequest();
+        future.whenComplete((result, e) -> {
+            lock.lock();
+            try {
+                if (timer != null) {
+                    timer.cancel(false);
+                }
+            } finally {
+                lock.unlock();
+            }
+            withdraw(primary);
+            withdraw(hedge);
+        });
+        lock.lock();
+        try {
+            primary = send(delayNanos);
+            timer = pool.getScheduler().schedule(this::hedge, Math.max(delayNanos, 0) + policy.getDelayNanos(),
+                    TimeUnit.NANOSECONDS);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Sends the copy if the original has not started, a connection is free and the budget allows it.
+     */
+    private void hedge() {
+        lock.lock();
+        try {
+            if (future.isDone() || winner.get() != null || primary.request.started || failed > 0) {
+                return;
+            }
+            if (pool.getQueueDepth() > 0) {
+                return; // No spare connection; a copy would only queue behind the original
+            }
+            if (!policy.tryHedge()) {
+                return;
+            }
+            log.debug("No response within the hedge delay, sending a hedged request");
+            hedge = send(0);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Submits one copy of the request. Must be called with the lock held.
+     */
+    private Leg send(long delayNanos) {
+        Leg leg = new Leg();
+        leg.request = new SynthesisRequest(ssml, leg);
+        leg.request.future.whenComplete((result, e) -> completed(leg, result, e));
+        pool.submit(leg.request, delayNanos);
+        return leg;
+    }
+
+    /**
+     * Handles the outcome of one copy.
+     */
+    private void completed(Leg leg, SynthesisResult result, Throwable e) {
+        Leg won = winner.get();
+        if (won == null && e == null) {
+            won = winner.compareAndSet(null, leg) ? leg : winner.get(); // Finished without audio
+        }
+        if (won == leg) {
+            if (e == null) {
+                future.complete(result);
+            } else {
+                future.completeExceptionally(e);
+            }
+            return;
+        }
+        if (won != null || e == null) {
+            return; // The loser
+        }
+        lock.lock();
+        try {
+            failed++;
+            if (failed < (hedge == null ? 1 : 2)) {
+                return; // The other copy is still running
+            }
+        } finally {
+            lock.unlock();
+        }
+        future.completeExceptionally(e);
+    }
+
+    /**
+     * Makes a copy the winner when it delivers the first audio, and withdraws the other one.
+     *
+     * @return true if the leg is the winner
+     */
+    private boolean claim(Leg leg) {
+        if (winner.get() == null && winner.compareAndSet(null, leg)) {
+            if (leg == hedge) {
+                policy.onHedgeWon();
+            }
+            withdraw(leg == primary ? hedge : primary);
+        }
+        return winner.get() == leg;
+    }
+
+    private static void withdraw(Leg leg) {
+        if (leg != null) {
+            leg.request.future.cancel(false);
+        }
+    }
+
+    /**
+     * The sink of one copy. Only the winner's calls reach the real sink.
+     */
+    private final class Leg implements AudioSink {
+        private SynthesisRequest request;
+        private boolean won;
+
+        @Override
+        public void begin(OutputFormat format) throws IOException {
+            won = claim(this);
+            if (won) {
+                sink.begin(format);
+            }
+        }
+
+        @Override
+        public void write(ByteBuffer chunk) throws IOException {
+            if (won) {
+                sink.write(chunk);
+            }
+        }
+
+        @Override
+        public void wordBoundary(WordBoundary boundary) throws IOException {
+            if (won) {
+                sink.wordBoundary(boundary);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (won) {
+                sink.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package io.gitctrlx.service;
+
+import java.time.Duration;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Sends a second copy of a slow synthesis to cut tail latency.
+ * <p>
+ * If neither {@code turn.start} nor any audio has arrived for a request within the hedge delay, the same SSML is
+ * sent again, normally on another connection, and whichever copy delivers audio first is kept; the other is
+ * withdrawn. Hedges are budgeted: no more are sent than the configured fraction of all requests so far, so a
+ * generally slow service is not loaded with duplicates. The counters show how often hedges were sent and won,
+ * which is what the delay and budget are tuned by.
+ */
+public final class HedgingPolicy {
+
+    private final long delayNanos;
+    private final double maxExtraLoad;
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong hedges = new AtomicLong();
+    private final AtomicLong wins = new AtomicLong();
+
+    /**
+     * Constructor that initializes the policy from a builder.
+     *
+     * @param builder The builder holding the settings
+     */
+    private HedgingPolicy(HedgingPolicyBuilder builder) {
+        this.delayNanos = builder.delay.toNanos();
+        this.maxExtraLoad = builder.maxExtraLoad;
+    }
+
+    /**
+     * Static factory method that returns an instance of HedgingPolicyBuilder.
+     *
+     * @return An instance of HedgingPolicyBuilder.
+     */
+    public static HedgingPolicyBuilder builder() {
+        return new HedgingPolicyBuilder();
+    }
+
+    /**
+     * Gets how long a request may go without a response before it is hedged.
+     *
+     * @return The hedge delay in nanoseconds
+     */
+    long getDelayNanos() {
+        return delayNanos;
+    }
+
+    /**
+     * Counts a request that may be hedged.
+     */
+    void onRequest() {
+        requests.incrementAndGet();
+    }
+
+    /**
+     * Takes a hedge from the budget.
+     *
+     * @return true if the budget allows another hedge
+     */
+    boolean tryHedge() {
+        while (true) {
+            long sent = hedges.get();
+            if (sent + 1 > maxExtraLoad * requests.get()) {
+                return false;
+            }
+            if (hedges.compareAndSet(sent, sent + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Counts a hedge that delivered audio before the original request.
+     */
+    void onHedgeWon() {
+        wins.incrementAndGet();
+    }
+
+    /**
+     * Gets the number of requests the policy has seen.
+     *
+     * @return The request count
+     */
+    public long getRequestCount() {
+        return requests.get();
+    }
+
+    /**
+     * Gets the number of hedges sent.
+     *
+     * @return The hedge count
+     */
+    public long getHedgeCount() {
+        return hedges.get();
+    }
+
+    /**
+     * Gets the number of hedges that delivered audio before the original request.
+     *
+     * @return The count of hedges that won
+     */
+    public long getHedgeWinCount() {
+        return wins.get();
+    }
+
+    @Override
+    public String toString() {
+        return "HedgingPolicy{delay=" + Duration.ofNanos(delayNanos) + ", maxExtraLoad=" + maxExtraLoad
+                + ", requests=" + requests + ", hedges=" + hedges + ", wins=" + wins + "}";
+    }
+
+    /**
+     * The HedgingPolicyBuilder class is used to build HedgingPolicy objects.
+     */
+    public static class HedgingPolicyBuilder {
+        private Duration delay = Duration.ofMillis(500);
+        private double maxExtraLoad = 0.05;
+
+        private HedgingPolicyBuilder() {
+        }
+
+        /**
+         * Sets how long a request may go without {@code turn.start} or audio before it is hedged. A value near
+         * the observed p95 time to first byte is a good start.
+         *
+         * @param delay The hedge delay.
+         * @return An instance of HedgingPolicyBuilder.
+         */
+        public HedgingPolicyBuilder delay(Duration delay) {
+            this.delay = Objects.requireNonNull(delay, "delay");
+            return this;
+        }
+
+        /**
+         * Sets the extra load hedging may add, as a fraction of all requests, e.g. 0.05 for at most one hedge per
+         * twenty requests.
+         *
+         * @param maxExtraLoad The hedge budget, between 0 and 1.
+         * @return An instance of HedgingPolicyBuilder.
+         */
+        public HedgingPolicyBuilder maxExtraLoad(double maxExtraLoad) {
+            if (!(maxExtraLoad >= 0 && maxExtraLoad <= 1)) {
+                throw new IllegalArgumentException("maxExtraLoad must be between 0 and 1");
+            }
+            this.maxExtraLoad = maxExtraLoad;
+            return this;
+        }
+
+        /**
+         * Builds the HedgingPolicy object.
+         *
+         * @return An instance of HedgingPolicy.
+         */
+        public HedgingPolicy build() {
+            return new HedgingPolicy(this);
+        }
+    }
+}
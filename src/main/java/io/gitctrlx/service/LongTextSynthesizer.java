@@ -0,0 +1,471 @@
+package io.gitctrlx.service;
+
+import io.gitctrlx.audio.AudioJoiner;
+import io.gitctrlx.audio.AudioSink;
+import io.gitctrlx.audio.MemoryAudioSink;
+import io.gitctrlx.audio.pcm.PcmFormat;
+import io.gitctrlx.constant.OutputFormat;
+import io.gitctrlx.exceptions.TtsException;
+import io.gitctrlx.subtitle.WordBoundary;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Synthesises text too long for a single request.
+ * <p>
+ * The text is split on paragraph and sentence boundaries, recognising both CJK and Latin punctuation, into chunks
+ * of at most the configured length. Each chunk becomes an {@link SSML} with the original voice, rate, volume and
+ * output format, the chunks are synthesised concurrently across the service's connections, and their audio is
+ * written to the sink in text order as soon as every earlier chunk is done. At most {@code maxConcurrentChunks}
+ * chunks are running or held in memory waiting for an earlier one, so a slow chunk stalls submission rather than
+ * letting the rest of the text pile up.
+ * <p>
+ * MP3 and raw chunks are joined byte by byte, which yields a playable stream. Chunks in a container, i.e. Ogg,
+ * WebM or AMR, are joined by an {@link AudioJoiner} into a single stream, since each carries its own headers.
+ * <p>
+ * The word boundaries of each chunk are passed to the sink with their offsets shifted by the playing time of the
+ * chunks before it, so subtitles stay in step with the joined audio. That time comes from the byte count at the
+ * format's constant bitrate for MP3 and raw audio, and from the joiner for Ogg and WebM. AMR-WB carries no timing
+ * the joiner reads, so there the shift is where the last boundary of the earlier chunks ended, which falls short
+ * by the silence after it.
+ */
+public final class LongTextSynthesizer {
+
+    private static final Logger log = LoggerFactory.getLogger(LongTextSynthesizer.class);
+
+    /**
+     * The default maximum number of characters per chunk.
+     */
+    public static final int DEFAULT_MAX_CHUNK_LENGTH = 500;
+
+    private static final String CJK_TERMINATORS = "。！？；…";
+    private static final String LATIN_TERMINATORS = ".!?;";
+    private static final String CLOSERS = "\"'”’)]）】」』》";
+    private static final String CLAUSE_SEPARATORS = ",，、:：";
+    private static final Pattern KBITRATE = Pattern.compile("-(\\d+)kbitrate-");
+
+    private final TTSService service;
+    private final int maxChunkLength;
+    private final int maxConcurrentChunks;
+
+    private LongTextSynthesizer(TTSService service, int maxChunkLength, int maxConcurrentChunks) {
+        this.service = Objects.requireNonNull(service, "service");
+        if (maxChunkLength < 1) {
+            throw new IllegalArgumentException("maxChunkLength must be at least 1");
+        }
+        if (maxConcurrentChunks < 1) {
+            throw new IllegalArgumentException("maxConcurrentChunks must be at least 1");
+        }
+        this.maxChunkLength = maxChunkLength;
+        this.maxConcurrentChunks = maxConcurrentChunks;
+    }
+
+    /**
+     * Static factory method that returns a synthesizer using the default chunk length and running as many chunks at
+     * once as the service has capacity for.
+     *
+     * @param service The service to synthesise with
+     * @return An instance of LongTextSynthesizer.
+     */
+    public static LongTextSynthesizer of(TTSService service) {
+        return new LongTextSynthesizer(service, DEFAULT_MAX_CHUNK_LENGTH, service.getCapacity());
+    }
+
+    /**
+     * Static factory method that returns a synthesizer with the given limits.
+     *
+     * @param service             The service to synthesise with
+     * @param maxChunkLength      The maximum number of characters per chunk
+     * @param maxConcurrentChunks The maximum number of chunks of one text running or waiting to be written
+     * @return An instance of LongTextSynthesizer.
+     */
+    public static LongTextSynthesizer of(TTSService service, int maxChunkLength, int maxConcurrentChunks) {
+        return new LongTextSynthesizer(service, maxChunkLength, maxConcurrentChunks);
+    }
+
+    /**
+     * Synthesises the text of an SSML into memory.
+     *
+     * @param ssml The SSML text
+     * @return A future for the combined result
+     */
+    public CompletableFuture<SynthesisResult> synthesize(SSML ssml) {
+        return synthesize(ssml, AudioSink.memory());
+    }
+
+    /**
+     * Synthesises the text of an SSML into a sink. The result carries the total audio length, the time until the
+     * first chunk reached the sink as its time to first byte, and the overall wall time as its synthesis time.
+     * <p>
+     * If any chunk fails, the remaining chunks are cancelled and the sink is aborted. Cancelling the returned
+     * future does the same.
+     *
+     * @param ssml The SSML text
+     * @param sink Receives the audio in text order
+     * @return A future for the combined result
+     */
+    public CompletableFuture<SynthesisResult> synthesize(SSML ssml, AudioSink sink) {
+        Objects.requireNonNull(ssml, "ssml");
+        Objects.requireNonNull(sink, "sink");
+        OutputFormat format = ssml.getOutputFormat(); // Every chunk must agree
+        List<SSML> chunks = new ArrayList<>();
+        if (!ssml.getSegments().isEmpty()) {
+            // Segments carry their own voices and pauses, so the document is not split
+            chunks.add(ssml.toBuilder().outputFormat(format).build());
+        } else {
+            for (String text : split(Objects.toString(ssml.getSynthesisText(), ""), maxChunkLength)) {
+                chunks.add(ssml.toBuilder()
+                        .synthesisText(text)
+                        .outputFormat(format)
+                        .outputFile(null)
+                        .build());
+            }
+        }
+        log.debug("Split {} characters into {} chunks", ssml.getSynthesisText() == null ? 0 : ssml.getSynthesisText().length(), chunks.size());
+        Job job = new Job(chunks, format, sink);
+        job.submitNext();
+        return job.future;
+    }
+
+    /**
+     * Splits text into chunks of at most {@code maxLength} characters. Chunks end at a line break or after a
+     * sentence terminator where possible; a sentence that does not fit is split at a comma or similar, then at
+     * whitespace, and only then mid-word. Whitespace around chunks is trimmed and empty chunks are dropped.
+     *
+     * @param text      The text
+     * @param maxLength The maximum chunk length
+     * @return The chunks in order
+     */
+    public static List<String> split(String text, int maxLength) {
+        if (maxLength < 1) {
+            throw new IllegalArgumentException("maxLength must be at least 1");
+        }
+        List<String> chunks = new ArrayList<>();
+        StringBuilder chunk = new StringBuilder();
+        int start = 0;
+        while (start < text.length()) {
+            int end = sentenceEnd(text, start);
+            String sentence = text.substring(start, end);
+            start = end;
+            if (chunk.length() + sentence.length() > maxLength) {
+                flush(chunk, chunks);
+            }
+            while (sentence.length() > maxLength) {
+                int cut = cutPoint(sentence, maxLength);
+                add(chunks, sentence.substring(0, cut));
+                sentence = sentence.substring(cut);
+            }
+            chunk.append(sentence);
+            if (sentence.endsWith("\n")) {
+                flush(chunk, chunks); // Keep paragraphs apart
+            }
+        }
+        flush(chunk, chunks);
+        return chunks;
+    }
+
+    /**
+     * Finds the end of the sentence starting at {@code from}: after a line break, after a CJK terminator, or after
+     * a Latin terminator followed by whitespace, including any closing quotes or brackets.
+     */
+    private static int sentenceEnd(String text, int from) {
+        int length = text.length();
+        for (int i = from; i < length; i++) {
+            char c = text.charAt(i);
+            if (c == '\n') {
+                return i + 1;
+            }
+            boolean cjk = CJK_TERMINATORS.indexOf(c) >= 0;
+            if (!cjk && LATIN_TERMINATORS.indexOf(c) < 0) {
+                continue;
+            }
+            int end = i + 1;
+            while (end < length && (CJK_TERMINATORS.indexOf(text.charAt(end)) >= 0
+                    || LATIN_TERMINATORS.indexOf(text.charAt(end)) >= 0 || CLOSERS.indexOf(text.charAt(end)) >= 0)) {
+                end++;
+            }
+            if (cjk || end == length || Character.isWhitespace(text.charAt(end))) {
+                return end;
+            }
+            i = end - 1; // e.g. "3.14" or "e.g.x"
+        }
+        return length;
+    }
+
+    /**
+     * Chooses where to cut a sentence longer than {@code maxLength}: after the last clause separator, else at the
+     * last whitespace, else at the limit without splitting a surrogate pair.
+     */
+    private static int cutPoint(String sentence, int maxLength) {
+        for (int i = maxLength - 1; i > 0; i--) {
+            if (CLAUSE_SEPARATORS.indexOf(sentence.charAt(i)) >= 0) {
+                return i + 1;
+            }
+        }
+        for (int i = maxLength - 1; i > 0; i--) {
+            if (Character.isWhitespace(sentence.charAt(i))) {
+                return i + 1;
+            }
+        }
+        int cut = maxLength;
+        if (cut > 1 && Character.isHighSurrogate(sentence.charAt(cut - 1))) {
+            cut--;
+        }
+        return cut;
+    }
+
+    /**
+     * Gets the constant data rate of a format that is joined byte by byte: MP3 at its nominal bitrate, as the
+     * service encodes it, and raw audio.
+     *
+     * @return The number of bytes per second, or 0 for a format that is joined by an {@link AudioJoiner}
+     */
+    private static long byteRate(OutputFormat format) {
+        String value = format.getValue();
+        if (value.startsWith("raw-")) {
+            PcmFormat pcm = PcmFormat.of(format);
+            return pcm == null ? 0 : pcm.getByteRate();
+        }
+        if (!value.endsWith("-mp3")) {
+            return 0;
+        }
+        Matcher matcher = KBITRATE.matcher(value);
+        return matcher.find() ? Long.parseLong(matcher.group(1)) * 1000 / 8 : 0;
+    }
+
+    private static void flush(StringBuilder chunk, List<String> chunks) {
+        add(chunks, chunk.toString());
+        chunk.setLength(0);
+    }
+
+    private static void add(List<String> chunks, String chunk) {
+        String trimmed = chunk.trim();
+        if (!trimmed.isEmpty()) {
+            chunks.add(trimmed);
+        }
+    }
+
+    /**
+     * One long text in progress: a window of chunks that are running or done but not yet written, starting at the
+     * next chunk to write.
+     */
+    private final class Job {
+        private final List<SSML> chunks;
+        private final OutputFormat format;
+        private final AudioSink sink;
+        private final long byteRate;
+        private final AudioJoiner joiner;
+        private final CompletableFuture<SynthesisResult> future = new CompletableFuture<>();
+        private final List<CompletableFuture<SynthesisResult>> submitted;
+        private final SynthesisResult[] done;
+        private final long startNanos = System.nanoTime();
+        private final ReentrantLock lock = new ReentrantLock();
+        private final List<WordBoundary> boundaries = new ArrayList<>();
+        private int nextSubmit;
+        private int nextWrite;
+        private boolean submitting;
+        private boolean begun;
+        private boolean cached = true;
+        private long audioLength;
+        private long firstByteNanos = -1;
+        private long boundaryEndNanos;
+
+        private Job(List<SSML> chunks, OutputFormat format, AudioSink sink) {
+            this.chunks = chunks;
+            this.format = format;
+            this.sink = sink;
+            this.byteRate = byteRate(format);
+            this.joiner = byteRate > 0 ? null : AudioJoiner.of(format, new SinkChannel(sink));
+            this.submitted = new ArrayList<>(Collections.nCopies(chunks.size(), null));
+            this.done = new SynthesisResult[chunks.size()];
+            future.whenComplete((result, e) -> {
+                if (e != null) {
+                    cancelRunning();
+                }
+            });
+        }
+
+        /**
+         * Submits chunks until the window is full. Chunks that complete synchronously, e.g. from the cache, re-enter
+         * here; the outer call keeps submitting instead of recursing.
+         */
+        private void submitNext() {
+            lock.lock();
+            if (submitting) {
+                lock.unlock();
+                return;
+            }
+            submitting = true;
+            try {
+                if (chunks.isEmpty()) {
+                    finish();
+                }
+                while (!future.isDone() && nextSubmit < chunks.size()
+                        && nextSubmit - nextWrite < maxConcurrentChunks) {
+                    int index = nextSubmit++;
+                    CompletableFuture<SynthesisResult> chunk = service.synthesizeAsync(chunks.get(index));
+                    submitted.set(index, chunk);
+                    chunk.whenComplete((result, e) -> chunkDone(index, result, e));
+                }
+            } finally {
+                submitting = false;
+                lock.unlock();
+            }
+        }
+
+        private void chunkDone(int index, SynthesisResult result, Throwable e) {
+            lock.lock();
+            try {
+                writeCompleted(index, result, e);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Records a finished chunk and writes every chunk that is now next in order. Called with the lock held.
+         */
+        private void writeCompleted(int index, SynthesisResult result, Throwable e) {
+            submitted.set(index, null);
+            if (future.isDone()) {
+                return;
+            }
+            if (e != null) {
+                fail(e instanceof CompletionException && e.getCause() != null ? e.getCause() : e);
+                return;
+            }
+            done[index] = result;
+            try {
+                while (nextWrite < done.length && done[nextWrite] != null) {
+                    write(done[nextWrite]);
+                    done[nextWrite++] = null;
+                }
+                if (nextWrite == done.length) {
+                    finish();
+                    return;
+                }
+            } catch (IOException | RuntimeException ex) {
+                fail(TtsException.of("[ERROR] Audio sink error: " + ex.getMessage(), ex));
+                return;
+            }
+            submitNext();
+        }
+
+        private void write(SynthesisResult result) throws IOException {
+            begin();
+            cached &= result.isCached();
+            long shift = joiner != null ? joiner.getDurationNanos() : audioLength * 1_000_000_000L / byteRate;
+            if (shift < 0) {
+                shift = boundaryEndNanos;
+            }
+            for (WordBoundary boundary : result.getWordBoundaries()) {
+                WordBoundary shifted = new WordBoundary(boundary.getText(), boundary.getBoxType(),
+                        boundary.getOffsetNanos() + shift, boundary.getDuration().toNanos());
+                boundaries.add(shifted);
+                boundaryEndNanos = Math.max(boundaryEndNanos, shifted.getEndNanos());
+                sink.wordBoundary(shifted);
+            }
+            if (result.getAudioLength() > 0) {
+                if (firstByteNanos < 0) {
+                    firstByteNanos = System.nanoTime() - startNanos;
+                }
+                audioLength += result.getAudioLength();
+                ByteBuffer audio = ((MemoryAudioSink) result.getSink()).asByteBuffer();
+                if (joiner != null) {
+                    joiner.append(audio);
+                } else {
+                    sink.write(audio);
+                }
+            }
+        }
+
+        private void begin() throws IOException {
+            if (!begun) {
+                begun = true;
+                sink.begin(format);
+            }
+        }
+
+        private void finish() {
+            try {
+                begin();
+                if (joiner != null) {
+                    joiner.finish();
+                }
+                sink.close();
+            } catch (IOException | RuntimeException e) {
+                fail(TtsException.of("[ERROR] Audio sink error: " + e.getMessage(), e));
+                return;
+            }
+            future.complete(new SynthesisResult(null, format, sink, audioLength, 0, firstByteNanos,
+                    System.nanoTime() - startNanos, cached && !chunks.isEmpty(), boundaries));
+        }
+
+        private void fail(Throwable e) {
+            future.completeExceptionally(e); // cancelRunning() aborts the sink
+        }
+
+        /**
+         * Withdraws the chunks still running after the job failed or was cancelled, and aborts the sink.
+         */
+        private void cancelRunning() {
+            List<CompletableFuture<SynthesisResult>> running;
+            lock.lock();
+            try {
+                running = new ArrayList<>(submitted);
+                if (begun) {
+                    sink.abort();
+                }
+            } finally {
+                lock.unlock();
+            }
+            for (CompletableFuture<SynthesisResult> chunk : running) {
+                if (chunk != null) {
+                    chunk.cancel(false);
+                }
+            }
+        }
+    }
+
+    /**
+     * Presents a sink as a channel for the joiner. Sinks consume every chunk whole.
+     */
+    private static final class SinkChannel implements WritableByteChannel {
+        private final AudioSink sink;
+
+        private SinkChannel(AudioSink sink) {
+            this.sink = sink;
+        }
+
+        @Override
+        public int write(ByteBuffer src) throws IOException {
+            int length = src.remaining();
+            sink.write(src);
+            src.position(src.limit());
+            return length;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
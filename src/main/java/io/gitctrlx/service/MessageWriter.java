@@ -0,0 +1,305 @@
+package io.gitctrlx.service;
+
+import io.gitctrlx.constant.OutputFormat;
+import io.gitctrlx.constant.TtsStyleEnum;
+import io.gitctrlx.constant.VoiceEnum;
+import io.gitctrlx.util.Tools;
+import io.gitctrlx.voice.Voice;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Renders the text messages sent on a connection, producing exactly what {@link SSML#SSML_PATTERN} and
+ * {@link SpeechConfig#CONFIG_PATTERN} would through {@code String.format}, without parsing the pattern on every
+ * call.
+ * <p>
+ * A single-voice document renders as the pattern does, with its text XML-escaped. Pitch, a speaking style or
+ * {@link VoiceSegment segments} extend it: every segment gets a voice element of its own, wrapped around an
+ * {@code mstts:express-as} element if it has a style, and pauses become break elements. Voice names and locales come
+ * from the {@link Voice}, so catalogue voices render the same way as those of {@link VoiceEnum}.
+ * <p>
+ * The literal parts of the patterns are split once, the parts that only depend on the output format or the voice
+ * are joined and escaped ahead of time, for catalogue voices on first use, and messages are assembled in a per-thread {@link StringBuilder} that is reused. The
+ * result still has to be a String, as OkHttp sends text frames from one; that copy is the only allocation that
+ * grows with the message.
+ */
+final class MessageWriter {
+
+    /**
+     * Buffers that grew beyond this many characters for a very long text are not kept for the next message.
+     */
+    private static final int MAX_RETAINED_CAPACITY = 64 * 1024;
+
+    private static final ThreadLocal<StringBuilder> BUFFER = ThreadLocal.withInitial(() -> new StringBuilder(1024));
+
+    // SSML_PATTERN: X-RequestId, X-Timestamp, xml:lang, voice name, rate, volume, text
+    private static final String[] SSML_PARTS = split(SSML.SSML_PATTERN, 7);
+
+    // CONFIG_PATTERN: X-Timestamp, outputFormat
+    private static final String[] CONFIG_PARTS = split(SpeechConfig.CONFIG_PATTERN, 2);
+
+    private static final String DEFAULT_PROSODY = "+0%";
+
+    private static final String DEFAULT_PITCH = "+0Hz";
+
+    private static final Voice DEFAULT_VOICE = Voice.of(VoiceEnum.zh_CN_XiaoxiaoNeural);
+
+    // Literal parts of a voice element, split out of SSML_PATTERN
+    private static final String SPEAK_END = SSML_PARTS[3].substring(0, SSML_PARTS[3].indexOf('<'));
+    private static final String PROSODY_OPEN =
+            SSML_PARTS[4].substring(SPEAK_END.length(), SSML_PARTS[4].indexOf(DEFAULT_PITCH));
+    private static final String PROSODY_RATE =
+            SSML_PARTS[4].substring(SSML_PARTS[4].indexOf(DEFAULT_PITCH) + DEFAULT_PITCH.length());
+    private static final String PROSODY_CLOSE = "</prosody>";
+    private static final String VOICE_CLOSE = "</voice>";
+    private static final String SPEAK_CLOSE = "</speak>";
+
+    private static final String VOICE_OPEN = SSML_PARTS[3].substring(SPEAK_END.length());
+
+    /**
+     * Catalogue voices beyond this many are rendered without keeping their parts.
+     */
+    private static final int MAX_CATALOG_VOICE_PARTS = 4096;
+
+    private static final Map<VoiceEnum, VoiceParts> VOICE_PARTS;
+
+    private static final ConcurrentMap<String, VoiceParts> CATALOG_VOICE_PARTS = new ConcurrentHashMap<>();
+
+    private static final Map<OutputFormat, String> CONFIG_BODIES;
+
+    static {
+        Map<VoiceEnum, VoiceParts> voiceParts = new EnumMap<>(VoiceEnum.class);
+        for (VoiceEnum voice : VoiceEnum.values()) {
+            voiceParts.put(voice, new VoiceParts(Voice.of(voice)));
+        }
+        VOICE_PARTS = Collections.unmodifiableMap(voiceParts);
+        Map<OutputFormat, String> configBodies = new EnumMap<>(OutputFormat.class);
+        for (OutputFormat format : OutputFormat.values()) {
+            configBodies.put(format, CONFIG_PARTS[1] + format.getValue() + CONFIG_PARTS[2]);
+        }
+        CONFIG_BODIES = Collections.unmodifiableMap(configBodies);
+        if (!(PROSODY_CLOSE + VOICE_CLOSE + SPEAK_CLOSE).equals(SSML_PARTS[7])) {
+            throw new IllegalStateException("Unexpected end of " + SSML.SSML_PATTERN);
+        }
+    }
+
+    private MessageWriter() {
+    }
+
+    /**
+     * Renders the SSML message for a synthesis.
+     *
+     * @param ssml      The SSML settings
+     * @param requestId The value of the X-RequestId header
+     * @return The message
+     */
+    static String ssml(SSML ssml, String requestId) {
+        StringBuilder buffer = buffer();
+        buffer.append(SSML_PARTS[0]).append(requestId)
+                .append(SSML_PARTS[1]).append(Tools.date())
+                .append(SSML_PARTS[2]);
+        appendBody(buffer, ssml);
+        return release(buffer);
+    }
+
+    /**
+     * Renders the SSML document alone, without the per-request headers.
+     *
+     * @param ssml The SSML settings
+     * @return The document, beginning with {@code <speak}
+     */
+    static String ssmlBody(SSML ssml) {
+        StringBuilder buffer = buffer();
+        buffer.append(SSML_PARTS[2], SSML_PARTS[2].indexOf("\r\n\r\n") + 4, SSML_PARTS[2].length());
+        appendBody(buffer, ssml);
+        return release(buffer);
+    }
+
+    /**
+     * Renders the speech.config message for an output format.
+     *
+     * @param outputFormat The output format
+     * @return The message
+     */
+    static String speechConfig(OutputFormat outputFormat) {
+        StringBuilder buffer = buffer();
+        buffer.append(CONFIG_PARTS[0]).append(Tools.date())
+                .append(CONFIG_BODIES.get(Objects.requireNonNull(outputFormat, "outputFormat")));
+        return release(buffer);
+    }
+
+    /**
+     * Appends everything after the opening of the speak element's xml:lang attribute.
+     */
+    private static void appendBody(StringBuilder buffer, SSML ssml) {
+        Voice voice = ssml.getCatalogVoice() != null ? ssml.getCatalogVoice() : DEFAULT_VOICE;
+        String rate = ssml.getRate() != null ? ssml.getRate() : DEFAULT_PROSODY;
+        String volume = ssml.getVolume() != null ? ssml.getVolume() : DEFAULT_PROSODY;
+        String pitch = ssml.getPitch() != null ? ssml.getPitch() : DEFAULT_PITCH;
+        List<VoiceSegment> segments = ssml.getSegments();
+        boolean leading = ssml.getSynthesisText() != null || segments.isEmpty();
+        Voice first = leading || segments.get(0).getCatalogVoice() == null ? voice : segments.get(0).getCatalogVoice();
+        buffer.append(parts(first).lang).append(SPEAK_END);
+        if (leading) {
+            openVoice(buffer, voice, ssml.getStyle(), ssml.getStyleDegree(), pitch, rate, volume);
+            escape(buffer, String.valueOf(ssml.getSynthesisText()), false);
+            closeVoice(buffer, ssml.getStyle());
+        }
+        for (VoiceSegment segment : segments) {
+            openVoice(buffer,
+                    segment.getCatalogVoice() != null ? segment.getCatalogVoice() : voice,
+                    segment.getStyle(), segment.getStyleDegree(),
+                    segment.getPitch() != null ? segment.getPitch() : pitch,
+                    segment.getRate() != null ? segment.getRate() : rate,
+                    segment.getVolume() != null ? segment.getVolume() : volume);
+            for (Object part : segment.getParts()) {
+                if (part instanceof Duration) {
+                    buffer.append("<break time='").append(((Duration) part).toMillis()).append("ms'/>");
+                } else {
+                    escape(buffer, (String) part, false);
+                }
+            }
+            closeVoice(buffer, segment.getStyle());
+        }
+        buffer.append(SPEAK_CLOSE);
+    }
+
+    private static void openVoice(StringBuilder buffer, Voice voice, TtsStyleEnum style, Double styleDegree,
+                                  String pitch, String rate, String volume) {
+        buffer.append(parts(voice).open);
+        if (style != null) {
+            buffer.append("<mstts:express-as style='").append(style.getValue());
+            if (styleDegree != null) {
+                buffer.append("' styledegree='").append(styleDegree.doubleValue());
+            }
+            buffer.append("'>");
+        }
+        buffer.append(PROSODY_OPEN);
+        escape(buffer, pitch, true);
+        buffer.append(PROSODY_RATE);
+        escape(buffer, rate, true);
+        buffer.append(SSML_PARTS[5]);
+        escape(buffer, volume, true);
+        buffer.append(SSML_PARTS[6]);
+    }
+
+    private static void closeVoice(StringBuilder buffer, TtsStyleEnum style) {
+        buffer.append(PROSODY_CLOSE);
+        if (style != null) {
+            buffer.append("</mstts:express-as>");
+        }
+        buffer.append(VOICE_CLOSE);
+    }
+
+    /**
+     * Gets the escaped parts of a voice, building and keeping them on first use for a catalogue voice.
+     */
+    private static VoiceParts parts(Voice voice) {
+        VoiceEnum constant = voice.toVoiceEnum();
+        if (constant != null) {
+            return VOICE_PARTS.get(constant);
+        }
+        VoiceParts parts = CATALOG_VOICE_PARTS.get(voice.getShortName());
+        if (parts == null) {
+            parts = new VoiceParts(voice);
+            if (CATALOG_VOICE_PARTS.size() < MAX_CATALOG_VOICE_PARTS) {
+                CATALOG_VOICE_PARTS.putIfAbsent(voice.getShortName(), parts);
+            }
+        }
+        return parts;
+    }
+
+    /**
+     * Appends text with the characters that are markup in XML replaced by entities. Runs without such characters,
+     * i.e. almost all text, are copied in one go.
+     *
+     * @param attribute Whether the text is an attribute value, where quotes must be escaped as well
+     */
+    private static void escape(StringBuilder buffer, String text, boolean attribute) {
+        int start = 0;
+        for (int i = 0; i < text.length(); i++) {
+            String entity;
+            switch (text.charAt(i)) {
+                case '&':
+                    entity = "&amp;";
+                    break;
+                case '<':
+                    entity = "&lt;";
+                    break;
+                case '>':
+                    entity = "&gt;";
+                    break;
+                case '\'':
+                    entity = attribute ? "&apos;" : null;
+                    break;
+                case '"':
+                    entity = attribute ? "&quot;" : null;
+                    break;
+                default:
+                    entity = null;
+            }
+            if (entity != null) {
+                buffer.append(text, start, i).append(entity);
+                start = i + 1;
+            }
+        }
+        buffer.append(text, start, text.length());
+    }
+
+    private static StringBuilder buffer() {
+        StringBuilder buffer = BUFFER.get();
+        buffer.setLength(0);
+        return buffer;
+    }
+
+    private static String release(StringBuilder buffer) {
+        String message = buffer.toString();
+        if (buffer.capacity() > MAX_RETAINED_CAPACITY) {
+            BUFFER.remove();
+        }
+        return message;
+    }
+
+    /**
+     * The parts of a document that depend only on a voice, with its locale and name escaped.
+     */
+    private static final class VoiceParts {
+        /**
+         * The xml:lang value of the speak element
+         */
+        private final String lang;
+
+        /**
+         * The opening voice element
+         */
+        private final String open;
+
+        private VoiceParts(Voice voice) {
+            StringBuilder buffer = new StringBuilder();
+            escape(buffer, voice.getLocale(), true);
+            this.lang = buffer.toString();
+            buffer.setLength(0);
+            buffer.append(VOICE_OPEN);
+            escape(buffer, voice.getShortName(), true);
+            this.open = buffer.append(SPEAK_END).toString();
+        }
+    }
+
+    /**
+     * Splits a pattern into the literal parts around its {@code %s} placeholders.
+     */
+    private static String[] split(String pattern, int placeholders) {
+        String[] parts = pattern.split("%s", -1);
+        if (parts.length != placeholders + 1) {
+            throw new IllegalStateException("Expected " + placeholders + " placeholders in " + pattern);
+        }
+        return parts;
+    }
+}
@@ -0,0 +1,121 @@
+package io.gitctrlx.service;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A token bucket that limits how many syntheses are started per second.
+ * <p>
+ * The bucket holds up to {@code burst} tokens and refills at the configured rate; every synthesis sent takes one.
+ * Requests that find the bucket empty stay in the pool queue until a token is available, so the service sees a
+ * steady request rate instead of bursts that trip its throttling.
+ */
+public final class RateLimiter {
+
+    private final double permitsPerNano;
+    private final double burst;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final AtomicLong throttled = new AtomicLong();
+    private double tokens;
+    private long refilledNanos = System.nanoTime();
+
+    /**
+     * Constructor that initializes the limiter from a builder.
+     *
+     * @param builder The builder holding the settings
+     */
+    private RateLimiter(RateLimiterBuilder builder) {
+        this.permitsPerNano = builder.permitsPerSecond / TimeUnit.SECONDS.toNanos(1);
+        this.burst = builder.burst > 0 ? builder.burst : Math.max(1, builder.permitsPerSecond);
+        this.tokens = burst;
+    }
+
+    /**
+     * Static factory method that returns an instance of RateLimiterBuilder.
+     *
+     * @return An instance of RateLimiterBuilder.
+     */
+    public static RateLimiterBuilder builder() {
+        return new RateLimiterBuilder();
+    }
+
+    /**
+     * Takes a token if one is available.
+     *
+     * @return 0 if a token was taken, otherwise the time in nanoseconds until one will be available
+     */
+    long tryAcquire() {
+        lock.lock();
+        try {
+            long now = System.nanoTime();
+            tokens = Math.min(burst, tokens + (now - refilledNanos) * permitsPerNano);
+            refilledNanos = now;
+            if (tokens >= 1) {
+                tokens -= 1;
+                return 0;
+            }
+            throttled.incrementAndGet();
+            return Math.max(1, (long) Math.ceil((1 - tokens) / permitsPerNano));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Gets the number of times a synthesis had to wait for a token.
+     *
+     * @return The throttled count
+     */
+    public long getThrottledCount() {
+        return throttled.get();
+    }
+
+    /**
+     * The RateLimiterBuilder class is used to build RateLimiter objects.
+     */
+    public static class RateLimiterBuilder {
+        private double permitsPerSecond = 10;
+        private double burst;
+
+        private RateLimiterBuilder() {
+        }
+
+        /**
+         * Sets the sustained number of syntheses started per second.
+         *
+         * @param permitsPerSecond The rate, greater than 0.
+         * @return An instance of RateLimiterBuilder.
+         */
+        public RateLimiterBuilder permitsPerSecond(double permitsPerSecond) {
+            if (!(permitsPerSecond > 0)) {
+                throw new IllegalArgumentException("permitsPerSecond must be greater than 0");
+            }
+            this.permitsPerSecond = permitsPerSecond;
+            return this;
+        }
+
+        /**
+         * Sets how many syntheses may start at once after an idle period. Defaults to one second's worth.
+         *
+         * @param burst The bucket size, at least 1.
+         * @return An instance of RateLimiterBuilder.
+         */
+        public RateLimiterBuilder burst(int burst) {
+            if (burst < 1) {
+                throw new IllegalArgumentException("burst must be at least 1");
+            }
+            this.burst = burst;
+            return this;
+        }
+
+        /**
+         * Builds the RateLimiter object.
+         *
+         * @return An instance of RateLimiter.
+         */
+        public RateLimiter build() {
+            return new RateLimiter(this);
+        }
+    }
+}
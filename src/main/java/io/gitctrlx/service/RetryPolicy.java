@@ -0,0 +1,172 @@
+package io.gitctrlx.service;
+
+import io.gitctrlx.exceptions.TtsException;
+
+import java.time.Duration;
+import java.util.Objects;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Decides whether and when a failed synthesis is sent again.
+ * <p>
+ * Only {@link TtsException#isRetryable() retryable} failures are retried, such as the connection dropping in the
+ * middle of a synthesis. The delay before attempt {@code n + 1} grows exponentially from the initial backoff,
+ * capped at the max backoff, and is randomised by the jitter factor so that many requests failing together do
+ * not all retry at the same moment.
+ */
+public final class RetryPolicy {
+
+    private final int maxAttempts;
+    private final long initialBackoffNanos;
+    private final long maxBackoffNanos;
+    private final double multiplier;
+    private final double jitter;
+
+    /**
+     * Constructor that initializes the policy from a builder.
+     *
+     * @param builder The builder holding the settings
+     */
+    private RetryPolicy(RetryPolicyBuilder builder) {
+        this.maxAttempts = builder.maxAttempts;
+        this.initialBackoffNanos = builder.initialBackoff.toNanos();
+        this.maxBackoffNanos = Math.max(builder.maxBackoff.toNanos(), initialBackoffNanos);
+        this.multiplier = builder.multiplier;
+        this.jitter = builder.jitter;
+    }
+
+    /**
+     * Static factory method that returns an instance of RetryPolicyBuilder.
+     *
+     * @return An instance of RetryPolicyBuilder.
+     */
+    public static RetryPolicyBuilder builder() {
+        return new RetryPolicyBuilder();
+    }
+
+    /**
+     * Gets the maximum number of attempts, including the first one.
+     *
+     * @return The maximum number of attempts
+     */
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    /**
+     * Whether a failure may be retried at all.
+     *
+     * @param e The failure
+     * @return true if it is a retryable {@link TtsException}
+     */
+    public boolean isRetryable(Throwable e) {
+        return e instanceof TtsException && ((TtsException) e).isRetryable();
+    }
+
+    /**
+     * Computes the delay before the next attempt.
+     *
+     * @param failedAttempts The number of attempts that have failed so far, at least 1
+     * @return The delay in nanoseconds
+     */
+    long backoffNanos(int failedAttempts) {
+        double backoff = initialBackoffNanos * Math.pow(multiplier, failedAttempts - 1);
+        backoff = Math.min(backoff, maxBackoffNanos);
+        return (long) (backoff * (1 - jitter * ThreadLocalRandom.current().nextDouble()));
+    }
+
+    @Override
+    public String toString() {
+        return "RetryPolicy{maxAttempts=" + maxAttempts + ", initialBackoff=" + Duration.ofNanos(initialBackoffNanos)
+                + ", maxBackoff=" + Duration.ofNanos(maxBackoffNanos) + ", multiplier=" + multiplier
+                + ", jitter=" + jitter + "}";
+    }
+
+    /**
+     * The RetryPolicyBuilder class is used to build RetryPolicy objects.
+     */
+    public static class RetryPolicyBuilder {
+        private int maxAttempts = 3;
+        private Duration initialBackoff = Duration.ofMillis(200);
+        private Duration maxBackoff = Duration.ofSeconds(5);
+        private double multiplier = 2.0;
+        private double jitter = 0.5;
+
+        private RetryPolicyBuilder() {
+        }
+
+        /**
+         * Sets the maximum number of attempts, including the first one.
+         *
+         * @param maxAttempts The number of attempts, at least 1.
+         * @return An instance of RetryPolicyBuilder.
+         */
+        public RetryPolicyBuilder maxAttempts(int maxAttempts) {
+            if (maxAttempts < 1) {
+                throw new IllegalArgumentException("maxAttempts must be at least 1");
+            }
+            this.maxAttempts = maxAttempts;
+            return this;
+        }
+
+        /**
+         * Sets the delay before the first retry.
+         *
+         * @param initialBackoff The initial backoff.
+         * @return An instance of RetryPolicyBuilder.
+         */
+        public RetryPolicyBuilder initialBackoff(Duration initialBackoff) {
+            this.initialBackoff = Objects.requireNonNull(initialBackoff, "initialBackoff");
+            return this;
+        }
+
+        /**
+         * Sets the upper bound of the delay between attempts.
+         *
+         * @param maxBackoff The max backoff.
+         * @return An instance of RetryPolicyBuilder.
+         */
+        public RetryPolicyBuilder maxBackoff(Duration maxBackoff) {
+            this.maxBackoff = Objects.requireNonNull(maxBackoff, "maxBackoff");
+            return this;
+        }
+
+        /**
+         * Sets the factor the delay grows by after every failed attempt.
+         *
+         * @param multiplier The multiplier, at least 1.
+         * @return An instance of RetryPolicyBuilder.
+         */
+        public RetryPolicyBuilder multiplier(double multiplier) {
+            if (!(multiplier >= 1)) {
+                throw new IllegalArgumentException("multiplier must be at least 1");
+            }
+            this.multiplier = multiplier;
+            return this;
+        }
+
+        /**
+         * Sets how much of each delay is randomised: the delay is drawn uniformly between
+         * {@code (1 - jitter) * backoff} and {@code backoff}.
+         *
+         * @param jitter The jitter factor, between 0 (none) and 1 (full jitter).
+         * @return An instance of RetryPolicyBuilder.
+         */
+        public RetryPolicyBuilder jitter(double jitter) {
+            if (!(jitter >= 0 && jitter <= 1)) {
+                throw new IllegalArgumentException("jitter must be between 0 and 1");
+            }
+            this.jitter = jitter;
+            return this;
+        }
+
+        /**
+         * Builds the RetryPolicy object.
+         *
+         * @return An instance of RetryPolicy.
+         */
+        public RetryPolicy build() {
+            return new RetryPolicy(this);
+        }
+    }
+}
@@ -0,0 +1,266 @@
+package io.gitctrlx.service;
+
+import io.gitctrlx.audio.AudioSink;
+import io.gitctrlx.constant.OutputFormat;
+import io.gitctrlx.exceptions.TtsException;
+import io.gitctrlx.subtitle.WordBoundary;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * One synthesis that is sent again after transient failures, according to a {@link RetryPolicy} and guarded by an
+ * optional {@link CircuitBreaker}. With a {@link HedgingPolicy}, every attempt is a {@link HedgedSynthesis}.
+ * <p>
+ * Every attempt is a separate {@link SynthesisRequest} on the pool, so a replay runs on whichever connection is
+ * free, reopening a dropped one as needed. The caller's sink is shared by all attempts: a failed attempt does not
+ * abort it, and if the attempt already delivered audio the sink is {@link AudioSink#reset() reset} before the
+ * replay, or the failure is final if it cannot be. Completing the caller's future, e.g. by cancelling it,
+ * withdraws the current attempt.
+ * <p>
+ * Once any attempt has opened the caller's sink, every final failure aborts it, including one that happens
+ * before the last attempt opened it again, e.g. when the circuit breaker opens or the caller cancels during a
+ * backoff. A reset sink may still hold the partial audio of an earlier attempt.
+ */
+final class RetryingSynthesis {
+
+    private static final Logger log = LoggerFactory.getLogger(RetryingSynthesis.class);
+
+    private final TtsClientPool pool;
+    private final RetryPolicy policy;
+    private final CircuitBreaker breaker;
+    private final HedgingPolicy hedging;
+    private final AtomicLong retries;
+    private final SSML ssml;
+    private final AudioSink sink;
+    private final CompletableFuture<SynthesisResult> future = new CompletableFuture<>();
+    private final AtomicBoolean targetAborted = new AtomicBoolean();
+    private volatile CompletableFuture<SynthesisResult> current;
+    private volatile boolean targetDirty;
+    private int attempts;
+
+    /**
+     * @param pool    The pool the attempts run on
+     * @param policy  The retry policy
+     * @param breaker The circuit breaker, or null for none
+     * @param hedging The hedging policy, or null for none
+     * @param retries Counts the retries of the service
+     * @param ssml    The SSML text
+     * @param sink    The caller's sink
+     */
+    RetryingSynthesis(TtsClientPool pool, RetryPolicy policy, CircuitBreaker breaker, HedgingPolicy hedging,
+                      AtomicLong retries, SSML ssml, AudioSink sink) {
+        this.pool = pool;
+        this.policy = policy;
+        this.breaker = breaker;
+        this.hedging = hedging;
+        this.retries = retries;
+        this.ssml = ssml;
+        this.sink = sink;
+    }
+
+    /**
+     * Sends the first attempt.
+     *
+     * @return The caller's future
+     */
+    CompletableFuture<SynthesisResult> start() {
+        future.whenComplete((result, e) -> {
+            CompletableFuture<SynthesisResult> attempt = current;
+            if (attempt != null && attempt.cancel(false) && breaker != null && isTimeout(e)) {
+                breaker.onFailure(); // The service did not answer in time; a cancellation says nothing about it
+            }
+        });
+        attempt(0);
+        return future;
+    }
+
+    /**
+     * Sends an attempt, after the given delay.
+     */
+    private void attempt(long delayNanos) {
+        if (breaker != null && !breaker.tryAcquire()) {
+            abortTarget();
+            future.completeExceptionally(TtsException.of("[ERROR] Circuit breaker is open: the speech service keeps failing"));
+            return;
+        }
+        attempts++;
+        AttemptSink attemptSink = new AttemptSink(sink);
+        if (hedging != null) {
+            HedgedSynthesis hedged = new HedgedSynthesis(pool, hedging, ssml, attemptSink);
+            current = hedged.future();
+            if (future.isDone()) {
+                abortTarget(); // Withdrawn by the caller in the meantime
+                return;
+            }
+            hedged.future().whenComplete((result, e) -> completed(attemptSink, result, e));
+            hedged.start(delayNanos);
+            return;
+        }
+        SynthesisRequest request = new SynthesisRequest(ssml, attemptSink);
+        current = request.future;
+        if (future.isDone()) {
+            abortTarget();
+            return;
+        }
+        request.future.whenComplete((result, e) -> completed(attemptSink, result, e));
+        pool.submit(request, delayNanos);
+    }
+
+    /**
+     * Handles the outcome of an attempt: completes the caller's future, or schedules a replay.
+     */
+    private void completed(AttemptSink attemptSink, SynthesisResult result, Throwable e) {
+        Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+        boolean transientFailure = cause != null && policy.isRetryable(cause);
+        if (breaker != null) {
+            if (cause == null) {
+                breaker.onSuccess();
+            } else if (transientFailure) {
+                breaker.onFailure();
+            }
+        }
+        if (future.isDone()) {
+            attemptSink.settle(); // Cancelled or timed out by the caller
+            abortTarget();
+            return;
+        }
+        if (cause == null) {
+            future.complete(result.withSink(sink));
+            return;
+        }
+        if (transientFailure && attempts < policy.getMaxAttempts() && (!attemptSink.begun || attemptSink.resetTarget())) {
+            long delayNanos = policy.backoffNanos(attempts);
+            retries.incrementAndGet();
+            log.warn("[WARN] Speech synthesis failed ({}), retrying in {} ms (attempt {} of {})", cause.getMessage(),
+                    delayNanos / 1_000_000, attempts + 1, policy.getMaxAttempts());
+            attempt(delayNanos);
+            return;
+        }
+        attemptSink.settle();
+        abortTarget();
+        future.completeExceptionally(cause);
+    }
+
+    /**
+     * Whether the caller's future was completed by the request timeout of {@link TTSService}.
+     */
+    private static boolean isTimeout(Throwable e) {
+        Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+        return cause instanceof TtsException && cause.getCause() instanceof TimeoutException;
+    }
+
+    /**
+     * Aborts the caller's sink after a final failure, if any attempt opened it. The attempt that was running, if
+     * any, must have been settled first so that it no longer calls the sink.
+     */
+    private void abortTarget() {
+        if (targetDirty && targetAborted.compareAndSet(false, true)) {
+            sink.abort();
+        }
+    }
+
+    /**
+     * Passes one attempt's audio to the caller's sink, leaving the decision to abort it to the retry logic.
+     * <p>
+     * The retry logic runs on whichever thread completed the attempt, while the connection's reader thread may
+     * still be inside a call. Calls are made under a lock, and once the attempt has been settled by
+     * {@link #settle} or {@link #resetTarget} nothing more is passed on.
+     */
+    private final class AttemptSink implements AudioSink {
+        private final AudioSink target;
+        private final ReentrantLock lock = new ReentrantLock();
+        private volatile boolean begun;
+        private boolean settled;
+
+        private AttemptSink(AudioSink target) {
+            this.target = target;
+        }
+
+        @Override
+        public void begin(OutputFormat format) throws IOException {
+            lock.lock();
+            try {
+                if (!settled) {
+                    begun = true;
+                    targetDirty = true;
+                    target.begin(format);
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public void write(ByteBuffer chunk) throws IOException {
+            lock.lock();
+            try {
+                if (!settled) {
+                    target.write(chunk);
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public void wordBoundary(WordBoundary boundary) throws IOException {
+            lock.lock();
+            try {
+                if (!settled) {
+                    target.wordBoundary(boundary);
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            lock.lock();
+            try {
+                if (!settled) {
+                    target.close();
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Stops passing this attempt's audio on, waiting for a call in progress to return.
+         */
+        private void settle() {
+            lock.lock();
+            try {
+                settled = true;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Resets the caller's sink for a replay.
+         *
+         * @return true if the sink can receive the audio again
+         */
+        private boolean resetTarget() {
+            lock.lock();
+            try {
+                settled = true;
+                return target.reset();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
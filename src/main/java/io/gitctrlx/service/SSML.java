@@ -1,14 +1,28 @@
 package io.gitctrlx.service;
 
 import io.gitctrlx.constant.OutputFormat;
+import io.gitctrlx.constant.TtsStyleEnum;
 import io.gitctrlx.constant.VoiceEnum;
 import io.gitctrlx.util.Tools;
+import io.gitctrlx.voice.Voice;
+import io.gitctrlx.voice.VoiceCatalog;
 
 import java.io.Serializable;
-import java.util.Optional;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
 
 /**
  * The SSML class is used to configure settings related to Speech Synthesis Markup Language (SSML).
+ * <p>
+ * A document holds the synthesis text in one voice, optionally followed by {@link VoiceSegment segments} in other
+ * voices and styles. Text is XML-escaped when the document is rendered. The public Edge endpoint honours a single
+ * voice and ignores speaking styles; multiple voices and {@code mstts:express-as} styles need an endpoint that
+ * accepts full SSML.
+ * <p>
+ * Voices are given as a {@link VoiceEnum} constant or as a {@link Voice} from the {@link VoiceCatalog}, which lists
+ * every voice the service offers.
  */
 public class SSML implements Serializable {
 
@@ -36,7 +50,7 @@ public class SSML implements Serializable {
     /**
      * Voice role
      */
-    private final VoiceEnum voice;
+    private final Voice voice;
 
     /**
      * Rate of speech
@@ -50,6 +64,27 @@ public class SSML implements Serializable {
      */
     private final String volume;
 
+    /**
+     * Pitch
+     * Represented as an absolute or relative value, e.g. "+5Hz" or "-10%".
+     */
+    private final String pitch;
+
+    /**
+     * Speaking style, rendered as mstts:express-as
+     */
+    private final TtsStyleEnum style;
+
+    /**
+     * Intensity of the speaking style, from 0.01 to 2
+     */
+    private final Double styleDegree;
+
+    /**
+     * Further parts of the document, spoken after the synthesis text
+     */
+    private final List<VoiceSegment> segments;
+
     /**
      * Output format
      */
@@ -61,22 +96,22 @@ public class SSML implements Serializable {
     private final String outputFileName;
 
     /**
-     * Constructor that initializes the SSML object with the specified parameters.
+     * Constructor that initializes the SSML object from a builder.
      *
-     * @param synthesisText  Text for speech synthesis
-     * @param voice          Voice role
-     * @param rate           Rate of speech
-     * @param volume         Volume
-     * @param outputFormat   Output format
-     * @param outputFileName Output file name
+     * @param builder The builder holding the settings
      */
-    private SSML(String synthesisText, VoiceEnum voice, String rate, String volume, OutputFormat outputFormat, String outputFileName) {
-        this.synthesisText = synthesisText;
-        this.voice = voice;
-        this.rate = rate;
-        this.volume = volume;
-        this.outputFormat = outputFormat;
-        this.outputFileName = outputFileName;
+    private SSML(SSMLBuilder builder) {
+        this.synthesisText = builder.synthesisText;
+        this.voice = builder.voice;
+        this.rate = builder.rate;
+        this.volume = builder.volume;
+        this.pitch = builder.pitch;
+        this.style = builder.style;
+        this.styleDegree = builder.styleDegree;
+        this.segments = Collections.unmodifiableList(new ArrayList<>(builder.segments));
+        // Resolved here so that routing, the cache key and the audio all see the same format
+        this.outputFormat = builder.outputFormat == null ? SpeechConfig.DEFAULT_OUTPUT_FORMAT : builder.outputFormat;
+        this.outputFileName = builder.outputFileName;
     }
 
     /**
@@ -97,10 +132,82 @@ public class SSML implements Serializable {
         return synthesisText;
     }
 
+    /**
+     * Gets the voice role.
+     *
+     * @return The voice role, or null for the default voice or a catalogue voice that is not in VoiceEnum.
+     */
+    public VoiceEnum getVoice() {
+        return voice == null ? null : voice.toVoiceEnum();
+    }
+
+    /**
+     * Gets the voice, whether it was set as a VoiceEnum constant or from the catalogue.
+     *
+     * @return The voice, or null for the default voice.
+     */
+    public Voice getCatalogVoice() {
+        return voice;
+    }
+
+    /**
+     * Gets the rate of speech.
+     *
+     * @return The rate of speech, or null for the default rate.
+     */
+    public String getRate() {
+        return rate;
+    }
+
+    /**
+     * Gets the volume.
+     *
+     * @return The volume, or null for the default volume.
+     */
+    public String getVolume() {
+        return volume;
+    }
+
+    /**
+     * Gets the pitch.
+     *
+     * @return The pitch, or null for the default pitch.
+     */
+    public String getPitch() {
+        return pitch;
+    }
+
+    /**
+     * Gets the speaking style of the synthesis text.
+     *
+     * @return The style, or null for the voice's neutral style.
+     */
+    public TtsStyleEnum getStyle() {
+        return style;
+    }
+
+    /**
+     * Gets the intensity of the speaking style.
+     *
+     * @return The style degree, or null for the default of 1.
+     */
+    public Double getStyleDegree() {
+        return styleDegree;
+    }
+
+    /**
+     * Gets the segments spoken after the synthesis text.
+     *
+     * @return The segments, empty for a single-voice document.
+     */
+    public List<VoiceSegment> getSegments() {
+        return segments;
+    }
+
     /**
      * Gets the output format.
      *
-     * @return The output format.
+     * @return The output format, the default one if none was set.
      */
     public OutputFormat getOutputFormat() {
         return outputFormat;
@@ -115,6 +222,17 @@ public class SSML implements Serializable {
         return outputFileName;
     }
 
+    /**
+     * Gets a key identifying the audio this SSML produces: a SHA-256 hash of the output format and the SSML
+     * document with default voice, rate, volume and pitch filled in. The per-request X-RequestId and X-Timestamp headers
+     * and the output file name do not contribute, so equal requests have equal keys.
+     *
+     * @return The cache key as 64 hex characters.
+     */
+    public String getCacheKey() {
+        return Tools.sha256Hex(outputFormat.name() + "\n" + MessageWriter.ssmlBody(this));
+    }
+
     /**
      * Returns the string representation of the current SSML configuration.
      *
@@ -122,15 +240,56 @@ public class SSML implements Serializable {
      */
     @Override
     public String toString() {
-        return String.format(SSML_PATTERN,
-                Tools.getRandomId(),
-                Tools.date(),
-                Optional.ofNullable(voice).orElse(VoiceEnum.zh_CN_XiaoxiaoNeural).getLocale(),
-                Optional.ofNullable(voice).orElse(VoiceEnum.zh_CN_XiaoxiaoNeural).getShortName(),
-                Optional.ofNullable(rate).orElse("+0%"),
-                Optional.ofNullable(volume).orElse("+0%"),
-                synthesisText
-        );
+        return render(Tools.getRandomId());
+    }
+
+    /**
+     * Renders the SSML message with the given request id, so that response frames can be matched to it.
+     *
+     * @param requestId The value of the X-RequestId header.
+     * @return The SSML message.
+     */
+    String render(String requestId) {
+        return MessageWriter.ssml(this, requestId);
+    }
+
+    /**
+     * Gets the text the document starts with, e.g. to name its output file.
+     *
+     * @return The synthesis text, or the text of the first segment if there is none.
+     */
+    String getLeadingText() {
+        if (synthesisText != null || segments.isEmpty()) {
+            return synthesisText;
+        }
+        return segments.get(0).getText();
+    }
+
+    /**
+     * Creates a builder holding the settings of this SSML, e.g. to derive a document with different text.
+     *
+     * @return A new SSMLBuilder.
+     */
+    SSMLBuilder toBuilder() {
+        SSMLBuilder builder = new SSMLBuilder();
+        builder.synthesisText = synthesisText;
+        builder.voice = voice;
+        builder.rate = rate;
+        builder.volume = volume;
+        builder.pitch = pitch;
+        builder.style = style;
+        builder.styleDegree = styleDegree;
+        builder.segments.addAll(segments);
+        builder.outputFormat = outputFormat;
+        builder.outputFileName = outputFileName;
+        return builder;
+    }
+
+    static double checkStyleDegree(double styleDegree) {
+        if (!(styleDegree >= 0.01 && styleDegree <= 2)) {
+            throw new IllegalArgumentException("styleDegree must be between 0.01 and 2");
+        }
+        return styleDegree;
     }
 
     /**
@@ -138,9 +297,13 @@ public class SSML implements Serializable {
      */
     public static class SSMLBuilder {
         private String synthesisText;
-        private VoiceEnum voice;
+        private Voice voice;
         private String rate;
         private String volume;
+        private String pitch;
+        private TtsStyleEnum style;
+        private Double styleDegree;
+        private final List<VoiceSegment> segments = new ArrayList<>();
         private OutputFormat outputFormat;
         private String outputFileName;
 
@@ -162,6 +325,17 @@ public class SSML implements Serializable {
          * @return An instance of SSMLBuilder.
          */
         public SSMLBuilder voice(VoiceEnum voice) {
+            this.voice = voice == null ? null : Voice.of(voice);
+            return this;
+        }
+
+        /**
+         * Sets the voice role to a voice of the catalogue, e.g. one that VoiceEnum does not list.
+         *
+         * @param voice The voice.
+         * @return An instance of SSMLBuilder.
+         */
+        public SSMLBuilder voice(Voice voice) {
             this.voice = voice;
             return this;
         }
@@ -188,6 +362,51 @@ public class SSML implements Serializable {
             return this;
         }
 
+        /**
+         * Sets the pitch.
+         *
+         * @param pitch The pitch, e.g. "+5Hz" or "-10%".
+         * @return An instance of SSMLBuilder.
+         */
+        public SSMLBuilder pitch(String pitch) {
+            this.pitch = pitch;
+            return this;
+        }
+
+        /**
+         * Sets the speaking style of the synthesis text. Only some voices support styles; others ignore it.
+         *
+         * @param style The speaking style.
+         * @return An instance of SSMLBuilder.
+         */
+        public SSMLBuilder style(TtsStyleEnum style) {
+            this.style = style;
+            return this;
+        }
+
+        /**
+         * Sets the intensity of the speaking style.
+         *
+         * @param styleDegree The style degree, from 0.01 to 2.
+         * @return An instance of SSMLBuilder.
+         */
+        public SSMLBuilder styleDegree(double styleDegree) {
+            this.styleDegree = checkStyleDegree(styleDegree);
+            return this;
+        }
+
+        /**
+         * Appends a segment, spoken after the synthesis text and any earlier segments. The synthesis text may be
+         * left unset when the document consists of segments only.
+         *
+         * @param segment The segment.
+         * @return An instance of SSMLBuilder.
+         */
+        public SSMLBuilder segment(VoiceSegment segment) {
+            segments.add(Objects.requireNonNull(segment, "segment"));
+            return this;
+        }
+
         /**
          * Sets the output file name.
          *
@@ -202,7 +421,7 @@ public class SSML implements Serializable {
         /**
          * Sets the output format.
          *
-         * @param outputFormat The output format.
+         * @param outputFormat The output format, or null for audio-24khz-48kbitrate-mono-mp3.
          * @return An instance of SSMLBuilder.
          */
         public SSMLBuilder outputFormat(OutputFormat outputFormat) {
@@ -216,7 +435,7 @@ public class SSML implements Serializable {
          * @return An instance of SSML.
          */
         public SSML build() {
-            return new SSML(this.synthesisText, this.voice, this.rate, this.volume, this.outputFormat, this.outputFileName);
+            return new SSML(this);
         }
     }
 }
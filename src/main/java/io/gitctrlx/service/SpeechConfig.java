@@ -1,7 +1,6 @@
 package io.gitctrlx.service;
 
 import io.gitctrlx.constant.OutputFormat;
-import io.gitctrlx.util.Tools;
 
 import java.io.Serializable;
 import java.util.Optional;
@@ -20,6 +19,11 @@ public class SpeechConfig implements Serializable {
             "\r\n" +
             "{\"context\":{\"synthesis\":{\"audio\":{\"metadataoptions\":{\"sentenceBoundaryEnabled\":\"false\",\"wordBoundaryEnabled\":\"true\"},\"outputFormat\":\"%s\"}}}}";
 
+    /**
+     * The output format of requests that do not set one.
+     */
+    static final OutputFormat DEFAULT_OUTPUT_FORMAT = OutputFormat.audio_24khz_48kbitrate_mono_mp3;
+
     private OutputFormat outputFormat;
 
     /**
@@ -30,7 +34,7 @@ public class SpeechConfig implements Serializable {
     private SpeechConfig(OutputFormat outputFormat) {
         this.outputFormat = Optional
                 .ofNullable(outputFormat)
-                .orElse(OutputFormat.audio_24khz_48kbitrate_mono_mp3);
+                .orElse(DEFAULT_OUTPUT_FORMAT);
     }
 
     /**
@@ -68,6 +72,6 @@ public class SpeechConfig implements Serializable {
      */
     @Override
     public String toString() {
-        return String.format(CONFIG_PATTERN, Tools.date(), outputFormat.getValue());
+        return MessageWriter.speechConfig(outputFormat);
     }
 }
@@ -0,0 +1,184 @@
+package io.gitctrlx.service;
+
+import io.gitctrlx.constant.TtsConstants;
+
+import okhttp3.HttpUrl;
+import okhttp3.Request;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Where and how the speech WebSocket is opened: the URL, its query parameters and the request headers.
+ * <p>
+ * {@link #edge()} is the public Edge read-aloud service and the default. Another endpoint, such as a local mock
+ * server for load tests, is set with {@link TTSService.TTSServiceBuilder#endpoint}. Every connection adds its own
+ * connection id as a query parameter.
+ */
+public final class SpeechEndpoint {
+
+    private static final SpeechEndpoint EDGE = builder()
+            .url(TtsConstants.EDGE_SPEECH_WSS)
+            .queryParameter("Retry-After", "200")
+            .queryParameter("TrustedClientToken", TtsConstants.TRUSTED_CLIENT_TOKEN)
+            .header("User-Agent", TtsConstants.UA)
+            .header("Origin", TtsConstants.EDGE_SPEECH_ORIGIN)
+            .build();
+
+    private final HttpUrl url;
+    private final String connectionIdParameter;
+    private final List<String[]> headers;
+
+    /**
+     * Constructor that initializes the endpoint from a builder.
+     *
+     * @param builder The builder holding the settings
+     */
+    private SpeechEndpoint(SpeechEndpointBuilder builder) {
+        HttpUrl.Builder url = toHttpUrl(builder.url).newBuilder();
+        for (String[] parameter : builder.queryParameters) {
+            url.addQueryParameter(parameter[0], parameter[1]);
+        }
+        this.url = url.build();
+        this.connectionIdParameter = builder.connectionIdParameter;
+        this.headers = Collections.unmodifiableList(new ArrayList<>(builder.headers));
+    }
+
+    /**
+     * Gets the public Edge read-aloud endpoint.
+     *
+     * @return The Edge endpoint
+     */
+    public static SpeechEndpoint edge() {
+        return EDGE;
+    }
+
+    /**
+     * Static factory method that returns an instance of SpeechEndpointBuilder.
+     *
+     * @return An instance of SpeechEndpointBuilder.
+     */
+    public static SpeechEndpointBuilder builder() {
+        return new SpeechEndpointBuilder();
+    }
+
+    /**
+     * Creates the WebSocket upgrade request for one connection.
+     *
+     * @param connectionId The connection id
+     * @return The request
+     */
+    Request newRequest(String connectionId) {
+        Request.Builder request = new Request.Builder()
+                .url(url.newBuilder().addQueryParameter(connectionIdParameter, connectionId).build());
+        for (String[] header : headers) {
+            request.addHeader(header[0], header[1]);
+        }
+        return request.build();
+    }
+
+    /**
+     * Gets the URL without the connection id.
+     *
+     * @return The URL, with the http or https scheme OkHttp uses for ws and wss
+     */
+    public String getUrl() {
+        return url.toString();
+    }
+
+    @Override
+    public String toString() {
+        return "SpeechEndpoint{url=" + url.newBuilder().query(null).build() + "}";
+    }
+
+    /**
+     * Parses a ws, wss, http or https URL.
+     */
+    private static HttpUrl toHttpUrl(String url) {
+        String httpUrl = url;
+        if (url.regionMatches(true, 0, "ws:", 0, 3)) {
+            httpUrl = "http:" + url.substring(3);
+        } else if (url.regionMatches(true, 0, "wss:", 0, 4)) {
+            httpUrl = "https:" + url.substring(4);
+        }
+        HttpUrl parsed = HttpUrl.parse(httpUrl);
+        if (parsed == null) {
+            throw new IllegalArgumentException("Invalid endpoint URL: " + url);
+        }
+        return parsed;
+    }
+
+    /**
+     * The SpeechEndpointBuilder class is used to build SpeechEndpoint objects.
+     */
+    public static class SpeechEndpointBuilder {
+        private String url;
+        private String connectionIdParameter = "ConnectionId";
+        private final List<String[]> queryParameters = new ArrayList<>();
+        private final List<String[]> headers = new ArrayList<>();
+
+        private SpeechEndpointBuilder() {
+        }
+
+        /**
+         * Sets the WebSocket URL, e.g. "ws://localhost:8080/tts".
+         *
+         * @param url The URL, with a ws, wss, http or https scheme.
+         * @return An instance of SpeechEndpointBuilder.
+         */
+        public SpeechEndpointBuilder url(String url) {
+            this.url = Objects.requireNonNull(url, "url");
+            return this;
+        }
+
+        /**
+         * Adds a query parameter sent on every connection.
+         *
+         * @param name  The parameter name.
+         * @param value The parameter value.
+         * @return An instance of SpeechEndpointBuilder.
+         */
+        public SpeechEndpointBuilder queryParameter(String name, String value) {
+            queryParameters.add(new String[]{Objects.requireNonNull(name, "name"), Objects.requireNonNull(value, "value")});
+            return this;
+        }
+
+        /**
+         * Sets the name of the query parameter carrying the connection id. Defaults to "ConnectionId".
+         *
+         * @param connectionIdParameter The parameter name.
+         * @return An instance of SpeechEndpointBuilder.
+         */
+        public SpeechEndpointBuilder connectionIdParameter(String connectionIdParameter) {
+            this.connectionIdParameter = Objects.requireNonNull(connectionIdParameter, "connectionIdParameter");
+            return this;
+        }
+
+        /**
+         * Adds a header sent with every WebSocket upgrade request.
+         *
+         * @param name  The header name.
+         * @param value The header value.
+         * @return An instance of SpeechEndpointBuilder.
+         */
+        public SpeechEndpointBuilder header(String name, String value) {
+            headers.add(new String[]{Objects.requireNonNull(name, "name"), Objects.requireNonNull(value, "value")});
+            return this;
+        }
+
+        /**
+         * Builds the SpeechEndpoint object.
+         *
+         * @return An instance of SpeechEndpoint.
+         * @throws IllegalArgumentException If no URL is set or it is invalid
+         */
+        public SpeechEndpoint build() {
+            if (url == null) {
+                throw new IllegalArgumentException("url must be set");
+            }
+            return new SpeechEndpoint(this);
+        }
+    }
+}
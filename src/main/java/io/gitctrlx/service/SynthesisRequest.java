@@ -0,0 +1,44 @@
+package io.gitctrlx.service;
+
+import io.gitctrlx.audio.AudioSink;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * One submitted synthesis as it moves through {@link TtsClientPool} and {@link TtsConnection}.
+ * <p>
+ * The future is the single completion signal: the connection completes it on turn.end or failure, and the caller
+ * may complete it first by cancelling it or letting it time out, in which case the pool and connection drop it.
+ */
+final class SynthesisRequest {
+
+    final SSML ssml;
+    final AudioSink sink;
+    final CompletableFuture<SynthesisResult> future = new CompletableFuture<>();
+    final long submittedNanos = System.nanoTime();
+
+    /**
+     * Set by the connection when the service reports turn.start for the request.
+     */
+    volatile boolean started;
+
+    /**
+     * The pool slot the request runs on, {@link #QUEUED} while waiting, {@link #DELAYED} while waiting to be
+     * queued or {@link #DONE} once released.
+     * Guarded by the pool.
+     */
+    int slot = QUEUED;
+
+    static final int QUEUED = -1;
+    static final int DONE = -2;
+    static final int DELAYED = -3;
+
+    /**
+     * @param ssml The SSML text
+     * @param sink Receives the audio as it arrives
+     */
+    SynthesisRequest(SSML ssml, AudioSink sink) {
+        this.ssml = ssml;
+        this.sink = sink;
+    }
+}
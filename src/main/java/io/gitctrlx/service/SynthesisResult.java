@@ -0,0 +1,234 @@
+package io.gitctrlx.service;
+
+import io.gitctrlx.audio.AudioSink;
+import io.gitctrlx.audio.MemoryAudioSink;
+import io.gitctrlx.constant.OutputFormat;
+import io.gitctrlx.subtitle.WordBoundary;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The SynthesisResult class holds the audio and timing information of one completed speech synthesis.
+ */
+public class SynthesisResult {
+
+    /**
+     * The X-RequestId the synthesis was sent with
+     */
+    private final String requestId;
+
+    /**
+     * Format of the audio data
+     */
+    private final OutputFormat outputFormat;
+
+    /**
+     * The sink the audio was written to
+     */
+    private final AudioSink sink;
+
+    /**
+     * Number of audio bytes received
+     */
+    private final long audioLength;
+
+    /**
+     * Time spent waiting for a connection, in nanoseconds
+     */
+    private final long queueNanos;
+
+    /**
+     * Time from sending the SSML to receiving the first audio frame, in nanoseconds, or -1 if there was no audio
+     */
+    private final long firstByteNanos;
+
+    /**
+     * Time from sending the SSML to receiving turn.end, in nanoseconds
+     */
+    private final long synthesisNanos;
+
+    /**
+     * Whether the audio was served from the cache rather than synthesised for this request
+     */
+    private final boolean cached;
+
+    /**
+     * Word boundaries reported by the service, in audio order
+     */
+    private final List<WordBoundary> wordBoundaries;
+
+    /**
+     * Constructor that initializes the result with the specified values.
+     *
+     * @param requestId      The X-RequestId the synthesis was sent with
+     * @param outputFormat   Format of the audio data
+     * @param sink           The sink the audio was written to
+     * @param audioLength    Number of audio bytes received
+     * @param queueNanos     Time spent waiting for a connection, in nanoseconds
+     * @param firstByteNanos Time from sending the SSML to the first audio frame, in nanoseconds, or -1
+     * @param synthesisNanos Time from sending the SSML to receiving turn.end, in nanoseconds
+     */
+    SynthesisResult(String requestId, OutputFormat outputFormat, AudioSink sink, long audioLength,
+                    long queueNanos, long firstByteNanos, long synthesisNanos) {
+        this(requestId, outputFormat, sink, audioLength, queueNanos, firstByteNanos, synthesisNanos, false);
+    }
+
+    /**
+     * Constructor that initializes the result with the specified values.
+     *
+     * @param requestId      The X-RequestId the synthesis was sent with, or null if it was served from the cache
+     * @param outputFormat   Format of the audio data
+     * @param sink           The sink the audio was written to
+     * @param audioLength    Number of audio bytes received
+     * @param queueNanos     Time spent waiting for a connection, in nanoseconds
+     * @param firstByteNanos Time from sending the SSML to the first audio frame, in nanoseconds, or -1
+     * @param synthesisNanos Time from sending the SSML to receiving turn.end, in nanoseconds
+     * @param cached         Whether the audio was served from the cache
+     */
+    SynthesisResult(String requestId, OutputFormat outputFormat, AudioSink sink, long audioLength,
+                    long queueNanos, long firstByteNanos, long synthesisNanos, boolean cached) {
+        this(requestId, outputFormat, sink, audioLength, queueNanos, firstByteNanos, synthesisNanos, cached,
+                Collections.<WordBoundary>emptyList());
+    }
+
+    /**
+     * Constructor that initializes the result with the specified values.
+     *
+     * @param requestId      The X-RequestId the synthesis was sent with, or null if it was served from the cache
+     * @param outputFormat   Format of the audio data
+     * @param sink           The sink the audio was written to
+     * @param audioLength    Number of audio bytes received
+     * @param queueNanos     Time spent waiting for a connection, in nanoseconds
+     * @param firstByteNanos Time from sending the SSML to the first audio frame, in nanoseconds, or -1
+     * @param synthesisNanos Time from sending the SSML to receiving turn.end, in nanoseconds
+     * @param cached         Whether the audio was served from the cache
+     * @param wordBoundaries The word boundaries, which the result takes ownership of
+     */
+    SynthesisResult(String requestId, OutputFormat outputFormat, AudioSink sink, long audioLength,
+                    long queueNanos, long firstByteNanos, long synthesisNanos, boolean cached,
+                    List<WordBoundary> wordBoundaries) {
+        this.cached = cached;
+        this.wordBoundaries = Collections.unmodifiableList(wordBoundaries);
+        this.requestId = requestId;
+        this.outputFormat = outputFormat;
+        this.sink = sink;
+        this.audioLength = audioLength;
+        this.queueNanos = queueNanos;
+        this.firstByteNanos = firstByteNanos;
+        this.synthesisNanos = synthesisNanos;
+    }
+
+    /**
+     * Gets the X-RequestId the synthesis was sent with.
+     *
+     * @return The request id, or null if the audio was served from the cache.
+     */
+    public String getRequestId() {
+        return requestId;
+    }
+
+    /**
+     * Gets the format of the audio data.
+     *
+     * @return The output format.
+     */
+    public OutputFormat getOutputFormat() {
+        return outputFormat;
+    }
+
+    /**
+     * Gets the audio data collected in memory. It is empty when the audio was written to another kind of sink.
+     *
+     * @return The audio data.
+     * @see MemoryAudioSink#toByteArray()
+     */
+    public byte[] getAudio() {
+        return sink instanceof MemoryAudioSink ? ((MemoryAudioSink) sink).toByteArray() : new byte[0];
+    }
+
+    /**
+     * Gets the sink the audio was written to.
+     *
+     * @return The sink.
+     */
+    public AudioSink getSink() {
+        return sink;
+    }
+
+    /**
+     * Gets the number of audio bytes received, whether collected or streamed.
+     *
+     * @return The audio length in bytes.
+     */
+    public long getAudioLength() {
+        return audioLength;
+    }
+
+    /**
+     * Gets the time the request spent waiting for a free connection.
+     *
+     * @return The queue time.
+     */
+    public Duration getQueueTime() {
+        return Duration.ofNanos(queueNanos);
+    }
+
+    /**
+     * Gets the time from sending the SSML to receiving the first audio frame.
+     *
+     * @return The time to first byte, or null if no audio was received.
+     */
+    public Duration getTimeToFirstByte() {
+        return firstByteNanos < 0 ? null : Duration.ofNanos(firstByteNanos);
+    }
+
+    /**
+     * Gets the time from sending the SSML to receiving turn.end.
+     *
+     * @return The synthesis time.
+     */
+    public Duration getSynthesisTime() {
+        return Duration.ofNanos(synthesisNanos);
+    }
+
+    /**
+     * Whether the audio was served from the cache. For a cached result the timings describe copying the audio
+     * into the sink rather than a synthesis.
+     *
+     * @return true if no synthesis was run for this request.
+     */
+    public boolean isCached() {
+        return cached;
+    }
+
+    /**
+     * Gets the words of the text with their offsets in the audio, as reported by the service while it synthesised.
+     * Empty for a cached result whose clip was read back from disk, and for results that join several syntheses.
+     *
+     * @return The word boundaries in audio order, unmodifiable.
+     * @see io.gitctrlx.subtitle.SubtitleWriter
+     */
+    public List<WordBoundary> getWordBoundaries() {
+        return wordBoundaries;
+    }
+
+    /**
+     * Copies this result for audio that was written to another sink.
+     *
+     * @param sink The sink the audio was copied to
+     * @return The copy
+     */
+    SynthesisResult withSink(AudioSink sink) {
+        return new SynthesisResult(requestId, outputFormat, sink, audioLength, queueNanos, firstByteNanos, synthesisNanos, cached,
+                wordBoundaries);
+    }
+
+    @Override
+    public String toString() {
+        return "SynthesisResult{requestId=" + requestId + ", outputFormat=" + outputFormat + ", bytes=" + audioLength
+                + ", queueTime=" + getQueueTime() + ", timeToFirstByte=" + getTimeToFirstByte()
+                + ", synthesisTime=" + getSynthesisTime() + ", wordBoundaries=" + wordBoundaries.size() + ", cached=" + cached + "}";
+    }
+}
@@ -1,105 +1,108 @@
 package io.gitctrlx.service;
 
+import io.gitctrlx.audio.AudioSink;
+import io.gitctrlx.audio.FileAudioSink;
+import io.gitctrlx.cache.CachedAudio;
+import io.gitctrlx.cache.SynthesisCache;
 import io.gitctrlx.constant.OutputFormat;
-import io.gitctrlx.constant.TtsConstants;
 import io.gitctrlx.exceptions.TtsException;
+import io.gitctrlx.subtitle.WordBoundary;
 import io.gitctrlx.util.Tools;
 
-import okhttp3.*;
-import okio.Buffer;
-import okio.ByteString;
+import okhttp3.Dispatcher;
+import okhttp3.OkHttpClient;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.File;
-import java.io.FileOutputStream;
-import java.nio.charset.StandardCharsets;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.time.Duration;
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * The TTSService class handles text-to-speech conversion services.
+ * <p>
+ * Requests are spread over a pool of WebSocket connections. {@code new TTSService()} uses a single connection;
+ * use {@link #builder()} to configure a larger pool.
  */
-public class TTSService {
+public class TTSService implements AutoCloseable {
 
     public static final Logger log = LoggerFactory.getLogger(TTSService.class);
-    private volatile OutputFormat outputFormat;
-    private volatile String outputFileName;
-    private volatile boolean synthesising;
-    private volatile String currentText;
-    private final Buffer audioBuffer = new Buffer();
-    private OkHttpClient okHttpClient;
-    private WebSocket ws;
-    private TTSCallback callback; // Callback interface
+    private static final RetryPolicy NO_RETRY = RetryPolicy.builder().maxAttempts(1).build();
+    private static final AtomicLong FILE_NAME_SEQUENCE = new AtomicLong();
+    private final OkHttpClient okHttpClient;
+    private final boolean ownsConnectionPool;
+    private final TtsClientPool pool;
+    private final SynthesisCache cache;
+    private final RetryPolicy retryPolicy;
+    private final CircuitBreaker circuitBreaker;
+    private final HedgingPolicy hedgingPolicy;
+    private final AtomicLong retries = new AtomicLong();
 
-    public TTSService(){}
+    public TTSService() {
+        this(builder());
+    }
 
     /**
-     * WebSocket listener
+     * Constructor that initializes the service from a builder.
+     *
+     * @param builder The builder holding the pool settings
      */
-    protected WebSocketListener webSocketListener = new WebSocketListener() {
-        @Override
-        public void onClosed( WebSocket webSocket, int code,  String reason) {
-            super.onClosed(webSocket, code, reason);
-            log.debug("onClosed:" + reason);
-            TTSService.this.ws = null;
-            synthesising = false;
-        }
-
-        @Override
-        public void onClosing( WebSocket webSocket, int code,  String reason) {
-            super.onClosing(webSocket, code, reason);
-            log.debug("onClosing:" + reason);
-            TTSService.this.ws = null;
-            synthesising = false;
-        }
-
-        @Override
-        public void onFailure(WebSocket webSocket, Throwable t, Response response) {
-            super.onFailure(webSocket, t, response);
-            log.error("WebSocket onFailure", t);
-            if (response != null) {
-                log.error("Response: " + response.toString());
-            }
-            TTSService.this.ws = null;
-            synthesising = false;
-            if (callback != null) {
-                callback.onError(new TtsException(t.getMessage(), t));
+    private TTSService(TTSServiceBuilder builder) {
+        Dispatcher dispatcher;
+        if (builder.virtualThreads) {
+            ExecutorService executor = Tools.newVirtualThreadExecutor("tts-ws-");
+            if (executor == null) {
+                throw TtsException.of("[ERROR] Virtual threads require JDK 21 or later");
             }
+            dispatcher = new Dispatcher(executor);
+        } else {
+            dispatcher = new Dispatcher();
         }
-
-        @Override
-        public void onMessage( WebSocket webSocket,  String text) {
-            super.onMessage(webSocket, text);
-            if (text.contains(TtsConstants.TURN_START)) {
-                audioBuffer.clear();
-            } else if (text.contains(TtsConstants.TURN_END)) {
-                if (outputFileName == null || outputFileName.isEmpty()) {
-                    outputFileName = (currentText.length() < 6 ? currentText : currentText.substring(0, 5)).replaceAll("[</|*。?\" >\\\\]", "") + Tools.localDateTime();
-                }
-                String absolutePath = writeAudio(outputFormat, audioBuffer.readByteString(), outputFileName);
-                synthesising = false;
-                outputFileName = null;
-                if (callback != null) {
-                    callback.onSuccess(absolutePath);
-                }
-            }
+        // Every open WebSocket occupies a dispatcher slot for its reader loop
+        dispatcher.setMaxRequestsPerHost(Math.max(dispatcher.getMaxRequestsPerHost(), builder.poolSize));
+        dispatcher.setMaxRequests(Math.max(dispatcher.getMaxRequests(), builder.poolSize));
+        if (builder.okHttpClient != null) {
+            // Shares the caller's connection pool and settings, but not its dispatcher, whose limits are adjusted
+            this.okHttpClient = builder.okHttpClient.newBuilder().dispatcher(dispatcher).build();
+        } else {
+            this.okHttpClient = new OkHttpClient.Builder()
+                    .dispatcher(dispatcher)
+                    .pingInterval(20, TimeUnit.SECONDS) // Set PING frame interval
+                    .build();
         }
-
-        @Override
-        public void onMessage( WebSocket webSocket,  ByteString bytes) {
-            super.onMessage(webSocket, bytes);
-            int audioIndex = bytes.lastIndexOf(TtsConstants.AUDIO_START.getBytes(StandardCharsets.UTF_8)) + TtsConstants.AUDIO_START.length();
-            boolean audioContentType = bytes.lastIndexOf(TtsConstants.AUDIO_CONTENT_TYPE.getBytes(StandardCharsets.UTF_8)) + TtsConstants.AUDIO_CONTENT_TYPE.length() != -1;
-            if (audioIndex != -1 && audioContentType) {
-                try {
-                    audioBuffer.write(bytes.substring(audioIndex));
-                } catch (Exception e) {
-                    log.error("[ERROR] onMessage Error," + e.getMessage(), e);
+        this.ownsConnectionPool = builder.okHttpClient == null;
+        this.pool = new TtsClientPool(okHttpClient, builder.endpoint, builder.poolSize, builder.maxInFlightPerConnection,
+                builder.maxIdleTime.toMillis(), builder.maxConsecutiveFailures, builder.rateLimiter, builder.concurrencyLimiter);
+        this.cache = builder.cache;
+        this.retryPolicy = builder.retryPolicy;
+        this.circuitBreaker = builder.circuitBreaker;
+        this.hedgingPolicy = builder.hedgingPolicy;
+        if (builder.warmUpConnections > 0) {
+            warmUp(builder.warmUpConnections, builder.warmUpFormats).whenComplete((v, e) -> {
+                if (e != null) {
+                    log.warn("[WARN] Connection warm-up failed: {}", e.getMessage());
                 }
-            }
+            });
         }
-    };
+    }
+
+    /**
+     * Static factory method that returns an instance of TTSServiceBuilder.
+     *
+     * @return An instance of TTSServiceBuilder.
+     */
+    public static TTSServiceBuilder builder() {
+        return new TTSServiceBuilder();
+    }
 
     /**
      * The TTSCallback interface defines callback methods for text-to-speech synthesis.
@@ -110,156 +113,676 @@ public class TTSService {
     }
 
     /**
-     * Sends text for speech synthesis
+     * Sends text for speech synthesis and writes the audio to {@link SSML#getOutputFileName()} with the format's
+     * suffix, or to a name derived from the text if none is set. Derived names are unique within the process, so
+     * concurrent requests without an output file do not write to the same file.
+     * <p>
+     * The request runs on a connection with spare capacity, or waits in the pool queue until one becomes available.
+     * This method does not block.
      *
      * @param ssml The SSML text
      * @param callback The callback interface
      */
     public void sendText(SSML ssml, TTSCallback callback) {
-        this.callback = callback; // Initialize callback
-        while (synthesising) {
-            log.info("[INFO] Idling while waiting for the previous speech synthesis");
-            Tools.sleep(1);
+        FileAudioSink sink = AudioSink.toFile(outputFileName(ssml));
+        synthesizeAsync(ssml, sink).whenComplete((result, e) -> {
+            if (e != null) {
+                Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                callback.onError(cause instanceof Exception ? (Exception) cause
+                        : TtsException.of("[ERROR] Speech synthesis failed: " + cause, cause));
+                return;
+            }
+            callback.onSuccess(sink.getAbsolutePath());
+        });
+    }
+
+    /**
+     * Synthesises speech into memory and waits for the result. Waiting parks the calling thread, so with virtual
+     * threads many callers can block here at once without tying up platform threads.
+     *
+     * @param ssml The SSML text
+     * @return The synthesis result
+     * @throws TtsException If the synthesis fails or the calling thread is interrupted
+     */
+    public SynthesisResult synthesize(SSML ssml) {
+        return await(synthesizeAsync(ssml));
+    }
+
+    /**
+     * Synthesises speech into the given sink and waits for the result.
+     *
+     * @param ssml The SSML text
+     * @param sink Receives the audio
+     * @return The synthesis result
+     * @throws TtsException If the synthesis fails or the calling thread is interrupted
+     */
+    public SynthesisResult synthesize(SSML ssml, AudioSink sink) {
+        return await(synthesizeAsync(ssml, sink));
+    }
+
+    /**
+     * Synthesises speech into the given sink and waits at most the given time for the result.
+     *
+     * @param ssml    The SSML text
+     * @param sink    Receives the audio
+     * @param timeout The maximum time to wait for the result
+     * @return The synthesis result
+     * @throws TtsException If the synthesis fails, times out or the calling thread is interrupted
+     */
+    public SynthesisResult synthesize(SSML ssml, AudioSink sink, Duration timeout) {
+        return await(synthesizeAsync(ssml, sink, timeout));
+    }
+
+    /**
+     * Synthesises speech into memory without blocking the caller.
+     * <p>
+     * The returned future completes with the audio once the service reports turn.end, or exceptionally with a
+     * {@link TtsException} if the request fails. Cancelling the future withdraws the request: it is removed from
+     * the queue, or its connection slot is freed and any late frames for it are discarded.
+     *
+     * @param ssml The SSML text
+     * @return A future for the synthesis result
+     */
+    public CompletableFuture<SynthesisResult> synthesizeAsync(SSML ssml) {
+        return submit(ssml, AudioSink.memory(), null);
+    }
+
+    /**
+     * Synthesises speech into memory without blocking the caller, failing with a {@link TtsException} caused by a
+     * {@link TimeoutException} if the result is not complete within the timeout. Queue time counts towards it.
+     *
+     * @param ssml    The SSML text
+     * @param timeout The maximum time to wait for the result
+     * @return A future for the synthesis result
+     */
+    public CompletableFuture<SynthesisResult> synthesizeAsync(SSML ssml, Duration timeout) {
+        return submit(ssml, AudioSink.memory(), Objects.requireNonNull(timeout, "timeout"));
+    }
+
+    /**
+     * Synthesises speech into the given sink without blocking the caller. Chunks are written to the sink as
+     * they arrive; on failure or cancellation the sink is {@link AudioSink#abort() aborted}.
+     *
+     * @param ssml The SSML text
+     * @param sink Receives the audio, e.g. {@link AudioSink#toStream}, {@link AudioSink#toChannel} or
+     *             {@link AudioSink#toFile}
+     * @return A future for the synthesis result
+     */
+    public CompletableFuture<SynthesisResult> synthesizeAsync(SSML ssml, AudioSink sink) {
+        return submit(ssml, Objects.requireNonNull(sink, "sink"), null);
+    }
+
+    /**
+     * Synthesises speech into the given sink as {@link #synthesizeAsync(SSML, AudioSink)} does, failing with a
+     * {@link TtsException} caused by a {@link TimeoutException} if the result is not complete within the timeout.
+     *
+     * @param ssml    The SSML text
+     * @param sink    Receives the audio
+     * @param timeout The maximum time to wait for the result
+     * @return A future for the synthesis result
+     */
+    public CompletableFuture<SynthesisResult> synthesizeAsync(SSML ssml, AudioSink sink, Duration timeout) {
+        return submit(ssml, Objects.requireNonNull(sink, "sink"), Objects.requireNonNull(timeout, "timeout"));
+    }
+
+    /**
+     * Synthesises speech and streams the audio to a listener, one chunk per WebSocket frame, as soon as each
+     * frame arrives. Nothing is buffered: the result carries the timings and
+     * {@link SynthesisResult#getTimeToFirstByte() time to first byte}, but no audio bytes.
+     *
+     * @param ssml     The SSML text
+     * @param listener Receives the audio chunks
+     * @return A future that completes on turn.end
+     */
+    public CompletableFuture<SynthesisResult> synthesizeStreaming(SSML ssml, AudioChunkListener listener) {
+        return submit(ssml, new ListenerAudioSink(Objects.requireNonNull(listener, "listener")), null);
+    }
+
+    /**
+     * Streams the audio to a listener as {@link #synthesizeStreaming(SSML, AudioChunkListener)} does, failing
+     * with a {@link TtsException} caused by a {@link TimeoutException} if turn.end does not arrive in time.
+     *
+     * @param ssml     The SSML text
+     * @param listener Receives the audio chunks
+     * @param timeout  The maximum time to wait for turn.end
+     * @return A future that completes on turn.end
+     */
+    public CompletableFuture<SynthesisResult> synthesizeStreaming(SSML ssml, AudioChunkListener listener, Duration timeout) {
+        return submit(ssml, new ListenerAudioSink(Objects.requireNonNull(listener, "listener")), Objects.requireNonNull(timeout, "timeout"));
+    }
+
+    /**
+     * Waits for a synthesis, withdrawing it if the calling thread is interrupted.
+     *
+     * @param future The synthesis
+     * @return The synthesis result
+     */
+    private static SynthesisResult await(CompletableFuture<SynthesisResult> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            future.cancel(false);
+            Thread.currentThread().interrupt();
+            throw TtsException.of("[ERROR] Interrupted while waiting for speech synthesis", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof TtsException ? (TtsException) cause : TtsException.of("[ERROR] Speech synthesis failed: " + cause.getMessage(), cause);
         }
-        synthesising = true;
-        if (Objects.nonNull(ssml.getOutputFormat()) && !ssml.getOutputFormat().equals(outputFormat)) {
-            sendConfig(ssml.getOutputFormat());
+    }
+
+    /**
+     * Submits a request to the cache or the pool and arms its timeout.
+     *
+     * @param ssml    The SSML text
+     * @param sink    The sink receiving the audio
+     * @param timeout The timeout, or null for none
+     * @return The request's future
+     */
+    private CompletableFuture<SynthesisResult> submit(SSML ssml, AudioSink sink, Duration timeout) {
+        Objects.requireNonNull(ssml, "ssml");
+        CompletableFuture<SynthesisResult> future = cache == null ? dispatch(ssml, sink) : submitCached(ssml, sink);
+        if (timeout != null && !future.isDone()) {
+            ScheduledFuture<?> timer = pool.getScheduler().schedule(() -> future.completeExceptionally(
+                    TtsException.of("[ERROR] Speech synthesis timed out after " + timeout.toMillis() + " ms", new TimeoutException())),
+                    timeout.toNanos(), TimeUnit.NANOSECONDS);
+            future.whenComplete((result, e) -> timer.cancel(false));
         }
-        log.debug("ssml:{}", ssml);
-        if (!getOrCreateWs().send(ssml.toString())) {
-            callback.onError(new TtsException("[ERROR] Failed to send speech synthesis request..."));
-            synthesising = false;
-            return;
+        return future;
+    }
+
+    /**
+     * Submits a request to the pool, through the retry policy, circuit breaker and hedging policy if configured.
+     *
+     * @param ssml The SSML text
+     * @param sink The sink receiving the audio
+     * @return The request's future
+     */
+    private CompletableFuture<SynthesisResult> dispatch(SSML ssml, AudioSink sink) {
+        if (retryPolicy != null || circuitBreaker != null || hedgingPolicy != null) {
+            RetryPolicy policy = retryPolicy != null ? retryPolicy : NO_RETRY;
+            return new RetryingSynthesis(pool, policy, circuitBreaker, hedgingPolicy, retries, ssml, sink).start();
         }
-        currentText = ssml.getSynthesisText();
-        outputFileName = ssml.getOutputFileName();
+        SynthesisRequest request = new SynthesisRequest(ssml, sink);
+        pool.submit(request);
+        return request.future;
     }
 
     /**
-     * Closes the text-to-speech service
+     * Serves a request from the cache, synthesising into memory on a miss, and copies the audio into the sink
+     * once it is available. The synthesis is shared with concurrent identical requests and is not withdrawn when
+     * this request is cancelled or times out.
+     *
+     * @param ssml The SSML text
+     * @param sink The sink receiving the audio
+     * @return The request's future
      */
-    public void close() {
-        while (synthesising) {
-            log.info("[INFO] Idling while waiting for speech synthesis...");
-            Tools.sleep(1);
+    private CompletableFuture<SynthesisResult> submitCached(SSML ssml, AudioSink sink) {
+        long submittedNanos = System.nanoTime();
+        CompletableFuture<SynthesisResult> future = new CompletableFuture<>();
+        SynthesisResult[] synthesised = new SynthesisResult[1];
+        cache.get(ssml.getCacheKey(), key -> dispatch(ssml, AudioSink.memory()).thenApply(result -> {
+            synthesised[0] = result;
+            return new CachedAudio(result.getOutputFormat(), result.getAudio(), result.getWordBoundaries());
+        })).whenComplete((audio, e) -> {
+            if (e != null) {
+                future.completeExceptionally(e instanceof CompletionException && e.getCause() != null ? e.getCause() : e);
+            } else {
+                replay(audio, sink, future, submittedNanos, synthesised[0]);
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Writes audio from the cache into a sink and completes the request.
+     *
+     * @param audio          The audio
+     * @param sink           The sink receiving the audio
+     * @param future         The request's future
+     * @param submittedNanos When the request was submitted
+     * @param synthesised    The synthesis this request ran itself on a miss, or null for a cache hit
+     */
+    private static void replay(CachedAudio audio, AudioSink sink, CompletableFuture<SynthesisResult> future,
+                               long submittedNanos, SynthesisResult synthesised) {
+        if (future.isDone()) {
+            return; // Cancelled or timed out while the synthesis ran
         }
-        if (Objects.nonNull(ws)) {
-            ws.close(1000, "bye");
+        long start = System.nanoTime();
+        try {
+            sink.begin(audio.getFormat());
+            for (WordBoundary boundary : audio.getWordBoundaries()) {
+                sink.wordBoundary(boundary);
+            }
+            sink.write(audio.asByteBuffer());
+            sink.close();
+        } catch (IOException | RuntimeException e) {
+            log.error("[ERROR] Audio sink error: " + e.getMessage(), e);
+            sink.abort();
+            future.completeExceptionally(TtsException.of("[ERROR] Audio sink error: " + e.getMessage(), e));
+            return;
         }
-        if (Objects.nonNull(okHttpClient)) {
-            okHttpClient.dispatcher().executorService().shutdown();   // Clear and shut down the thread pool
-            okHttpClient.connectionPool().evictAll();                 // Clear and close the connection pool
+        SynthesisResult result = synthesised != null
+                ? synthesised.withSink(sink)
+                : new SynthesisResult(null, audio.getFormat(), sink, audio.size(),
+                        start - submittedNanos, audio.size() == 0 ? -1 : 0, System.nanoTime() - start, true,
+                        audio.getWordBoundaries());
+        if (!future.complete(result)) {
+            sink.abort(); // Timed out while copying
         }
     }
 
     /**
-     * Gets or creates a WebSocket connection
+     * Opens connections ahead of the first requests and sends each its speech configuration, so that the first
+     * syntheses after start-up do not pay for DNS, TLS, the WebSocket upgrade and the configuration exchange.
+     * Requests submitted before the connections are open simply queue behind the handshake.
      *
-     * @return The WebSocket connection
+     * @param connections The number of connections to open, capped at the pool size
+     * @param formats     The output formats the connections are configured for, assigned round-robin; none for
+     *                    the default format
+     * @return A future that completes once every connection is open, or exceptionally if one fails to open
      */
-    private synchronized WebSocket getOrCreateWs() {
-        if (Objects.nonNull(ws)) {
-            return ws;
-        }
+    public CompletableFuture<Void> warmUp(int connections, OutputFormat... formats) {
+        return pool.warmUp(connections, Objects.requireNonNull(formats, "formats"));
+    }
+
+    /**
+     * Gets the synthesis cache.
+     *
+     * @return The cache, or null if caching is not enabled
+     */
+    public SynthesisCache getCache() {
+        return cache;
+    }
 
-        String url = TtsConstants.EDGE_SPEECH_WSS + "?Retry-After=200&TrustedClientToken=" + TtsConstants.TRUSTED_CLIENT_TOKEN + "&ConnectionId=" + Tools.getRandomId();
-        String origin = TtsConstants.EDGE_SPEECH_ORIGIN;
+    /**
+     * Gets the number of requests waiting for a free connection.
+     *
+     * @return The queue depth
+     */
+    public int getQueueDepth() {
+        return pool.getQueueDepth();
+    }
 
-        Request request = new Request.Builder()
-                .url(url)
-                .addHeader("User-Agent", TtsConstants.UA)
-                .addHeader("Origin", origin)
-                .build();
-        ws = getOkHttpClient().newWebSocket(request, webSocketListener);
-        sendConfig(outputFormat);
-        return ws;
+    /**
+     * Gets the number of syntheses in flight across all connections.
+     *
+     * @return The in-flight count
+     */
+    public int getInFlight() {
+        return pool.getInFlightCount();
     }
 
     /**
-     * Gets the OkHttpClient instance
+     * Gets the fraction of in-flight slots (pool size times requests per connection) currently in use.
      *
-     * @return The OkHttpClient instance
+     * @return The utilisation, between 0.0 and 1.0
      */
-    private OkHttpClient getOkHttpClient() {
-        if (okHttpClient == null) {
-            okHttpClient = new OkHttpClient.Builder()
-                    .pingInterval(20, TimeUnit.SECONDS) // Set PING frame interval
-                    .build();
-        }
-        return okHttpClient;
+    public double getUtilisation() {
+        return pool.getUtilisation();
+    }
+
+    /**
+     * Gets the number of connections that are currently synthesising.
+     *
+     * @return The number of busy connections
+     */
+    public int getActiveConnections() {
+        return pool.getActiveCount();
+    }
+
+    /**
+     * Gets the number of connections with an open WebSocket.
+     *
+     * @return The number of open connections
+     */
+    public int getOpenConnections() {
+        return pool.getOpenCount();
+    }
+
+    /**
+     * Gets the number of times a connection had to be switched to a different output format. Requests are routed
+     * to connections already configured for their format where possible; a steadily rising count means the mix
+     * of formats exceeds the pool size.
+     *
+     * @return The reconfiguration count
+     */
+    public long getReconfigurationCount() {
+        return pool.getReconfigurationCount();
+    }
+
+    /**
+     * Gets the number of times a failed synthesis was sent again under the retry policy.
+     *
+     * @return The retry count
+     */
+    public long getRetryCount() {
+        return retries.get();
+    }
+
+    /**
+     * Gets the circuit breaker.
+     *
+     * @return The circuit breaker, or null if none is configured
+     */
+    public CircuitBreaker getCircuitBreaker() {
+        return circuitBreaker;
+    }
+
+    /**
+     * Gets the hedging policy, which also holds the hedge counters.
+     *
+     * @return The hedging policy, or null if hedging is not enabled
+     */
+    public HedgingPolicy getHedgingPolicy() {
+        return hedgingPolicy;
+    }
+
+    /**
+     * Gets the configured number of connections.
+     *
+     * @return The pool size
+     */
+    public int getPoolSize() {
+        return pool.getSize();
+    }
+
+    /**
+     * Gets the number of syntheses that can run at once.
+     *
+     * @return The pool size times the in-flight limit per connection
+     */
+    public int getCapacity() {
+        return pool.getCapacity();
+    }
+
+    /**
+     * Closes the text-to-speech service. New requests are rejected at once; this method returns as soon as the
+     * last queued or in-flight synthesis has completed.
+     */
+    @Override
+    public void close() {
+        pool.close();
+        shutdownHttp();
     }
 
     /**
-     * Sends the speech configuration
+     * Closes the text-to-speech service, waiting at most the given time for queued and in-flight syntheses. Those
+     * still unfinished at the deadline fail with a {@link TtsException}.
      *
-     * @param outputFormat The output format
+     * @param timeout The maximum time to wait
+     * @return true if every synthesis completed in time
      */
-    private void sendConfig(OutputFormat outputFormat) {
-        SpeechConfig speechConfig = SpeechConfig.of(outputFormat);
-        log.debug("audio config:{}", speechConfig);
-        if (!getOrCreateWs().send(speechConfig.toString())) {
-            throw TtsException.of("[ERROR] Failed to configure the speech output format");
+    public boolean close(Duration timeout) {
+        boolean drained = pool.close(Math.max(0, Objects.requireNonNull(timeout, "timeout").toNanos()));
+        shutdownHttp();
+        return drained;
+    }
+
+    private void shutdownHttp() {
+        okHttpClient.dispatcher().executorService().shutdown();   // Clear and shut down the thread pool
+        if (ownsConnectionPool) {
+            okHttpClient.connectionPool().evictAll();             // Clear and close the connection pool
         }
-        this.outputFormat = speechConfig.getOutputFormat();
     }
 
     /**
-     * Writes the audio file
+     * Derives the output file name for a request without one, from the start of its text, the current time and a
+     * sequence number, as requests sent within the same second would otherwise share a file.
      *
-     * @param format The audio format
-     * @param data The audio data
-     * @param fileName The file name
-     * @return The absolute path of the audio file
+     * @param ssml The SSML text
+     * @return The output file name without suffix
      */
-    private String writeAudio(OutputFormat format, ByteString data, String fileName) {
-        FileOutputStream fileOutputStream = null;
-        try {
-            // Convert ByteString to byte array
-            byte[] audioBuffer = data.toByteArray();
-
-            // Get file suffix
-            File outputAudioFile = getAudioFile(format, fileName);
-
-            // Create file output stream and write audio data
-            fileOutputStream = new FileOutputStream(outputAudioFile);
-            fileOutputStream.write(audioBuffer);
-            fileOutputStream.flush();
-
-            // Return the absolute path of the audio file
-            return outputAudioFile.getAbsolutePath();
-
-        } catch (Exception e) {
-            log.error(e.getMessage(), e);
-            throw TtsException.of("[ERROR] Audio file write error: " + e.getMessage());
-
-        } finally {
-            // Ensure the file output stream is closed upon completion
-            if (fileOutputStream != null) {
-                try {
-                    fileOutputStream.close();
-                } catch (Exception e) {
-                    log.error("[ERROR] Failed to close FileOutputStream: " + e.getMessage(), e);
-                }
-            }
+    static String outputFileName(SSML ssml) {
+        String fileName = ssml.getOutputFileName();
+        if (fileName == null || fileName.isEmpty()) {
+            String text = Objects.toString(ssml.getLeadingText(), "");
+            fileName = (text.length() < 6 ? text : text.substring(0, 5)).replaceAll("[</|*。?\" >\\\\]", "") + Tools.localDateTime()
+                    + "-" + FILE_NAME_SEQUENCE.incrementAndGet();
         }
+        return fileName;
     }
 
+    /**
+     * Adapts an {@link AudioChunkListener} to the sink interface.
+     */
+    private static final class ListenerAudioSink implements AudioSink {
+        private final AudioChunkListener listener;
 
-    private static File getAudioFile(OutputFormat format, String fileName) {
-        String[] split = format.getValue().split("-");
-        String suffix = split[split.length - 1];
+        private ListenerAudioSink(AudioChunkListener listener) {
+            this.listener = listener;
+        }
 
-        // Generate full output file name
-        String outputFileName = fileName + "." + suffix;
-        File outputAudioFile = new File(outputFileName);
+        @Override
+        public void begin(OutputFormat format) {
+        }
 
-        // If file already exists, delete it first
-        if (outputAudioFile.exists()) {
-            if (!outputAudioFile.delete()) {
-                throw new TtsException("[ERROR] Failed to delete existing file: " + outputFileName);
-            }
+        @Override
+        public void write(ByteBuffer chunk) {
+            listener.onChunk(chunk);
+        }
+
+        @Override
+        public void wordBoundary(WordBoundary boundary) {
+            listener.onWordBoundary(boundary);
+        }
+
+        @Override
+        public void close() {
         }
-        return outputAudioFile;
     }
 
+    /**
+     * The TTSServiceBuilder class is used to build TTSService objects.
+     */
+    public static class TTSServiceBuilder {
+        private int poolSize = 1;
+        private int maxInFlightPerConnection = 1;
+        private Duration maxIdleTime = Duration.ofMinutes(5);
+        private int maxConsecutiveFailures = 3;
+        private SynthesisCache cache;
+        private boolean virtualThreads;
+        private int warmUpConnections;
+        private RetryPolicy retryPolicy;
+        private CircuitBreaker circuitBreaker;
+        private HedgingPolicy hedgingPolicy;
+        private RateLimiter rateLimiter;
+        private ConcurrencyLimiter concurrencyLimiter;
+        private SpeechEndpoint endpoint = SpeechEndpoint.edge();
+        private OkHttpClient okHttpClient;
+        private OutputFormat[] warmUpFormats = new OutputFormat[0];
+
+        /**
+         * Sets the number of WebSocket connections, i.e. how many syntheses can run at once.
+         *
+         * @param poolSize The number of connections, at least 1.
+         * @return An instance of TTSServiceBuilder.
+         */
+        public TTSServiceBuilder poolSize(int poolSize) {
+            if (poolSize < 1) {
+                throw new IllegalArgumentException("poolSize must be at least 1");
+            }
+            this.poolSize = poolSize;
+            return this;
+        }
+
+        /**
+         * Sets how many requests may be pipelined on one connection before waiting for a {@code turn.end}.
+         * Responses are matched to requests by their {@code X-RequestId}.
+         *
+         * @param maxInFlightPerConnection The in-flight limit per connection, at least 1.
+         * @return An instance of TTSServiceBuilder.
+         */
+        public TTSServiceBuilder maxInFlightPerConnection(int maxInFlightPerConnection) {
+            if (maxInFlightPerConnection < 1) {
+                throw new IllegalArgumentException("maxInFlightPerConnection must be at least 1");
+            }
+            this.maxInFlightPerConnection = maxInFlightPerConnection;
+            return this;
+        }
+
+        /**
+         * Sets how long an unused connection stays open before it is closed. It is reopened on demand.
+         *
+         * @param maxIdleTime The max idle time.
+         * @return An instance of TTSServiceBuilder.
+         */
+        public TTSServiceBuilder maxIdleTime(Duration maxIdleTime) {
+            this.maxIdleTime = Objects.requireNonNull(maxIdleTime, "maxIdleTime");
+            return this;
+        }
+
+        /**
+         * Sets how many failed syntheses in a row a connection tolerates before it is closed and reopened.
+         *
+         * @param maxConsecutiveFailures The failure threshold, at least 1.
+         * @return An instance of TTSServiceBuilder.
+         */
+        public TTSServiceBuilder maxConsecutiveFailures(int maxConsecutiveFailures) {
+            if (maxConsecutiveFailures < 1) {
+                throw new IllegalArgumentException("maxConsecutiveFailures must be at least 1");
+            }
+            this.maxConsecutiveFailures = maxConsecutiveFailures;
+            return this;
+        }
+
+        /**
+         * Sets a cache for synthesised audio. Requests with the same {@link SSML#getCacheKey() cache key} are then
+         * synthesised once and served from memory afterwards; concurrent identical requests share one synthesis.
+         * With a cache, audio is written to the sink in one piece once it is available rather than streamed frame
+         * by frame.
+         *
+         * @param cache The cache, or null to disable caching.
+         * @return An instance of TTSServiceBuilder.
+         */
+        public TTSServiceBuilder cache(SynthesisCache cache) {
+            this.cache = cache;
+            return this;
+        }
+
+        /**
+         * Runs the WebSocket readers, and with them sink writes and completion callbacks, on virtual threads
+         * instead of platform threads. Combined with the blocking {@link TTSService#synthesize} methods called
+         * from virtual threads, this lets very many concurrent callers share a few carrier threads. Requires
+         * JDK 21 or later; {@link #build()} fails on older JDKs.
+         *
+         * @param virtualThreads true to use virtual threads.
+         * @return An instance of TTSServiceBuilder.
+         */
+        public TTSServiceBuilder virtualThreads(boolean virtualThreads) {
+            this.virtualThreads = virtualThreads;
+            return this;
+        }
+
+        /**
+         * Sets the policy for sending a synthesis again after a transient failure, such as the connection
+         * dropping. The replay runs on a reopened or another connection; audio already delivered to the sink is
+         * discarded first if the sink {@link AudioSink#reset() supports it}, and otherwise the failure is final.
+         *
+         * @param retryPolicy The retry policy, or null to fail on the first error.
+         * @return An instance of TTSServiceBuilder.
+         */
+        public TTSServiceBuilder retryPolicy(RetryPolicy retryPolicy) {
+            this.retryPolicy = retryPolicy;
+            return this;
+        }
+
+        /**
+         * Sets a circuit breaker that fails requests at once while the service keeps failing, rather than letting
+         * them queue behind connections that will not recover.
+         *
+         * @param circuitBreaker The circuit breaker, or null for none.
+         * @return An instance of TTSServiceBuilder.
+         */
+        public TTSServiceBuilder circuitBreaker(CircuitBreaker circuitBreaker) {
+            this.circuitBreaker = circuitBreaker;
+            return this;
+        }
+
+        /**
+         * Enables hedged requests: a request that has not started within the policy's delay is sent again and
+         * the first copy to deliver audio is kept. Hedges are taken from a pool slot like any request, so the
+         * pool should have spare connections for them.
+         *
+         * @param hedgingPolicy The hedging policy, or null to disable hedging.
+         * @return An instance of TTSServiceBuilder.
+         */
+        public TTSServiceBuilder hedgingPolicy(HedgingPolicy hedgingPolicy) {
+            this.hedgingPolicy = hedgingPolicy;
+            return this;
+        }
+
+        /**
+         * Limits how many syntheses are started per second. Requests over the rate wait in the pool queue.
+         *
+         * @param rateLimiter The rate limiter, or null for no limit.
+         * @return An instance of TTSServiceBuilder.
+         */
+        public TTSServiceBuilder rateLimiter(RateLimiter rateLimiter) {
+            this.rateLimiter = rateLimiter;
+            return this;
+        }
+
+        /**
+         * Adapts the number of syntheses in flight to what the service sustains, from observed latency and
+         * failures. The pool size and in-flight limit per connection remain the upper bound.
+         *
+         * @param concurrencyLimiter The concurrency limiter, or null to always use the full pool.
+         * @return An instance of TTSServiceBuilder.
+         */
+        public TTSServiceBuilder concurrencyLimiter(ConcurrencyLimiter concurrencyLimiter) {
+            this.concurrencyLimiter = concurrencyLimiter;
+            return this;
+        }
+
+        /**
+         * Sets the endpoint the WebSocket connections are opened to. Defaults to {@link SpeechEndpoint#edge()}.
+         *
+         * @param endpoint The endpoint.
+         * @return An instance of TTSServiceBuilder.
+         */
+        public TTSServiceBuilder endpoint(SpeechEndpoint endpoint) {
+            this.endpoint = Objects.requireNonNull(endpoint, "endpoint");
+            return this;
+        }
+
+        /**
+         * Sets the OkHttpClient to open connections with, e.g. for a proxy, TLS settings or interceptors. Its
+         * connection pool and settings are shared; the service uses its own dispatcher. The client's connection
+         * pool is left open when the service is closed.
+         *
+         * @param okHttpClient The client, or null for a client of the service's own.
+         * @return An instance of TTSServiceBuilder.
+         */
+        public TTSServiceBuilder okHttpClient(OkHttpClient okHttpClient) {
+            this.okHttpClient = okHttpClient;
+            return this;
+        }
+
+        /**
+         * Opens connections as soon as the service is built rather than on the first request, configured for the
+         * given formats as {@link TTSService#warmUp} does. The handshakes run in the background; failures are
+         * logged and the connections are reopened on demand.
+         *
+         * @param connections The number of connections to open, at least 0.
+         * @param formats     The output formats to configure, assigned round-robin.
+         * @return An instance of TTSServiceBuilder.
+         */
+        public TTSServiceBuilder warmUp(int connections, OutputFormat... formats) {
+            if (connections < 0) {
+                throw new IllegalArgumentException("connections must not be negative");
+            }
+            this.warmUpConnections = connections;
+            this.warmUpFormats = Objects.requireNonNull(formats, "formats").clone();
+            return this;
+        }
+
+        /**
+         * Builds the TTSService object.
+         *
+         * @return An instance of TTSService.
+         */
+        public TTSService build() {
+            return new TTSService(this);
+        }
+    }
 }
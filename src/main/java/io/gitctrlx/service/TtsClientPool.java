@@ -0,0 +1,654 @@
+package io.gitctrlx.service;
+
+import io.gitctrlx.constant.OutputFormat;
+import io.gitctrlx.exceptions.TtsException;
+
+import okhttp3.OkHttpClient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A fixed-size pool of {@link TtsConnection}s.
+ * <p>
+ * Each request is handed to a connection with spare capacity; when every connection is at its in-flight limit
+ * the request waits in a FIFO queue and is dispatched as soon as a slot frees up, preferring a request near the
+ * head of the queue in the format of the freed connection. Requests are only pipelined onto a busy connection
+ * when they use the output format that connection is configured for, and among equally loaded connections one
+ * already configured for the request's format is preferred, so mixed-format traffic does not reconfigure a
+ * socket on every call. Connections idle for longer than the configured max idle time are disconnected and
+ * reopened lazily, and connections that keep failing are recycled. An optional {@link RateLimiter} and
+ * {@link ConcurrencyLimiter} hold requests in the queue beyond the allowed rate or concurrency.
+ * <p>
+ * Pool state is guarded by a {@link ReentrantLock} rather than a monitor, so callers on virtual threads never pin
+ * their carrier while waiting for it.
+ */
+final class TtsClientPool {
+
+    private static final Logger log = LoggerFactory.getLogger(TtsClientPool.class);
+
+    /**
+     * How far into the queue a freed connection looks for a request it can pipeline.
+     */
+    private static final int SCAN_LIMIT = 32;
+
+    private final TtsConnection[] connections;
+    private final int[] load;
+    private final OutputFormat[] formats;
+    private final Deque<SynthesisRequest> pending = new ArrayDeque<>();
+    private final Queue<SynthesisRequest> ready = new ConcurrentLinkedQueue<>();
+    private final Set<SynthesisRequest> delayed = new HashSet<>();
+    private final ThreadLocal<Boolean> draining = ThreadLocal.withInitial(() -> Boolean.FALSE);
+    private final int maxInFlightPerConnection;
+    private final long maxIdleNanos;
+    private final int maxConsecutiveFailures;
+    private final ScheduledExecutorService scheduler;
+    private final RateLimiter rateLimiter;
+    private final ConcurrencyLimiter concurrencyLimiter;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition idle = lock.newCondition();
+    private int inFlight;
+    private boolean closed;
+    private boolean wakeScheduled;
+
+    /**
+     * Creates the pool. WebSockets are opened lazily on first use.
+     *
+     * @param okHttpClient             The shared OkHttpClient
+     * @param endpoint                 The endpoint the connections open
+     * @param size                     The number of connections
+     * @param maxInFlightPerConnection The number of requests pipelined on one connection
+     * @param maxIdleMillis            Idle time after which a connection's WebSocket is closed
+     * @param maxConsecutiveFailures   Consecutive failures after which a connection is recycled
+     * @param rateLimiter              Limits the rate of syntheses sent, or null for none
+     * @param concurrencyLimiter       Adapts the number of syntheses in flight, or null for none
+     */
+    TtsClientPool(OkHttpClient okHttpClient, SpeechEndpoint endpoint, int size, int maxInFlightPerConnection, long maxIdleMillis, int maxConsecutiveFailures,
+                  RateLimiter rateLimiter, ConcurrencyLimiter concurrencyLimiter) {
+        this.connections = new TtsConnection[size];
+        this.load = new int[size];
+        this.formats = new OutputFormat[size];
+        this.maxInFlightPerConnection = maxInFlightPerConnection;
+        this.maxIdleNanos = TimeUnit.MILLISECONDS.toNanos(maxIdleMillis);
+        this.maxConsecutiveFailures = maxConsecutiveFailures;
+        this.rateLimiter = rateLimiter;
+        this.concurrencyLimiter = concurrencyLimiter;
+        for (int i = 0; i < size; i++) {
+            connections[i] = new TtsConnection(i, okHttpClient, endpoint);
+        }
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "tts-pool-scheduler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long period = Math.max(1000L, maxIdleMillis / 2);
+        scheduler.scheduleWithFixedDelay(this::evictIdle, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Submits a request, dispatching it immediately if a connection has capacity or queueing it otherwise.
+     * The request leaves the pool when its future completes, however that happens.
+     *
+     * @param request The request
+     */
+    void submit(SynthesisRequest request) {
+        lock.lock();
+        try {
+            if (closed) {
+                request.future.completeExceptionally(new TtsException("[ERROR] TTSService is closed"));
+                return;
+            }
+            place(request);
+        } finally {
+            lock.unlock();
+        }
+        request.future.whenComplete((result, e) -> finished(request, result, e));
+        drain();
+    }
+
+    /**
+     * Submits a request after a delay, e.g. to retry a failed synthesis after backing off. While it waits, the
+     * request counts as queued, so {@link #close()} waits for it too.
+     *
+     * @param request    The request
+     * @param delayNanos The delay in nanoseconds
+     */
+    void submit(SynthesisRequest request, long delayNanos) {
+        if (delayNanos <= 0) {
+            submit(request);
+            return;
+        }
+        lock.lock();
+        try {
+            if (closed) {
+                request.future.completeExceptionally(new TtsException("[ERROR] TTSService is closed"));
+                return;
+            }
+            request.slot = SynthesisRequest.DELAYED;
+            delayed.add(request);
+            scheduler.schedule(() -> release(request), delayNanos, TimeUnit.NANOSECONDS);
+        } finally {
+            lock.unlock();
+        }
+        request.future.whenComplete((result, e) -> finished(request, result, e));
+    }
+
+    /**
+     * Moves a delayed request into the queue once its delay has passed.
+     */
+    private void release(SynthesisRequest request) {
+        lock.lock();
+        try {
+            if (request.slot != SynthesisRequest.DELAYED) {
+                return; // Completed while it waited
+            }
+            delayed.remove(request);
+            request.slot = SynthesisRequest.QUEUED;
+            place(request);
+        } finally {
+            lock.unlock();
+        }
+        drain();
+    }
+
+    /**
+     * Gives a request a slot or queues it. Must be called with the lock held.
+     */
+    private void place(SynthesisRequest request) {
+        int slot = pending.isEmpty() ? reserve(request.ssml.getOutputFormat()) : -1;
+        if (slot < 0) {
+            pending.add(request);
+        } else {
+            request.slot = slot;
+            ready.add(request);
+        }
+    }
+
+    /**
+     * Opens idle connections ahead of demand and configures them for the given formats, assigned round-robin.
+     *
+     * @param count         The number of connections to open, capped at the pool size
+     * @param outputFormats The output formats to configure; none for the default format
+     * @return A future that completes once every connection is open
+     */
+    CompletableFuture<Void> warmUp(int count, OutputFormat... outputFormats) {
+        List<CompletableFuture<Void>> opened = new ArrayList<>();
+        lock.lock();
+        try {
+            if (closed) {
+                CompletableFuture<Void> future = new CompletableFuture<>();
+                future.completeExceptionally(new TtsException("[ERROR] TTSService is closed"));
+                return future;
+            }
+            int n = Math.min(count, connections.length);
+            for (int i = 0; i < n; i++) {
+                if (load[i] > 0) {
+                    continue; // Already in use, so already open
+                }
+                OutputFormat format = outputFormats.length == 0 ? SpeechConfig.DEFAULT_OUTPUT_FORMAT
+                        : Objects.requireNonNull(outputFormats[i % outputFormats.length], "outputFormat");
+                try {
+                    opened.add(connections[i].warmUp(format));
+                } catch (TtsException e) {
+                    CompletableFuture<Void> future = new CompletableFuture<>();
+                    future.completeExceptionally(e);
+                    opened.add(future);
+                }
+                formats[i] = format;
+            }
+        } finally {
+            lock.unlock();
+        }
+        return CompletableFuture.allOf(opened.toArray(new CompletableFuture<?>[0]));
+    }
+
+    /**
+     * Gets the scheduler used for pool housekeeping and request timeouts.
+     *
+     * @return The scheduler
+     */
+    ScheduledExecutorService getScheduler() {
+        return scheduler;
+    }
+
+    /**
+     * Gets the number of requests waiting for a connection.
+     *
+     * @return The queue depth
+     */
+    int getQueueDepth() {
+        lock.lock();
+        try {
+            return pending.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Gets the number of connections with at least one synthesis in flight.
+     *
+     * @return The number of busy connections
+     */
+    int getActiveCount() {
+        lock.lock();
+        try {
+            int active = 0;
+            for (int l : load) {
+                if (l > 0) {
+                    active++;
+                }
+            }
+            return active;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Gets the number of syntheses in flight across all connections.
+     *
+     * @return The in-flight count
+     */
+    int getInFlightCount() {
+        lock.lock();
+        try {
+            return inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Gets the number of connections in the pool.
+     *
+     * @return The pool size
+     */
+    int getSize() {
+        return connections.length;
+    }
+
+    /**
+     * Gets the number of requests that can be in flight at once.
+     *
+     * @return The pool size times the in-flight limit per connection
+     */
+    int getCapacity() {
+        return connections.length * maxInFlightPerConnection;
+    }
+
+    /**
+     * Gets the fraction of in-flight slots currently in use.
+     *
+     * @return The utilisation, between 0.0 and 1.0
+     */
+    double getUtilisation() {
+        return (double) getInFlightCount() / getCapacity();
+    }
+
+    /**
+     * Gets the number of times a connection was switched to a different output format.
+     *
+     * @return The reconfiguration count across all connections
+     */
+    long getReconfigurationCount() {
+        long count = 0;
+        for (TtsConnection connection : connections) {
+            count += connection.getReconfigurationCount();
+        }
+        return count;
+    }
+
+    /**
+     * Gets the number of connections with an open WebSocket.
+     *
+     * @return The number of open connections
+     */
+    int getOpenCount() {
+        int open = 0;
+        for (TtsConnection connection : connections) {
+            if (connection.isOpen()) {
+                open++;
+            }
+        }
+        return open;
+    }
+
+    /**
+     * Stops accepting requests, waits for queued and in-flight requests to finish, then closes every connection.
+     */
+    void close() {
+        close(Long.MAX_VALUE);
+    }
+
+    /**
+     * Stops accepting requests and waits up to the timeout for queued and in-flight requests to finish. Requests
+     * still unfinished at the deadline are failed, then every connection is closed.
+     *
+     * @param timeoutNanos The maximum time to wait, in nanoseconds
+     * @return true if every request finished before the deadline
+     */
+    boolean close(long timeoutNanos) {
+        boolean drained;
+        lock.lock();
+        try {
+            closed = true;
+            if (!isIdle()) {
+                log.info("[INFO] Waiting for {} speech syntheses to finish...", inFlight + pending.size() + delayed.size());
+            }
+            long remaining = timeoutNanos;
+            while (!isIdle() && remaining > 0) {
+                if (timeoutNanos == Long.MAX_VALUE) {
+                    idle.awaitUninterruptibly();
+                } else {
+                    try {
+                        remaining = idle.awaitNanos(remaining);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        break;
+                    }
+                }
+            }
+            drained = isIdle();
+        } finally {
+            lock.unlock();
+        }
+        if (!drained) {
+            abandon();
+        }
+        scheduler.shutdownNow();
+        for (TtsConnection connection : connections) {
+            connection.disconnect();
+        }
+        return drained;
+    }
+
+    /**
+     * Fails every request that is still queued or in flight when the pool is closed.
+     */
+    private void abandon() {
+        List<SynthesisRequest> unfinished;
+        int count;
+        lock.lock();
+        try {
+            count = inFlight + pending.size() + delayed.size();
+            unfinished = new ArrayList<>(pending);
+            unfinished.addAll(ready);
+            unfinished.addAll(delayed);
+        } finally {
+            lock.unlock();
+        }
+        log.warn("[WARN] Closing with {} speech syntheses unfinished", count);
+        TtsException e = TtsException.of("[ERROR] TTSService closed before the speech synthesis finished");
+        for (SynthesisRequest request : unfinished) {
+            request.future.completeExceptionally(e);
+        }
+        for (TtsConnection connection : connections) {
+            connection.failAll(e);
+        }
+    }
+
+    /**
+     * Reserves an in-flight slot on the least loaded connection that can take the given format. Ties go to an
+     * open connection already configured for the format, then to an open one that has to be reconfigured, and
+     * only then to a closed one that has to be reopened.
+     *
+     * @param format The requested output format
+     * @return The connection index, or -1 if none has capacity
+     */
+    private int reserve(OutputFormat format) {
+        if (concurrencyLimiter != null && inFlight >= concurrencyLimiter.getLimit()) {
+            return -1;
+        }
+        int best = -1;
+        int bestCost = Integer.MAX_VALUE;
+        for (int i = 0; i < connections.length; i++) {
+            if (load[i] >= maxInFlightPerConnection) {
+                continue;
+            }
+            if (load[i] > 0 && format != formats[i]) {
+                continue; // Cannot reconfigure a connection with requests in flight
+            }
+            int cost = load[i] * 4 + setupCost(i, format);
+            if (cost < bestCost) {
+                best = i;
+                bestCost = cost;
+            }
+        }
+        if (best < 0 || !admit()) {
+            return -1;
+        }
+        claim(best, format);
+        return best;
+    }
+
+    /**
+     * Asks the limiters whether one more synthesis may start now. If the rate limiter says no, a wake-up is
+     * scheduled for when its next token is due. Must be called with the lock held.
+     */
+    private boolean admit() {
+        if (concurrencyLimiter != null && inFlight >= concurrencyLimiter.getLimit()) {
+            return false;
+        }
+        if (rateLimiter != null) {
+            long waitNanos = rateLimiter.tryAcquire();
+            if (waitNanos > 0) {
+                if (!wakeScheduled) {
+                    wakeScheduled = true;
+                    scheduler.schedule(this::wake, waitNanos, TimeUnit.NANOSECONDS);
+                }
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Dispatches queued requests once the rate limiter has a token again.
+     */
+    private void wake() {
+        lock.lock();
+        try {
+            wakeScheduled = false;
+            promote();
+        } finally {
+            lock.unlock();
+        }
+        drain();
+    }
+
+    /**
+     * Moves requests from the head of the queue into free slots for as long as the limiters allow. Must be called
+     * with the lock held.
+     */
+    private void promote() {
+        SynthesisRequest next;
+        while ((next = pending.peek()) != null) {
+            int slot = reserve(next.ssml.getOutputFormat());
+            if (slot < 0) {
+                return;
+            }
+            pending.poll();
+            next.slot = slot;
+            ready.add(next);
+        }
+    }
+
+    /**
+     * Ranks what it takes to run a request of the given format on a connection: 0 if it is open and configured
+     * for the format, 1 if it has to be reconfigured, 2 if it has to be reopened.
+     */
+    private int setupCost(int slot, OutputFormat format) {
+        OutputFormat current = connections[slot].getOutputFormat();
+        if (current == null) {
+            return 2;
+        }
+        return format == current ? 0 : 1;
+    }
+
+    /**
+     * Marks one more request as in flight on a connection.
+     */
+    private void claim(int slot, OutputFormat format) {
+        load[slot]++;
+        inFlight++;
+        formats[slot] = format;
+    }
+
+    /**
+     * Sends every request that has been assigned a slot. Completing a request can free a slot and ready the
+     * next one, so sends are run in a loop here rather than recursively from the completion.
+     */
+    private void drain() {
+        if (draining.get()) {
+            return;
+        }
+        draining.set(Boolean.TRUE);
+        try {
+            SynthesisRequest request;
+            while ((request = ready.poll()) != null) {
+                if (request.future.isDone()) {
+                    continue; // Cancelled or timed out before it was sent; its slot is already released
+                }
+                try {
+                    connections[request.slot].send(request);
+                } catch (TtsException e) {
+                    request.future.completeExceptionally(e);
+                }
+            }
+        } finally {
+            draining.set(Boolean.FALSE);
+        }
+    }
+
+    /**
+     * Releases whatever a completed request held: its place in the queue, or its slot. A freed slot is handed to
+     * the next queued request it can run.
+     */
+    private void finished(SynthesisRequest request, SynthesisResult result, Throwable e) {
+        lock.lock();
+        try {
+            int slot = request.slot;
+            request.slot = SynthesisRequest.DONE;
+            if (slot == SynthesisRequest.QUEUED) {
+                pending.remove(request);
+                signalIfIdle();
+                return;
+            }
+            if (slot == SynthesisRequest.DELAYED) {
+                delayed.remove(request);
+                signalIfIdle();
+                return;
+            }
+            if (slot == SynthesisRequest.DONE) {
+                return;
+            }
+            if (concurrencyLimiter != null) {
+                feedback(result, e);
+            }
+            load[slot]--;
+            inFlight--;
+            TtsConnection connection = connections[slot];
+            if (load[slot] == 0 && connection.getConsecutiveFailures() >= maxConsecutiveFailures) {
+                log.warn("[WARN] Recycling connection after {} consecutive failures", connection.getConsecutiveFailures());
+                connection.disconnect();
+            }
+            // Prefer a queued request in the format the connection is already configured for
+            SynthesisRequest next = null;
+            Iterator<SynthesisRequest> it = pending.iterator();
+            for (int scanned = 0; it.hasNext() && scanned < SCAN_LIMIT; scanned++) {
+                SynthesisRequest candidate = it.next();
+                OutputFormat format = candidate.ssml.getOutputFormat();
+                if (format == formats[slot]) {
+                    next = candidate;
+                    break;
+                }
+            }
+            if (next == null && load[slot] == 0) {
+                next = pending.peek();
+            }
+            if (next != null && admit()) {
+                pending.remove(next);
+                claim(slot, next.ssml.getOutputFormat());
+                next.slot = slot;
+                ready.add(next);
+            }
+            if (concurrencyLimiter != null) {
+                promote(); // The limit may have grown
+            }
+            signalIfIdle();
+        } finally {
+            lock.unlock();
+        }
+        drain();
+    }
+
+    /**
+     * Reports the outcome of a synthesis that was sent to the concurrency limiter. Must be called with the lock
+     * held.
+     */
+    private void feedback(SynthesisResult result, Throwable e) {
+        Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+        if (cause == null) {
+            Duration firstByte = result.getTimeToFirstByte();
+            concurrencyLimiter.onSuccess(firstByte == null ? -1 : firstByte.toNanos(), inFlight);
+        } else if (cause instanceof TtsException && (((TtsException) cause).isRetryable()
+                || cause.getCause() instanceof TimeoutException)) {
+            concurrencyLimiter.onDrop();
+        }
+    }
+
+    /**
+     * Wakes up {@link #close()} once nothing is queued or in flight. Must be called with the lock held.
+     */
+    private void signalIfIdle() {
+        if (isIdle()) {
+            idle.signalAll();
+        }
+    }
+
+    /**
+     * Whether nothing is queued, delayed or in flight. Must be called with the lock held.
+     */
+    private boolean isIdle() {
+        return inFlight == 0 && pending.isEmpty() && delayed.isEmpty();
+    }
+
+    /**
+     * Disconnects connections that have been idle for longer than the max idle time.
+     */
+    private void evictIdle() {
+        long now = System.nanoTime();
+        lock.lock();
+        try {
+            for (int i = 0; i < connections.length; i++) {
+                TtsConnection connection = connections[i];
+                if (load[i] == 0 && connection.isOpen() && now - connection.getLastUsedNanos() > maxIdleNanos) {
+                    log.debug("Closing idle connection");
+                    connection.disconnect();
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+}
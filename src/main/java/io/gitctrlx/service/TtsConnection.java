@@ -0,0 +1,568 @@
+package io.gitctrlx.service;
+
+import io.gitctrlx.constant.OutputFormat;
+import io.gitctrlx.constant.TtsConstants;
+import io.gitctrlx.exceptions.TtsException;
+import io.gitctrlx.protocol.AudioFrameParser;
+import io.gitctrlx.protocol.MetadataParser;
+import io.gitctrlx.subtitle.WordBoundary;
+import io.gitctrlx.util.Tools;
+
+import okhttp3.*;
+import okio.ByteString;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A single WebSocket connection to the speech service.
+ * <p>
+ * Several syntheses can be pipelined on one connection: every request is sent with its own {@code X-RequestId}
+ * and the listener routes response frames to the matching request by that header. All requests in flight on a
+ * connection share its output format; {@link TtsClientPool} only pipelines requests whose formats agree.
+ */
+class TtsConnection {
+
+    private static final Logger log = LoggerFactory.getLogger(TtsConnection.class);
+    private final int id;
+    private final OkHttpClient okHttpClient;
+    private final SpeechEndpoint endpoint;
+    private final Map<String, InFlight> inFlight = new ConcurrentHashMap<>();
+    private volatile OutputFormat outputFormat;
+    private volatile long lastUsedNanos = System.nanoTime();
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    private final AtomicLong reconfigurations = new AtomicLong();
+    private final ReentrantLock lock = new ReentrantLock();
+    private WebSocket ws;
+    private CompletableFuture<Void> opened;
+
+    /**
+     * Creates a connection that opens its WebSocket lazily on first use.
+     *
+     * @param id           The connection id, used for logging
+     * @param okHttpClient The shared OkHttpClient
+     * @param endpoint     The endpoint to connect to
+     */
+    TtsConnection(int id, OkHttpClient okHttpClient, SpeechEndpoint endpoint) {
+        this.id = id;
+        this.okHttpClient = okHttpClient;
+        this.endpoint = endpoint;
+    }
+
+    /**
+     * WebSocket listener. Each WebSocket gets its own listener, so the frame parser is only ever used by that
+     * socket's reader thread.
+     */
+    private final class SocketListener extends WebSocketListener {
+        private final AudioFrameParser parser = new AudioFrameParser();
+        private final MetadataParser metadataParser = new MetadataParser();
+        private final CompletableFuture<Void> opened;
+
+        private SocketListener(CompletableFuture<Void> opened) {
+            this.opened = opened;
+        }
+
+        @Override
+        public void onOpen(WebSocket webSocket, Response response) {
+            super.onOpen(webSocket, response);
+            log.debug("[{}] onOpen", id);
+            opened.complete(null);
+        }
+
+        @Override
+        public void onClosed(WebSocket webSocket, int code, String reason) {
+            super.onClosed(webSocket, code, reason);
+            log.debug("[{}] onClosed:{}", id, reason);
+            opened.completeExceptionally(new TtsException("[ERROR] Connection closed before it opened: " + reason));
+            connectionLost(webSocket, TtsException.retryable("[ERROR] Connection closed during speech synthesis: " + reason, null));
+        }
+
+        @Override
+        public void onClosing(WebSocket webSocket, int code, String reason) {
+            super.onClosing(webSocket, code, reason);
+            log.debug("[{}] onClosing:{}", id, reason);
+            connectionLost(webSocket, TtsException.retryable("[ERROR] Connection closed during speech synthesis: " + reason, null));
+        }
+
+        @Override
+        public void onFailure(WebSocket webSocket, Throwable t, Response response) {
+            super.onFailure(webSocket, t, response);
+            log.error("[" + id + "] WebSocket onFailure", t);
+            if (response != null) {
+                log.error("Response: " + response.toString());
+            }
+            opened.completeExceptionally(new TtsException(t.getMessage(), t));
+            connectionLost(webSocket, TtsException.retryable(t.getMessage(), t));
+        }
+
+        @Override
+        public void onMessage(WebSocket webSocket, String text) {
+            super.onMessage(webSocket, text);
+            int headerEnd = text.indexOf("\r\n\r\n");
+            String headers = headerEnd < 0 ? text : text.substring(0, headerEnd);
+            InFlight entry = find(header(headers, TtsConstants.REQUEST_ID_HEADER));
+            if (entry == null) {
+                return;
+            }
+            String path = header(headers, TtsConstants.PATH_HEADER);
+            if (TtsConstants.AUDIO_METADATA.equals(path)) {
+                if (headerEnd >= 0) {
+                    try {
+                        metadataParser.parse(text, headerEnd + 4, entry::boundary);
+                    } catch (IllegalArgumentException e) {
+                        log.warn("[WARN] [{}] Ignoring audio.metadata frame: {}", id, e.getMessage());
+                    }
+                }
+            } else if (TtsConstants.TURN_END.equals(path)) {
+                complete(entry);
+            } else if (TtsConstants.TURN_START.equals(path)) {
+                entry.request.started = true;
+            }
+        }
+
+        @Override
+        public void onMessage(WebSocket webSocket, ByteString bytes) {
+            super.onMessage(webSocket, bytes);
+            if (!parser.parse(bytes.asByteBuffer()) || parser.payloadLength() == 0) {
+                return;
+            }
+            InFlight entry = find(parser.requestId());
+            if (entry != null) {
+                entry.received(parser.payload(), parser.payloadLength());
+            }
+        }
+    }
+
+    /**
+     * Sends a request on this connection without waiting for earlier requests to finish.
+     * The caller must not mix output formats while requests are in flight.
+     * <p>
+     * The request's future is completed when its turn ends or the connection is lost. If the future is completed
+     * by the caller first (cancelled or timed out), any further frames for the request are ignored.
+     *
+     * @param request The request
+     * @throws TtsException If the request could not be sent; the future is not completed in that case
+     */
+    void send(SynthesisRequest request) {
+        String requestId = Tools.getRandomId();
+        InFlight entry = new InFlight(requestId, request);
+        this.lastUsedNanos = entry.sentNanos;
+        inFlight.put(requestId, entry);
+        try {
+            SSML ssml = request.ssml;
+            WebSocket webSocket = getOrCreateWs(ssml.getOutputFormat());
+            entry.webSocket = webSocket;
+            if (Objects.nonNull(ssml.getOutputFormat()) && !ssml.getOutputFormat().equals(outputFormat)) {
+                reconfigure(webSocket, ssml.getOutputFormat());
+            }
+            entry.format = outputFormat;
+            String message = ssml.render(requestId);
+            log.debug("ssml:{}", message);
+            if (!webSocket.send(message)) {
+                throw TtsException.retryable("[ERROR] Failed to send speech synthesis request...", null);
+            }
+        } catch (TtsException e) {
+            inFlight.remove(requestId);
+            consecutiveFailures.incrementAndGet();
+            throw e;
+        }
+        request.future.whenComplete((result, e) -> inFlight.remove(requestId, entry));
+    }
+
+    /**
+     * Opens the WebSocket ahead of the first request and sends the speech configuration for a format, so that
+     * the first synthesis does not pay for the handshake. The connection must be idle.
+     *
+     * @param format The output format to configure, or null for the current or default format
+     * @return A future that completes once the WebSocket is open
+     * @throws TtsException If the configuration could not be sent
+     */
+    CompletableFuture<Void> warmUp(OutputFormat format) {
+        lock.lock();
+        try {
+            this.lastUsedNanos = System.nanoTime();
+            WebSocket webSocket = getOrCreateWs(format);
+            if (Objects.nonNull(format) && !format.equals(outputFormat)) {
+                reconfigure(webSocket, format);
+            }
+            return opened;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Gets the number of syntheses in flight on this connection.
+     *
+     * @return The in-flight count
+     */
+    int getInFlightCount() {
+        return inFlight.size();
+    }
+
+    /**
+     * Whether the WebSocket is currently open.
+     *
+     * @return true if open
+     */
+    boolean isOpen() {
+        lock.lock();
+        try {
+            return Objects.nonNull(ws);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Gets the time this connection last started a synthesis, from {@link System#nanoTime()}.
+     *
+     * @return The last used time in nanoseconds
+     */
+    long getLastUsedNanos() {
+        return lastUsedNanos;
+    }
+
+    /**
+     * Gets the output format the open WebSocket is configured for.
+     *
+     * @return The output format, or null if the WebSocket is closed
+     */
+    OutputFormat getOutputFormat() {
+        return outputFormat;
+    }
+
+    /**
+     * Gets the number of times the open WebSocket was switched to a different output format.
+     *
+     * @return The reconfiguration count
+     */
+    long getReconfigurationCount() {
+        return reconfigurations.get();
+    }
+
+    /**
+     * Gets the number of failed syntheses since the last successful one.
+     *
+     * @return The consecutive failure count
+     */
+    int getConsecutiveFailures() {
+        return consecutiveFailures.get();
+    }
+
+    /**
+     * Closes the WebSocket while keeping the connection reusable; the next {@link #send} reconnects.
+     */
+    void disconnect() {
+        lock.lock();
+        try {
+            if (Objects.nonNull(ws)) {
+                ws.close(1000, "bye");
+                ws = null;
+                opened.completeExceptionally(new TtsException("[ERROR] Connection closed before it opened"));
+            }
+            outputFormat = null;
+            consecutiveFailures.set(0);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Looks up an in-flight request by the id echoed in a response frame.
+     *
+     * @param requestId The request id, may be null
+     * @return The request, or null if it is unknown or already finished
+     */
+    private InFlight find(String requestId) {
+        return requestId == null ? null : inFlight.get(requestId);
+    }
+
+    /**
+     * Completes a request whose turn has ended, closing its sink.
+     *
+     * @param entry The finished request
+     */
+    private void complete(InFlight entry) {
+        if (!inFlight.remove(entry.requestId, entry)) {
+            return;
+        }
+        long now = System.nanoTime();
+        SynthesisRequest request = entry.request;
+        consecutiveFailures.set(0);
+        if (!entry.close()) {
+            return;
+        }
+        long firstByteNanos = entry.audioLength == 0 ? -1 : entry.firstByteNanos - entry.sentNanos;
+        request.future.complete(new SynthesisResult(entry.requestId, entry.format, request.sink, entry.audioLength,
+                entry.sentNanos - request.submittedNanos, firstByteNanos, now - entry.sentNanos, false, entry.boundaries));
+    }
+
+    /**
+     * Handles the WebSocket going away, failing every request still in flight on it.
+     *
+     * @param webSocket The WebSocket that went away
+     * @param e         The error the in-flight requests are failed with
+     */
+    private void connectionLost(WebSocket webSocket, TtsException e) {
+        lock.lock();
+        try {
+            if (ws != webSocket) {
+                return; // Already replaced or closed by us
+            }
+            ws = null;
+            outputFormat = null;
+        } finally {
+            lock.unlock();
+        }
+        boolean counted = false;
+        for (InFlight entry : inFlight.values()) {
+            if (entry.webSocket == webSocket && inFlight.remove(entry.requestId, entry)) {
+                if (!counted) {
+                    consecutiveFailures.incrementAndGet();
+                    counted = true;
+                }
+                entry.request.future.completeExceptionally(e);
+            }
+        }
+    }
+
+    /**
+     * Fails every request in flight on this connection, e.g. when the service is closed before they finish.
+     *
+     * @param e The error the requests are failed with
+     */
+    void failAll(TtsException e) {
+        for (InFlight entry : inFlight.values()) {
+            if (inFlight.remove(entry.requestId, entry)) {
+                entry.request.future.completeExceptionally(e);
+            }
+        }
+    }
+
+    /**
+     * Extracts a header value from the header block of a frame.
+     *
+     * @param headers The header block
+     * @param name    The header name including the trailing colon
+     * @return The header value, or null if absent
+     */
+    private static String header(String headers, String name) {
+        int start = headers.indexOf(name);
+        if (start < 0) {
+            return null;
+        }
+        start += name.length();
+        int end = headers.indexOf("\r\n", start);
+        return (end < 0 ? headers.substring(start) : headers.substring(start, end)).trim();
+    }
+
+    /**
+     * Gets or creates a WebSocket connection. Guarded by a {@link ReentrantLock} so that a virtual thread opening
+     * the socket does not pin its carrier.
+     *
+     * @param format The output format a new connection is configured for, or null for the default
+     * @return The WebSocket connection
+     */
+    private WebSocket getOrCreateWs(OutputFormat format) {
+        lock.lock();
+        try {
+            if (Objects.nonNull(ws)) {
+                return ws;
+            }
+
+            Request request = endpoint.newRequest(Tools.getRandomId());
+            opened = new CompletableFuture<>();
+            ws = okHttpClient.newWebSocket(request, new SocketListener(opened));
+            sendConfig(ws, format);
+            return ws;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Switches an open WebSocket to a different output format, counting the extra configuration exchange.
+     *
+     * @param webSocket    The WebSocket to configure
+     * @param outputFormat The new output format
+     */
+    private void reconfigure(WebSocket webSocket, OutputFormat outputFormat) {
+        log.debug("[{}] Reconfiguring from {} to {}", id, this.outputFormat, outputFormat);
+        reconfigurations.incrementAndGet();
+        sendConfig(webSocket, outputFormat);
+    }
+
+    /**
+     * Sends the speech configuration
+     *
+     * @param webSocket    The WebSocket to configure
+     * @param outputFormat The output format
+     */
+    private void sendConfig(WebSocket webSocket, OutputFormat outputFormat) {
+        SpeechConfig speechConfig = SpeechConfig.of(outputFormat);
+        log.debug("audio config:{}", speechConfig);
+        if (!webSocket.send(speechConfig.toString())) {
+            throw TtsException.retryable("[ERROR] Failed to configure the speech output format", null);
+        }
+        this.outputFormat = speechConfig.getOutputFormat();
+    }
+
+    /**
+     * State of one synthesis in flight on this connection.
+     * <p>
+     * The sink is written on the reader thread, but aborted on whichever thread fails the future, e.g. the timeout
+     * scheduler or a caller cancelling it. Every sink call is therefore made under {@link #sinkLock}, so an abort
+     * waits for a write in progress and nothing reaches the sink after it.
+     */
+    private static final class InFlight {
+        private final String requestId;
+        private final SynthesisRequest request;
+        private final long sentNanos = System.nanoTime();
+        private final ReentrantLock sinkLock = new ReentrantLock();
+        private volatile OutputFormat format;
+        private volatile WebSocket webSocket;
+        private volatile boolean begun;
+        private boolean aborted;
+        private long firstByteNanos;
+        private long audioLength;
+        private final List<WordBoundary> boundaries = new ArrayList<>();
+
+        private InFlight(String requestId, SynthesisRequest request) {
+            this.requestId = requestId;
+            this.request = request;
+            // Whoever completes the future first, a failed or withdrawn request must not leave partial output behind
+            request.future.whenComplete((result, e) -> {
+                if (e != null) {
+                    abort();
+                }
+            });
+        }
+
+        /**
+         * Aborts the sink if it was opened. Later frames for the request are ignored.
+         */
+        private void abort() {
+            sinkLock.lock();
+            try {
+                if (begun && !aborted) {
+                    request.sink.abort();
+                }
+                aborted = true;
+            } finally {
+                sinkLock.unlock();
+            }
+        }
+
+        /**
+         * Whether the sink must not be called any more. Must be called with the sink lock held.
+         */
+        private boolean withdrawn() {
+            return aborted || request.future.isDone();
+        }
+
+        /**
+         * Completes the sink at turn.end, opening it first if there was no audio.
+         *
+         * @return true if the sink was closed, false if it failed or the request was withdrawn meanwhile
+         */
+        private boolean close() {
+            sinkLock.lock();
+            try {
+                if (withdrawn()) {
+                    return false;
+                }
+                begin();
+                request.sink.close();
+                return true;
+            } catch (IOException | RuntimeException e) {
+                fail(e);
+                return false;
+            } finally {
+                sinkLock.unlock();
+            }
+        }
+
+        /**
+         * Opens the sink on the first chunk, or at turn.end if there was no audio, and passes it the word
+         * boundaries that arrived before. Must be called with the sink lock held.
+         */
+        private void begin() throws IOException {
+            if (!begun) {
+                begun = true;
+                request.sink.begin(format);
+                for (WordBoundary boundary : boundaries) {
+                    request.sink.wordBoundary(boundary);
+                }
+            }
+        }
+
+        /**
+         * Records a word boundary, passing it to the sink right away once the sink is open.
+         *
+         * @param boundary The word boundary
+         */
+        private void boundary(WordBoundary boundary) {
+            sinkLock.lock();
+            try {
+                if (withdrawn()) {
+                    return;
+                }
+                boundaries.add(boundary);
+                if (begun) {
+                    request.sink.wordBoundary(boundary);
+                }
+            } catch (IOException | RuntimeException e) {
+                fail(e);
+            } finally {
+                sinkLock.unlock();
+            }
+        }
+
+        /**
+         * Writes the audio payload of a binary frame to the request's sink.
+         *
+         * @param chunk  The frame buffer, positioned at the audio payload
+         * @param length The payload length
+         */
+        private void received(ByteBuffer chunk, int length) {
+            sinkLock.lock();
+            try {
+                if (withdrawn()) {
+                    return;
+                }
+                if (audioLength == 0) {
+                    firstByteNanos = System.nanoTime();
+                }
+                audioLength += length;
+                begin();
+                request.sink.write(chunk);
+            } catch (IOException | RuntimeException e) {
+                fail(e);
+            } finally {
+                sinkLock.unlock();
+            }
+        }
+
+        /**
+         * Fails the request after its sink threw.
+         *
+         * @param e The sink's exception
+         */
+        private void fail(Exception e) {
+            log.error("[ERROR] Audio sink error: " + e.getMessage(), e);
+            request.future.completeExceptionally(TtsException.of("[ERROR] Audio sink error: " + e.getMessage(), e));
+        }
+    }
+}
@@ -0,0 +1,281 @@
+package io.gitctrlx.service;
+
+import io.gitctrlx.constant.TtsStyleEnum;
+import io.gitctrlx.constant.VoiceEnum;
+import io.gitctrlx.voice.Voice;
+
+import java.io.Serializable;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * One part of a multi-voice SSML document: text spoken by one voice in one style, with optional pauses.
+ * <p>
+ * Segments are added to a document with {@link SSML.SSMLBuilder#segment}, so that a whole dialogue is synthesised
+ * in a single request:
+ * <pre>{@code
+ * SSML dialogue = SSML.builder()
+ *         .segment(VoiceSegment.builder().voice(VoiceEnum.en_US_GuyNeural).text("Did you hear that?").build())
+ *         .segment(VoiceSegment.builder().voice(VoiceEnum.en_US_JennyNeural).style(TtsStyleEnum.whispering)
+ *                 .text("Shh.").pause(Duration.ofMillis(400)).text("Listen.").build())
+ *         .build();
+ * }</pre>
+ * Settings left unset are taken from the document: its voice, rate, volume and pitch.
+ */
+public final class VoiceSegment implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final Voice voice;
+    private final TtsStyleEnum style;
+    private final Double styleDegree;
+    private final String rate;
+    private final String volume;
+    private final String pitch;
+
+    /**
+     * The content in order: a String for text, a Duration for a pause.
+     */
+    private final List<Object> parts;
+
+    /**
+     * Constructor that initializes the segment from a builder.
+     *
+     * @param builder The builder holding the settings
+     */
+    private VoiceSegment(VoiceSegmentBuilder builder) {
+        this.voice = builder.voice;
+        this.style = builder.style;
+        this.styleDegree = builder.styleDegree;
+        this.rate = builder.rate;
+        this.volume = builder.volume;
+        this.pitch = builder.pitch;
+        this.parts = Collections.unmodifiableList(new ArrayList<>(builder.parts));
+    }
+
+    /**
+     * Static factory method that returns an instance of VoiceSegmentBuilder.
+     *
+     * @return An instance of VoiceSegmentBuilder.
+     */
+    public static VoiceSegmentBuilder builder() {
+        return new VoiceSegmentBuilder();
+    }
+
+    /**
+     * Gets the voice role.
+     *
+     * @return The voice, or null to use the document's or for a catalogue voice that is not in VoiceEnum
+     */
+    public VoiceEnum getVoice() {
+        return voice == null ? null : voice.toVoiceEnum();
+    }
+
+    /**
+     * Gets the voice, whether it was set as a VoiceEnum constant or from the catalogue.
+     *
+     * @return The voice, or null to use the document's
+     */
+    public Voice getCatalogVoice() {
+        return voice;
+    }
+
+    /**
+     * Gets the speaking style.
+     *
+     * @return The style, or null for the voice's neutral style
+     */
+    public TtsStyleEnum getStyle() {
+        return style;
+    }
+
+    /**
+     * Gets the intensity of the speaking style.
+     *
+     * @return The style degree, or null for the default of 1
+     */
+    public Double getStyleDegree() {
+        return styleDegree;
+    }
+
+    /**
+     * Gets the rate of speech.
+     *
+     * @return The rate, or null to use the document's
+     */
+    public String getRate() {
+        return rate;
+    }
+
+    /**
+     * Gets the volume.
+     *
+     * @return The volume, or null to use the document's
+     */
+    public String getVolume() {
+        return volume;
+    }
+
+    /**
+     * Gets the pitch.
+     *
+     * @return The pitch, or null to use the document's
+     */
+    public String getPitch() {
+        return pitch;
+    }
+
+    /**
+     * Gets the text of the segment without its pauses.
+     *
+     * @return The text
+     */
+    public String getText() {
+        StringBuilder text = new StringBuilder();
+        for (Object part : parts) {
+            if (part instanceof String) {
+                text.append((String) part);
+            }
+        }
+        return text.toString();
+    }
+
+    /**
+     * Gets the content in order.
+     *
+     * @return A String for every piece of text and a Duration for every pause
+     */
+    List<Object> getParts() {
+        return parts;
+    }
+
+    /**
+     * The VoiceSegmentBuilder class is used to build VoiceSegment objects.
+     */
+    public static class VoiceSegmentBuilder {
+        private Voice voice;
+        private TtsStyleEnum style;
+        private Double styleDegree;
+        private String rate;
+        private String volume;
+        private String pitch;
+        private final List<Object> parts = new ArrayList<>();
+
+        private VoiceSegmentBuilder() {
+        }
+
+        /**
+         * Sets the voice role.
+         *
+         * @param voice The voice role.
+         * @return An instance of VoiceSegmentBuilder.
+         */
+        public VoiceSegmentBuilder voice(VoiceEnum voice) {
+            this.voice = voice == null ? null : Voice.of(voice);
+            return this;
+        }
+
+        /**
+         * Sets the voice role to a voice of the catalogue.
+         *
+         * @param voice The voice.
+         * @return An instance of VoiceSegmentBuilder.
+         */
+        public VoiceSegmentBuilder voice(Voice voice) {
+            this.voice = voice;
+            return this;
+        }
+
+        /**
+         * Sets the speaking style. Only some voices support styles; others ignore it.
+         *
+         * @param style The speaking style.
+         * @return An instance of VoiceSegmentBuilder.
+         */
+        public VoiceSegmentBuilder style(TtsStyleEnum style) {
+            this.style = style;
+            return this;
+        }
+
+        /**
+         * Sets the intensity of the speaking style.
+         *
+         * @param styleDegree The style degree, from 0.01 to 2.
+         * @return An instance of VoiceSegmentBuilder.
+         */
+        public VoiceSegmentBuilder styleDegree(double styleDegree) {
+            this.styleDegree = SSML.checkStyleDegree(styleDegree);
+            return this;
+        }
+
+        /**
+         * Sets the rate of speech.
+         *
+         * @param rate The rate of speech, e.g. "+10%".
+         * @return An instance of VoiceSegmentBuilder.
+         */
+        public VoiceSegmentBuilder rate(String rate) {
+            this.rate = rate;
+            return this;
+        }
+
+        /**
+         * Sets the volume.
+         *
+         * @param volume The volume, e.g. "-20%".
+         * @return An instance of VoiceSegmentBuilder.
+         */
+        public VoiceSegmentBuilder volume(String volume) {
+            this.volume = volume;
+            return this;
+        }
+
+        /**
+         * Sets the pitch.
+         *
+         * @param pitch The pitch, e.g. "+5Hz" or "-10%".
+         * @return An instance of VoiceSegmentBuilder.
+         */
+        public VoiceSegmentBuilder pitch(String pitch) {
+            this.pitch = pitch;
+            return this;
+        }
+
+        /**
+         * Appends text. It is escaped when the document is rendered, so it may contain any characters.
+         *
+         * @param text The text.
+         * @return An instance of VoiceSegmentBuilder.
+         */
+        public VoiceSegmentBuilder text(String text) {
+            parts.add(Objects.requireNonNull(text, "text"));
+            return this;
+        }
+
+        /**
+         * Appends a pause.
+         *
+         * @param pause The length of the pause, rendered in whole milliseconds.
+         * @return An instance of VoiceSegmentBuilder.
+         */
+        public VoiceSegmentBuilder pause(Duration pause) {
+            if (pause.isNegative()) {
+                throw new IllegalArgumentException("pause must not be negative");
+            }
+            parts.add(pause);
+            return this;
+        }
+
+        /**
+         * Builds the VoiceSegment object.
+         *
+         * @return An instance of VoiceSegment.
+         */
+        public VoiceSegment build() {
+            return new VoiceSegment(this);
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package io.gitctrlx.subtitle;
+
+/**
+ * The SubtitleFormat enum defines the subtitle file formats {@link SubtitleWriter} produces.
+ */
+public enum SubtitleFormat {
+
+    /**
+     * SubRip, numbered cues with {@code 00:00:01,000} timestamps.
+     */
+    SRT(".srt", ','),
+
+    /**
+     * Web Video Text Tracks, with a {@code WEBVTT} header and {@code 00:00:01.000} timestamps.
+     */
+    WEBVTT(".vtt", '.');
+
+    private final String suffix;
+    private final char millisSeparator;
+
+    SubtitleFormat(String suffix, char millisSeparator) {
+        this.suffix = suffix;
+        this.millisSeparator = millisSeparator;
+    }
+
+    /**
+     * Gets the file suffix of the format.
+     *
+     * @return The suffix, including the dot
+     */
+    public String getSuffix() {
+        return suffix;
+    }
+
+    /**
+     * Gets the character between seconds and milliseconds in a timestamp.
+     *
+     * @return The separator
+     */
+    char getMillisSeparator() {
+        return millisSeparator;
+    }
+}
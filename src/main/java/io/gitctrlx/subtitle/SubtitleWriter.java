@@ -0,0 +1,232 @@
+package io.gitctrlx.subtitle;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Turns the word boundaries of a synthesis into SRT or WebVTT subtitles.
+ * <p>
+ * Consecutive words are joined into one cue until it would exceed the maximum length or duration, or a sentence
+ * ends. Words are separated by a space, except before punctuation and between CJK characters. A maximum length of
+ * 1 gives one cue per word, e.g. for karaoke-style highlighting.
+ * <pre>{@code
+ * SynthesisResult result = tts.synthesize(ssml);
+ * String srt = SubtitleWriter.builder().build().write(result.getWordBoundaries());
+ * }</pre>
+ */
+public final class SubtitleWriter {
+
+    private final SubtitleFormat format;
+    private final int maxCharacters;
+    private final long maxDurationNanos;
+
+    /**
+     * Constructor that initializes the writer from a builder.
+     *
+     * @param builder The builder holding the settings
+     */
+    private SubtitleWriter(SubtitleWriterBuilder builder) {
+        this.format = builder.format;
+        this.maxCharacters = builder.maxCharacters;
+        this.maxDurationNanos = builder.maxDuration.toNanos();
+    }
+
+    /**
+     * Static factory method that returns an instance of SubtitleWriterBuilder.
+     *
+     * @return An instance of SubtitleWriterBuilder.
+     */
+    public static SubtitleWriterBuilder builder() {
+        return new SubtitleWriterBuilder();
+    }
+
+    /**
+     * Renders the subtitles.
+     *
+     * @param boundaries The word boundaries in audio order
+     * @return The subtitle document
+     */
+    public String write(List<WordBoundary> boundaries) {
+        StringBuilder out = new StringBuilder(boundaries.size() * 32 + 16);
+        try {
+            write(boundaries, out);
+        } catch (IOException e) {
+            throw new IllegalStateException(e); // StringBuilder does not throw
+        }
+        return out.toString();
+    }
+
+    /**
+     * Writes the subtitles to a file in UTF-8.
+     *
+     * @param boundaries The word boundaries in audio order
+     * @param file       The file, which is overwritten
+     * @throws IOException If the file cannot be written
+     */
+    public void write(List<WordBoundary> boundaries, Path file) throws IOException {
+        try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            write(boundaries, writer);
+        }
+    }
+
+    /**
+     * Writes the subtitles.
+     *
+     * @param boundaries The word boundaries in audio order
+     * @param out        The destination
+     * @throws IOException If the destination cannot be written
+     */
+    public void write(List<WordBoundary> boundaries, Appendable out) throws IOException {
+        if (format == SubtitleFormat.WEBVTT) {
+            out.append("WEBVTT\n\n");
+        }
+        boolean wordsOnly = false;
+        for (WordBoundary boundary : boundaries) {
+            if (!WordBoundary.SENTENCE.equals(boundary.getBoxType())) {
+                wordsOnly = true; // Sentence boundaries would repeat the words
+                break;
+            }
+        }
+        StringBuilder text = new StringBuilder();
+        long start = 0;
+        long end = 0;
+        int index = 0;
+        for (WordBoundary boundary : boundaries) {
+            if (wordsOnly && WordBoundary.SENTENCE.equals(boundary.getBoxType())) {
+                continue;
+            }
+            String word = boundary.getText().trim();
+            if (word.isEmpty()) {
+                continue;
+            }
+            String separator = separator(text, boundary, word);
+            if (text.length() > 0 && !boundary.isPunctuation()
+                    && (text.length() + separator.length() + word.length() > maxCharacters
+                    || boundary.getEndNanos() - start > maxDurationNanos)) {
+                cue(out, ++index, start, end, text);
+                text.setLength(0);
+                separator = "";
+            }
+            if (text.length() == 0) {
+                start = boundary.getOffsetNanos();
+            }
+            text.append(separator).append(word);
+            end = Math.max(end, boundary.getEndNanos());
+            if (endsSentence(word)) {
+                cue(out, ++index, start, end, text);
+                text.setLength(0);
+            }
+        }
+        if (text.length() > 0) {
+            cue(out, ++index, start, end, text);
+        }
+    }
+
+    private void cue(Appendable out, int index, long startNanos, long endNanos, CharSequence text) throws IOException {
+        if (format == SubtitleFormat.SRT) {
+            out.append(Integer.toString(index)).append('\n');
+        }
+        timestamp(out, startNanos);
+        out.append(" --> ");
+        timestamp(out, endNanos);
+        out.append('\n').append(text).append("\n\n");
+    }
+
+    private void timestamp(Appendable out, long nanos) throws IOException {
+        long millis = Math.max(0, nanos) / 1_000_000;
+        long hours = millis / 3_600_000;
+        pad(out, hours, 2).append(':');
+        pad(out, millis / 60_000 % 60, 2).append(':');
+        pad(out, millis / 1000 % 60, 2).append(format.getMillisSeparator());
+        pad(out, millis % 1000, 3);
+    }
+
+    private static Appendable pad(Appendable out, long value, int width) throws IOException {
+        String digits = Long.toString(value);
+        for (int i = digits.length(); i < width; i++) {
+            out.append('0');
+        }
+        return out.append(digits);
+    }
+
+    private static String separator(CharSequence text, WordBoundary boundary, String word) {
+        if (text.length() == 0 || boundary.isPunctuation()) {
+            return "";
+        }
+        return isCjk(Character.codePointBefore(text, text.length())) && isCjk(word.codePointAt(0)) ? "" : " ";
+    }
+
+    private static boolean isCjk(int codePoint) {
+        Character.UnicodeScript script = Character.UnicodeScript.of(codePoint);
+        return script == Character.UnicodeScript.HAN || script == Character.UnicodeScript.HIRAGANA
+                || script == Character.UnicodeScript.KATAKANA;
+    }
+
+    private static boolean endsSentence(String word) {
+        char last = word.charAt(word.length() - 1);
+        return last == '.' || last == '!' || last == '?' || last == '。' || last == '！' || last == '？';
+    }
+
+    /**
+     * The SubtitleWriterBuilder class is used to build SubtitleWriter objects.
+     */
+    public static class SubtitleWriterBuilder {
+        private SubtitleFormat format = SubtitleFormat.SRT;
+        private int maxCharacters = 42;
+        private Duration maxDuration = Duration.ofSeconds(5);
+
+        private SubtitleWriterBuilder() {
+        }
+
+        /**
+         * Sets the subtitle format. Defaults to SRT.
+         *
+         * @param format The format.
+         * @return An instance of SubtitleWriterBuilder.
+         */
+        public SubtitleWriterBuilder format(SubtitleFormat format) {
+            this.format = Objects.requireNonNull(format, "format");
+            return this;
+        }
+
+        /**
+         * Sets the most characters in one cue; a single longer word still gets a cue of its own. Defaults to 42.
+         *
+         * @param maxCharacters The maximum cue length, at least 1.
+         * @return An instance of SubtitleWriterBuilder.
+         */
+        public SubtitleWriterBuilder maxCharacters(int maxCharacters) {
+            if (maxCharacters < 1) {
+                throw new IllegalArgumentException("maxCharacters must be at least 1");
+            }
+            this.maxCharacters = maxCharacters;
+            return this;
+        }
+
+        /**
+         * Sets the longest time one cue stays on screen. Defaults to 5 seconds.
+         *
+         * @param maxDuration The maximum cue duration.
+         * @return An instance of SubtitleWriterBuilder.
+         */
+        public SubtitleWriterBuilder maxDuration(Duration maxDuration) {
+            this.maxDuration = Objects.requireNonNull(maxDuration, "maxDuration");
+            return this;
+        }
+
+        /**
+         * Builds the SubtitleWriter object.
+         *
+         * @return An instance of SubtitleWriter.
+         */
+        public SubtitleWriter build() {
+            return new SubtitleWriter(this);
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package io.gitctrlx.subtitle;
+
+import java.time.Duration;
+import java.util.Objects;
+
+/**
+ * A word (or punctuation mark) of the synthesised text and where it is spoken in the audio, as reported by the
+ * service in {@code audio.metadata} frames.
+ * <p>
+ * Offsets are measured from the start of the synthesis's audio, so they line up with the bytes delivered to the
+ * sink.
+ */
+public final class WordBoundary {
+
+    /**
+     * The box type of a spoken word.
+     */
+    public static final String WORD = "Word";
+
+    /**
+     * The box type of a punctuation mark.
+     */
+    public static final String PUNCTUATION = "Punctuation";
+
+    /**
+     * The box type of a whole sentence, reported when sentence boundaries are enabled.
+     */
+    public static final String SENTENCE = "Sentence";
+
+    private final String text;
+    private final String boxType;
+    private final long offsetNanos;
+    private final long durationNanos;
+
+    /**
+     * Constructor that initializes the boundary with the specified values.
+     *
+     * @param text          The word as it appears in the text
+     * @param boxType       What the text is, e.g. {@link #WORD} or {@link #PUNCTUATION}
+     * @param offsetNanos   Where the word starts in the audio, in nanoseconds
+     * @param durationNanos How long the word is spoken, in nanoseconds
+     */
+    public WordBoundary(String text, String boxType, long offsetNanos, long durationNanos) {
+        this.text = Objects.requireNonNull(text, "text");
+        this.boxType = boxType == null ? WORD : boxType;
+        this.offsetNanos = offsetNanos;
+        this.durationNanos = durationNanos;
+    }
+
+    /**
+     * Gets the word as it appears in the text.
+     *
+     * @return The text
+     */
+    public String getText() {
+        return text;
+    }
+
+    /**
+     * Gets what the text is.
+     *
+     * @return The box type, e.g. {@link #WORD} or {@link #PUNCTUATION}
+     */
+    public String getBoxType() {
+        return boxType;
+    }
+
+    /**
+     * Whether the text is a punctuation mark rather than a spoken word.
+     *
+     * @return true for punctuation
+     */
+    public boolean isPunctuation() {
+        return PUNCTUATION.equals(boxType);
+    }
+
+    /**
+     * Gets where the word starts in the audio.
+     *
+     * @return The offset from the start of the audio
+     */
+    public Duration getOffset() {
+        return Duration.ofNanos(offsetNanos);
+    }
+
+    /**
+     * Gets how long the word is spoken.
+     *
+     * @return The duration
+     */
+    public Duration getDuration() {
+        return Duration.ofNanos(durationNanos);
+    }
+
+    /**
+     * Gets where the word starts in the audio.
+     *
+     * @return The offset in nanoseconds
+     */
+    public long getOffsetNanos() {
+        return offsetNanos;
+    }
+
+    /**
+     * Gets where the word ends in the audio.
+     *
+     * @return The end offset in nanoseconds
+     */
+    public long getEndNanos() {
+        return offsetNanos + durationNanos;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof WordBoundary)) {
+            return false;
+        }
+        WordBoundary that = (WordBoundary) o;
+        return offsetNanos == that.offsetNanos && durationNanos == that.durationNanos
+                && text.equals(that.text) && boxType.equals(that.boxType);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(text, boxType, offsetNanos, durationNanos);
+    }
+
+    @Override
+    public String toString() {
+        return "WordBoundary{text='" + text + "', boxType=" + boxType + ", offset=" + getOffset()
+                + ", duration=" + getDuration() + "}";
+    }
+}
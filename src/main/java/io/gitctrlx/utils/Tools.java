@@ -1,10 +1,17 @@
 package io.gitctrlx.util;
 
+import java.lang.reflect.InvocationTargetException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.text.SimpleDateFormat;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.Date;
-import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
 
 /**
  * Utility class containing various helper methods.
@@ -16,6 +23,11 @@ public class Tools {
     // DateTime formatter
     public static final DateTimeFormatter DTF = DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss");
 
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    // Last formatted timestamp; SDF has a resolution of one second
+    private static volatile CachedDate cachedDate = new CachedDate(Long.MIN_VALUE, null);
+
     /**
      * Makes the current thread sleep for the specified number of seconds.
      *
@@ -29,12 +41,18 @@ public class Tools {
     }
 
     /**
-     * Gets the current timestamp.
+     * Gets the current timestamp. The formatted value is reused until the second changes.
      *
      * @return The current timestamp.
      */
     public static String date() {
-        return new SimpleDateFormat(SDF).format(new Date());
+        long second = Math.floorDiv(System.currentTimeMillis(), 1000L);
+        CachedDate cached = cachedDate;
+        if (cached.second != second) {
+            cached = new CachedDate(second, new SimpleDateFormat(SDF).format(new Date(second * 1000L)));
+            cachedDate = cached;
+        }
+        return cached.value;
     }
 
     /**
@@ -47,11 +65,83 @@ public class Tools {
     }
 
     /**
-     * Generates a random ID.
+     * Generates a random ID: a version 4 UUID as 32 lowercase hex characters without dashes. The bits come from
+     * {@link ThreadLocalRandom} rather than {@link java.security.SecureRandom}, as the ID only has to be unique.
      *
      * @return The random ID.
      */
     public static String getRandomId() {
-        return UUID.randomUUID().toString().replace("-", "");
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long high = (random.nextLong() & ~0xF000L) | 0x4000L;                       // Version 4
+        long low = (random.nextLong() & 0x3FFFFFFFFFFFFFFFL) | 0x8000000000000000L; // IETF variant
+        char[] id = new char[32];
+        for (int i = 15; i >= 0; i--) {
+            id[i] = HEX_DIGITS[(int) (high & 0xF)];
+            id[i + 16] = HEX_DIGITS[(int) (low & 0xF)];
+            high >>>= 4;
+            low >>>= 4;
+        }
+        return new String(id);
+    }
+
+    /**
+     * Computes the SHA-256 digest of a string's UTF-8 bytes.
+     *
+     * @param value The string to hash.
+     * @return The digest as 64 lowercase hex characters.
+     */
+    public static String sha256Hex(String value) {
+        byte[] digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256").digest(value.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e); // Every JRE is required to provide it
+        }
+        char[] hex = new char[digest.length * 2];
+        for (int i = 0; i < digest.length; i++) {
+            hex[i * 2] = Character.forDigit((digest[i] >> 4) & 0xF, 16);
+            hex[i * 2 + 1] = Character.forDigit(digest[i] & 0xF, 16);
+        }
+        return new String(hex);
+    }
+
+    /**
+     * Creates an executor that runs each task on a new virtual thread. Virtual threads need JDK 21 or later; they
+     * are looked up reflectively so the library still runs on older JDKs. On JDK 19 and 20 they are a preview
+     * feature, which is only available when the JVM runs with preview features enabled.
+     *
+     * @param namePrefix The prefix of the thread names, followed by a counter.
+     * @return The executor, or null if the running JDK has no virtual threads.
+     */
+    public static ExecutorService newVirtualThreadExecutor(String namePrefix) {
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+            builder = builderType.getMethod("name", String.class, long.class).invoke(builder, namePrefix, 0L);
+            ThreadFactory factory = (ThreadFactory) builderType.getMethod("factory").invoke(builder);
+            return (ExecutorService) Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class).invoke(null, factory);
+        } catch (NoSuchMethodException | ClassNotFoundException e) {
+            return null;
+        } catch (InvocationTargetException e) {
+            if (e.getCause() instanceof UnsupportedOperationException) {
+                return null; // JDK 19 or 20 without --enable-preview
+            }
+            throw new IllegalStateException("Failed to create a virtual thread executor", e);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException("Failed to create a virtual thread executor", e);
+        }
+    }
+
+    /**
+     * A timestamp formatted for one second.
+     */
+    private static final class CachedDate {
+        private final long second;
+        private final String value;
+
+        private CachedDate(long second, String value) {
+            this.second = second;
+            this.value = value;
+        }
     }
 }
@@ -0,0 +1,186 @@
+package io.gitctrlx.voice;
+
+import io.gitctrlx.constant.VoiceEnum;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * A voice of the speech service, as listed in the {@link VoiceCatalog voice catalogue}.
+ * <p>
+ * Voices are identified by their short name, e.g. "en-US-AriaNeural"; two voices with the same short name are
+ * equal. The voices of {@link VoiceEnum} are available through {@link #of(VoiceEnum)} without a catalogue.
+ */
+public final class Voice implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final Map<VoiceEnum, Voice> ENUM_VOICES = new EnumMap<>(VoiceEnum.class);
+
+    private static final Map<String, VoiceEnum> ENUM_CONSTANTS = new HashMap<>();
+
+    static {
+        for (VoiceEnum voice : VoiceEnum.values()) {
+            ENUM_VOICES.put(voice, new Voice(voice.getShortName(), voice.getGender(), voice.getLocale(), null, null,
+                    null, null, Collections.<String>emptyList(), Collections.<String>emptyList()));
+            ENUM_CONSTANTS.put(voice.getShortName(), voice);
+        }
+    }
+
+    private final String shortName;
+    private final String gender;
+    private final String locale;
+    private final String name;
+    private final String friendlyName;
+    private final String suggestedCodec;
+    private final String status;
+    private final List<String> contentCategories;
+    private final List<String> personalities;
+
+    /**
+     * Constructor that initializes the voice with the specified values.
+     *
+     * @param shortName         The short name, e.g. "en-US-AriaNeural"
+     * @param gender            The gender, "Female" or "Male"
+     * @param locale            The locale, e.g. "en-US"
+     * @param name              The full name, may be null
+     * @param friendlyName      The display name, may be null
+     * @param suggestedCodec    The output format the service suggests, may be null
+     * @param status            The release status, e.g. "GA", may be null
+     * @param contentCategories The kinds of content the voice suits, e.g. "News"
+     * @param personalities     The personality traits of the voice, e.g. "Friendly"
+     */
+    public Voice(String shortName, String gender, String locale, String name, String friendlyName,
+                 String suggestedCodec, String status, List<String> contentCategories, List<String> personalities) {
+        this.shortName = Objects.requireNonNull(shortName, "shortName");
+        this.gender = gender;
+        this.locale = Objects.requireNonNull(locale, "locale");
+        this.name = name;
+        this.friendlyName = friendlyName;
+        this.suggestedCodec = suggestedCodec;
+        this.status = status;
+        this.contentCategories = Collections.unmodifiableList(new ArrayList<>(contentCategories));
+        this.personalities = Collections.unmodifiableList(new ArrayList<>(personalities));
+    }
+
+    /**
+     * Gets the voice of an enum constant.
+     *
+     * @param voice The enum constant
+     * @return The voice
+     */
+    public static Voice of(VoiceEnum voice) {
+        return ENUM_VOICES.get(Objects.requireNonNull(voice, "voice"));
+    }
+
+    /**
+     * Gets the enum constant of this voice.
+     *
+     * @return The constant with the same short name, or null if the voice is not in {@link VoiceEnum}
+     */
+    public VoiceEnum toVoiceEnum() {
+        return ENUM_CONSTANTS.get(shortName);
+    }
+
+    /**
+     * Gets the short name, which identifies the voice in SSML.
+     *
+     * @return The short name, e.g. "en-US-AriaNeural"
+     */
+    public String getShortName() {
+        return shortName;
+    }
+
+    /**
+     * Gets the gender.
+     *
+     * @return The gender, "Female" or "Male"
+     */
+    public String getGender() {
+        return gender;
+    }
+
+    /**
+     * Gets the locale.
+     *
+     * @return The locale, e.g. "en-US"
+     */
+    public String getLocale() {
+        return locale;
+    }
+
+    /**
+     * Gets the full name.
+     *
+     * @return The full name, or null for a voice of {@link VoiceEnum}
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Gets the display name.
+     *
+     * @return The display name, or null for a voice of {@link VoiceEnum}
+     */
+    public String getFriendlyName() {
+        return friendlyName;
+    }
+
+    /**
+     * Gets the output format the service suggests for this voice.
+     *
+     * @return The format value, e.g. "audio-24khz-48kbitrate-mono-mp3", or null if not listed
+     */
+    public String getSuggestedCodec() {
+        return suggestedCodec;
+    }
+
+    /**
+     * Gets the release status.
+     *
+     * @return The status, e.g. "GA", or null if not listed
+     */
+    public String getStatus() {
+        return status;
+    }
+
+    /**
+     * Gets the kinds of content the voice suits.
+     *
+     * @return The categories, e.g. "News" or "Novel"
+     */
+    public List<String> getContentCategories() {
+        return contentCategories;
+    }
+
+    /**
+     * Gets the personality traits of the voice.
+     *
+     * @return The traits, e.g. "Friendly" or "Positive"
+     */
+    public List<String> getPersonalities() {
+        return personalities;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return this == o || o instanceof Voice && shortName.equals(((Voice) o).shortName);
+    }
+
+    @Override
+    public int hashCode() {
+        return shortName.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return shortName;
+    }
+}
@@ -0,0 +1,424 @@
+package io.gitctrlx.voice;
+
+import io.gitctrlx.constant.TtsConstants;
+import io.gitctrlx.exceptions.TtsException;
+import io.gitctrlx.protocol.VoiceListParser;
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * The voices the speech service offers, fetched from its voice list and cached on disk.
+ * <p>
+ * Building a catalogue never touches the network: it reads the cache file if there is one, else the snapshot
+ * bundled with the library. {@link #refreshIfStale()} fetches the list in the background once the cache is older
+ * than its time to live; lookups keep answering from the current list meanwhile and see the new one as soon as it
+ * has been saved.
+ * <pre>{@code
+ * VoiceCatalog catalog = VoiceCatalog.builder().build();
+ * catalog.refreshIfStale();
+ * Voice voice = catalog.byLocaleAndGender("de-CH", "Female").get(0);
+ * SSML ssml = SSML.builder().voice(voice).synthesisText("Grüezi").build();
+ * }</pre>
+ * Lookups are hash lookups that return shared, unmodifiable lists; names, locales and genders match ignoring case.
+ * A catalogue is thread-safe.
+ */
+public final class VoiceCatalog {
+
+    private static final Logger log = LoggerFactory.getLogger(VoiceCatalog.class);
+
+    /**
+     * Classpath resource holding the voice list the library was released with
+     */
+    private static final String BUNDLED_VOICES = "Voice.json";
+
+    private final Path cacheFile;
+    private final long ttlMillis;
+    private final String url;
+    private final OkHttpClient okHttpClient;
+    private final AtomicReference<CompletableFuture<Void>> refreshing = new AtomicReference<>();
+
+    private volatile Index index;
+
+    /**
+     * When the current list was fetched, in epoch milliseconds; 0 for the bundled snapshot.
+     */
+    private volatile long fetchedAt;
+
+    /**
+     * Constructor that initializes the catalogue from a builder and loads the cached or bundled list.
+     *
+     * @param builder The builder holding the settings
+     */
+    private VoiceCatalog(VoiceCatalogBuilder builder) {
+        this.cacheFile = builder.cacheFile;
+        this.ttlMillis = builder.ttl.toMillis();
+        this.url = builder.url;
+        this.okHttpClient = builder.okHttpClient != null ? builder.okHttpClient : new OkHttpClient();
+        if (cacheFile != null && Files.isRegularFile(cacheFile)) {
+            try {
+                this.index = new Index(parse(new String(Files.readAllBytes(cacheFile), StandardCharsets.UTF_8)));
+                this.fetchedAt = Files.getLastModifiedTime(cacheFile).toMillis();
+                return;
+            } catch (IOException | RuntimeException e) {
+                log.warn("[WARN] Ignoring unreadable voice list cache {}: {}", cacheFile, e.getMessage());
+            }
+        }
+        this.index = new Index(loadBundled());
+    }
+
+    /**
+     * Static factory method that returns an instance of VoiceCatalogBuilder.
+     *
+     * @return An instance of VoiceCatalogBuilder.
+     */
+    public static VoiceCatalogBuilder builder() {
+        return new VoiceCatalogBuilder();
+    }
+
+    /**
+     * Finds a voice by its short name.
+     *
+     * @param shortName The short name, e.g. "en-US-AriaNeural"
+     * @return The voice, or null if the catalogue has none of that name
+     */
+    public Voice find(String shortName) {
+        return index.byShortName.get(key(shortName));
+    }
+
+    /**
+     * Gets the voices of a locale.
+     *
+     * @param locale The locale, e.g. "en-US"
+     * @return The voices, empty if there are none
+     */
+    public List<Voice> byLocale(String locale) {
+        return lookup(index.byLocale, key(locale));
+    }
+
+    /**
+     * Gets the voices of a gender.
+     *
+     * @param gender The gender, "Female" or "Male"
+     * @return The voices, empty if there are none
+     */
+    public List<Voice> byGender(String gender) {
+        return lookup(index.byGender, key(gender));
+    }
+
+    /**
+     * Gets the voices of a locale and gender.
+     *
+     * @param locale The locale, e.g. "en-US"
+     * @param gender The gender, "Female" or "Male"
+     * @return The voices, empty if there are none
+     */
+    public List<Voice> byLocaleAndGender(String locale, String gender) {
+        return lookup(index.byLocaleAndGender, key(locale) + '|' + key(gender));
+    }
+
+    /**
+     * Gets all voices.
+     *
+     * @return The voices in the order of the voice list
+     */
+    public List<Voice> all() {
+        return index.all;
+    }
+
+    /**
+     * Gets the locales that have at least one voice.
+     *
+     * @return The locales in the order they first appear in the voice list
+     */
+    public List<String> locales() {
+        return index.locales;
+    }
+
+    /**
+     * Whether the current list is older than the time to live. The bundled snapshot is always stale.
+     *
+     * @return true if the list should be fetched again
+     */
+    public boolean isStale() {
+        return System.currentTimeMillis() - fetchedAt >= ttlMillis;
+    }
+
+    /**
+     * Fetches the voice list in the background if the current one is {@link #isStale() stale}.
+     *
+     * @return A future that completes when the list is current, exceptionally with a TtsException if it could not be
+     * fetched; the catalogue keeps its current list in that case
+     */
+    public CompletableFuture<Void> refreshIfStale() {
+        if (!isStale()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return refresh();
+    }
+
+    /**
+     * Fetches the voice list in the background and saves it to the cache file. Calls made while a fetch is running
+     * share it.
+     *
+     * @return A future that completes when the new list is in use, exceptionally with a TtsException if it could
+     * not be fetched; the catalogue keeps its current list in that case
+     */
+    public CompletableFuture<Void> refresh() {
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        CompletableFuture<Void> running = refreshing.get();
+        while (running == null || running.isDone()) {
+            if (refreshing.compareAndSet(running, future)) {
+                fetch(future);
+                return future;
+            }
+            running = refreshing.get();
+        }
+        return running;
+    }
+
+    private void fetch(CompletableFuture<Void> future) {
+        Request request = new Request.Builder()
+                .url(url)
+                .header("User-Agent", TtsConstants.UA)
+                .header("Origin", TtsConstants.EDGE_SPEECH_ORIGIN)
+                .build();
+        okHttpClient.newCall(request).enqueue(new Callback() {
+            @Override
+            public void onFailure(Call call, IOException e) {
+                fail(future, "[ERROR] Failed to fetch the voice list: " + e.getMessage(), e);
+            }
+
+            @Override
+            public void onResponse(Call call, Response response) {
+                try (ResponseBody body = response.body()) {
+                    if (!response.isSuccessful() || body == null) {
+                        fail(future, "[ERROR] Failed to fetch the voice list: HTTP " + response.code(), null);
+                        return;
+                    }
+                    String json = body.string();
+                    List<Voice> voices = parse(json);
+                    if (voices.isEmpty()) {
+                        fail(future, "[ERROR] The fetched voice list is empty", null);
+                        return;
+                    }
+                    index = new Index(voices);
+                    fetchedAt = System.currentTimeMillis();
+                    save(json);
+                    future.complete(null);
+                } catch (IOException | RuntimeException e) {
+                    fail(future, "[ERROR] Failed to read the voice list: " + e.getMessage(), e);
+                }
+            }
+        });
+    }
+
+    private static void fail(CompletableFuture<Void> future, String message, Throwable cause) {
+        log.warn("[WARN] Keeping the current voice list: {}", message);
+        future.completeExceptionally(TtsException.of(message, cause));
+    }
+
+    private void save(String json) {
+        if (cacheFile == null) {
+            return;
+        }
+        try {
+            Path parent = cacheFile.toAbsolutePath().getParent();
+            Files.createDirectories(parent);
+            Path temp = Files.createTempFile(parent, cacheFile.getFileName().toString(), ".tmp");
+            try {
+                Files.write(temp, json.getBytes(StandardCharsets.UTF_8));
+                try {
+                    Files.move(temp, cacheFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(temp, cacheFile, StandardCopyOption.REPLACE_EXISTING);
+                }
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        } catch (IOException e) {
+            log.warn("[WARN] Failed to save voice list cache {}: {}", cacheFile, e.getMessage());
+        }
+    }
+
+    private static List<Voice> loadBundled() {
+        try (InputStream in = VoiceCatalog.class.getResourceAsStream(BUNDLED_VOICES)) {
+            if (in == null) {
+                throw TtsException.of("[ERROR] Bundled voice list " + BUNDLED_VOICES + " is missing");
+            }
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 * 1024);
+            byte[] buffer = new byte[8192];
+            int n;
+            while ((n = in.read(buffer)) != -1) {
+                bytes.write(buffer, 0, n);
+            }
+            return parse(new String(bytes.toByteArray(), StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            throw TtsException.of("[ERROR] Failed to read bundled voice list", e);
+        }
+    }
+
+    private static List<Voice> parse(String json) {
+        return new VoiceListParser().parse(json);
+    }
+
+    private static List<Voice> lookup(Map<String, List<Voice>> map, String key) {
+        List<Voice> voices = map.get(key);
+        return voices != null ? voices : Collections.<Voice>emptyList();
+    }
+
+    private static String key(String value) {
+        return value == null ? "" : value.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * An immutable snapshot of the voice list with its lookup tables, swapped as a whole on refresh.
+     */
+    private static final class Index {
+        final List<Voice> all;
+        final List<String> locales;
+        final Map<String, Voice> byShortName;
+        final Map<String, List<Voice>> byLocale;
+        final Map<String, List<Voice>> byGender;
+        final Map<String, List<Voice>> byLocaleAndGender;
+
+        Index(List<Voice> voices) {
+            Map<String, Voice> names = new HashMap<>(voices.size() * 2);
+            Map<String, List<Voice>> locale = new LinkedHashMap<>();
+            Map<String, List<Voice>> gender = new HashMap<>();
+            Map<String, List<Voice>> localeAndGender = new HashMap<>();
+            List<String> localeNames = new ArrayList<>();
+            for (Voice voice : voices) {
+                names.put(key(voice.getShortName()), voice);
+                List<Voice> ofLocale = locale.get(key(voice.getLocale()));
+                if (ofLocale == null) {
+                    ofLocale = new ArrayList<>();
+                    locale.put(key(voice.getLocale()), ofLocale);
+                    localeNames.add(voice.getLocale());
+                }
+                ofLocale.add(voice);
+                add(gender, key(voice.getGender()), voice);
+                add(localeAndGender, key(voice.getLocale()) + '|' + key(voice.getGender()), voice);
+            }
+            this.all = Collections.unmodifiableList(new ArrayList<>(voices));
+            this.locales = Collections.unmodifiableList(localeNames);
+            this.byShortName = names;
+            this.byLocale = freeze(locale);
+            this.byGender = freeze(gender);
+            this.byLocaleAndGender = freeze(localeAndGender);
+        }
+
+        private static void add(Map<String, List<Voice>> map, String key, Voice voice) {
+            List<Voice> voices = map.get(key);
+            if (voices == null) {
+                voices = new ArrayList<>();
+                map.put(key, voices);
+            }
+            voices.add(voice);
+        }
+
+        private static Map<String, List<Voice>> freeze(Map<String, List<Voice>> map) {
+            Map<String, List<Voice>> frozen = new HashMap<>(map.size() * 2);
+            for (Map.Entry<String, List<Voice>> entry : map.entrySet()) {
+                frozen.put(entry.getKey(), Collections.unmodifiableList(entry.getValue()));
+            }
+            return frozen;
+        }
+    }
+
+    /**
+     * The VoiceCatalogBuilder class is used to build VoiceCatalog objects.
+     */
+    public static class VoiceCatalogBuilder {
+        private Path cacheFile = Paths.get(System.getProperty("user.home"), ".cache", "tts4j", "voices.json");
+        private Duration ttl = Duration.ofDays(7);
+        private String url = TtsConstants.VOICE_LIST_URL + "?trustedclienttoken=" + TtsConstants.TRUSTED_CLIENT_TOKEN;
+        private OkHttpClient okHttpClient;
+
+        private VoiceCatalogBuilder() {
+        }
+
+        /**
+         * Sets the file the fetched voice list is kept in. Defaults to ~/.cache/tts4j/voices.json.
+         *
+         * @param cacheFile The cache file, or null to keep fetched lists in memory only.
+         * @return An instance of VoiceCatalogBuilder.
+         */
+        public VoiceCatalogBuilder cacheFile(Path cacheFile) {
+            this.cacheFile = cacheFile;
+            return this;
+        }
+
+        /**
+         * Sets how long a fetched voice list stays current. Defaults to 7 days.
+         *
+         * @param ttl The time to live.
+         * @return An instance of VoiceCatalogBuilder.
+         */
+        public VoiceCatalogBuilder ttl(Duration ttl) {
+            if (ttl.isNegative()) {
+                throw new IllegalArgumentException("ttl must not be negative");
+            }
+            this.ttl = ttl;
+            return this;
+        }
+
+        /**
+         * Sets the URL of the voice list, including the trusted client token.
+         *
+         * @param url The URL.
+         * @return An instance of VoiceCatalogBuilder.
+         */
+        public VoiceCatalogBuilder url(String url) {
+            this.url = Objects.requireNonNull(url, "url");
+            return this;
+        }
+
+        /**
+         * Sets the OkHttpClient to fetch the voice list with, e.g. the one shared with a TTSService.
+         *
+         * @param okHttpClient The client.
+         * @return An instance of VoiceCatalogBuilder.
+         */
+        public VoiceCatalogBuilder okHttpClient(OkHttpClient okHttpClient) {
+            this.okHttpClient = okHttpClient;
+            return this;
+        }
+
+        /**
+         * Builds the VoiceCatalog object from the cache file, or from the bundled list if there is none. No request
+         * is made.
+         *
+         * @return An instance of VoiceCatalog.
+         */
+        public VoiceCatalog build() {
+            return new VoiceCatalog(this);
+        }
+    }
+}
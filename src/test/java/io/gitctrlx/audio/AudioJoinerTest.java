@@ -0,0 +1,264 @@
+package io.gitctrlx.audio;
+
+import io.gitctrlx.constant.OutputFormat;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+/**
+ * Checks the containers produced by {@link AudioJoiner} on small hand-built clips.
+ */
+class AudioJoinerTest {
+
+    /**
+     * An MPEG-2 layer III header at 48 kbit/s, 24 kHz, mono: 144 bytes and 24 ms per frame.
+     */
+    private static final byte[] MP3_HEADER = {(byte) 0xFF, (byte) 0xF3, 0x64, (byte) 0xC4};
+    private static final int MP3_FRAME_LENGTH = 144;
+    private static final int OPUS_PACKET_SAMPLES = 960; // 20 ms at 48 kHz
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void dropsMp3TagsAndInfoFrames() throws IOException {
+        List<byte[]> frames = new ArrayList<>();
+        ByteArrayOutputStream first = new ByteArrayOutputStream();
+        first.write(id3v2());
+        first.write(mp3Frame(0, "Xing"));
+        for (int i = 0; i < 5; i++) {
+            frames.add(mp3Frame(frames.size() + 1, null));
+            first.write(frames.get(frames.size() - 1));
+        }
+        first.write(id3v1());
+        ByteArrayOutputStream second = new ByteArrayOutputStream();
+        second.write(mp3Frame(0, "Info"));
+        for (int i = 0; i < 7; i++) {
+            frames.add(mp3Frame(frames.size() + 1, null));
+            second.write(frames.get(frames.size() - 1));
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        AudioJoiner joiner = AudioJoiner.of(OutputFormat.audio_24khz_48kbitrate_mono_mp3, Channels.newChannel(out));
+        joiner.append(ByteBuffer.wrap(first.toByteArray()));
+        joiner.append(ByteBuffer.wrap(second.toByteArray()));
+        joiner.finish();
+
+        byte[] joined = out.toByteArray();
+        assertEquals(12 * MP3_FRAME_LENGTH, joined.length);
+        for (int i = 0; i < frames.size(); i++) {
+            assertArrayEquals(frames.get(i), Arrays.copyOfRange(joined, i * MP3_FRAME_LENGTH, (i + 1) * MP3_FRAME_LENGTH));
+        }
+        assertEquals(12 * 24_000_000L, joiner.getDurationNanos());
+    }
+
+    @Test
+    void renumbersOggPages() throws IOException {
+        byte[] first = oggOpus(111, 4);
+        byte[] second = oggOpus(222, 3);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        AudioJoiner joiner = AudioJoiner.of(OutputFormat.ogg_24khz_16bit_mono_opus, Channels.newChannel(out));
+        joiner.append(ByteBuffer.wrap(first));
+        joiner.append(ByteBuffer.wrap(second));
+        joiner.finish();
+
+        ByteBuffer joined = ByteBuffer.wrap(out.toByteArray()).order(ByteOrder.LITTLE_ENDIAN);
+        int sequence = 0;
+        long granule = 0;
+        while (joined.hasRemaining()) {
+            int start = joined.position();
+            assertEquals("OggS", new String(joined.array(), start, 4, StandardCharsets.US_ASCII));
+            int segments = joined.get(start + 26) & 0xFF;
+            int length = 27 + segments;
+            for (int i = 0; i < segments; i++) {
+                length += joined.get(start + 27 + i) & 0xFF;
+            }
+            byte[] page = Arrays.copyOfRange(joined.array(), start, start + length);
+            ByteBuffer header = ByteBuffer.wrap(page).order(ByteOrder.LITTLE_ENDIAN);
+            int flags = page[5];
+            boolean last = start + length == joined.limit();
+
+            assertEquals(111, header.getInt(14));
+            assertEquals(sequence, header.getInt(18));
+            assertEquals(sequence == 0 ? 0x02 : last ? 0x04 : 0, flags);
+            if (sequence >= 2) {
+                granule += 3 * OPUS_PACKET_SAMPLES;
+            }
+            assertEquals(granule, header.getLong(6));
+            int crc = header.getInt(22);
+            header.putInt(22, 0);
+            assertEquals(oggCrc(page), crc);
+
+            sequence++;
+            joined.position(start + length);
+        }
+        // Two header pages, then the audio pages of both parts
+        assertEquals(2 + 4 + 3, sequence);
+        assertEquals(7 * 3 * OPUS_PACKET_SAMPLES * 1_000_000_000L / 48_000, joiner.getDurationNanos());
+    }
+
+    @Test
+    void patchesWavSizesOfJoinedFile() throws IOException {
+        byte[] firstData = pcm(1000, 1);
+        byte[] secondData = pcm(1600, 2);
+        Path first = directory.resolve("first.wav");
+        Path second = directory.resolve("second.wav");
+        Files.write(first, wav(firstData, false));
+        Files.write(second, wav(secondData, true));
+        Path target = directory.resolve("joined.wav");
+
+        AudioJoiner.concat(OutputFormat.raw_24khz_16bit_mono_pcm, Arrays.asList(first, second), target);
+
+        ByteBuffer joined = ByteBuffer.wrap(Files.readAllBytes(target)).order(ByteOrder.LITTLE_ENDIAN);
+        assertEquals(44 + 2600, joined.limit());
+        assertEquals(36 + 2600, joined.getInt(4));
+        assertEquals("data", new String(joined.array(), 36, 4, StandardCharsets.US_ASCII));
+        assertEquals(2600, joined.getInt(40));
+        assertArrayEquals(firstData, Arrays.copyOfRange(joined.array(), 44, 1044));
+        assertArrayEquals(secondData, Arrays.copyOfRange(joined.array(), 1044, 2644));
+    }
+
+    @Test
+    void measuresRawDuration() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        AudioJoiner joiner = AudioJoiner.of(OutputFormat.raw_24khz_16bit_mono_pcm, Channels.newChannel(out));
+        joiner.append(ByteBuffer.wrap(pcm(1000, 1)));
+        joiner.append(ByteBuffer.wrap(pcm(1600, 2)));
+        joiner.finish();
+
+        assertEquals(2600, out.size());
+        assertEquals(2600 * 1_000_000_000L / 48_000, joiner.getDurationNanos());
+        assertNotEquals("RIFF", new String(out.toByteArray(), 0, 4, StandardCharsets.US_ASCII));
+    }
+
+    private static byte[] mp3Frame(int seed, String tag) {
+        byte[] frame = new byte[MP3_FRAME_LENGTH];
+        System.arraycopy(MP3_HEADER, 0, frame, 0, MP3_HEADER.length);
+        for (int i = MP3_HEADER.length; i < frame.length; i++) {
+            frame[i] = (byte) (seed * 7 + i);
+        }
+        if (tag != null) {
+            // Behind the side information of a mono MPEG-2 frame
+            System.arraycopy(tag.getBytes(StandardCharsets.US_ASCII), 0, frame, 4 + 9, 4);
+        }
+        return frame;
+    }
+
+    private static byte[] id3v2() {
+        byte[] tag = new byte[10 + 100];
+        tag[0] = 'I';
+        tag[1] = 'D';
+        tag[2] = '3';
+        tag[3] = 4;
+        tag[9] = 100;
+        return tag;
+    }
+
+    private static byte[] id3v1() {
+        byte[] tag = new byte[128];
+        tag[0] = 'T';
+        tag[1] = 'A';
+        tag[2] = 'G';
+        return tag;
+    }
+
+    /**
+     * Builds an Ogg Opus stream with the two header pages and audio pages of three 20 ms packets each.
+     */
+    private static byte[] oggOpus(int serial, int audioPages) throws IOException {
+        ByteBuffer head = ByteBuffer.allocate(19).order(ByteOrder.LITTLE_ENDIAN);
+        head.put("OpusHead".getBytes(StandardCharsets.US_ASCII)).put((byte) 1).put((byte) 1).putShort((short) 312)
+                .putInt(24_000).putShort((short) 0).put((byte) 0);
+        ByteBuffer tags = ByteBuffer.allocate(19).order(ByteOrder.LITTLE_ENDIAN);
+        tags.put("OpusTags".getBytes(StandardCharsets.US_ASCII)).putInt(3).put("abc".getBytes(StandardCharsets.US_ASCII))
+                .putInt(0);
+
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        stream.write(oggPage(0x02, 0, serial, 0, head.array()));
+        stream.write(oggPage(0, 0, serial, 1, tags.array()));
+        long granule = 0;
+        for (int i = 0; i < audioPages; i++) {
+            granule += 3 * OPUS_PACKET_SAMPLES;
+            byte[][] packets = new byte[3][];
+            for (int p = 0; p < packets.length; p++) {
+                packets[p] = new byte[61];
+                packets[p][0] = (byte) 0xF8;
+                Arrays.fill(packets[p], 1, 61, (byte) (serial + i));
+            }
+            stream.write(oggPage(i == audioPages - 1 ? 0x04 : 0, granule, serial, 2 + i, packets));
+        }
+        return stream.toByteArray();
+    }
+
+    private static byte[] oggPage(int flags, long granule, int serial, int sequence, byte[]... packets) {
+        int bodyLength = 0;
+        for (byte[] packet : packets) {
+            bodyLength += packet.length;
+        }
+        ByteBuffer page = ByteBuffer.allocate(27 + packets.length + bodyLength).order(ByteOrder.LITTLE_ENDIAN);
+        page.put("OggS".getBytes(StandardCharsets.US_ASCII)).put((byte) 0).put((byte) flags).putLong(granule)
+                .putInt(serial).putInt(sequence).putInt(0).put((byte) packets.length);
+        for (byte[] packet : packets) {
+            page.put((byte) packet.length); // Packets here are shorter than 255 bytes
+        }
+        for (byte[] packet : packets) {
+            page.put(packet);
+        }
+        page.putInt(22, oggCrc(page.array()));
+        return page.array();
+    }
+
+    private static int oggCrc(byte[] page) {
+        int crc = 0;
+        for (byte b : page) {
+            crc ^= (b & 0xFF) << 24;
+            for (int bit = 0; bit < 8; bit++) {
+                crc = (crc & 0x80000000) != 0 ? crc << 1 ^ 0x04C11DB7 : crc << 1;
+            }
+        }
+        return crc;
+    }
+
+    private static byte[] pcm(int length, int seed) {
+        byte[] data = new byte[length];
+        for (int i = 0; i < length; i++) {
+            data[i] = (byte) (seed * 13 + i);
+        }
+        return data;
+    }
+
+    /**
+     * Wraps PCM data in a 24 kHz 16-bit mono WAV file, optionally with a LIST chunk before the data chunk.
+     */
+    private static byte[] wav(byte[] data, boolean list) {
+        byte[] info = "INFOISFT\u0004\0\0\0abc\0".getBytes(StandardCharsets.US_ASCII);
+        int listLength = list ? 8 + info.length : 0;
+        ByteBuffer file = ByteBuffer.allocate(44 + listLength + data.length).order(ByteOrder.LITTLE_ENDIAN);
+        file.put("RIFF".getBytes(StandardCharsets.US_ASCII)).putInt(36 + listLength + data.length)
+                .put("WAVE".getBytes(StandardCharsets.US_ASCII));
+        file.put("fmt ".getBytes(StandardCharsets.US_ASCII)).putInt(16).putShort((short) 1).putShort((short) 1)
+                .putInt(24_000).putInt(48_000).putShort((short) 2).putShort((short) 16);
+        if (list) {
+            file.put("LIST".getBytes(StandardCharsets.US_ASCII)).putInt(info.length).put(info);
+        }
+        file.put("data".getBytes(StandardCharsets.US_ASCII)).putInt(data.length).put(data);
+        return file.array();
+    }
+}
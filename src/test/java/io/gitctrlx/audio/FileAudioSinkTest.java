@@ -0,0 +1,74 @@
+package io.gitctrlx.audio;
+
+import io.gitctrlx.constant.OutputFormat;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+/**
+ * Checks the WAV header {@link FileAudioSink} leaves behind for raw audio.
+ */
+class FileAudioSinkTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void patchesWavSizesOnClose() throws IOException {
+        ByteBuffer file = write(OutputFormat.raw_24khz_16bit_mono_pcm, 600, 400);
+
+        assertEquals(44 + 1000, file.limit());
+        assertEquals("RIFF", ascii(file, 0));
+        assertEquals(36 + 1000, file.getInt(4));
+        assertEquals("data", ascii(file, 36));
+        assertEquals(1000, file.getInt(40));
+    }
+
+    @Test
+    void padsOddDataChunk() throws IOException {
+        ByteBuffer file = write(OutputFormat.raw_8khz_8bit_mono_mulaw, 501);
+
+        // A-law and mu-law carry the extension size and a fact chunk, so the header is 58 bytes long
+        assertEquals(58 + 502, file.limit());
+        assertEquals(50 + 501 + 1, file.getInt(4));
+        assertEquals("fact", ascii(file, 38));
+        assertEquals(501, file.getInt(46));
+        assertEquals("data", ascii(file, 50));
+        assertEquals(501, file.getInt(54));
+    }
+
+    @Test
+    void deletesFileOnAbort() throws IOException {
+        FileAudioSink sink = new FileAudioSink(directory.resolve("aborted").toString());
+        sink.begin(OutputFormat.raw_24khz_16bit_mono_pcm);
+        sink.write(ByteBuffer.wrap(new byte[100]));
+        sink.abort();
+
+        assertFalse(sink.getFile().exists());
+    }
+
+    private ByteBuffer write(OutputFormat format, int... chunks) throws IOException {
+        FileAudioSink sink = new FileAudioSink(directory.resolve("clip").toString());
+        sink.begin(format);
+        for (int chunk : chunks) {
+            sink.write(ByteBuffer.wrap(new byte[chunk]));
+        }
+        sink.close();
+        assertEquals("clip.wav", sink.getFile().getName());
+        return ByteBuffer.wrap(Files.readAllBytes(sink.getFile().toPath())).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private static String ascii(ByteBuffer file, int offset) {
+        return new String(file.array(), offset, 4, StandardCharsets.US_ASCII);
+    }
+}
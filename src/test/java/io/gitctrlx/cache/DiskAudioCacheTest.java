@@ -0,0 +1,220 @@
+package io.gitctrlx.cache;
+
+import io.gitctrlx.constant.OutputFormat;
+import io.gitctrlx.subtitle.WordBoundary;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks that {@link DiskAudioCache} survives damaged segment files, restarts and compaction.
+ */
+class DiskAudioCacheTest {
+
+    private static final OutputFormat FORMAT = OutputFormat.audio_24khz_48kbitrate_mono_mp3;
+    /**
+     * The size of a record with a two-byte key, {@link #FORMAT}, no boundaries and 100 bytes of audio.
+     */
+    private static final int RECORD_LENGTH = 20 + 2 + FORMAT.name().length() + 100;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void dropsTruncatedLastRecord() throws IOException {
+        try (DiskAudioCache cache = DiskAudioCache.builder(directory).build()) {
+            cache.put("k1", clip(1));
+            cache.put("k2", clip(2));
+        }
+        Path segment = onlySegment();
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.truncate(2L * RECORD_LENGTH - 10);
+        }
+
+        try (DiskAudioCache cache = DiskAudioCache.builder(directory).build()) {
+            assertEquals(1, cache.size());
+            assertAudio(1, cache.get("k1"));
+            assertNull(cache.get("k2"));
+            assertEquals(RECORD_LENGTH, Files.size(segment));
+            cache.put("k3", clip(3));
+        }
+        try (DiskAudioCache cache = DiskAudioCache.builder(directory).build()) {
+            assertEquals(2, cache.size());
+            assertAudio(3, cache.get("k3"));
+        }
+    }
+
+    @Test
+    void truncatesAtRecordWithBadCrc() throws IOException {
+        try (DiskAudioCache cache = DiskAudioCache.builder(directory).build()) {
+            cache.put("k1", clip(1));
+            cache.put("k2", clip(2));
+            cache.put("k3", clip(3));
+        }
+        Path segment = onlySegment();
+        byte[] bytes = Files.readAllBytes(segment);
+        bytes[RECORD_LENGTH + RECORD_LENGTH - 5] ^= 0x40; // In the audio of k2
+        Files.write(segment, bytes);
+
+        try (DiskAudioCache cache = DiskAudioCache.builder(directory).build()) {
+            assertEquals(1, cache.size());
+            assertAudio(1, cache.get("k1"));
+            assertNull(cache.get("k2"));
+            assertNull(cache.get("k3"));
+            assertEquals(RECORD_LENGTH, Files.size(segment));
+        }
+    }
+
+    @Test
+    void truncatesRecordWithOverflowingLengths() throws IOException {
+        try (DiskAudioCache cache = DiskAudioCache.builder(directory).build()) {
+            cache.put("k1", clip(1));
+        }
+        Path segment = onlySegment();
+        ByteBuffer header = ByteBuffer.allocate(64);
+        header.putInt(0x54545331).putShort((short) 0xFFFF).putShort((short) 0xFFFF).putInt(Integer.MAX_VALUE - 10).putInt(0);
+        Files.write(segment, header.array(), StandardOpenOption.APPEND);
+
+        try (DiskAudioCache cache = DiskAudioCache.builder(directory).build()) {
+            assertAudio(1, cache.get("k1"));
+            assertEquals(RECORD_LENGTH, Files.size(segment));
+        }
+    }
+
+    @Test
+    void compactionKeepsLiveEntries() throws IOException {
+        try (DiskAudioCache cache = DiskAudioCache.builder(directory).maxSegmentBytes(2 * RECORD_LENGTH).build()) {
+            for (int i = 1; i <= 6; i++) {
+                cache.put("k" + i, clip(i));
+            }
+            cache.put("k1", clip(7));
+            cache.invalidate("k2");
+            assertEquals(4, segments().size());
+            long fileSize = cache.getFileSize();
+
+            cache.compact();
+
+            assertEquals(5, cache.size());
+            assertTrue(cache.getFileSize() < fileSize);
+            assertEquals(5L * RECORD_LENGTH, cache.getLiveSize());
+            assertEquals(5L * RECORD_LENGTH + 20 + 2, cache.getFileSize()); // Only the tombstone of k2 is dead
+            assertLive(cache);
+        }
+        try (DiskAudioCache cache = DiskAudioCache.builder(directory).maxSegmentBytes(2 * RECORD_LENGTH).build()) {
+            assertLive(cache);
+        }
+    }
+
+    @Test
+    void reopensAfterLockFileWasLeftBehind() throws IOException {
+        try (DiskAudioCache cache = DiskAudioCache.builder(directory).build()) {
+            cache.put("k1", clip(1));
+            assertThrows(IOException.class, () -> DiskAudioCache.builder(directory).build());
+        }
+        assertTrue(Files.exists(directory.resolve("cache.lock")));
+
+        try (DiskAudioCache cache = DiskAudioCache.builder(directory).build()) {
+            assertAudio(1, cache.get("k1"));
+        }
+    }
+
+    @Test
+    void keepsWordBoundaries() throws IOException {
+        List<WordBoundary> boundaries = Arrays.asList(new WordBoundary("你好", WordBoundary.WORD, 1000, 500),
+                new WordBoundary(",", WordBoundary.PUNCTUATION, 1500, 0));
+        try (DiskAudioCache cache = DiskAudioCache.builder(directory).build()) {
+            cache.put("k1", new CachedAudio(FORMAT, audio(1), boundaries));
+            assertEquals(boundaries, cache.get("k1").getWordBoundaries());
+        }
+        try (DiskAudioCache cache = DiskAudioCache.builder(directory).build()) {
+            CachedAudio audio = cache.get("k1");
+            assertEquals(boundaries, audio.getWordBoundaries());
+            assertAudio(1, audio);
+            assertEquals(FORMAT, audio.getFormat());
+        }
+    }
+
+    @Test
+    void readsRecordsWithoutBoundaries() throws IOException {
+        byte[] key = "k1".getBytes(StandardCharsets.UTF_8);
+        byte[] format = FORMAT.name().getBytes(StandardCharsets.US_ASCII);
+        byte[] audio = audio(1);
+        CRC32 crc = new CRC32();
+        crc.update(key);
+        crc.update(format);
+        crc.update(audio);
+        ByteBuffer record = ByteBuffer.allocate(16 + key.length + format.length + audio.length);
+        record.putInt(0x54545331).putShort((short) key.length).putShort((short) format.length).putInt(audio.length)
+                .putInt((int) crc.getValue()).put(key).put(format).put(audio);
+        Files.write(directory.resolve("segment-0000000000000001.dat"), record.array());
+
+        try (DiskAudioCache cache = DiskAudioCache.builder(directory).build()) {
+            assertAudio(1, cache.get("k1"));
+            assertEquals(Collections.<WordBoundary>emptyList(), cache.get("k1").getWordBoundaries());
+            cache.put("k2", clip(2));
+        }
+        try (DiskAudioCache cache = DiskAudioCache.builder(directory).build()) {
+            assertAudio(1, cache.get("k1"));
+            assertAudio(2, cache.get("k2"));
+        }
+    }
+
+    private static void assertLive(DiskAudioCache cache) throws IOException {
+        assertAudio(7, cache.get("k1"));
+        assertNull(cache.get("k2"));
+        for (int i = 3; i <= 6; i++) {
+            assertAudio(i, cache.get("k" + i));
+        }
+    }
+
+    private static void assertAudio(int seed, CachedAudio audio) {
+        ByteBuffer buffer = audio.asByteBuffer();
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        assertArrayEquals(audio(seed), bytes);
+    }
+
+    private static CachedAudio clip(int seed) {
+        return new CachedAudio(FORMAT, audio(seed));
+    }
+
+    private static byte[] audio(int seed) {
+        byte[] audio = new byte[100];
+        for (int i = 0; i < audio.length; i++) {
+            audio[i] = (byte) (seed * 31 + i);
+        }
+        return audio;
+    }
+
+    private Path onlySegment() throws IOException {
+        List<Path> segments = segments();
+        assertEquals(1, segments.size());
+        return segments.get(0);
+    }
+
+    private List<Path> segments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> path.getFileName().toString().startsWith("segment-")).collect(Collectors.toList());
+        }
+    }
+}
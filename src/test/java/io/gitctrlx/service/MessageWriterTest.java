@@ -0,0 +1,147 @@
+package io.gitctrlx.service;
+
+import io.gitctrlx.constant.OutputFormat;
+import io.gitctrlx.constant.TtsStyleEnum;
+import io.gitctrlx.constant.VoiceEnum;
+import io.gitctrlx.voice.Voice;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.time.Duration;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Checks that {@link MessageWriter} renders what {@code String.format} renders from {@link SSML#SSML_PATTERN} and
+ * {@link SpeechConfig#CONFIG_PATTERN}, which is how the messages were built before it.
+ */
+class MessageWriterTest {
+
+    private static final String REQUEST_ID = "0123456789abcdef0123456789abcdef";
+
+    @ParameterizedTest
+    @EnumSource(VoiceEnum.class)
+    void rendersEveryVoiceAsThePattern(VoiceEnum voice) {
+        SSML ssml = SSML.builder().synthesisText("Hello, world").voice(voice).rate("+5%").volume("-10%").build();
+
+        assertEquals(expected(voice.getLocale(), voice.getShortName(), "+0Hz", "+5%", "-10%", "Hello, world"),
+                render(ssml));
+    }
+
+    @Test
+    void fillsInDefaults() {
+        SSML ssml = SSML.builder().synthesisText("你好").build();
+
+        assertEquals(expected("zh-CN", "zh-CN-XiaoxiaoNeural", "+0Hz", "+0%", "+0%", "你好"), render(ssml));
+    }
+
+    @Test
+    void rendersPitch() {
+        for (String pitch : new String[]{"+0Hz", "+20Hz", "-5st", "high"}) {
+            SSML ssml = SSML.builder().synthesisText("pitch").voice(VoiceEnum.en_US_AriaNeural).pitch(pitch).build();
+
+            assertEquals(expected("en-US", "en-US-AriaNeural", pitch, "+0%", "+0%", "pitch"), render(ssml));
+        }
+    }
+
+    @Test
+    void wrapsStyleAroundProsody() {
+        SSML ssml = SSML.builder().synthesisText("styled").voice(VoiceEnum.zh_CN_XiaoxiaoNeural)
+                .style(TtsStyleEnum.cheerful).build();
+        String plain = expected("zh-CN", "zh-CN-XiaoxiaoNeural", "+0Hz", "+0%", "+0%", "styled");
+
+        assertEquals(withStyle(plain, "<mstts:express-as style='cheerful'>"), render(ssml));
+    }
+
+    @Test
+    void rendersStyleDegree() {
+        SSML ssml = SSML.builder().synthesisText("styled").voice(VoiceEnum.zh_CN_YunxiNeural)
+                .style(TtsStyleEnum.sad).styleDegree(1.5).pitch("-2st").build();
+        String plain = expected("zh-CN", "zh-CN-YunxiNeural", "-2st", "+0%", "+0%", "styled");
+
+        assertEquals(withStyle(plain, "<mstts:express-as style='sad' styledegree='1.5'>"), render(ssml));
+    }
+
+    @Test
+    void escapesText() {
+        SSML ssml = SSML.builder().synthesisText("Tom & Jerry <say> \"hi\" it's").voice(VoiceEnum.en_US_AriaNeural).build();
+
+        assertEquals(expected("en-US", "en-US-AriaNeural", "+0Hz", "+0%", "+0%",
+                "Tom &amp; Jerry &lt;say&gt; \"hi\" it's"), render(ssml));
+    }
+
+    @Test
+    void escapesAttributes() {
+        Voice voice = new Voice("x-'Voice'&Neural", "Female", "x-<y>", null, null, null, null,
+                Collections.<String>emptyList(), Collections.<String>emptyList());
+        SSML ssml = SSML.builder().synthesisText("text").voice(voice).rate("+5%'").build();
+
+        assertEquals(expected("x-&lt;y&gt;", "x-&apos;Voice&apos;&amp;Neural", "+0Hz", "+5%&apos;", "+0%", "text"),
+                render(ssml));
+        // Rendered again from the cached parts of the catalogue voice
+        assertEquals(render(ssml), render(ssml));
+    }
+
+    @Test
+    void rendersCatalogueVoiceAsItsConstant() {
+        SSML constant = SSML.builder().synthesisText("same").voice(VoiceEnum.en_US_AriaNeural).build();
+        Voice copy = new Voice("en-US-AriaNeural", "Female", "en-US", null, null, null, null,
+                Collections.<String>emptyList(), Collections.<String>emptyList());
+
+        assertEquals(render(constant), render(SSML.builder().synthesisText("same").voice(copy).build()));
+    }
+
+    @Test
+    void rendersSegmentsInTheirOwnVoices() {
+        SSML ssml = SSML.builder()
+                .segment(VoiceSegment.builder().voice(VoiceEnum.en_US_AriaNeural).text("One").pause(Duration.ofMillis(250))
+                        .text("a < b").build())
+                .segment(VoiceSegment.builder().voice(VoiceEnum.zh_CN_YunxiNeural).rate("+10%").text("二").build())
+                .build();
+        String body = "<voice name='en-US-AriaNeural'>\r\n<prosody pitch='+0Hz' rate='+0%' volume='+0%'>"
+                + "One<break time='250ms'/>a &lt; b</prosody></voice>"
+                + "<voice name='zh-CN-YunxiNeural'>\r\n<prosody pitch='+0Hz' rate='+10%' volume='+0%'>"
+                + "二</prosody></voice></speak>";
+
+        assertEquals(head("en-US") + body, render(ssml));
+    }
+
+    @Test
+    void rendersBodyWithoutHeaders() {
+        SSML ssml = SSML.builder().synthesisText("body").voice(VoiceEnum.en_US_AriaNeural).build();
+        String message = render(ssml);
+
+        assertEquals(message.substring(message.indexOf("\r\n\r\n") + 4), MessageWriter.ssmlBody(ssml));
+    }
+
+    @ParameterizedTest
+    @EnumSource(OutputFormat.class)
+    void rendersSpeechConfigAsThePattern(OutputFormat format) {
+        String message = MessageWriter.speechConfig(format).replaceFirst("X-Timestamp:[^\r]*", "X-Timestamp:ts");
+
+        assertEquals(String.format(SpeechConfig.CONFIG_PATTERN, "ts", format.getValue()), message);
+    }
+
+    private static String render(SSML ssml) {
+        return MessageWriter.ssml(ssml, REQUEST_ID).replaceFirst("X-Timestamp:[^\r]*Z", "X-Timestamp:tsZ");
+    }
+
+    private static String expected(String locale, String voice, String pitch, String rate, String volume, String text) {
+        return String.format(SSML.SSML_PATTERN.replace("+0Hz", pitch), REQUEST_ID, "ts", locale, voice, rate, volume, text);
+    }
+
+    /**
+     * The start of the pattern up to the first voice element.
+     */
+    private static String head(String locale) {
+        String document = expected(locale, "", "", "", "", "");
+        return document.substring(0, document.indexOf("<voice"));
+    }
+
+    private static String withStyle(String document, String open) {
+        return document.replace("<prosody", open + "<prosody").replace("</prosody>", "</prosody></mstts:express-as>");
+    }
+}
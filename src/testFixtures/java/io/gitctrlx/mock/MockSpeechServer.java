@@ -0,0 +1,414 @@
+package io.gitctrlx.mock;
+
+import io.gitctrlx.service.SpeechEndpoint;
+
+import okhttp3.Response;
+import okhttp3.WebSocket;
+import okhttp3.WebSocketListener;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okio.ByteString;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.net.ServerSocketFactory;
+
+/**
+ * An in-process speech server for load tests and benchmarks, speaking the same WebSocket protocol as the Edge
+ * read-aloud service.
+ * <p>
+ * Every {@code Path:ssml} message is answered with {@code turn.start}, a {@code WordBoundary} metadata frame per
+ * word of the text, a configurable number of binary {@code Path:audio} frames of a configurable size, and
+ * {@code turn.end}, all carrying the request's {@code X-RequestId}. The first frame is delayed by the latency
+ * plus a random jitter. With a failure rate, that fraction of syntheses has its connection closed after the first
+ * audio frame instead, as the real service does when it throttles a client.
+ * <pre>{@code
+ * try (MockSpeechServer server = MockSpeechServer.builder().latency(Duration.ofMillis(50)).build().start()) {
+ *     TTSService tts = TTSService.builder().endpoint(server.endpoint()).build();
+ *     ...
+ * }
+ * }</pre>
+ */
+public final class MockSpeechServer implements Closeable {
+
+    private static final String TEXT_HEADERS = "Content-Type:application/json; charset=utf-8\r\n";
+
+    private final long latencyNanos;
+    private final long jitterNanos;
+    private final int frameSize;
+    private final int framesPerTurn;
+    private final double failureRate;
+    private final MockWebServer server = new MockWebServer();
+    private final ScheduledExecutorService scheduler;
+    private final Set<WebSocket> sockets = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger connections = new AtomicInteger();
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong configs = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+
+    /**
+     * Constructor that initializes the server from a builder.
+     *
+     * @param builder The builder holding the settings
+     */
+    private MockSpeechServer(MockSpeechServerBuilder builder) {
+        this.latencyNanos = builder.latency.toNanos();
+        this.jitterNanos = builder.jitter.toNanos();
+        this.frameSize = builder.frameSize;
+        this.framesPerTurn = builder.framesPerTurn;
+        this.failureRate = builder.failureRate;
+        this.scheduler = Executors.newScheduledThreadPool(builder.threads, r -> {
+            Thread thread = new Thread(r, "mock-speech-server");
+            thread.setDaemon(true);
+            return thread;
+        });
+        server.setServerSocketFactory(new NoDelayServerSocketFactory());
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                connections.incrementAndGet();
+                return new MockResponse().withWebSocketUpgrade(new Session());
+            }
+        });
+    }
+
+    /**
+     * Static factory method that returns an instance of MockSpeechServerBuilder.
+     *
+     * @return An instance of MockSpeechServerBuilder.
+     */
+    public static MockSpeechServerBuilder builder() {
+        return new MockSpeechServerBuilder();
+    }
+
+    /**
+     * Starts the server on a free local port.
+     *
+     * @return This server
+     * @throws IOException If the server cannot be started
+     */
+    public MockSpeechServer start() throws IOException {
+        server.start();
+        return this;
+    }
+
+    /**
+     * Gets an endpoint that connects to this server.
+     *
+     * @return The endpoint
+     */
+    public SpeechEndpoint endpoint() {
+        return SpeechEndpoint.builder()
+                .url(server.url("/consumer/speech/synthesize/readaloud/edge/v1").toString())
+                .build();
+    }
+
+    /**
+     * Gets the number of WebSocket connections accepted.
+     *
+     * @return The connection count
+     */
+    public int getConnectionCount() {
+        return connections.get();
+    }
+
+    /**
+     * Gets the number of {@code ssml} messages received.
+     *
+     * @return The request count
+     */
+    public long getRequestCount() {
+        return requests.get();
+    }
+
+    /**
+     * Gets the number of {@code speech.config} messages received.
+     *
+     * @return The configuration count
+     */
+    public long getConfigCount() {
+        return configs.get();
+    }
+
+    /**
+     * Gets the number of syntheses whose connection was closed on purpose.
+     *
+     * @return The injected failure count
+     */
+    public long getFailureCount() {
+        return failures.get();
+    }
+
+    @Override
+    public void close() throws IOException {
+        scheduler.shutdownNow();
+        for (WebSocket socket : sockets) {
+            socket.close(1001, "Server shutting down");
+        }
+        server.shutdown();
+    }
+
+    /**
+     * One client connection.
+     */
+    private final class Session extends WebSocketListener {
+
+        @Override
+        public void onOpen(WebSocket webSocket, Response response) {
+            sockets.add(webSocket);
+        }
+
+        @Override
+        public void onClosing(WebSocket webSocket, int code, String reason) {
+            webSocket.close(1000, null);
+        }
+
+        @Override
+        public void onClosed(WebSocket webSocket, int code, String reason) {
+            sockets.remove(webSocket);
+        }
+
+        @Override
+        public void onFailure(WebSocket webSocket, Throwable t, Response response) {
+            sockets.remove(webSocket);
+        }
+
+        @Override
+        public void onMessage(WebSocket webSocket, String text) {
+            String path = header(text, "Path:");
+            if ("speech.config".equals(path)) {
+                configs.incrementAndGet();
+            } else if ("ssml".equals(path)) {
+                requests.incrementAndGet();
+                String requestId = header(text, "X-RequestId:");
+                long delay = latencyNanos + (jitterNanos > 0 ? ThreadLocalRandom.current().nextLong(jitterNanos) : 0);
+                boolean fail = failureRate > 0 && ThreadLocalRandom.current().nextDouble() < failureRate;
+                scheduler.schedule(() -> respond(webSocket, requestId, words(text), fail), delay, TimeUnit.NANOSECONDS);
+            }
+        }
+
+        private void respond(WebSocket webSocket, String requestId, String[] words, boolean fail) {
+            webSocket.send(textFrame(requestId, "turn.start", "{\"context\":{\"serviceTag\":\"mock\"}}"));
+            long offset = 1_000_000;
+            for (String word : words) {
+                long duration = 1_000_000L * Math.max(1, word.length());
+                webSocket.send(textFrame(requestId, "audio.metadata", "{\"Metadata\":[{\"Type\":\"WordBoundary\",\"Data\":"
+                        + "{\"Offset\":" + offset + ",\"Duration\":" + duration + ",\"text\":{\"Text\":\"" + escape(word)
+                        + "\",\"Length\":" + word.length() + ",\"BoxType\":\"Word\"}}}]}"));
+                offset += duration + 500_000;
+            }
+            byte[] header = ("X-RequestId:" + requestId + "\r\nContent-Type:audio/mpeg\r\nX-StreamId:" + requestId
+                    + "\r\nPath:audio\r\n").getBytes(StandardCharsets.UTF_8);
+            for (int i = 0; i < framesPerTurn; i++) {
+                byte[] frame = new byte[2 + header.length + frameSize];
+                frame[0] = (byte) (header.length >> 8);
+                frame[1] = (byte) header.length;
+                System.arraycopy(header, 0, frame, 2, header.length);
+                for (int j = 0; j < frameSize; j++) {
+                    frame[2 + header.length + j] = (byte) (i + j);
+                }
+                webSocket.send(ByteString.of(frame));
+                if (fail) {
+                    failures.incrementAndGet();
+                    webSocket.close(1011, "Mock failure");
+                    return;
+                }
+            }
+            webSocket.send(textFrame(requestId, "turn.end", "{}"));
+        }
+    }
+
+    private static String textFrame(String requestId, String path, String body) {
+        return "X-RequestId:" + requestId + "\r\n" + TEXT_HEADERS + "X-Timestamp:" + Instant.now() + "Z\r\nPath:"
+                + path + "\r\n\r\n" + body;
+    }
+
+    private static String header(String message, String name) {
+        int start = message.indexOf(name);
+        if (start < 0) {
+            return null;
+        }
+        start += name.length();
+        int end = message.indexOf("\r\n", start);
+        return (end < 0 ? message.substring(start) : message.substring(start, end)).trim();
+    }
+
+    /**
+     * Extracts the words of the text inside the SSML body, across all of its voices.
+     */
+    private static String[] words(String message) {
+        int start = message.indexOf("<speak");
+        if (start < 0) {
+            return new String[0];
+        }
+        String text = message.substring(start).replaceAll("<[^>]*>", " ")
+                .replace("&lt;", "<").replace("&gt;", ">").replace("&apos;", "'").replace("&quot;", "\"")
+                .replace("&amp;", "&").trim();
+        return text.isEmpty() ? new String[0] : text.split("\\s+");
+    }
+
+    private static String escape(String text) {
+        return text.replace("\\", "\\\\").replace("\"", "\\\"");
+    }
+
+    /**
+     * Disables Nagle's algorithm on accepted sockets. A turn is several small frames written back to back, and
+     * without this every one after the first waits for the client's delayed ACK, adding about 40 ms per synthesis.
+     */
+    private static final class NoDelayServerSocketFactory extends ServerSocketFactory {
+
+        @Override
+        public ServerSocket createServerSocket() throws IOException {
+            return new ServerSocket() {
+                @Override
+                public Socket accept() throws IOException {
+                    Socket socket = super.accept();
+                    socket.setTcpNoDelay(true);
+                    return socket;
+                }
+            };
+        }
+
+        @Override
+        public ServerSocket createServerSocket(int port) throws IOException {
+            return createServerSocket(port, 50, null);
+        }
+
+        @Override
+        public ServerSocket createServerSocket(int port, int backlog) throws IOException {
+            return createServerSocket(port, backlog, null);
+        }
+
+        @Override
+        public ServerSocket createServerSocket(int port, int backlog, InetAddress address) throws IOException {
+            ServerSocket serverSocket = createServerSocket();
+            try {
+                serverSocket.bind(new InetSocketAddress(address, port), backlog);
+            } catch (IOException | RuntimeException e) {
+                serverSocket.close();
+                throw e;
+            }
+            return serverSocket;
+        }
+    }
+
+    /**
+     * The MockSpeechServerBuilder class is used to build MockSpeechServer objects.
+     */
+    public static class MockSpeechServerBuilder {
+        private Duration latency = Duration.ofMillis(20);
+        private Duration jitter = Duration.ZERO;
+        private int frameSize = 4096;
+        private int framesPerTurn = 4;
+        private double failureRate;
+        private int threads = 4;
+
+        private MockSpeechServerBuilder() {
+        }
+
+        /**
+         * Sets the delay before the first frame of every synthesis.
+         *
+         * @param latency The latency.
+         * @return An instance of MockSpeechServerBuilder.
+         */
+        public MockSpeechServerBuilder latency(Duration latency) {
+            this.latency = Objects.requireNonNull(latency, "latency");
+            return this;
+        }
+
+        /**
+         * Sets the upper bound of a random delay added to the latency.
+         *
+         * @param jitter The jitter.
+         * @return An instance of MockSpeechServerBuilder.
+         */
+        public MockSpeechServerBuilder jitter(Duration jitter) {
+            this.jitter = Objects.requireNonNull(jitter, "jitter");
+            return this;
+        }
+
+        /**
+         * Sets the audio payload size of each binary frame.
+         *
+         * @param frameSize The payload size in bytes, at least 0.
+         * @return An instance of MockSpeechServerBuilder.
+         */
+        public MockSpeechServerBuilder frameSize(int frameSize) {
+            if (frameSize < 0) {
+                throw new IllegalArgumentException("frameSize must not be negative");
+            }
+            this.frameSize = frameSize;
+            return this;
+        }
+
+        /**
+         * Sets the number of audio frames per synthesis.
+         *
+         * @param framesPerTurn The number of frames, at least 1.
+         * @return An instance of MockSpeechServerBuilder.
+         */
+        public MockSpeechServerBuilder framesPerTurn(int framesPerTurn) {
+            if (framesPerTurn < 1) {
+                throw new IllegalArgumentException("framesPerTurn must be at least 1");
+            }
+            this.framesPerTurn = framesPerTurn;
+            return this;
+        }
+
+        /**
+         * Sets the fraction of syntheses whose connection is closed after the first audio frame.
+         *
+         * @param failureRate The failure rate, between 0 and 1.
+         * @return An instance of MockSpeechServerBuilder.
+         */
+        public MockSpeechServerBuilder failureRate(double failureRate) {
+            if (!(failureRate >= 0 && failureRate <= 1)) {
+                throw new IllegalArgumentException("failureRate must be between 0 and 1");
+            }
+            this.failureRate = failureRate;
+            return this;
+        }
+
+        /**
+         * Sets the number of threads sending responses.
+         *
+         * @param threads The number of threads, at least 1.
+         * @return An instance of MockSpeechServerBuilder.
+         */
+        public MockSpeechServerBuilder threads(int threads) {
+            if (threads < 1) {
+                throw new IllegalArgumentException("threads must be at least 1");
+            }
+            this.threads = threads;
+            return this;
+        }
+
+        /**
+         * Builds the MockSpeechServer object. Call {@link MockSpeechServer#start()} to start it.
+         *
+         * @return An instance of MockSpeechServer.
+         */
+        public MockSpeechServer build() {
+            return new MockSpeechServer(this);
+        }
+    }
+}